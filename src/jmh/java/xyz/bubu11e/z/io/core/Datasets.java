@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * Datasets generated for the benchmarks.
+ */
+public enum Datasets {
+
+  /** Short records, typical of transaction logs. */
+  SHORT(20, 200, false),
+  /** Long records, close to the maximum VB record length. */
+  LONG(1000, 27000, false),
+  /** Records longer than a block, spanned in a VBS dataset. */
+  SPANNED(20, 200000, true);
+
+  /** Default size of the generated datasets. */
+  public final static long DEFAULT_SIZE = 64L * 1024 * 1024;
+
+  /** Minimum record length. */
+  private final int minLength;
+  /** Maximum record length. */
+  private final int maxLength;
+  /** True if the dataset is VBS. */
+  private final boolean spanned;
+
+  private Datasets(int minLength, int maxLength, boolean spanned) {
+    this.minLength = minLength;
+    this.maxLength = maxLength;
+    this.spanned = spanned;
+  }
+
+  /**
+   * Getter for the record format.
+   * @return True if the dataset is VBS, false if it is VB.
+   */
+  public boolean isSpanned() {
+    return this.spanned;
+  }
+
+  /**
+   * Generate records.
+   * @param size Total size of the records.
+   * @return Records whose lengths are uniformly distributed.
+   */
+  public byte[][] records(long size) {
+    Random random = new Random(this.ordinal());
+    List<byte[]> records = new ArrayList<byte[]>();
+
+    for(long total = 0; total < size; ) {
+      byte[] record = new byte[this.minLength + random.nextInt(this.maxLength - this.minLength + 1)];
+      random.nextBytes(record);
+      records.add(record);
+      total += record.length;
+    }
+
+    return records.toArray(new byte[records.size()][]);
+  }
+
+  /**
+   * Generate a dataset file.
+   * @param size Total size of the records.
+   * @return The path of a temporary file, to be deleted by the caller.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If a record cannot be written.
+   */
+  public Path generate(long size) throws IOException, WriterException {
+    Path file = Files.createTempFile("bench-" + this.name().toLowerCase(), ".bin");
+
+    try(VBWriter writer = new VBWriter(file, VBWriter.DEFAULT_BLOCK_SIZE, this.spanned)) {
+      for(byte[] record : this.records(size)) {
+        writer.write(record);
+      }
+    }
+
+    return file;
+  }
+}
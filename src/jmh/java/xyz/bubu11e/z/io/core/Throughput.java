@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of the throughput benchmarks,
+ * reported by JMH as records/s and bytes/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+  /** Number of records processed. */
+  public long records;
+  /** Number of record bytes processed. */
+  public long bytes;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    this.records = 0;
+    this.bytes = 0;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.bubu11e.z.io.core.Datasets;
+import xyz.bubu11e.z.io.core.Throughput;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * Throughput of the parallel export of a single dataset,
+ * to measure its scaling with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelExporterBenchmark {
+
+  /** Record length distribution of the dataset. */
+  @Param({"SHORT", "LONG"})
+  public Datasets dataset;
+
+  /** Number of threads formatting the records. */
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  private Path input;
+  private Path output;
+  private ForkJoinPool pool;
+  private ParallelExporter exporter;
+
+  @Setup
+  public void setUp() throws IOException, WriterException {
+    this.input = this.dataset.generate(Datasets.DEFAULT_SIZE);
+    this.output = Files.createTempFile("bench-export", ".csv");
+    this.pool = new ForkJoinPool(this.threads);
+    this.exporter = new ParallelExporter(CodePage.CP037, null, ',', this.pool, ParallelExporter.DEFAULT_BATCH_SIZE);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.pool.shutdown();
+    Files.deleteIfExists(this.input);
+    Files.deleteIfExists(this.output);
+  }
+
+  @Benchmark
+  public long export(Throughput throughput) {
+    ConversionResult result = this.exporter.export(new Conversion(this.input, this.output, RecordFormat.VB));
+
+    throughput.records += result.getRecords();
+    throughput.bytes += result.getInputBytes();
+
+    return result.getOutputBytes();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.decimal;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare the word at a time {@link DecimalCodec} to the naive
+ * nibble loop, on a column of fields spread over records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimalCodecBenchmark {
+
+  /** Number of fields decoded per invocation. */
+  private final static int COUNT = 1024;
+  /** Length of the records holding the fields. */
+  private final static int RECORD_LENGTH = 100;
+
+  /** Length of the packed fields in byte. */
+  @Param({"3", "5", "8", "10"})
+  public int packedLength;
+
+  /** Length of the zoned fields in byte. */
+  @Param({"4", "9", "18"})
+  public int zonedLength;
+
+  private byte[] packed;
+  private byte[] zoned;
+  private int[] offsets;
+  private long[] values;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    this.packed = new byte[COUNT * RECORD_LENGTH];
+    this.zoned = new byte[COUNT * RECORD_LENGTH];
+    this.offsets = new int[COUNT];
+    this.values = new long[COUNT];
+
+    for(int i = 0; i < COUNT; i++) {
+      this.offsets[i] = i * RECORD_LENGTH + 7;
+      DecimalCodec.encodePacked(random.nextLong() % DecimalCodecBenchmark.power(2 * this.packedLength - 2),
+        this.packed, this.offsets[i], this.packedLength, true);
+      DecimalCodec.encodeZoned(random.nextLong() % DecimalCodecBenchmark.power(this.zonedLength),
+        this.zoned, this.offsets[i], this.zonedLength, true);
+    }
+  }
+
+  private static long power(int digits) {
+    long power = 1;
+    for(int i = 0; i < Math.min(digits, 18); i++) {
+      power *= 10;
+    }
+    return power;
+  }
+
+  /**
+   * Reference implementation, one multiply-add per nibble.
+   */
+  private static long naivePacked(byte[] src, int offset, int length) {
+    long value = 0;
+    for(int i = 0; i < length; i++) {
+      int b = src[offset + i];
+      int high = b >> 4 & 0x0f;
+      if(high > 9) {
+        throw new NumberFormatException();
+      }
+      value = value * 10 + high;
+      if(i < length - 1) {
+        int low = b & 0x0f;
+        if(low > 9) {
+          throw new NumberFormatException();
+        }
+        value = value * 10 + low;
+      }
+    }
+    return DecimalCodec.isNegative(src[offset + length - 1] & 0x0f) ? -value : value;
+  }
+
+  /**
+   * Reference implementation, one multiply-add per byte.
+   */
+  private static long naiveZoned(byte[] src, int offset, int length) {
+    long value = 0;
+    for(int i = 0; i < length; i++) {
+      int digit = src[offset + i] & 0x0f;
+      if(digit > 9) {
+        throw new NumberFormatException();
+      }
+      value = value * 10 + digit;
+    }
+    return DecimalCodec.isNegative(src[offset + length - 1] >> 4 & 0x0f) ? -value : value;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void packedNaive(Blackhole blackhole) {
+    for(int i = 0; i < COUNT; i++) {
+      blackhole.consume(naivePacked(this.packed, this.offsets[i], this.packedLength));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void packedSwar(Blackhole blackhole) {
+    for(int i = 0; i < COUNT; i++) {
+      blackhole.consume(DecimalCodec.decodePacked(this.packed, this.offsets[i], this.packedLength));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public long[] packedColumn() {
+    DecimalCodec.decodePacked(this.packed, this.offsets, COUNT, this.packedLength, this.values);
+    return this.values;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void zonedNaive(Blackhole blackhole) {
+    for(int i = 0; i < COUNT; i++) {
+      blackhole.consume(naiveZoned(this.zoned, this.offsets[i], this.zonedLength));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void zonedSwar(Blackhole blackhole) {
+    for(int i = 0; i < COUNT; i++) {
+      blackhole.consume(DecimalCodec.decodeZoned(this.zoned, this.offsets[i], this.zonedLength));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public long[] zonedColumn() {
+    DecimalCodec.decodeZoned(this.zoned, this.offsets, COUNT, this.zonedLength, this.values);
+    return this.values;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.dw;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the descriptor word accessors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorWordBenchmark {
+
+  private BlockDescriptorWord bdw;
+  private BlockDescriptorWord extendedBdw;
+  private RecordDescriptorWord rdw;
+  private BlockDescriptorWordView bdwView;
+  private RecordDescriptorWordView rdwView;
+  private ByteBuffer direct;
+  private int length;
+
+  @Setup
+  public void setUp() throws DescriptorWordException {
+    this.bdw = new BlockDescriptorWord();
+    this.bdw.setBuffer(new byte[] {0x6d, 0x5e, 0x00, 0x00});
+    this.extendedBdw = new BlockDescriptorWord();
+    this.extendedBdw.setBuffer(new byte[] {(byte)0x80, 0x01, 0x00, 0x00});
+    this.rdw = new RecordDescriptorWord();
+    this.rdw.setBuffer(new byte[] {0x01, 0x00, 0x00, 0x00});
+    this.direct = ByteBuffer.allocateDirect(8);
+    this.direct.putInt(0, 0x6d5e0000).putInt(4, 0x01000000);
+    this.bdwView = new BlockDescriptorWordView();
+    this.rdwView = new RecordDescriptorWordView();
+    this.length = 200;
+  }
+
+  @Benchmark
+  public int bdwGetSegmentLength() throws DescriptorWordException {
+    return this.bdw.getSegmentLength();
+  }
+
+  @Benchmark
+  public int bdwGetExtendedSegmentLength() throws DescriptorWordException {
+    return this.extendedBdw.getSegmentLength();
+  }
+
+  @Benchmark
+  public byte[] bdwSetSegmentLength() throws DescriptorWordException {
+    this.bdw.setSegmentLength(27998, false);
+    return this.bdw.getBuffer();
+  }
+
+  @Benchmark
+  public int rdwGetSegmentLength() throws DescriptorWordException {
+    return this.rdw.getSegmentLength();
+  }
+
+  @Benchmark
+  public RecordDescriptorWord.Code rdwGetSegmentCode() throws DescriptorWordException {
+    return this.rdw.getSegmentCode();
+  }
+
+  @Benchmark
+  public boolean rdwDecode() throws DescriptorWordException {
+    return this.rdw.getSegmentLength() > 0
+      && this.rdw.getSegmentCode() == RecordDescriptorWord.Code.COMPLETE_RECORD
+      && this.rdw.isLastByteValid();
+  }
+
+  @Benchmark
+  public byte[] rdwEncode() throws DescriptorWordException {
+    this.rdw.setSegmentLength(this.length);
+    this.rdw.setSegmentCode(RecordDescriptorWord.Code.COMPLETE_RECORD);
+    this.rdw.setLastByte();
+    return this.rdw.getBuffer();
+  }
+
+  @Benchmark
+  public int bdwViewBindDirect() throws DescriptorWordException {
+    this.bdwView.bind(this.direct, 0);
+    return this.bdwView.getSegmentLength();
+  }
+
+  @Benchmark
+  public int rdwViewBindDirect() throws DescriptorWordException {
+    this.rdwView.bind(this.direct, 4);
+    return this.rdwView.getSegmentLength() + this.rdwView.getSegmentCode().ordinal();
+  }
+
+  @Benchmark
+  public ByteBuffer rdwViewEncode() throws DescriptorWordException {
+    this.rdwView.wrap(this.direct, 4);
+    this.rdwView.set(this.length, RecordDescriptorWord.Code.COMPLETE_RECORD);
+    return this.direct;
+  }
+}
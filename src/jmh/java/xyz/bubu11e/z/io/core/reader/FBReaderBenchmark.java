@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.bubu11e.z.io.core.Datasets;
+import xyz.bubu11e.z.io.core.Throughput;
+
+/**
+ * End to end read throughput of fixed length records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FBReaderBenchmark {
+
+  /** Length of the records. */
+  @Param({"80", "1000"})
+  public int lrecl;
+
+  private Path file;
+
+  @Setup
+  public void setUp() throws IOException {
+    this.file = Files.createTempFile("bench-fb", ".bin");
+    Files.write(this.file, new byte[(int)(Datasets.DEFAULT_SIZE / this.lrecl * this.lrecl)]);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  @Benchmark
+  public long cursor(Throughput throughput) throws IOException, ReaderException {
+    long checksum = 0;
+
+    try(FBReader reader = new FBReader(this.file, this.lrecl, this.lrecl * 100)) {
+      while(reader.next()) {
+        checksum += reader.getBuffer().get(reader.getOffset());
+        throughput.records++;
+        throughput.bytes += this.lrecl;
+      }
+    }
+
+    return checksum;
+  }
+
+  @Benchmark
+  public long batch(Throughput throughput) throws IOException, ReaderException {
+    long checksum = 0;
+    RecordBatch batch = new RecordBatch();
+
+    try(FBReader reader = new FBReader(this.file, this.lrecl, this.lrecl * 100)) {
+      while(reader.nextBatch(batch, 4096)) {
+        for(int i = 0; i < batch.getCount(); i++) {
+          checksum += batch.getBuffer().get(batch.getOffset(i));
+        }
+        throughput.records += batch.getCount();
+        throughput.bytes += batch.getLength();
+      }
+    }
+
+    return checksum;
+  }
+}
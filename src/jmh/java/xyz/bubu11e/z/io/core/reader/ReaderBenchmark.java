@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.bubu11e.z.io.core.Datasets;
+import xyz.bubu11e.z.io.core.Throughput;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * End to end read throughput of generated datasets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+  /** Record length distribution of the dataset. */
+  @Param({"SHORT", "LONG", "SPANNED"})
+  public Datasets dataset;
+
+  /** Block source: memory mapped, asynchronous read-ahead or memory mapped with resynchronisation. */
+  @Param({"mapped", "readahead", "resync"})
+  public String source;
+
+  private Path file;
+
+  @Setup
+  public void setUp() throws IOException, WriterException {
+    this.file = this.dataset.generate(Datasets.DEFAULT_SIZE);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  private AbstractVariableReader open() throws IOException {
+    BlockSource blocks = "readahead".equals(this.source) ? new ReadAheadBlockSource(this.file)
+      : "resync".equals(this.source) ? new ResyncBlockSource(this.file, null) : new MappedBlockSource(this.file);
+
+    return this.dataset.isSpanned() ? new VBSReader(blocks) : new VBReader(blocks);
+  }
+
+  @Benchmark
+  public long cursor(Throughput throughput) throws IOException, ReaderException {
+    long checksum = 0;
+
+    try(AbstractVariableReader reader = this.open()) {
+      while(reader.next()) {
+        checksum += reader.getBuffer().get(reader.getOffset());
+        throughput.records++;
+        throughput.bytes += reader.getLength();
+      }
+    }
+
+    return checksum;
+  }
+
+  @Benchmark
+  public long read(Throughput throughput) throws IOException, ReaderException {
+    long checksum = 0;
+
+    try(AbstractVariableReader reader = this.open()) {
+      byte[] record = null;
+      while((record = reader.read()) != null) {
+        checksum += record.length;
+        throughput.records++;
+        throughput.bytes += record.length;
+      }
+    }
+
+    return checksum;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.scan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.bubu11e.z.io.core.Datasets;
+import xyz.bubu11e.z.io.core.Throughput;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * Throughput of the structure validation, to compare with the readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StructureScannerBenchmark {
+
+  /** Record length distribution of the dataset. */
+  @Param({"SHORT", "LONG", "SPANNED"})
+  public Datasets dataset;
+
+  private Path file;
+  private StructureScanner scanner;
+
+  @Setup
+  public void setUp() throws IOException, WriterException {
+    this.file = this.dataset.generate(Datasets.DEFAULT_SIZE);
+    this.scanner = new StructureScanner(this.dataset.isSpanned() ? RecordFormat.VBS : RecordFormat.VB);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  @Benchmark
+  public long scan(Throughput throughput) throws IOException {
+    ScanReport report = this.scanner.scan(this.file);
+
+    throughput.records += report.getRecords();
+    throughput.bytes += report.getBytes();
+
+    return report.getSegments();
+  }
+}
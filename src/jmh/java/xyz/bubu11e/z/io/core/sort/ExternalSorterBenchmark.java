@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.bubu11e.z.io.core.Datasets;
+import xyz.bubu11e.z.io.core.Throughput;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * Throughput of the external sort, with the whole dataset in
+ * memory or spilled into runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExternalSorterBenchmark {
+
+  /** Record length distribution of the dataset. */
+  @Param({"SHORT", "LONG"})
+  public Datasets dataset;
+
+  /** Size of a run buffer, the smallest one spilling the dataset into runs. */
+  @Param({"4194304", "134217728"})
+  public int runSize;
+
+  private Path input;
+  private Path output;
+  private ExternalSorter sorter;
+
+  @Setup
+  public void setUp() throws IOException, WriterException {
+    this.input = this.dataset.generate(Datasets.DEFAULT_SIZE);
+    this.output = Files.createTempFile("bench-sort", ".bin");
+    this.sorter = new ExternalSorter(RecordComparator.parse("1,8,CH,A"),
+      Paths.get(System.getProperty("java.io.tmpdir")), this.runSize, ExternalSorter.DEFAULT_BUFFER_COUNT,
+      ExternalSorter.DEFAULT_MERGE_WIDTH, ExternalSorter.DEFAULT_PREFETCH_SIZE, ForkJoinPool.commonPool());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.input);
+    Files.deleteIfExists(this.output);
+  }
+
+  @Benchmark
+  public long sort(Throughput throughput) throws IOException, ReaderException, WriterException {
+    long records;
+
+    try(VBSReader reader = new VBSReader(this.input); VBWriter writer = new VBWriter(this.output)) {
+      records = this.sorter.sort(reader, writer);
+    }
+
+    throughput.records += records;
+    throughput.bytes += Files.size(this.input);
+
+    return records;
+  }
+}
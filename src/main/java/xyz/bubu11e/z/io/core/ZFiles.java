@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import xyz.bubu11e.z.io.core.reader.BlockIndex;
+import xyz.bubu11e.z.io.core.reader.FBSpliterator;
+import xyz.bubu11e.z.io.core.reader.IndexedSpliterator;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.UncheckedReaderException;
+import xyz.bubu11e.z.io.core.reader.VBSpliterator;
+
+/**
+ * Streams over the records of z/OS datasets.
+ *
+ * The streams hold an open file and must be closed, typically with a
+ * try-with-resources statement. Errors met while traversing a stream are
+ * thrown as {@link UncheckedIOException} or {@link UncheckedReaderException}.
+ */
+public final class ZFiles {
+
+  private ZFiles() {
+  }
+
+  /**
+   * Stream the records of a RECFM=VB dataset.
+   * If the dataset has a valid sidecar index, the stream is sized
+   * and the dataset may also be RECFM=VBS.
+   * @param path Path of the dataset.
+   * @return A stream of the records, copied into new arrays.
+   * @throws IOException If the dataset cannot be opened.
+   */
+  public static Stream<byte[]> records(Path path) throws IOException {
+    Path sidecar = BlockIndex.getSidecar(path);
+
+    if(Files.exists(sidecar)) {
+      try {
+        BlockIndex index = BlockIndex.load(sidecar);
+        if(index.isValidFor(path)) {
+          return records(path, index);
+        }
+      } catch(ReaderException e) {
+        // Unreadable index, fall back to the block scan.
+      }
+    }
+
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return StreamSupport.stream(new VBSpliterator(channel), false).onClose(closer(channel));
+    } catch(IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Stream the records of an indexed RECFM=VB or VBS dataset.
+   * @param path Path of the dataset.
+   * @param index Index of the dataset.
+   * @return A sized stream of the records, copied into new arrays.
+   */
+  public static Stream<byte[]> records(Path path, BlockIndex index) {
+    IndexedSpliterator spliterator = new IndexedSpliterator(path, index);
+    return StreamSupport.stream(spliterator, false).onClose(closer(spliterator));
+  }
+
+  /**
+   * Stream the records of a RECFM=FB dataset.
+   * @param path Path of the dataset.
+   * @param lrecl Length of the records.
+   * @return A sized stream of the records, copied into new arrays.
+   * @throws IOException If the dataset cannot be opened.
+   * @throws ReaderException If the size of the dataset is not a multiple of the record length.
+   */
+  public static Stream<byte[]> fixedRecords(Path path, int lrecl) throws IOException, ReaderException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return StreamSupport.stream(new FBSpliterator(channel, lrecl), false).onClose(closer(channel));
+    } catch(IOException | ReaderException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Build a close handler for a channel or a spliterator.
+   * @param closeable Resource to close.
+   * @return A close handler throwing an {@link UncheckedIOException} on failure.
+   */
+  private static Runnable closer(final Closeable closeable) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          closeable.close();
+        } catch(IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+  }
+}
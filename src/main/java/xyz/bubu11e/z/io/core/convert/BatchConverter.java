@@ -0,0 +1,330 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import xyz.bubu11e.z.io.core.copybook.Layout;
+import xyz.bubu11e.z.io.core.filter.RecordPredicate;
+import xyz.bubu11e.z.io.core.reader.AbstractRecordReader;
+import xyz.bubu11e.z.io.core.reader.FBReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.RecordBatch;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+
+/**
+ * Converter of batches of datasets into delimited UTF-8 text files.
+ *
+ * Each dataset is converted by its own task. Tasks run on virtual threads
+ * when the JVM provides them, on a fixed pool of threads otherwise.
+ * A task holds an output buffer and a formatter while it runs: their number
+ * is bounded by the memory limit, which also bounds the number of datasets
+ * converted at once. Buffers and formatters are reused across the batch.
+ *
+ * Gzip compressed datasets are decompressed on the fly. With a filter,
+ * only the matching records are transcoded.
+ *
+ * A converter can run several batches, possibly concurrently.
+ */
+public class BatchConverter {
+
+  /** Default size of the output buffer of a task. */
+  public final static int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+  /** Default limit of the memory held by the output buffers. */
+  public final static long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+  /** Code page of the datasets. */
+  private final CodePage codePage;
+  /** Layout of the records, null to convert whole records. */
+  private final Layout layout;
+  /** Column delimiter. */
+  private final char delimiter;
+  /** Number of threads of the fallback pool. */
+  private final int parallelism;
+  /** Size of the output buffers. */
+  private final int bufferSize;
+
+  /** Filter of the converted records, null to convert all of them. */
+  private volatile RecordPredicate filter = null;
+
+  /** Permits to hold a task state, bounding the memory. */
+  private final Semaphore permits;
+  /** Idle task states. */
+  private final ConcurrentLinkedQueue<Slot> slots = new ConcurrentLinkedQueue<Slot>();
+
+  /**
+   * Constructor with the default limits.
+   * @param codePage Code page of the datasets.
+   * @param layout Layout of the records, or null to convert whole records as a single column.
+   * @param delimiter Column delimiter.
+   */
+  public BatchConverter(CodePage codePage, Layout layout, char delimiter) {
+    this(codePage, layout, delimiter, Runtime.getRuntime().availableProcessors(),
+      DEFAULT_BUFFER_SIZE, DEFAULT_MEMORY_LIMIT);
+  }
+
+  /**
+   * Constructor.
+   * @param codePage Code page of the datasets.
+   * @param layout Layout of the records, or null to convert whole records as a single column.
+   * @param delimiter Column delimiter.
+   * @param parallelism Number of threads when virtual threads are not available.
+   * @param bufferSize Size of the output buffer of a task.
+   * @param memoryLimit Limit of the memory held by the output buffers.
+   */
+  public BatchConverter(CodePage codePage, Layout layout, char delimiter, int parallelism,
+      int bufferSize, long memoryLimit) {
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Invalid parallelism: " + parallelism + ".");
+    }
+    if(bufferSize < 1 || memoryLimit < bufferSize) {
+      throw new IllegalArgumentException("Invalid buffer size " + bufferSize
+        + " for a memory limit of " + memoryLimit + ".");
+    }
+
+    // Fail now rather than in every task.
+    new DelimitedFormatter(codePage, layout, delimiter);
+
+    this.codePage = codePage;
+    this.layout = layout;
+    this.delimiter = delimiter;
+    this.parallelism = parallelism;
+    this.bufferSize = bufferSize;
+    this.permits = new Semaphore((int)Math.min(Integer.MAX_VALUE, memoryLimit / bufferSize));
+  }
+
+  /**
+   * Setter for the filter, applied to the conversions started afterwards.
+   * @param filter Predicate the converted records must match, or null to convert all the records.
+   */
+  public void setFilter(RecordPredicate filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Create the executor of a batch.
+   * @return An executor starting a virtual thread per task if available,
+   * a fixed pool of threads otherwise.
+   */
+  private ExecutorService newExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService)factory.invoke(null);
+    } catch(NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      return Executors.newFixedThreadPool(this.parallelism);
+    }
+  }
+
+  /**
+   * Convert a batch of datasets.
+   * Failed conversions do not stop the batch, they are reported by their result.
+   * @param conversions Conversions of the batch.
+   * @param listener Listener notified of each completed conversion, or null.
+   * @return The results of the conversions, in the order of the batch.
+   * @throws InterruptedException If the thread is interrupted while waiting for the batch.
+   */
+  public List<ConversionResult> convert(List<Conversion> conversions, final ConversionListener listener)
+      throws InterruptedException {
+    ExecutorService executor = this.newExecutor();
+    List<Future<ConversionResult>> futures = new ArrayList<Future<ConversionResult>>(conversions.size());
+    List<ConversionResult> results = new ArrayList<ConversionResult>(conversions.size());
+
+    try {
+      for(final Conversion conversion : conversions) {
+        futures.add(executor.submit(new Callable<ConversionResult>() {
+          @Override
+          public ConversionResult call() throws InterruptedException {
+            ConversionResult result = BatchConverter.this.convert(conversion);
+            if(listener != null) {
+              listener.converted(result);
+            }
+            return result;
+          }
+        }));
+      }
+
+      for(Future<ConversionResult> future : futures) {
+        try {
+          results.add(future.get());
+        } catch(ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return results;
+  }
+
+  /**
+   * Convert a dataset in the calling thread.
+   * @param conversion The conversion.
+   * @return The result of the conversion.
+   * @throws InterruptedException If the thread is interrupted while waiting for a task state.
+   */
+  public ConversionResult convert(Conversion conversion) throws InterruptedException {
+    this.permits.acquire();
+    Slot slot = this.slots.poll();
+    if(slot == null) {
+      slot = new Slot();
+    }
+
+    try {
+      return slot.run(conversion);
+    } finally {
+      this.slots.offer(slot);
+      this.permits.release();
+    }
+  }
+
+  /**
+   * State of a task, reused across the conversions.
+   */
+  private class Slot {
+
+    /** Formatter of the records. */
+    private final DelimitedFormatter formatter;
+    /** Batch of fixed length records. */
+    private final RecordBatch batch = new RecordBatch();
+    /** Output buffer. */
+    private byte[] buffer;
+    /** Buffer wrapping the output buffer. */
+    private ByteBuffer wrap;
+    /** Number of bytes used in the output buffer. */
+    private int used = 0;
+
+    /** Number of records converted. */
+    private long records = 0;
+    /** Number of record bytes read. */
+    private long inputBytes = 0;
+    /** Number of bytes written. */
+    private long outputBytes = 0;
+
+    Slot() {
+      this.formatter = new DelimitedFormatter(BatchConverter.this.codePage,
+        BatchConverter.this.layout, BatchConverter.this.delimiter);
+      this.buffer = new byte[BatchConverter.this.bufferSize];
+      this.wrap = ByteBuffer.wrap(this.buffer);
+    }
+
+    /**
+     * Run a conversion.
+     * @param conversion The conversion.
+     * @return The result of the conversion.
+     */
+    ConversionResult run(Conversion conversion) {
+      long start = System.nanoTime();
+      Exception failure = null;
+
+      if(this.buffer.length != BatchConverter.this.bufferSize) {
+        this.buffer = new byte[BatchConverter.this.bufferSize];
+        this.wrap = ByteBuffer.wrap(this.buffer);
+      }
+      this.used = 0;
+      this.records = 0;
+      this.inputBytes = 0;
+      this.outputBytes = 0;
+
+      try(FileChannel output = FileChannel.open(conversion.getTarget(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+          AbstractRecordReader reader = conversion.open()) {
+        reader.setFilter(BatchConverter.this.filter);
+        if(reader instanceof FBReader) {
+          this.convertFixed((FBReader)reader, conversion.getLrecl(), output);
+        } else {
+          this.convertVariable(reader, output);
+        }
+        this.flush(output);
+      } catch(IOException | ReaderException | RuntimeException e) {
+        failure = e;
+      }
+
+      return new ConversionResult(conversion, this.records, this.inputBytes, this.outputBytes,
+        System.nanoTime() - start, failure);
+    }
+
+    /**
+     * Convert a VB or VBS dataset one record at a time.
+     */
+    private void convertVariable(AbstractRecordReader reader, FileChannel output) throws IOException, ReaderException {
+      while(reader.next()) {
+        this.append(reader.getBuffer(), reader.getOffset(), reader.getLength(), output);
+      }
+    }
+
+    /**
+     * Convert a FB dataset a batch of records at a time.
+     */
+    private void convertFixed(FBReader reader, int lrecl, FileChannel output) throws IOException, ReaderException {
+      while(reader.nextBatch(this.batch, Integer.MAX_VALUE)) {
+        for(int i = 0; i < this.batch.getCount(); i++) {
+          this.append(this.batch.getBuffer(), this.batch.getOffset(i), lrecl, output);
+        }
+      }
+    }
+
+    /**
+     * Format a record into the output buffer, flushing it when full.
+     * The buffer grows for the records whose line is larger than it,
+     * until the end of the conversion.
+     */
+    private void append(ByteBuffer record, int offset, int length, FileChannel output) throws IOException {
+      int required = this.formatter.getMaxLength(length);
+
+      if(this.buffer.length - this.used < required) {
+        this.flush(output);
+        if(this.buffer.length < required) {
+          this.buffer = new byte[required];
+          this.wrap = ByteBuffer.wrap(this.buffer);
+        }
+      }
+
+      this.used += this.formatter.format(record, offset, length, this.buffer, this.used);
+      this.records++;
+      this.inputBytes += length;
+    }
+
+    /**
+     * Write the output buffer.
+     */
+    private void flush(FileChannel output) throws IOException {
+      this.wrap.clear();
+      this.wrap.limit(this.used);
+      while(this.wrap.hasRemaining()) {
+        output.write(this.wrap);
+      }
+      this.outputBytes += this.used;
+      this.used = 0;
+    }
+  }
+}
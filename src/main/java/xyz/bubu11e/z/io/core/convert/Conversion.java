@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import xyz.bubu11e.z.io.core.gzip.Gzip;
+import xyz.bubu11e.z.io.core.reader.AbstractRecordReader;
+import xyz.bubu11e.z.io.core.reader.BlockSource;
+import xyz.bubu11e.z.io.core.reader.FBReader;
+import xyz.bubu11e.z.io.core.reader.MappedBlockSource;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.reader.StreamBlockSource;
+import xyz.bubu11e.z.io.core.reader.VBReader;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+
+/**
+ * Conversion of a dataset into a delimited text file.
+ */
+public class Conversion {
+
+  /** Path of the dataset. */
+  private final Path source;
+  /** Path of the text file. */
+  private final Path target;
+  /** Record format of the dataset. */
+  private final RecordFormat format;
+  /** Length of the records of a FB dataset. */
+  private final int lrecl;
+
+  /**
+   * Constructor for a variable format dataset.
+   * @param source Path of the dataset.
+   * @param target Path of the text file.
+   * @param format Record format of the dataset, VB or VBS.
+   */
+  public Conversion(Path source, Path target, RecordFormat format) {
+    this(source, target, format, 0);
+  }
+
+  /**
+   * Constructor.
+   * @param source Path of the dataset.
+   * @param target Path of the text file.
+   * @param format Record format of the dataset.
+   * @param lrecl Length of the records of a FB dataset, ignored for the other formats.
+   */
+  public Conversion(Path source, Path target, RecordFormat format, int lrecl) {
+    if(format == RecordFormat.FB && lrecl < 1) {
+      throw new IllegalArgumentException("Invalid record length: " + lrecl + ".");
+    }
+
+    this.source = source;
+    this.target = target;
+    this.format = format;
+    this.lrecl = lrecl;
+  }
+
+  /**
+   * Getter for the dataset.
+   * @return The path of the dataset.
+   */
+  public Path getSource() {
+    return this.source;
+  }
+
+  /**
+   * Getter for the text file.
+   * @return The path of the text file.
+   */
+  public Path getTarget() {
+    return this.target;
+  }
+
+  /**
+   * Getter for the record format.
+   * @return The record format of the dataset.
+   */
+  public RecordFormat getFormat() {
+    return this.format;
+  }
+
+  /**
+   * Getter for the record length.
+   * @return The length of the records of a FB dataset.
+   */
+  public int getLrecl() {
+    return this.lrecl;
+  }
+
+  /**
+   * Open a reader on the dataset, decompressing it on the fly if needed.
+   * A FB dataset is read by a {@link FBReader}, a VB or VBS one by a
+   * reader mapping the dataset or streaming it when compressed.
+   * @return A reader of the records of the dataset.
+   * @throws IOException If the dataset cannot be opened.
+   */
+  AbstractRecordReader open() throws IOException {
+    boolean gzip = Gzip.isGzip(this.source);
+
+    if(this.format == RecordFormat.FB) {
+      return gzip ? new FBReader(Gzip.newInputStream(this.source), this.lrecl, this.lrecl)
+        : new FBReader(this.source, this.lrecl);
+    }
+
+    BlockSource blocks = gzip ? new StreamBlockSource(Gzip.newInputStream(this.source))
+      : new MappedBlockSource(this.source);
+
+    return this.format == RecordFormat.VBS ? new VBSReader(blocks) : new VBReader(blocks);
+  }
+}
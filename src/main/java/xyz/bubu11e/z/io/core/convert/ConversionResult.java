@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+/**
+ * Outcome of a dataset conversion.
+ */
+public class ConversionResult {
+
+  /** The conversion. */
+  private final Conversion conversion;
+  /** Number of records converted. */
+  private final long records;
+  /** Number of record bytes read. */
+  private final long inputBytes;
+  /** Number of bytes written. */
+  private final long outputBytes;
+  /** Duration of the conversion in nanoseconds. */
+  private final long nanos;
+  /** Failure of the conversion, null on success. */
+  private final Exception failure;
+
+  /**
+   * Constructor.
+   * @param conversion The conversion.
+   * @param records Number of records converted.
+   * @param inputBytes Number of record bytes read.
+   * @param outputBytes Number of bytes written.
+   * @param nanos Duration of the conversion in nanoseconds.
+   * @param failure Failure of the conversion, null on success.
+   */
+  public ConversionResult(Conversion conversion, long records, long inputBytes, long outputBytes,
+      long nanos, Exception failure) {
+    this.conversion = conversion;
+    this.records = records;
+    this.inputBytes = inputBytes;
+    this.outputBytes = outputBytes;
+    this.nanos = nanos;
+    this.failure = failure;
+  }
+
+  /**
+   * Getter for the conversion.
+   * @return The conversion.
+   */
+  public Conversion getConversion() {
+    return this.conversion;
+  }
+
+  /**
+   * Getter for the number of records.
+   * @return The number of records converted.
+   */
+  public long getRecords() {
+    return this.records;
+  }
+
+  /**
+   * Getter for the input size.
+   * @return The number of record bytes read.
+   */
+  public long getInputBytes() {
+    return this.inputBytes;
+  }
+
+  /**
+   * Getter for the output size.
+   * @return The number of bytes written.
+   */
+  public long getOutputBytes() {
+    return this.outputBytes;
+  }
+
+  /**
+   * Getter for the duration.
+   * @return The duration of the conversion in nanoseconds.
+   */
+  public long getNanos() {
+    return this.nanos;
+  }
+
+  /**
+   * Getter for the failure.
+   * @return The failure of the conversion, null on success.
+   */
+  public Exception getFailure() {
+    return this.failure;
+  }
+
+  /**
+   * Check the outcome of the conversion.
+   * @return True if the conversion succeeded.
+   */
+  public boolean isSuccess() {
+    return this.failure == null;
+  }
+
+  /**
+   * Compute the record throughput.
+   * @return The number of records converted per second.
+   */
+  public double getRecordsPerSecond() {
+    return this.nanos == 0 ? 0 : this.records * 1e9 / this.nanos;
+  }
+
+  /**
+   * Compute the input throughput.
+   * @return The number of record bytes read.per second.
+   */
+  public double getBytesPerSecond() {
+    return this.nanos == 0 ? 0 : this.inputBytes * 1e9 / this.nanos;
+  }
+
+  @Override
+  public String toString() {
+    if(this.failure != null) {
+      return this.conversion.getSource() + ": failed after " + this.records + " records: " + this.failure.getMessage();
+    }
+
+    return String.format("%s: %d records, %d bytes in %.3f s (%.0f records/s, %.1f MB/s)",
+      this.conversion.getSource(), this.records, this.inputBytes, this.nanos / 1e9,
+      this.getRecordsPerSecond(), this.getBytesPerSecond() / 1e6);
+  }
+}
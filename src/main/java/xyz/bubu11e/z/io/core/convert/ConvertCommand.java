@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import xyz.bubu11e.z.io.core.copybook.CopybookException;
+import xyz.bubu11e.z.io.core.copybook.CopybookParser;
+import xyz.bubu11e.z.io.core.copybook.Layout;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+
+/**
+ * Command line interface of the {@link BatchConverter}.
+ *
+ * <pre>
+ * convert [options] (input-directory | @manifest) output-directory
+ *   -c code-page   Code page of the datasets, CP037 by default.
+ *   -f format      Default record format: VB, VBS or FB, VB by default.
+ *   -r lrecl       Default record length of the FB datasets.
+ *   -l copybook    Copybook describing the records.
+ *   -d delimiter   Column delimiter, a comma by default, t for a tab.
+ *   -j threads     Threads when virtual threads are not available, or
+ *                  formatting a single dataset.
+ *   -m megabytes   Limit of the memory held by the output buffers.
+ * </pre>
+ *
+ * A manifest lists a dataset per line, optionally followed by its record
+ * format and record length. Empty lines and lines starting with # are
+ * ignored. Each dataset is converted into the output directory, under its
+ * name followed by <code>.csv</code>. A line is printed per dataset with
+ * its throughput, then a summary of the batch.
+ *
+ * A single dataset is exported by a {@link ParallelExporter}, spreading
+ * its records over the threads rather than converting it in one task.
+ */
+public class ConvertCommand {
+
+  /** Extension of the converted files. */
+  public final static String EXTENSION = ".csv";
+
+  /** Code page of the datasets. */
+  private CodePage codePage = CodePage.CP037;
+  /** Default record format. */
+  private RecordFormat format = RecordFormat.VB;
+  /** Default record length. */
+  private int lrecl = 0;
+  /** Path of the copybook. */
+  private Path copybook = null;
+  /** Column delimiter. */
+  private char delimiter = DelimitedFormatter.DEFAULT_DELIMITER;
+  /** Number of threads of the fallback pool. */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  /** Memory limit. */
+  private long memoryLimit = BatchConverter.DEFAULT_MEMORY_LIMIT;
+  /** Input directory or manifest. */
+  private String input = null;
+  /** Output directory. */
+  private Path output = null;
+
+  /**
+   * Parse the arguments.
+   * @param args Arguments of the command.
+   * @throws IllegalArgumentException If the arguments are invalid.
+   */
+  private void parse(String[] args) {
+    int i = 0;
+
+    for(; i < args.length && args[i].startsWith("-"); i += 2) {
+      if(i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value of option " + args[i] + ".");
+      }
+      String value = args[i + 1];
+
+      switch(args[i]) {
+        case "-c":
+          this.codePage = CodePage.valueOf(value.toUpperCase());
+          break;
+        case "-f":
+          this.format = RecordFormat.valueOf(value.toUpperCase());
+          break;
+        case "-r":
+          this.lrecl = Integer.parseInt(value);
+          break;
+        case "-l":
+          this.copybook = Paths.get(value);
+          break;
+        case "-d":
+          if(value.length() != 1) {
+            throw new IllegalArgumentException("Invalid delimiter: " + value + ".");
+          }
+          this.delimiter = value.equals("t") ? '\t' : value.charAt(0);
+          break;
+        case "-j":
+          this.parallelism = Integer.parseInt(value);
+          break;
+        case "-m":
+          this.memoryLimit = Long.parseLong(value) * 1024 * 1024;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + args[i] + ".");
+      }
+    }
+
+    if(args.length - i != 2) {
+      throw new IllegalArgumentException("Expected an input and an output.");
+    }
+
+    this.input = args[i];
+    this.output = Paths.get(args[i + 1]);
+  }
+
+  /**
+   * Build a conversion.
+   * @param source Path of the dataset.
+   * @param format Record format of the dataset.
+   * @param lrecl Record length of the dataset.
+   * @return The conversion of the dataset into the output directory.
+   */
+  private Conversion conversion(Path source, RecordFormat format, int lrecl) {
+    return new Conversion(source, this.output.resolve(source.getFileName() + EXTENSION), format, lrecl);
+  }
+
+  /**
+   * List the conversions of the batch.
+   * @return The conversions.
+   * @throws IOException If the input cannot be listed.
+   */
+  private List<Conversion> list() throws IOException {
+    List<Conversion> conversions = new ArrayList<Conversion>();
+
+    if(this.input.startsWith("@")) {
+      for(String line : Files.readAllLines(Paths.get(this.input.substring(1)), StandardCharsets.UTF_8)) {
+        line = line.trim();
+        if(line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] tokens = line.split("\\s+");
+        RecordFormat format = tokens.length > 1 ? RecordFormat.valueOf(tokens[1].toUpperCase()) : this.format;
+        int lrecl = tokens.length > 2 ? Integer.parseInt(tokens[2]) : this.lrecl;
+        conversions.add(this.conversion(Paths.get(tokens[0]), format, lrecl));
+      }
+    } else {
+      try(DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(this.input))) {
+        for(Path file : files) {
+          if(Files.isRegularFile(file)) {
+            conversions.add(this.conversion(file, this.format, this.lrecl));
+          }
+        }
+      }
+    }
+
+    return conversions;
+  }
+
+  /**
+   * Export a single dataset with a parallel exporter.
+   * @param conversion The conversion of the dataset.
+   * @param layout Layout of the records, or null.
+   * @return The result of the export.
+   */
+  private List<ConversionResult> export(Conversion conversion, Layout layout) {
+    ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+
+    try {
+      ConversionResult result = new ParallelExporter(this.codePage, layout, this.delimiter, pool,
+        ParallelExporter.DEFAULT_BATCH_SIZE).export(conversion);
+      System.out.println(result);
+      return Collections.singletonList(result);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Run the command.
+   * @param args Arguments of the command.
+   * @return The number of failed conversions.
+   * @throws IOException If the input or the copybook cannot be read.
+   * @throws CopybookException If the copybook is invalid.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  public static int run(String[] args) throws IOException, CopybookException, InterruptedException {
+    ConvertCommand command = new ConvertCommand();
+    command.parse(args);
+
+    Layout layout = command.copybook == null ? null : CopybookParser.parse(command.copybook, StandardCharsets.UTF_8);
+    BatchConverter converter = new BatchConverter(command.codePage, layout, command.delimiter,
+      command.parallelism, BatchConverter.DEFAULT_BUFFER_SIZE, command.memoryLimit);
+    List<Conversion> conversions = command.list();
+
+    Files.createDirectories(command.output);
+
+    long start = System.nanoTime();
+    List<ConversionResult> results;
+    if(conversions.size() == 1) {
+      results = command.export(conversions.get(0), layout);
+    } else {
+      results = converter.convert(conversions, new ConversionListener() {
+        @Override
+        public void converted(ConversionResult result) {
+          synchronized(System.out) {
+            System.out.println(result);
+          }
+        }
+      });
+    }
+    long nanos = System.nanoTime() - start;
+
+    int failures = 0;
+    long records = 0;
+    long bytes = 0;
+    for(ConversionResult result : results) {
+      failures += result.isSuccess() ? 0 : 1;
+      records += result.getRecords();
+      bytes += result.getInputBytes();
+    }
+
+    System.out.println(String.format("%d datasets, %d failed, %d records, %d bytes in %.3f s (%.1f MB/s)",
+      results.size(), failures, records, bytes, nanos / 1e9, nanos == 0 ? 0 : bytes * 1e3 / nanos));
+
+    return failures;
+  }
+
+  /**
+   * Entry point.
+   * @param args Arguments of the command.
+   */
+  public static void main(String[] args) {
+    try {
+      System.exit(run(args) == 0 ? 0 : 1);
+    } catch(IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println("Usage: convert [-c code-page] [-f VB|VBS|FB] [-r lrecl] [-l copybook]"
+        + " [-d delimiter] [-j threads] [-m megabytes] (input-directory | @manifest) output-directory");
+      System.exit(2);
+    } catch(Exception e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.nio.ByteBuffer;
+
+import xyz.bubu11e.z.io.core.copybook.Field;
+import xyz.bubu11e.z.io.core.copybook.FieldType;
+import xyz.bubu11e.z.io.core.copybook.Layout;
+import xyz.bubu11e.z.io.core.copybook.RecordAccessor;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+import xyz.bubu11e.z.io.core.transcoder.Transcoder;
+
+/**
+ * Formatter of EBCDIC records into delimited UTF-8 lines.
+ *
+ * With a layout, each elementary field of the record is a column: text fields are
+ * transcoded and stripped of their trailing spaces, numeric fields are
+ * formatted with their decimal point. Without a layout, the whole record is
+ * a single text column. Columns containing the delimiter, a quote or a line
+ * break are quoted, quotes being doubled.
+ *
+ * A formatter holds scratch buffers and is not thread safe.
+ */
+public class DelimitedFormatter {
+
+  /** Default column delimiter. */
+  public final static char DEFAULT_DELIMITER = ',';
+  /** Quote of the escaped columns. */
+  private final static byte QUOTE = '"';
+  /** Line terminator. */
+  private final static byte NEWLINE = '\n';
+  /** Carriage return, escaped like line terminators. */
+  private final static byte RETURN = '\r';
+
+  /** Transcoder of the text. */
+  private final Transcoder transcoder;
+  /** Accessor of the fields, null without a layout. */
+  private final RecordAccessor accessor;
+  /** Layout index of each column. */
+  private final int[] fields;
+  /** Offset of each field. */
+  private final int[] offsets;
+  /** Length of each field. */
+  private final int[] lengths;
+  /** True for the text fields. */
+  private final boolean[] text;
+  /** Column delimiter. */
+  private final byte delimiter;
+  /** EBCDIC space. */
+  private final byte space;
+
+  /** Text of the numeric fields. */
+  private final StringBuilder number = new StringBuilder(32);
+  /** UTF-8 text of the current column. */
+  private byte[] scratch = new byte[256];
+
+  /**
+   * Constructor formatting whole records as a single column.
+   * @param codePage Code page of the records.
+   */
+  public DelimitedFormatter(CodePage codePage) {
+    this(codePage, null, DEFAULT_DELIMITER);
+  }
+
+  /**
+   * Constructor.
+   * @param codePage Code page of the records.
+   * @param layout Layout of the records, or null to format whole records as a single column.
+   * @param delimiter Column delimiter, an ASCII character.
+   */
+  public DelimitedFormatter(CodePage codePage, Layout layout, char delimiter) {
+    if(delimiter > 0x7f || delimiter == QUOTE || delimiter == NEWLINE || delimiter == RETURN) {
+      throw new IllegalArgumentException("Invalid delimiter: " + delimiter + ".");
+    }
+
+    this.transcoder = Transcoder.forCodePage(codePage);
+    this.delimiter = (byte)delimiter;
+    this.space = this.transcoder.encode(' ');
+
+    int count = 0;
+    int[] fields = new int[layout == null ? 1 : layout.getFieldCount()];
+
+    if(layout == null) {
+      count = 1;
+    } else {
+      for(int i = 0; i < fields.length; i++) {
+        if(!layout.getField(i).isGroup()) {
+          fields[count++] = i;
+        }
+      }
+    }
+
+    this.fields = fields;
+    this.offsets = new int[count];
+    this.lengths = new int[count];
+    this.text = new boolean[count];
+
+    if(layout == null) {
+      this.accessor = null;
+      this.lengths[0] = Integer.MAX_VALUE;
+      this.text[0] = true;
+    } else {
+      this.accessor = layout.newAccessor(codePage);
+      for(int i = 0; i < count; i++) {
+        Field field = layout.getField(fields[i]);
+        this.offsets[i] = field.getOffset();
+        this.lengths[i] = field.getLength();
+        this.text[i] = field.getType() == FieldType.ALPHANUMERIC;
+      }
+    }
+  }
+
+  /**
+   * Compute the maximum length of a formatted record.
+   * @param length Length of the record.
+   * @return The maximum number of bytes written by {@link #format(ByteBuffer, int, int, byte[], int)}.
+   */
+  public int getMaxLength(int length) {
+    return Transcoder.UTF8_MAX_BYTES * (length + this.offsets.length) + 1;
+  }
+
+  /**
+   * Format a record into a line.
+   * @param record Buffer containing the record.
+   * @param offset Absolute index of the record into the buffer.
+   * @param length Length of the record.
+   * @param dst Destination array, with room for {@link #getMaxLength(int)} bytes.
+   * @param dstOffset Offset into the destination array.
+   * @return The number of bytes written, including the line terminator.
+   * @throws NumberFormatException If a numeric field contains invalid digits or sign.
+   */
+  public int format(ByteBuffer record, int offset, int length, byte[] dst, int dstOffset) {
+    int position = dstOffset;
+
+    if(this.accessor != null) {
+      this.accessor.bind(record, offset);
+    }
+
+    for(int i = 0; i < this.offsets.length; i++) {
+      if(i > 0) {
+        dst[position++] = this.delimiter;
+      }
+
+      int start = this.offsets[i];
+      if(start >= length) {
+        continue;
+      }
+      int count = Math.min(this.lengths[i], length - start);
+
+      if(this.text[i]) {
+        while(count > 0 && record.get(offset + start + count - 1) == this.space) {
+          count--;
+        }
+        if(this.scratch.length < Transcoder.UTF8_MAX_BYTES * count) {
+          this.scratch = new byte[Transcoder.UTF8_MAX_BYTES * count];
+        }
+        position = this.escape(this.transcoder.toUtf8(record, offset + start, count, this.scratch, 0), dst, position);
+      } else if(count == this.lengths[i]) {
+        this.number.setLength(0);
+        this.accessor.getString(this.fields[i], this.number);
+        for(int j = 0; j < this.number.length(); j++) {
+          dst[position++] = (byte)this.number.charAt(j);
+        }
+      }
+    }
+
+    dst[position++] = NEWLINE;
+
+    return position - dstOffset;
+  }
+
+  /**
+   * Copy the UTF-8 text of a column, quoting it if needed.
+   * @param count Length of the text in the scratch buffer.
+   * @param dst Destination array.
+   * @param position Position into the destination array.
+   * @return The position following the column.
+   */
+  private int escape(int count, byte[] dst, int position) {
+    byte[] src = this.scratch;
+    boolean quoted = false;
+
+    for(int i = 0; i < count && !quoted; i++) {
+      byte b = src[i];
+      quoted = b == this.delimiter || b == QUOTE || b == NEWLINE || b == RETURN;
+    }
+
+    if(!quoted) {
+      System.arraycopy(src, 0, dst, position, count);
+      return position + count;
+    }
+
+    dst[position++] = QUOTE;
+    for(int i = 0; i < count; i++) {
+      if(src[i] == QUOTE) {
+        dst[position++] = QUOTE;
+      }
+      dst[position++] = src[i];
+    }
+    dst[position++] = QUOTE;
+
+    return position;
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import xyz.bubu11e.z.io.core.copybook.Layout;
+import xyz.bubu11e.z.io.core.filter.RecordPredicate;
+import xyz.bubu11e.z.io.core.reader.AbstractRecordReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+
+/**
+ * Exporter of a single dataset into a delimited UTF-8 text file,
+ * formatting its records in parallel.
+ *
+ * The calling thread reads the records and copies them into
+ * batches of about the batch size. Each batch is formatted into
+ * its own output buffer by a task of the executor, with its own
+ * formatter. The formatted batches are written to the output
+ * file by the calling thread in their original order, so the
+ * output is identical to a sequential conversion.
+ *
+ * The number of batches formatted ahead of the writes is bounded,
+ * and the batches are reused. Where {@link BatchConverter} runs
+ * one task per dataset, the exporter spreads a single dataset over
+ * all the cores.
+ *
+ * An exporter runs one export at a time.
+ */
+public class ParallelExporter {
+
+  /** Default size of the records of a batch. */
+  public final static int DEFAULT_BATCH_SIZE = 1 << 20;
+
+  /** Code page of the datasets. */
+  private final CodePage codePage;
+  /** Layout of the records, null to export whole records. */
+  private final Layout layout;
+  /** Column delimiter. */
+  private final char delimiter;
+  /** Executor formatting the batches. */
+  private final ExecutorService executor;
+  /** Size of the records of a batch. */
+  private final int batchSize;
+  /** Maximum number of batches formatted ahead of the writes. */
+  private final int maxPending;
+
+  /** Filter of the exported records, null to export all of them. */
+  private volatile RecordPredicate filter = null;
+
+  /** Batches released by the writes. */
+  private final ConcurrentLinkedQueue<Batch> batches = new ConcurrentLinkedQueue<Batch>();
+
+  /**
+   * Constructor formatting with the common pool.
+   * @param codePage Code page of the datasets.
+   * @param layout Layout of the records, or null to export whole records as a single column.
+   * @param delimiter Column delimiter.
+   */
+  public ParallelExporter(CodePage codePage, Layout layout, char delimiter) {
+    this(codePage, layout, delimiter, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param codePage Code page of the datasets.
+   * @param layout Layout of the records, or null to export whole records as a single column.
+   * @param delimiter Column delimiter.
+   * @param executor Executor formatting the batches, not shut down by the exporter.
+   * @param batchSize Size of the records of a batch.
+   */
+  public ParallelExporter(CodePage codePage, Layout layout, char delimiter, ExecutorService executor,
+      int batchSize) {
+    if(batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize + ".");
+    }
+
+    // Fail now rather than in every task.
+    new DelimitedFormatter(codePage, layout, delimiter);
+
+    this.codePage = codePage;
+    this.layout = layout;
+    this.delimiter = delimiter;
+    this.executor = executor;
+    this.batchSize = batchSize;
+    this.maxPending = 2 * (executor instanceof ForkJoinPool ? ((ForkJoinPool)executor).getParallelism()
+      : Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Setter for the filter, applied to the exports started afterwards.
+   * @param filter Predicate the exported records must match, or null to export all the records.
+   */
+  public void setFilter(RecordPredicate filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Export a dataset.
+   * A failed export is reported by its result.
+   * @param conversion The conversion of the dataset.
+   * @return The result of the export.
+   */
+  public ConversionResult export(Conversion conversion) {
+    ArrayDeque<Future<Batch>> pending = new ArrayDeque<Future<Batch>>();
+    long start = System.nanoTime();
+    long records = 0;
+    long inputBytes = 0;
+    long outputBytes = 0;
+    Exception failure = null;
+
+    try(FileChannel output = FileChannel.open(conversion.getTarget(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        AbstractRecordReader reader = conversion.open()) {
+      reader.setFilter(this.filter);
+      Batch batch = this.acquire();
+
+      while(reader.next()) {
+        if(!batch.add(reader.getBuffer(), reader.getOffset(), reader.getLength())) {
+          pending.add(this.executor.submit(batch));
+          batch = this.acquire();
+          batch.add(reader.getBuffer(), reader.getOffset(), reader.getLength());
+
+          while(pending.size() > this.maxPending) {
+            outputBytes += this.write(pending.poll(), output);
+          }
+        }
+
+        records++;
+        inputBytes += reader.getLength();
+      }
+
+      if(batch.count > 0) {
+        pending.add(this.executor.submit(batch));
+      } else {
+        this.release(batch);
+      }
+
+      while(!pending.isEmpty()) {
+        outputBytes += this.write(pending.poll(), output);
+      }
+    } catch(IOException | ReaderException | RuntimeException e) {
+      failure = e;
+    } finally {
+      this.cancel(pending);
+    }
+
+    return new ConversionResult(conversion, records, inputBytes, outputBytes, System.nanoTime() - start, failure);
+  }
+
+  /**
+   * Take a released batch or create one.
+   * @return An empty batch.
+   */
+  private Batch acquire() {
+    Batch batch = this.batches.poll();
+    return batch != null ? batch : new Batch();
+  }
+
+  /**
+   * Empty a batch and make it available again.
+   * @param batch The batch.
+   */
+  private void release(Batch batch) {
+    batch.clear();
+    this.batches.offer(batch);
+  }
+
+  /**
+   * Wait for the formatting of the oldest batch and write it.
+   * @param future Pending formatting of the batch.
+   * @param output Output file.
+   * @return The number of bytes written.
+   * @throws IOException If an I/O error occurs or the wait is interrupted.
+   */
+  private int write(Future<Batch> future, FileChannel output) throws IOException {
+    Batch batch;
+
+    try {
+      batch = future.get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while formatting.");
+    } catch(ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException)e.getCause();
+      }
+      throw new IOException("Formatting failed.", e.getCause());
+    }
+
+    int length = batch.used;
+    ByteBuffer buffer = ByteBuffer.wrap(batch.output, 0, length);
+    while(buffer.hasRemaining()) {
+      output.write(buffer);
+    }
+
+    this.release(batch);
+    return length;
+  }
+
+  /**
+   * Wait for the batches still formatted after a failure, so they can be reused.
+   * @param pending Pending formatting of the batches.
+   */
+  private void cancel(ArrayDeque<Future<Batch>> pending) {
+    boolean interrupted = false;
+
+    while(!pending.isEmpty()) {
+      try {
+        this.release(pending.peek().get());
+      } catch(InterruptedException e) {
+        interrupted = true;
+        continue;
+      } catch(ExecutionException e) {
+        // Already reported or superseded by the first failure.
+      }
+      pending.poll();
+    }
+
+    if(interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Batch of records formatted by a task, reused across the exports.
+   */
+  private class Batch implements Callable<Batch> {
+
+    /** Formatter of the records. */
+    private final DelimitedFormatter formatter;
+    /** Records of the batch, one after the other. */
+    private byte[] input;
+    /** Buffer wrapping the records. */
+    private ByteBuffer wrap;
+    /** Offset of each record into the input. */
+    private int[] offsets = new int[1024];
+    /** Length of each record. */
+    private int[] lengths = new int[1024];
+    /** Number of records. */
+    private int count = 0;
+    /** Number of bytes used in the input. */
+    private int length = 0;
+    /** Maximum length of the formatted records. */
+    private int required = 0;
+
+    /** Formatted records. */
+    private byte[] output = new byte[0];
+    /** Number of bytes used in the output. */
+    private int used = 0;
+
+    /** Buffer of the last record copied from a direct buffer. */
+    private ByteBuffer source = null;
+    /** View of the source buffer used to copy the records. */
+    private ByteBuffer view = null;
+
+    Batch() {
+      this.formatter = new DelimitedFormatter(ParallelExporter.this.codePage,
+        ParallelExporter.this.layout, ParallelExporter.this.delimiter);
+      this.input = new byte[ParallelExporter.this.batchSize];
+      this.wrap = ByteBuffer.wrap(this.input);
+    }
+
+    /**
+     * Copy a record into the batch. The first record of a batch is always
+     * accepted, the input growing if the record is larger than it.
+     * @param buffer Buffer containing the record.
+     * @param offset Offset of the record into the buffer.
+     * @param length Length of the record.
+     * @return False if the batch is full.
+     */
+    boolean add(ByteBuffer buffer, int offset, int length) {
+      if(this.input.length - this.length < length) {
+        if(this.count > 0) {
+          return false;
+        }
+        this.input = new byte[length];
+        this.wrap = ByteBuffer.wrap(this.input);
+      }
+
+      if(this.count == this.offsets.length) {
+        this.offsets = Arrays.copyOf(this.offsets, 2 * this.count);
+        this.lengths = Arrays.copyOf(this.lengths, 2 * this.count);
+      }
+
+      if(buffer.hasArray()) {
+        System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, this.input, this.length, length);
+      } else {
+        if(buffer != this.source) {
+          this.source = buffer;
+          this.view = buffer.duplicate();
+        }
+        this.view.clear();
+        this.view.position(offset);
+        this.view.get(this.input, this.length, length);
+      }
+
+      this.offsets[this.count] = this.length;
+      this.lengths[this.count] = length;
+      this.count++;
+      this.length += length;
+      this.required += this.formatter.getMaxLength(length);
+
+      return true;
+    }
+
+    /**
+     * Format the records of the batch.
+     * @return This batch.
+     */
+    @Override
+    public Batch call() {
+      if(this.output.length < this.required) {
+        this.output = new byte[this.required];
+      }
+
+      for(int i = 0; i < this.count; i++) {
+        this.used += this.formatter.format(this.wrap, this.offsets[i], this.lengths[i], this.output, this.used);
+      }
+
+      return this;
+    }
+
+    /**
+     * Empty the batch. An input grown for a large record is shrunk back.
+     */
+    void clear() {
+      if(this.input.length != ParallelExporter.this.batchSize) {
+        this.input = new byte[ParallelExporter.this.batchSize];
+        this.wrap = ByteBuffer.wrap(this.input);
+      }
+      this.count = 0;
+      this.length = 0;
+      this.required = 0;
+      this.used = 0;
+      this.source = null;
+      this.view = null;
+    }
+  }
+}
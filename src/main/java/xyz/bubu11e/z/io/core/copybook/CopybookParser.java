@@ -0,0 +1,624 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser compiling COBOL copybooks into {@link Layout}s.
+ *
+ * Supported clauses are PICTURE, USAGE (DISPLAY, COMP, COMP-3,
+ * COMP-4, COMP-5, BINARY, PACKED-DECIMAL), OCCURS, including
+ * OCCURS DEPENDING ON laid out at its maximum, and REDEFINES.
+ * VALUE, SYNC, JUSTIFIED, BLANK WHEN ZERO, INDEXED BY and KEY
+ * clauses are ignored, as are level 88 condition names.
+ *
+ * Both fixed format, with sequence numbers and indicator area,
+ * and free format sources are accepted.
+ */
+public class CopybookParser {
+
+  /**
+   * Item of the copybook hierarchy.
+   */
+  private static class Item {
+    int level;
+    String name;
+    Item parent = null;
+    List<Item> children = new ArrayList<Item>();
+
+    String picture = null;
+    String usage = null;
+    int occurs = 0;
+    String redefines = null;
+
+    FieldType type = FieldType.ALPHANUMERIC;
+    int digits = 0;
+    int scale = 0;
+    boolean signed = false;
+
+    /** Offset of the first occurrence into the record. */
+    int offset = 0;
+    /** Size of one occurrence. */
+    int size = 0;
+
+    boolean isFiller() {
+      return this.name == null || this.name.equals("FILLER");
+    }
+  }
+
+  /**
+   * Constructor.
+   */
+  private CopybookParser() {
+  }
+
+  /**
+   * Parse a copybook file.
+   * @param path Path of the copybook.
+   * @param charset Charset of the copybook file.
+   * @return The compiled layout.
+   * @throws IOException If the file cannot be read.
+   * @throws CopybookException If the copybook is invalid or uses unsupported clauses.
+   */
+  public static Layout parse(Path path, Charset charset) throws IOException, CopybookException {
+    return parse(new String(Files.readAllBytes(path), charset));
+  }
+
+  /**
+   * Parse a copybook.
+   * @param source Source of the copybook.
+   * @return The compiled layout.
+   * @throws CopybookException If the copybook is invalid or uses unsupported clauses.
+   */
+  public static Layout parse(String source) throws CopybookException {
+    List<Item> records = new ArrayList<Item>();
+    Item current = null;
+
+    for(List<String> sentence : sentences(clean(source))) {
+      Item item = item(sentence);
+
+      if(item == null) {
+        continue;
+      }
+
+      if(item.level == 1 || item.level == 77) {
+        records.add(item);
+      } else {
+        while(current != null && current.level >= item.level) {
+          current = current.parent;
+        }
+
+        if(current == null) {
+          throw new CopybookException("Level " + item.level + " item " + item.name + " outside of a record.");
+        }
+
+        if(current.picture != null) {
+          throw new CopybookException("Elementary item " + current.name + " cannot contain " + item.name + ".");
+        }
+
+        item.parent = current;
+        current.children.add(item);
+      }
+
+      current = item;
+    }
+
+    if(records.isEmpty()) {
+      throw new CopybookException("No record found in the copybook.");
+    }
+
+    int recordLength = 0;
+    for(Item record : records) {
+      resolve(record, null);
+      recordLength = Math.max(recordLength, layout(record, 0));
+    }
+
+    List<Field> fields = new ArrayList<Field>();
+    for(Item record : records) {
+      flatten(record, 0, "", "", fields);
+    }
+
+    return new Layout(fields, recordLength);
+  }
+
+  /**
+   * Remove sequence numbers, indicator areas, comments and continuation marks.
+   * @param source Source of the copybook.
+   * @return The code of the copybook.
+   */
+  private static String clean(String source) {
+    StringBuilder code = new StringBuilder();
+
+    for(String line : source.split("\r?\n")) {
+      if(isFixedFormat(line)) {
+        char indicator = line.charAt(6);
+        if(indicator == '*' || indicator == '/') {
+          continue;
+        }
+        line = line.substring(7, Math.min(line.length(), 72));
+      }
+
+      int comment = line.indexOf("*>");
+      if(comment >= 0) {
+        line = line.substring(0, comment);
+      }
+
+      code.append(line).append('\n');
+    }
+
+    return code.toString();
+  }
+
+  /**
+   * Check if a line uses the fixed format.
+   * @param line Line of the copybook.
+   * @return True if the first six columns are a sequence area followed by an indicator.
+   */
+  private static boolean isFixedFormat(String line) {
+    if(line.length() < 7) {
+      return false;
+    }
+
+    for(int i = 0; i < 6; i++) {
+      char c = line.charAt(i);
+      if(c != ' ' && !Character.isDigit(c)) {
+        return false;
+      }
+    }
+
+    return " */-D".indexOf(line.charAt(6)) >= 0;
+  }
+
+  /**
+   * Split the code into tokenized sentences.
+   * @param code Code of the copybook.
+   * @return The sentences, each one as a list of upper case tokens.
+   * @throws CopybookException If a literal is not closed.
+   */
+  private static List<List<String>> sentences(String code) throws CopybookException {
+    List<List<String>> sentences = new ArrayList<List<String>>();
+    List<String> tokens = new ArrayList<String>();
+    StringBuilder token = new StringBuilder();
+    int length = code.length();
+
+    for(int i = 0; i < length; i++) {
+      char c = code.charAt(i);
+
+      if(c == '\'' || c == '"') {
+        int end = code.indexOf(c, i + 1);
+        if(end < 0) {
+          throw new CopybookException("Unclosed literal: " + code.substring(i, Math.min(length, i + 20)));
+        }
+        token.append(code, i, end + 1);
+        i = end;
+      } else if(Character.isWhitespace(c) || c == ',' && (i + 1 == length || Character.isWhitespace(code.charAt(i + 1)))) {
+        if(token.length() > 0) {
+          tokens.add(token.toString().toUpperCase());
+          token.setLength(0);
+        }
+      } else if(c == '.' && (i + 1 == length || Character.isWhitespace(code.charAt(i + 1)))) {
+        if(token.length() > 0) {
+          tokens.add(token.toString().toUpperCase());
+          token.setLength(0);
+        }
+        if(!tokens.isEmpty()) {
+          sentences.add(tokens);
+          tokens = new ArrayList<String>();
+        }
+      } else {
+        token.append(c);
+      }
+    }
+
+    if(token.length() > 0) {
+      tokens.add(token.toString().toUpperCase());
+    }
+    if(!tokens.isEmpty()) {
+      sentences.add(tokens);
+    }
+
+    return sentences;
+  }
+
+  /**
+   * Build an item from a sentence.
+   * @param tokens Tokens of the sentence.
+   * @return The item, or null if the sentence does not describe storage.
+   * @throws CopybookException If the sentence is invalid or uses unsupported clauses.
+   */
+  private static Item item(List<String> tokens) throws CopybookException {
+    Item item = new Item();
+
+    try {
+      item.level = Integer.parseInt(tokens.get(0));
+    } catch(NumberFormatException e) {
+      throw new CopybookException("Invalid level number: " + tokens.get(0) + ".");
+    }
+
+    if(item.level == 88) {
+      return null;
+    }
+
+    if(item.level == 66) {
+      throw new CopybookException("Level 66 RENAMES is not supported.");
+    }
+
+    if(item.level < 1 || item.level > 49 && item.level != 77) {
+      throw new CopybookException("Invalid level number: " + item.level + ".");
+    }
+
+    int i = 1;
+    if(i < tokens.size() && !isClause(tokens.get(i))) {
+      item.name = tokens.get(i++);
+    }
+
+    while(i < tokens.size()) {
+      String token = tokens.get(i++);
+
+      if(token.equals("PIC") || token.equals("PICTURE")) {
+        i = skip(tokens, i, "IS");
+        item.picture = next(tokens, i++, token);
+      } else if(token.equals("USAGE")) {
+        i = skip(tokens, i, "IS");
+        item.usage = usage(next(tokens, i++, token));
+      } else if(isUsage(token)) {
+        item.usage = usage(token);
+      } else if(token.equals("REDEFINES")) {
+        item.redefines = next(tokens, i++, token);
+      } else if(token.equals("OCCURS")) {
+        item.occurs = count(next(tokens, i++, token));
+        if(i < tokens.size() && tokens.get(i).equals("TO")) {
+          item.occurs = count(next(tokens, i + 1, "TO"));
+          i += 2;
+        }
+        i = skip(tokens, i, "TIMES");
+        if(i < tokens.size() && tokens.get(i).equals("DEPENDING")) {
+          i = skip(tokens, i + 1, "ON") + 1;
+        }
+      } else if(token.equals("VALUE") || token.equals("VALUES")) {
+        while(i < tokens.size() && !isClause(tokens.get(i))) {
+          i++;
+        }
+      } else if(token.equals("SYNC") || token.equals("SYNCHRONIZED")) {
+        i = skip(tokens, i, "LEFT");
+        i = skip(tokens, i, "RIGHT");
+      } else if(token.equals("JUST") || token.equals("JUSTIFIED")) {
+        i = skip(tokens, i, "RIGHT");
+      } else if(token.equals("BLANK")) {
+        i = skip(tokens, i, "WHEN");
+        i = skip(tokens, i, "ZERO");
+        i = skip(tokens, i, "ZEROS");
+        i = skip(tokens, i, "ZEROES");
+      } else if(token.equals("INDEXED") || token.equals("ASCENDING") || token.equals("DESCENDING")) {
+        while(i < tokens.size() && !isClause(tokens.get(i))) {
+          i++;
+        }
+      } else if(token.equals("SIGN")) {
+        throw new CopybookException("SIGN clause of " + item.name + " is not supported.");
+      } else {
+        throw new CopybookException("Unexpected token " + token + " in the definition of " + item.name + ".");
+      }
+    }
+
+    return item;
+  }
+
+  /**
+   * Skip an optional keyword.
+   * @param tokens Tokens of the sentence.
+   * @param i Index of the current token.
+   * @param keyword Optional keyword.
+   * @return The index of the token following the keyword if present, the current index otherwise.
+   */
+  private static int skip(List<String> tokens, int i, String keyword) {
+    return i < tokens.size() && tokens.get(i).equals(keyword) ? i + 1 : i;
+  }
+
+  /**
+   * Getter for a mandatory token.
+   * @param tokens Tokens of the sentence.
+   * @param i Index of the token.
+   * @param clause Clause expecting the token.
+   * @return The token.
+   * @throws CopybookException If the sentence ends before the token.
+   */
+  private static String next(List<String> tokens, int i, String clause) throws CopybookException {
+    if(i >= tokens.size()) {
+      throw new CopybookException("Incomplete " + clause + " clause.");
+    }
+
+    return tokens.get(i);
+  }
+
+  /**
+   * Parse an occurrence count.
+   * @param token Token containing the count.
+   * @return The count.
+   * @throws CopybookException If the count is invalid.
+   */
+  private static int count(String token) throws CopybookException {
+    try {
+      int count = Integer.parseInt(token);
+      if(count < 1) {
+        throw new CopybookException("Invalid occurrence count: " + token + ".");
+      }
+      return count;
+    } catch(NumberFormatException e) {
+      throw new CopybookException("Invalid occurrence count: " + token + ".");
+    }
+  }
+
+  /**
+   * Check if a token starts a clause.
+   * @param token Token to check.
+   * @return True if the token is a clause keyword.
+   */
+  private static boolean isClause(String token) {
+    switch(token) {
+      case "PIC": case "PICTURE": case "USAGE": case "REDEFINES": case "OCCURS":
+      case "VALUE": case "VALUES": case "SYNC": case "SYNCHRONIZED": case "JUST":
+      case "JUSTIFIED": case "BLANK": case "INDEXED": case "ASCENDING": case "DESCENDING":
+      case "SIGN":
+        return true;
+      default:
+        return isUsage(token);
+    }
+  }
+
+  /**
+   * Check if a token is a usage.
+   * @param token Token to check.
+   * @return True if the token is a usage keyword.
+   */
+  private static boolean isUsage(String token) {
+    switch(token) {
+      case "DISPLAY": case "COMP": case "COMPUTATIONAL": case "COMP-1": case "COMPUTATIONAL-1":
+      case "COMP-2": case "COMPUTATIONAL-2": case "COMP-3": case "COMPUTATIONAL-3":
+      case "COMP-4": case "COMPUTATIONAL-4": case "COMP-5": case "COMPUTATIONAL-5":
+      case "BINARY": case "PACKED-DECIMAL": case "INDEX": case "POINTER":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Normalize a usage.
+   * @param token Usage keyword.
+   * @return DISPLAY, BINARY or PACKED.
+   * @throws CopybookException If the usage is not supported.
+   */
+  private static String usage(String token) throws CopybookException {
+    switch(token) {
+      case "DISPLAY":
+        return "DISPLAY";
+      case "COMP": case "COMPUTATIONAL": case "COMP-4": case "COMPUTATIONAL-4":
+      case "COMP-5": case "COMPUTATIONAL-5": case "BINARY":
+        return "BINARY";
+      case "COMP-3": case "COMPUTATIONAL-3": case "PACKED-DECIMAL":
+        return "PACKED";
+      default:
+        throw new CopybookException("USAGE " + token + " is not supported.");
+    }
+  }
+
+  /**
+   * Resolve the storage type and length of an item and its children.
+   * @param item Item to resolve.
+   * @param usage Usage inherited from the groups.
+   * @throws CopybookException If a picture is invalid.
+   */
+  private static void resolve(Item item, String usage) throws CopybookException {
+    if(item.usage == null) {
+      item.usage = usage;
+    }
+
+    if(item.picture == null) {
+      if(item.children.isEmpty()) {
+        throw new CopybookException("Elementary item " + item.name + " has no picture.");
+      }
+      for(Item child : item.children) {
+        resolve(child, item.usage);
+      }
+      return;
+    }
+
+    picture(item);
+  }
+
+  /**
+   * Decode the picture of an elementary item.
+   * @param item Item to decode.
+   * @throws CopybookException If the picture is invalid or unsupported.
+   */
+  private static void picture(Item item) throws CopybookException {
+    String picture = item.picture;
+    int characters = 0;
+    int nines = 0;
+    int scale = 0;
+    boolean text = false;
+    boolean edited = false;
+    boolean decimal = false;
+
+    for(int i = 0; i < picture.length(); i++) {
+      char symbol = picture.charAt(i);
+      int repeat = 1;
+
+      if(i + 1 < picture.length() && picture.charAt(i + 1) == '(') {
+        int end = picture.indexOf(')', i + 2);
+        if(end < 0) {
+          throw new CopybookException("Invalid picture of " + item.name + ": " + picture + ".");
+        }
+        try {
+          repeat = Integer.parseInt(picture.substring(i + 2, end));
+        } catch(NumberFormatException e) {
+          throw new CopybookException("Invalid picture of " + item.name + ": " + picture + ".");
+        }
+        i = end;
+      }
+
+      switch(symbol) {
+        case 'X': case 'A':
+          text = true;
+          characters += repeat;
+          break;
+        case '9':
+          nines += repeat;
+          characters += repeat;
+          if(decimal) {
+            scale += repeat;
+          }
+          break;
+        case 'S':
+          item.signed = true;
+          break;
+        case 'V':
+          decimal = true;
+          break;
+        case 'P':
+          throw new CopybookException("Scaling position P in the picture of " + item.name + " is not supported.");
+        case 'C': case 'R': case 'D': case 'B':
+          // CR and DB symbols count for two characters, one per letter.
+        case 'Z': case '*': case '+': case '-': case '.': case ',': case '$': case '0': case '/':
+          edited = true;
+          characters += repeat;
+          break;
+        default:
+          throw new CopybookException("Invalid symbol " + symbol + " in the picture of " + item.name + ".");
+      }
+    }
+
+    boolean display = item.usage == null || item.usage.equals("DISPLAY");
+
+    if(text || edited) {
+      if(!display) {
+        throw new CopybookException("Non numeric item " + item.name + " must have USAGE DISPLAY.");
+      }
+      item.type = FieldType.ALPHANUMERIC;
+      item.size = characters;
+      item.signed = false;
+      return;
+    }
+
+    if(nines == 0) {
+      throw new CopybookException("Invalid picture of " + item.name + ": " + picture + ".");
+    }
+
+    item.digits = nines;
+    item.scale = scale;
+
+    if(display) {
+      item.type = FieldType.ZONED;
+      item.size = nines;
+    } else if(item.usage.equals("PACKED")) {
+      item.type = FieldType.PACKED;
+      item.size = nines / 2 + 1;
+    } else {
+      if(nines > 18) {
+        throw new CopybookException("Binary item " + item.name + " has more than 18 digits.");
+      }
+      item.type = FieldType.BINARY;
+      item.size = nines <= 4 ? 2 : nines <= 9 ? 4 : 8;
+    }
+  }
+
+  /**
+   * Compute the offset and size of an item and its children.
+   * @param item Item to lay out.
+   * @param offset Offset of the item into the record.
+   * @return The size of one occurrence of the item.
+   * @throws CopybookException If a redefined item cannot be found.
+   */
+  private static int layout(Item item, int offset) throws CopybookException {
+    item.offset = offset;
+
+    if(item.children.isEmpty()) {
+      return item.size;
+    }
+
+    int position = offset;
+    int end = offset;
+
+    for(int i = 0; i < item.children.size(); i++) {
+      Item child = item.children.get(i);
+      int start = position;
+
+      if(child.redefines != null) {
+        Item redefined = null;
+        for(int j = i - 1; j >= 0 && redefined == null; j--) {
+          if(child.redefines.equals(item.children.get(j).name)) {
+            redefined = item.children.get(j);
+          }
+        }
+        if(redefined == null) {
+          throw new CopybookException("Item " + child.name + " redefines unknown item " + child.redefines + ".");
+        }
+        start = redefined.offset;
+      }
+
+      int extent = layout(child, start) * Math.max(child.occurs, 1);
+      if(child.redefines == null) {
+        position = start + extent;
+      }
+      end = Math.max(end, start + extent);
+    }
+
+    item.size = end - offset;
+
+    return item.size;
+  }
+
+  /**
+   * Append the fields of an item and its children, expanding the occurrences.
+   * @param item Item to flatten.
+   * @param displacement Displacement of the enclosing occurrence.
+   * @param subscripts Subscripts of the enclosing occurrences, comma separated.
+   * @param path Qualified name of the enclosing group.
+   * @param fields List the fields are appended to.
+   */
+  private static void flatten(Item item, int displacement, String subscripts, String path, List<Field> fields) {
+    String name = item.isFiller() ? "FILLER" : item.name;
+    String qualified = path.isEmpty() ? name : path + "." + name;
+
+    for(int i = 0; i < Math.max(item.occurs, 1); i++) {
+      int occurrence = displacement + i * item.size;
+      String indexes = subscripts;
+
+      if(item.occurs > 0) {
+        indexes = subscripts.isEmpty() ? String.valueOf(i + 1) : subscripts + "," + (i + 1);
+      }
+
+      String suffix = indexes.isEmpty() ? "" : "(" + indexes + ")";
+
+      if(!item.isFiller()) {
+        fields.add(new Field(name + suffix, qualified + suffix, item.offset + occurrence, item.size,
+          item.type, item.digits, item.scale, item.signed, !item.children.isEmpty()));
+      }
+
+      for(Item child : item.children) {
+        flatten(child, occurrence, indexes, qualified, fields);
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+/**
+ * Compiled field of a copybook layout.
+ *
+ * Occurrences of a field defined under an OCCURS clause are
+ * distinct fields whose name carries the subscripts, for
+ * instance ITEM(2) or ITEM(2,3).
+ */
+public class Field {
+
+  /** Name of the field, with its subscripts. */
+  private final String name;
+  /** Qualified name of the field, group names separated by dots. */
+  private final String path;
+  /** Offset of the field into the record. */
+  private final int offset;
+  /** Length of the field in byte. */
+  private final int length;
+  /** Storage type of the field. */
+  private final FieldType type;
+  /** Number of digits of a numeric field. */
+  private final int digits;
+  /** Number of digits after the implied decimal point. */
+  private final int scale;
+  /** True if the numeric field is signed. */
+  private final boolean signed;
+  /** True if the field is a group of other fields. */
+  private final boolean group;
+
+  /**
+   * Constructor.
+   */
+  Field(String name, String path, int offset, int length, FieldType type, int digits, int scale, boolean signed,
+      boolean group) {
+    this.name = name;
+    this.path = path;
+    this.offset = offset;
+    this.length = length;
+    this.type = type;
+    this.digits = digits;
+    this.scale = scale;
+    this.signed = signed;
+    this.group = group;
+  }
+
+  /**
+   * Getter for the name.
+   * @return The name of the field, with its subscripts.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Getter for the qualified name.
+   * @return The name of the field prefixed by the names of its groups.
+   */
+  public String getPath() {
+    return this.path;
+  }
+
+  /**
+   * Getter for the offset.
+   * @return The offset of the field into the record.
+   */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Getter for the length.
+   * @return The length of the field in byte.
+   */
+  public int getLength() {
+    return this.length;
+  }
+
+  /**
+   * Getter for the type.
+   * @return The storage type of the field.
+   */
+  public FieldType getType() {
+    return this.type;
+  }
+
+  /**
+   * Getter for the number of digits.
+   * @return The number of digits of a numeric field, 0 otherwise.
+   */
+  public int getDigits() {
+    return this.digits;
+  }
+
+  /**
+   * Getter for the scale.
+   * @return The number of digits after the implied decimal point.
+   */
+  public int getScale() {
+    return this.scale;
+  }
+
+  /**
+   * Getter for the sign.
+   * @return True if the numeric field is signed.
+   */
+  public boolean isSigned() {
+    return this.signed;
+  }
+
+  /**
+   * Getter for the kind of field.
+   * @return True if the field is a group of other fields, false if it is elementary.
+   */
+  public boolean isGroup() {
+    return this.group;
+  }
+
+  @Override
+  public String toString() {
+    return this.path + " " + this.type + " @" + this.offset + "+" + this.length;
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+/**
+ * Storage types of the copybook fields.
+ */
+public enum FieldType {
+
+  /** PIC X, PIC A, edited pictures and groups, stored as text. */
+  ALPHANUMERIC,
+  /** PIC 9 with USAGE DISPLAY, one digit per byte, sign in the zone of the last byte. */
+  ZONED,
+  /** PIC 9 with USAGE COMP-3, two digits per byte, sign in the last nibble. */
+  PACKED,
+  /** PIC 9 with USAGE COMP, COMP-4, COMP-5 or BINARY, big endian two's complement. */
+  BINARY
+
+}
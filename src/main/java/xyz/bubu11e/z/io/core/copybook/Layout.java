@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+import xyz.bubu11e.z.io.core.transcoder.Transcoder;
+
+/**
+ * Compiled record layout.
+ *
+ * The layout is a flat table of fields, each one with its offset,
+ * length and storage type, built once from a copybook by the
+ * {@link CopybookParser}. Fields are addressed by their index into
+ * the table, looked up once by name with {@link #indexOf(String)}.
+ */
+public class Layout {
+
+  /** Fields of the layout. */
+  private final Field[] fields;
+  /** Index of the fields by name and qualified name. */
+  private final Map<String, Integer> names = new HashMap<String, Integer>();
+  /** Length of the record. */
+  private final int recordLength;
+
+  /** Offset of each field. */
+  final int[] offsets;
+  /** Length of each field. */
+  final int[] lengths;
+  /** Type of each field. */
+  final FieldType[] types;
+  /** Digits of each field. */
+  final int[] digits;
+  /** Scale of each field. */
+  final int[] scales;
+  /** Sign of each field. */
+  final boolean[] signed;
+
+  /**
+   * Constructor.
+   * @param fields Fields of the layout, in definition order.
+   * @param recordLength Length of the record.
+   */
+  Layout(List<Field> fields, int recordLength) {
+    this.fields = fields.toArray(new Field[fields.size()]);
+    this.recordLength = recordLength;
+
+    int count = this.fields.length;
+    this.offsets = new int[count];
+    this.lengths = new int[count];
+    this.types = new FieldType[count];
+    this.digits = new int[count];
+    this.scales = new int[count];
+    this.signed = new boolean[count];
+
+    for(int i = 0; i < count; i++) {
+      Field field = this.fields[i];
+      this.offsets[i] = field.getOffset();
+      this.lengths[i] = field.getLength();
+      this.types[i] = field.getType();
+      this.digits[i] = field.getDigits();
+      this.scales[i] = field.getScale();
+      this.signed[i] = field.isSigned();
+
+      if(!this.names.containsKey(field.getName())) {
+        this.names.put(field.getName(), i);
+      }
+      if(!this.names.containsKey(field.getPath())) {
+        this.names.put(field.getPath(), i);
+      }
+    }
+  }
+
+  /**
+   * Find a field by name.
+   * When several fields share a name, the first one is returned
+   * and the others must be looked up by qualified name.
+   * @param name Name or qualified name of the field, with its subscripts if any.
+   * @return The index of the field, or -1 if there is no such field.
+   */
+  public int indexOf(String name) {
+    Integer index = this.names.get(name.toUpperCase());
+
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Getter for a field.
+   * @param index Index of the field.
+   * @return The field.
+   */
+  public Field getField(int index) {
+    return this.fields[index];
+  }
+
+  /**
+   * Getter for the number of fields.
+   * @return The number of fields, occurrences included.
+   */
+  public int getFieldCount() {
+    return this.fields.length;
+  }
+
+  /**
+   * Getter for the record length.
+   * @return The length of the record described by the layout.
+   */
+  public int getRecordLength() {
+    return this.recordLength;
+  }
+
+  /**
+   * Create an accessor over records of this layout.
+   * @param codePage Code page of the text fields.
+   * @return A new accessor, to be used by a single thread.
+   */
+  public RecordAccessor newAccessor(CodePage codePage) {
+    return new RecordAccessor(this, Transcoder.forCodePage(codePage));
+  }
+}
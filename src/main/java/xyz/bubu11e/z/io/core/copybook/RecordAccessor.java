@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import xyz.bubu11e.z.io.core.decimal.DecimalCodec;
+import xyz.bubu11e.z.io.core.transcoder.Transcoder;
+
+/**
+ * Accessor decoding the fields of a record in place.
+ *
+ * The accessor is bound to the raw bytes of a record, for instance
+ * the current record of a {@link xyz.bubu11e.z.io.core.reader.RecordCursor},
+ * and only decodes the fields which are requested. Apart from
+ * {@link #getDecimal(int)}, accessors do not allocate.
+ *
+ * An accessor is not thread safe.
+ */
+public class RecordAccessor {
+
+  /** Maximum number of digits decoded into a long. */
+  public final static int LONG_MAX_DIGITS = DecimalCodec.LONG_MAX_DIGITS;
+
+  /** Layout of the records. */
+  private final Layout layout;
+  /** Transcoder of the text fields. */
+  private final Transcoder transcoder;
+
+  /** Buffer containing the record. */
+  private ByteBuffer buffer = null;
+  /** Absolute index of the record into the buffer. */
+  private int base = 0;
+  /** Last array bound, wrapped into the buffer. */
+  private byte[] array = null;
+
+  /**
+   * Constructor.
+   * @param layout Layout of the records.
+   * @param transcoder Transcoder of the text fields.
+   */
+  RecordAccessor(Layout layout, Transcoder transcoder) {
+    this.layout = layout;
+    this.transcoder = transcoder;
+  }
+
+  /**
+   * Getter for the layout.
+   * @return The layout of the records.
+   */
+  public Layout getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Bind the accessor to a record.
+   * @param buffer Buffer containing the record.
+   * @param offset Absolute index of the record into the buffer.
+   * @return This accessor.
+   */
+  public RecordAccessor bind(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.base = offset;
+    this.array = null;
+    return this;
+  }
+
+  /**
+   * Bind the accessor to a record.
+   * @param array Array containing the record.
+   * @param offset Offset of the record into the array.
+   * @return This accessor.
+   */
+  public RecordAccessor bind(byte[] array, int offset) {
+    if(array != this.array) {
+      this.array = array;
+      this.buffer = ByteBuffer.wrap(array);
+    }
+    this.base = offset;
+    return this;
+  }
+
+  /**
+   * Decode the unscaled value of a numeric field.
+   * @param field Index of the field.
+   * @return The value of the field, ignoring its implied decimal point.
+   * @throws NumberFormatException If the field is not numeric or contains invalid digits or sign.
+   * @throws ArithmeticException If the field has more than {@link #LONG_MAX_DIGITS} digits.
+   */
+  public long getLong(int field) {
+    int offset = this.base + this.layout.offsets[field];
+    int length = this.layout.lengths[field];
+
+    switch(this.layout.types[field]) {
+      case ZONED:
+        this.checkDigits(field);
+        return DecimalCodec.decodeZoned(this.buffer, offset, length);
+      case PACKED:
+        this.checkDigits(field);
+        return DecimalCodec.decodePacked(this.buffer, offset, length);
+      case BINARY:
+        return this.binary(offset, length, this.layout.signed[field]);
+      default:
+        throw new NumberFormatException("Field " + this.layout.getField(field).getName() + " is not numeric.");
+    }
+  }
+
+  /**
+   * Check a field can be decoded into a long.
+   * @param field Index of the field.
+   * @throws ArithmeticException If the field has more than {@link #LONG_MAX_DIGITS} digits.
+   */
+  private void checkDigits(int field) {
+    if(this.layout.digits[field] > LONG_MAX_DIGITS) {
+      throw new ArithmeticException("Field " + this.layout.getField(field).getName() + " has "
+        + this.layout.digits[field] + " digits, use getDecimal.");
+    }
+  }
+
+  /**
+   * Decode the value of a numeric field.
+   * @param field Index of the field.
+   * @return The value of the field with its scale.
+   * @throws NumberFormatException If the field is not numeric or contains invalid digits or sign.
+   */
+  public BigDecimal getDecimal(int field) {
+    int scale = this.layout.scales[field];
+
+    if(this.layout.digits[field] <= LONG_MAX_DIGITS) {
+      return BigDecimal.valueOf(this.getLong(field), scale);
+    }
+
+    int offset = this.base + this.layout.offsets[field];
+    int length = this.layout.lengths[field];
+
+    if(this.layout.types[field] == FieldType.ZONED) {
+      return DecimalCodec.decodeZonedDecimal(this.buffer, offset, length, scale);
+    }
+
+    return DecimalCodec.decodePackedDecimal(this.buffer, offset, length, scale);
+  }
+
+  /**
+   * Append the value of a field to a builder.
+   * Text fields are decoded with the code page of the accessor,
+   * numeric fields are formatted with their decimal point.
+   * @param field Index of the field.
+   * @param dst Builder the value is appended to.
+   * @return The builder.
+   * @throws NumberFormatException If a numeric field contains invalid digits or sign.
+   */
+  public StringBuilder getString(int field, StringBuilder dst) {
+    if(this.layout.types[field] == FieldType.ALPHANUMERIC) {
+      this.transcoder.decode(this.buffer, this.base + this.layout.offsets[field], this.layout.lengths[field], dst);
+      return dst;
+    }
+
+    if(this.layout.digits[field] > LONG_MAX_DIGITS) {
+      return dst.append(this.getDecimal(field).toPlainString());
+    }
+
+    long value = this.getLong(field);
+    int scale = this.layout.scales[field];
+
+    // The digits start after the sign, Math.abs() would keep Long.MIN_VALUE negative.
+    int start = dst.length() + (value < 0 ? 1 : 0);
+    dst.append(value);
+
+    if(scale > 0) {
+      while(dst.length() - start <= scale) {
+        dst.insert(start, '0');
+      }
+      dst.insert(dst.length() - scale, '.');
+    }
+
+    return dst;
+  }
+
+  /**
+   * Decode the text of a field into a char array.
+   * @param field Index of the field.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   * @return The number of characters written.
+   */
+  public int getChars(int field, char[] dst, int dstOffset) {
+    int length = this.layout.lengths[field];
+    this.transcoder.decode(this.buffer, this.base + this.layout.offsets[field], length, dst, dstOffset);
+    return length;
+  }
+
+  /**
+   * Decode a big endian binary integer.
+   */
+  private long binary(int offset, int length, boolean signed) {
+    switch(length) {
+      case 2:
+        return signed ? this.buffer.getShort(offset) : this.buffer.getShort(offset) & 0xffffL;
+      case 4:
+        return signed ? this.buffer.getInt(offset) : this.buffer.getInt(offset) & 0xffffffffL;
+      default:
+        return this.buffer.getLong(offset);
+    }
+  }
+}
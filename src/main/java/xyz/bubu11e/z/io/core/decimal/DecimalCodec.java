@@ -0,0 +1,511 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.decimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec for packed (COMP-3) and zoned (DISPLAY) decimals.
+ *
+ * Decoding works a word at a time: up to 8 bytes are loaded
+ * into a long, all the digits are validated with a couple of
+ * mask operations and converted to binary by combining adjacent
+ * lanes (SWAR), instead of one multiply-add per nibble.
+ *
+ * Values of up to 18 digits are decoded into a long, larger
+ * ones into a {@link BigDecimal}. Invalid digits or sign nibbles
+ * are reported with a {@link NumberFormatException}.
+ */
+public final class DecimalCodec {
+
+  /** Maximum number of digits decoded into a long. */
+  public final static int LONG_MAX_DIGITS = 18;
+  /** Maximum length of a packed decimal decoded into a long. */
+  public final static int PACKED_MAX_LENGTH = 10;
+
+  /** Preferred positive sign nibble. */
+  public final static int SIGN_POSITIVE = 0x0c;
+  /** Preferred negative sign nibble. */
+  public final static int SIGN_NEGATIVE = 0x0d;
+  /** Unsigned sign nibble. */
+  public final static int SIGN_UNSIGNED = 0x0f;
+
+  /** Mask of the low nibble of each byte. */
+  private final static long LOW_NIBBLES = 0x0f0f0f0f0f0f0f0fL;
+  /** Mask of the high nibble of each byte, also the expected zones of a zoned decimal. */
+  private final static long HIGH_NIBBLES = 0xf0f0f0f0f0f0f0f0L;
+  /** Mask of the high bit of each nibble. */
+  private final static long NIBBLE_HIGH_BITS = 0x8888888888888888L;
+  /** Mask of the high bit of each byte. */
+  private final static long BYTE_HIGH_BITS = 0x8080808080808080L;
+  /** Bias setting the high bit of a byte greater than 9. */
+  private final static long BYTE_DIGIT_BIAS = 0x7676767676767676L;
+
+  /** Powers of ten. */
+  private final static long[] POWERS = new long[LONG_MAX_DIGITS + 1];
+
+  static {
+    POWERS[0] = 1;
+    for(int i = 1; i < POWERS.length; i++) {
+      POWERS[i] = POWERS[i - 1] * 10;
+    }
+  }
+
+  /**
+   * Constructor.
+   */
+  private DecimalCodec() {
+  }
+
+  /**
+   * Load up to 8 bytes into a long, right aligned.
+   */
+  private static long load(byte[] src, int offset, int length) {
+    long word = 0;
+    for(int i = 0; i < length; i++) {
+      word = word << 8 | (src[offset + i] & 0xff);
+    }
+    return word;
+  }
+
+  /**
+   * Load up to 8 bytes of a buffer into a long, right aligned.
+   */
+  private static long load(ByteBuffer src, int offset, int length) {
+    if(length == 8) {
+      return src.getLong(offset);
+    }
+
+    long word = 0;
+    for(int i = 0; i < length; i++) {
+      word = word << 8 | (src.get(offset + i) & 0xff);
+    }
+    return word;
+  }
+
+  /**
+   * Convert 16 packed digits to binary.
+   * @param word Digits, one per nibble, most significant first.
+   * @return The binary value.
+   * @throws NumberFormatException If a nibble is not a decimal digit.
+   */
+  private static long packedWord(long word) {
+    // A nibble is greater than 9 if its bit 3 and either bit 2 or bit 1 are set.
+    if((word & (word << 1 | word << 2) & NIBBLE_HIGH_BITS) != 0) {
+      throw new NumberFormatException("Invalid digit in packed decimal.");
+    }
+
+    word = (word >>> 4 & LOW_NIBBLES) * 10 + (word & LOW_NIBBLES);
+    word = (word >>> 8 & 0x00ff00ff00ff00ffL) * 100 + (word & 0x00ff00ff00ff00ffL);
+    word = (word >>> 16 & 0x0000ffff0000ffffL) * 10000 + (word & 0x0000ffff0000ffffL);
+    return (word >>> 32) * 100000000L + (word & 0xffffffffL);
+  }
+
+  /**
+   * Convert up to 8 zoned digits to binary.
+   * @param word Digits, one per byte in the low nibble, most significant first.
+   * @param length Number of bytes of the word.
+   * @param last True if the last byte holds the sign in its zone, which is checked by the caller.
+   * @return The binary value.
+   * @throws NumberFormatException If a zone is not F or a low nibble is not a decimal digit.
+   */
+  private static long zonedWord(long word, int length, boolean last) {
+    // All the zones are compared at once, the sign one being forced to F.
+    if(((word | (last ? 0xf0L : 0)) & HIGH_NIBBLES) != HIGH_NIBBLES >>> 64 - 8 * length) {
+      throw new NumberFormatException("Invalid zone in zoned decimal.");
+    }
+
+    word &= LOW_NIBBLES;
+
+    if(((word + BYTE_DIGIT_BIAS) & BYTE_HIGH_BITS) != 0) {
+      throw new NumberFormatException("Invalid digit in zoned decimal.");
+    }
+
+    word = (word >>> 8 & 0x00ff00ff00ff00ffL) * 10 + (word & 0x00ff00ff00ff00ffL);
+    word = (word >>> 16 & 0x0000ffff0000ffffL) * 100 + (word & 0x0000ffff0000ffffL);
+    return (word >>> 32) * 10000 + (word & 0xffffffffL);
+  }
+
+  /**
+   * Decode a sign nibble.
+   * @param sign Sign nibble.
+   * @return True if the sign is negative.
+   * @throws NumberFormatException If the nibble is not a valid sign.
+   */
+  public static boolean isNegative(int sign) {
+    switch(sign) {
+      case 0x0b: case 0x0d:
+        return true;
+      case 0x0a: case 0x0c: case 0x0e: case 0x0f:
+        return false;
+      default:
+        throw new NumberFormatException("Invalid sign nibble: " + Integer.toHexString(sign) + ".");
+    }
+  }
+
+  /**
+   * Check the length of a packed decimal decoded into a long.
+   */
+  private static void checkPackedLength(int length) {
+    if(length < 1 || length > PACKED_MAX_LENGTH) {
+      throw new ArithmeticException("Invalid packed decimal length for a long: " + length + ".");
+    }
+  }
+
+  /**
+   * Check the length of a zoned decimal decoded into a long.
+   */
+  private static void checkZonedLength(int length) {
+    if(length < 1 || length > LONG_MAX_DIGITS) {
+      throw new ArithmeticException("Invalid zoned decimal length for a long: " + length + ".");
+    }
+  }
+
+  /**
+   * Decode a packed decimal into a long.
+   * A 10 bytes packed decimal must have a zero leading digit.
+   * @param src Array containing the packed decimal.
+   * @param offset Offset of the packed decimal into the array.
+   * @param length Length of the packed decimal in byte, at most {@link #PACKED_MAX_LENGTH}.
+   * @return The unscaled value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   * @throws ArithmeticException If the value does not fit in 18 digits.
+   */
+  public static long decodePacked(byte[] src, int offset, int length) {
+    checkPackedLength(length);
+
+    int last = src[offset + length - 1];
+    int head = length - 1;
+    long value = 0;
+
+    if(head > 8) {
+      int first = src[offset] & 0xff;
+      if(first > 0x09) {
+        throw first >> 4 > 9 || (first & 0x0f) > 9
+          ? new NumberFormatException("Invalid digit in packed decimal.")
+          : new ArithmeticException("Packed decimal exceeds " + LONG_MAX_DIGITS + " digits.");
+      }
+      value = first;
+      offset++;
+      head--;
+    }
+
+    value = value * POWERS[2 * head] + packedWord(load(src, offset, head));
+
+    int digit = last >> 4 & 0x0f;
+    if(digit > 9) {
+      throw new NumberFormatException("Invalid digit in packed decimal.");
+    }
+    value = value * 10 + digit;
+
+    return isNegative(last & 0x0f) ? -value : value;
+  }
+
+  /**
+   * Decode a packed decimal of a buffer into a long.
+   * @param src Buffer containing the packed decimal.
+   * @param offset Absolute index of the packed decimal into the buffer.
+   * @param length Length of the packed decimal in byte, at most {@link #PACKED_MAX_LENGTH}.
+   * @return The unscaled value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   * @throws ArithmeticException If the value does not fit in 18 digits.
+   */
+  public static long decodePacked(ByteBuffer src, int offset, int length) {
+    if(src.hasArray()) {
+      return decodePacked(src.array(), src.arrayOffset() + offset, length);
+    }
+
+    checkPackedLength(length);
+
+    int last = src.get(offset + length - 1);
+    int head = length - 1;
+    long value = 0;
+
+    if(head > 8) {
+      int first = src.get(offset) & 0xff;
+      if(first > 0x09) {
+        throw first >> 4 > 9 || (first & 0x0f) > 9
+          ? new NumberFormatException("Invalid digit in packed decimal.")
+          : new ArithmeticException("Packed decimal exceeds " + LONG_MAX_DIGITS + " digits.");
+      }
+      value = first;
+      offset++;
+      head--;
+    }
+
+    value = value * POWERS[2 * head] + packedWord(load(src, offset, head));
+
+    int digit = last >> 4 & 0x0f;
+    if(digit > 9) {
+      throw new NumberFormatException("Invalid digit in packed decimal.");
+    }
+    value = value * 10 + digit;
+
+    return isNegative(last & 0x0f) ? -value : value;
+  }
+
+  /**
+   * Decode a zoned decimal into a long.
+   * The sign is read from the zone of the last byte.
+   * @param src Array containing the zoned decimal.
+   * @param offset Offset of the zoned decimal into the array.
+   * @param length Length of the zoned decimal in byte, at most {@link #LONG_MAX_DIGITS}.
+   * @return The unscaled value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   */
+  public static long decodeZoned(byte[] src, int offset, int length) {
+    checkZonedLength(length);
+
+    long value = 0;
+    int end = offset + length;
+    int chunk = (length - 1) % 8 + 1;
+
+    for(int i = offset; i < end; i += chunk, chunk = 8) {
+      value = value * POWERS[chunk] + zonedWord(load(src, i, chunk), chunk, i + chunk == end);
+    }
+
+    return isNegative(src[end - 1] >> 4 & 0x0f) ? -value : value;
+  }
+
+  /**
+   * Decode a zoned decimal of a buffer into a long.
+   * The sign is read from the zone of the last byte.
+   * @param src Buffer containing the zoned decimal.
+   * @param offset Absolute index of the zoned decimal into the buffer.
+   * @param length Length of the zoned decimal in byte, at most {@link #LONG_MAX_DIGITS}.
+   * @return The unscaled value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   */
+  public static long decodeZoned(ByteBuffer src, int offset, int length) {
+    if(src.hasArray()) {
+      return decodeZoned(src.array(), src.arrayOffset() + offset, length);
+    }
+
+    checkZonedLength(length);
+
+    long value = 0;
+    int end = offset + length;
+    int chunk = (length - 1) % 8 + 1;
+
+    for(int i = offset; i < end; i += chunk, chunk = 8) {
+      value = value * POWERS[chunk] + zonedWord(load(src, i, chunk), chunk, i + chunk == end);
+    }
+
+    return isNegative(src.get(end - 1) >> 4 & 0x0f) ? -value : value;
+  }
+
+  /**
+   * Decode a packed decimal of any length.
+   * @param src Array containing the packed decimal.
+   * @param offset Offset of the packed decimal into the array.
+   * @param length Length of the packed decimal in byte.
+   * @param scale Number of digits after the implied decimal point.
+   * @return The value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   */
+  public static BigDecimal decodePackedDecimal(byte[] src, int offset, int length, int scale) {
+    if(length <= PACKED_MAX_LENGTH - 1) {
+      return BigDecimal.valueOf(decodePacked(src, offset, length), scale);
+    }
+
+    int last = src[offset + length - 1];
+    int head = length - 1;
+    BigInteger value = BigInteger.ZERO;
+    int chunk = (head - 1) % 8 + 1;
+
+    for(int i = offset; i < offset + head; i += chunk, chunk = 8) {
+      value = value.multiply(BigInteger.valueOf(POWERS[2 * chunk])).add(BigInteger.valueOf(packedWord(load(src, i, chunk))));
+    }
+
+    int digit = last >> 4 & 0x0f;
+    if(digit > 9) {
+      throw new NumberFormatException("Invalid digit in packed decimal.");
+    }
+    value = value.multiply(BigInteger.TEN).add(BigInteger.valueOf(digit));
+
+    return new BigDecimal(isNegative(last & 0x0f) ? value.negate() : value, scale);
+  }
+
+  /**
+   * Decode a packed decimal of any length from a buffer.
+   * @param src Buffer containing the packed decimal.
+   * @param offset Absolute index of the packed decimal into the buffer.
+   * @param length Length of the packed decimal in byte.
+   * @param scale Number of digits after the implied decimal point.
+   * @return The value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   */
+  public static BigDecimal decodePackedDecimal(ByteBuffer src, int offset, int length, int scale) {
+    if(src.hasArray()) {
+      return decodePackedDecimal(src.array(), src.arrayOffset() + offset, length, scale);
+    }
+
+    byte[] copy = new byte[length];
+    for(int i = 0; i < length; i++) {
+      copy[i] = src.get(offset + i);
+    }
+    return decodePackedDecimal(copy, 0, length, scale);
+  }
+
+  /**
+   * Decode a zoned decimal of any length.
+   * @param src Array containing the zoned decimal.
+   * @param offset Offset of the zoned decimal into the array.
+   * @param length Length of the zoned decimal in byte.
+   * @param scale Number of digits after the implied decimal point.
+   * @return The value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   */
+  public static BigDecimal decodeZonedDecimal(byte[] src, int offset, int length, int scale) {
+    if(length <= LONG_MAX_DIGITS) {
+      return BigDecimal.valueOf(decodeZoned(src, offset, length), scale);
+    }
+
+    BigInteger value = BigInteger.ZERO;
+    int end = offset + length;
+    int chunk = (length - 1) % 8 + 1;
+
+    for(int i = offset; i < end; i += chunk, chunk = 8) {
+      value = value.multiply(BigInteger.valueOf(POWERS[chunk]))
+        .add(BigInteger.valueOf(zonedWord(load(src, i, chunk), chunk, i + chunk == end)));
+    }
+
+    return new BigDecimal(isNegative(src[end - 1] >> 4 & 0x0f) ? value.negate() : value, scale);
+  }
+
+  /**
+   * Decode a zoned decimal of any length from a buffer.
+   * @param src Buffer containing the zoned decimal.
+   * @param offset Absolute index of the zoned decimal into the buffer.
+   * @param length Length of the zoned decimal in byte.
+   * @param scale Number of digits after the implied decimal point.
+   * @return The value.
+   * @throws NumberFormatException If a digit or the sign is invalid.
+   */
+  public static BigDecimal decodeZonedDecimal(ByteBuffer src, int offset, int length, int scale) {
+    if(src.hasArray()) {
+      return decodeZonedDecimal(src.array(), src.arrayOffset() + offset, length, scale);
+    }
+
+    byte[] copy = new byte[length];
+    for(int i = 0; i < length; i++) {
+      copy[i] = src.get(offset + i);
+    }
+    return decodeZonedDecimal(copy, 0, length, scale);
+  }
+
+  /**
+   * Decode the same packed decimal field across several records.
+   * @param src Array containing the records.
+   * @param offsets Offset of the field into the array for each record.
+   * @param count Number of records.
+   * @param length Length of the packed decimal in byte.
+   * @param dst Array receiving the unscaled values.
+   * @throws NumberFormatException If a digit or a sign is invalid.
+   */
+  public static void decodePacked(byte[] src, int[] offsets, int count, int length, long[] dst) {
+    for(int i = 0; i < count; i++) {
+      dst[i] = decodePacked(src, offsets[i], length);
+    }
+  }
+
+  /**
+   * Decode the same zoned decimal field across several records.
+   * @param src Array containing the records.
+   * @param offsets Offset of the field into the array for each record.
+   * @param count Number of records.
+   * @param length Length of the zoned decimal in byte.
+   * @param dst Array receiving the unscaled values.
+   * @throws NumberFormatException If a digit or a sign is invalid.
+   */
+  public static void decodeZoned(byte[] src, int[] offsets, int count, int length, long[] dst) {
+    for(int i = 0; i < count; i++) {
+      dst[i] = decodeZoned(src, offsets[i], length);
+    }
+  }
+
+  /**
+   * Encode a long into a packed decimal.
+   * @param value Unscaled value to encode.
+   * @param dst Destination array.
+   * @param offset Offset of the packed decimal into the array.
+   * @param length Length of the packed decimal in byte.
+   * @param signed True to write a C/D sign nibble, false to write an F one.
+   * @throws ArithmeticException If the value does not fit or is negative and unsigned.
+   */
+  public static void encodePacked(long value, byte[] dst, int offset, int length, boolean signed) {
+    if(value < 0 && !signed) {
+      throw new ArithmeticException("Negative value for an unsigned packed decimal: " + value + ".");
+    }
+
+    int sign = !signed ? SIGN_UNSIGNED : value < 0 ? SIGN_NEGATIVE : SIGN_POSITIVE;
+    long remaining = Math.abs(value);
+
+    if(value == Long.MIN_VALUE) {
+      throw new ArithmeticException("Value does not fit in the packed decimal: " + value + ".");
+    }
+
+    int i = offset + length - 1;
+    dst[i] = (byte)((remaining % 10) << 4 | sign);
+    remaining /= 10;
+
+    for(i--; i >= offset; i--) {
+      long pair = remaining % 100;
+      dst[i] = (byte)((pair / 10) << 4 | pair % 10);
+      remaining /= 100;
+    }
+
+    if(remaining != 0) {
+      throw new ArithmeticException("Value does not fit in the packed decimal: " + value + ".");
+    }
+  }
+
+  /**
+   * Encode a long into a zoned decimal.
+   * @param value Unscaled value to encode.
+   * @param dst Destination array.
+   * @param offset Offset of the zoned decimal into the array.
+   * @param length Length of the zoned decimal in byte.
+   * @param signed True to write a C/D sign zone, false to write an F one.
+   * @throws ArithmeticException If the value does not fit or is negative and unsigned.
+   */
+  public static void encodeZoned(long value, byte[] dst, int offset, int length, boolean signed) {
+    if(value < 0 && !signed) {
+      throw new ArithmeticException("Negative value for an unsigned zoned decimal: " + value + ".");
+    }
+
+    if(value == Long.MIN_VALUE) {
+      throw new ArithmeticException("Value does not fit in the zoned decimal: " + value + ".");
+    }
+
+    int sign = !signed ? SIGN_UNSIGNED : value < 0 ? SIGN_NEGATIVE : SIGN_POSITIVE;
+    long remaining = Math.abs(value);
+
+    for(int i = offset + length - 1; i >= offset; i--) {
+      dst[i] = (byte)(0xf0 | remaining % 10);
+      remaining /= 10;
+    }
+    dst[offset + length - 1] = (byte)(sign << 4 | dst[offset + length - 1] & 0x0f);
+
+    if(remaining != 0) {
+      throw new ArithmeticException("Value does not fit in the zoned decimal: " + value + ".");
+    }
+  }
+}
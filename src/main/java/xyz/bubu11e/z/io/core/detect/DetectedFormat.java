@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.detect;
+
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+
+/**
+ * Record formats told apart by the {@link FormatDetector}.
+ */
+public enum DetectedFormat {
+  /**
+   * Fixed records. A flat file has no block boundaries, so a F
+   * dataset cannot be told apart from a FB one and is detected as FB.
+   */
+  FB(RecordFormat.FB),
+  /** Variable records, one per block. */
+  V(RecordFormat.VB),
+  /** Variable records in blocks. */
+  VB(RecordFormat.VB),
+  /** Variable records in blocks, possibly spanned across blocks. */
+  VBS(RecordFormat.VBS),
+  /** Variable records each preceded by its RDW, without BDW. */
+  RDW(null),
+  /** Undefined format, no record structure found. */
+  U(null);
+
+  /** Record format of the readers, null if there is none. */
+  private final RecordFormat recordFormat;
+
+  private DetectedFormat(RecordFormat recordFormat) {
+    this.recordFormat = recordFormat;
+  }
+
+  /**
+   * Getter for the record format of the readers.
+   * @return The record format read by the same reader, or null for RDW and U.
+   */
+  public RecordFormat getRecordFormat() {
+    return this.recordFormat;
+  }
+}
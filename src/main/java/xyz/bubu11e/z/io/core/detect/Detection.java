@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.detect;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import xyz.bubu11e.z.io.core.reader.AbstractRecordReader;
+import xyz.bubu11e.z.io.core.reader.FBReader;
+import xyz.bubu11e.z.io.core.reader.RDWReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.VBReader;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+
+/**
+ * Result of a format detection.
+ */
+public class Detection {
+
+  /** Path of the dataset. */
+  private final Path path;
+  /** Detected format. */
+  private final DetectedFormat format;
+  /** Confidence in the format. */
+  private final double confidence;
+  /** Record length of the fixed formats, 0 otherwise. */
+  private final int lrecl;
+  /** Number of bytes read by the detection. */
+  private final long bytesRead;
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset.
+   * @param format Detected format.
+   * @param confidence Confidence in the format, from 0 to 1.
+   * @param lrecl Record length of the fixed formats, 0 otherwise.
+   * @param bytesRead Number of bytes read by the detection.
+   */
+  public Detection(Path path, DetectedFormat format, double confidence, int lrecl, long bytesRead) {
+    this.path = path;
+    this.format = format;
+    this.confidence = confidence;
+    this.lrecl = lrecl;
+    this.bytesRead = bytesRead;
+  }
+
+  /**
+   * Getter for the path.
+   * @return The path of the dataset.
+   */
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Getter for the format.
+   * @return The detected format.
+   */
+  public DetectedFormat getFormat() {
+    return this.format;
+  }
+
+  /**
+   * Getter for the confidence.
+   * @return The confidence in the format, from 0 to 1.
+   */
+  public double getConfidence() {
+    return this.confidence;
+  }
+
+  /**
+   * Getter for the record length.
+   * @return The record length of the fixed formats, 0 otherwise.
+   */
+  public int getLrecl() {
+    return this.lrecl;
+  }
+
+  /**
+   * Getter for the number of bytes read.
+   * @return The number of bytes read by the detection.
+   */
+  public long getBytesRead() {
+    return this.bytesRead;
+  }
+
+  /**
+   * Open a reader of the dataset in the detected format.
+   * @return A new reader, to be closed by the caller.
+   * @throws IOException If the dataset cannot be opened.
+   * @throws ReaderException If the format is undefined.
+   */
+  public AbstractRecordReader open() throws IOException, ReaderException {
+    switch(this.format) {
+      case FB:
+        return new FBReader(this.path, this.lrecl);
+      case V:
+      case VB:
+        return new VBReader(this.path);
+      case VBS:
+        return new VBSReader(this.path);
+      case RDW:
+        return new RDWReader(this.path);
+      default:
+        throw new ReaderException("No record structure found in " + this.path + ".");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %s%s (confidence %.2f, %d bytes read)", this.path, this.format,
+      this.lrecl > 0 ? " LRECL=" + this.lrecl : "", this.confidence, this.bytesRead);
+  }
+}
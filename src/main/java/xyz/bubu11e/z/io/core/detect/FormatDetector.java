@@ -0,0 +1,433 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.detect;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWordView;
+import xyz.bubu11e.z.io.core.reader.AbstractRecordReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+
+/**
+ * Detector of the record format of datasets received without
+ * their DCB attributes.
+ *
+ * Only the head of the dataset and a few small regions are read,
+ * so the detection is cheap enough to run on every file. Three
+ * hypotheses are scored:
+ * <ul>
+ * <li>variable blocks: the BDW chain is followed from the start
+ * of the dataset and the RDW chain of each block of the head must
+ * add up to its length. Spanned segments make it VBS, blocks all
+ * holding a single record make it V;</li>
+ * <li>RDW only: the RDW chain is followed from the start of the
+ * dataset;</li>
+ * <li>fixed records: each divisor of the dataset size is a record
+ * length candidate, scored by how much the first bytes of the
+ * first record look like those of other records, some of them at
+ * random. Multiples of the record length score as well, so the
+ * shortest length scoring close to the best one is kept.</li>
+ * </ul>
+ * Each valid descriptor word halves the doubt in a variable
+ * hypothesis. A dataset matching none of them with enough
+ * confidence is reported as U.
+ *
+ * Without descriptor words, F and FB datasets are identical:
+ * they are reported as FB.
+ */
+public class FormatDetector {
+
+  /** Default size of the head of the datasets. */
+  public final static int DEFAULT_SAMPLE_SIZE = 4096;
+  /** Confidence below which the format is undefined. */
+  public final static double MIN_CONFIDENCE = 0.5;
+
+  /** Maximum number of descriptor words followed past the head. */
+  private final static int MAX_HOPS = 16;
+  /** Number of records compared to the first one for a fixed record length. */
+  private final static int FIXED_SAMPLES = 3;
+  /** Number of leading bytes compared between fixed records. */
+  private final static int COMPARE_LENGTH = 32;
+  /** Fraction of the best score above which the shortest fixed record length is preferred. */
+  private final static double FIXED_RATIO = 0.9;
+  /** Maximum confidence in a fixed record length, never proven by descriptor words. */
+  private final static double FIXED_CONFIDENCE = 0.9;
+
+  /** Size of the head of the datasets. */
+  private final int sampleSize;
+
+  /**
+   * Constructor with the default sample size.
+   */
+  public FormatDetector() {
+    this(DEFAULT_SAMPLE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param sampleSize Size of the head of the datasets read in full.
+   */
+  public FormatDetector(int sampleSize) {
+    if(sampleSize < 2 * COMPARE_LENGTH) {
+      throw new IllegalArgumentException("Invalid sample size: " + sampleSize + ".");
+    }
+
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * Detect the format of a dataset.
+   * @param path Path of the dataset.
+   * @return The most likely format with its confidence.
+   * @throws IOException If the dataset cannot be read.
+   */
+  public Detection detect(Path path) throws IOException {
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Sample sample = new Sample(channel, this.sampleSize);
+
+      if(sample.size == 0) {
+        return new Detection(path, DetectedFormat.U, 0, 0, 0);
+      }
+
+      DetectedFormat format = DetectedFormat.U;
+      double confidence = 0;
+      int lrecl = 0;
+
+      Score variable = this.variable(sample);
+      if(variable.confidence > confidence) {
+        format = variable.format;
+        confidence = variable.confidence;
+      }
+
+      Score rdw = this.rdw(sample);
+      if(rdw.confidence > confidence) {
+        format = DetectedFormat.RDW;
+        confidence = rdw.confidence;
+      }
+
+      Score fixed = this.fixed(sample);
+      if(fixed.confidence > confidence) {
+        format = DetectedFormat.FB;
+        confidence = fixed.confidence;
+        lrecl = fixed.lrecl;
+      }
+
+      if(confidence < MIN_CONFIDENCE) {
+        return new Detection(path, DetectedFormat.U, 1 - confidence, 0, sample.bytesRead);
+      }
+
+      return new Detection(path, format, confidence, lrecl, sample.bytesRead);
+    }
+  }
+
+  /**
+   * Detect the format of a dataset and open a reader in this format.
+   * @param path Path of the dataset.
+   * @return A new reader of the dataset, to be closed by the caller.
+   * @throws IOException If the dataset cannot be read.
+   * @throws ReaderException If no record structure is found.
+   */
+  public AbstractRecordReader open(Path path) throws IOException, ReaderException {
+    return this.detect(path).open();
+  }
+
+  /**
+   * Confidence of a given number of valid descriptor words.
+   * @param checks Number of valid descriptor words.
+   * @return The confidence, from 0 to 1.
+   */
+  private static double confidence(int checks) {
+    return 1 - Math.pow(0.5, checks);
+  }
+
+  /**
+   * Score the variable block hypothesis.
+   * @param sample Sample of the dataset.
+   * @return The score, V, VB or VBS.
+   * @throws IOException If an I/O error occurs.
+   */
+  private Score variable(Sample sample) throws IOException {
+    BlockDescriptorWordView bdw = new BlockDescriptorWordView();
+    RecordDescriptorWordView rdw = new RecordDescriptorWordView();
+    Score score = new Score(DetectedFormat.VB);
+    boolean spanned = false;
+    boolean single = true;
+    int blocks = 0;
+    int checks = 0;
+    int hops = 0;
+    long position = 0;
+
+    while(position < sample.size && hops < MAX_HOPS) {
+      if(sample.size - position < 2 * DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+        return score;
+      }
+
+      int length;
+
+      try {
+        int offset = sample.read(position, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+        bdw.bind(sample.buffer, offset);
+        length = bdw.getSegmentLength();
+        if(length < 2 * DescriptorWord.DESCRIPTOR_WORD_LENGTH || length > sample.size - position) {
+          return score;
+        }
+        checks++;
+
+        int segments = 0;
+        long next = position + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+        long end = position + length;
+        while(next < end) {
+          boolean head = next + DescriptorWord.DESCRIPTOR_WORD_LENGTH <= sample.head.limit();
+          if(!head && segments > 0) {
+            break;
+          }
+
+          offset = sample.read(next, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+          rdw.bind(sample.buffer, offset);
+          if(rdw.getSegmentLength() > end - next) {
+            return score;
+          }
+          spanned |= rdw.getSegmentCode() != RecordDescriptorWord.Code.COMPLETE_RECORD;
+          checks++;
+          segments++;
+          next += rdw.getSegmentLength();
+
+          if(!head) {
+            break;
+          }
+        }
+
+        if(next == end) {
+          blocks++;
+          single &= segments == 1;
+        }
+      } catch(DescriptorWordException e) {
+        return score;
+      }
+
+      position += length;
+      if(position > sample.head.limit()) {
+        hops++;
+      }
+    }
+
+    if(position == sample.size) {
+      checks++;
+    }
+
+    score.format = spanned ? DetectedFormat.VBS : single && blocks > 1 ? DetectedFormat.V : DetectedFormat.VB;
+    score.confidence = confidence(checks);
+    return score;
+  }
+
+  /**
+   * Score the RDW only hypothesis.
+   * @param sample Sample of the dataset.
+   * @return The score.
+   * @throws IOException If an I/O error occurs.
+   */
+  private Score rdw(Sample sample) throws IOException {
+    RecordDescriptorWordView rdw = new RecordDescriptorWordView();
+    Score score = new Score(DetectedFormat.RDW);
+    int checks = 0;
+    int hops = 0;
+    long position = 0;
+
+    while(position < sample.size && hops < MAX_HOPS) {
+      if(sample.size - position < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+        return score;
+      }
+
+      try {
+        int offset = sample.read(position, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+        rdw.bind(sample.buffer, offset);
+      } catch(DescriptorWordException e) {
+        return score;
+      }
+
+      if(rdw.getSegmentCode() != RecordDescriptorWord.Code.COMPLETE_RECORD
+          || rdw.getSegmentLength() > sample.size - position) {
+        return score;
+      }
+
+      checks++;
+      position += rdw.getSegmentLength();
+      if(position > sample.head.limit()) {
+        hops++;
+      }
+    }
+
+    if(position == sample.size) {
+      checks++;
+    }
+
+    score.confidence = confidence(checks);
+    return score;
+  }
+
+  /**
+   * Score the fixed record hypothesis.
+   * @param sample Sample of the dataset.
+   * @return The score of the most likely record length.
+   * @throws IOException If an I/O error occurs.
+   */
+  private Score fixed(Sample sample) throws IOException {
+    Score best = new Score(DetectedFormat.FB);
+    int max = (int)Math.min(RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH, sample.size / 2);
+    double[] scores = new double[max + 1];
+    double top = 0;
+
+    for(int lrecl = 1; lrecl <= max; lrecl++) {
+      if(sample.size % lrecl == 0) {
+        scores[lrecl] = this.similarity(sample, lrecl);
+        top = Math.max(top, scores[lrecl]);
+      }
+    }
+
+    for(int lrecl = 1; lrecl <= max; lrecl++) {
+      if(sample.size % lrecl == 0 && scores[lrecl] >= FIXED_RATIO * top) {
+        best.lrecl = lrecl;
+        best.confidence = FIXED_CONFIDENCE * scores[lrecl];
+        break;
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * Compare the leading bytes of the first record with those of other records.
+   * @param sample Sample of the dataset.
+   * @param lrecl Candidate record length.
+   * @return The fraction of equal bytes.
+   * @throws IOException If an I/O error occurs.
+   */
+  private double similarity(Sample sample, int lrecl) throws IOException {
+    long records = sample.size / lrecl;
+    int length = Math.min(lrecl, COMPARE_LENGTH);
+    Random random = new Random(sample.size ^ lrecl);
+    ByteBuffer head = sample.head;
+    int matches = 0;
+    int compared = 0;
+
+    for(int i = 0; i < FIXED_SAMPLES && i < records - 1; i++) {
+      long record = i == 0 ? 1 : 1 + (long)(random.nextDouble() * (records - 1));
+      long position = record * lrecl;
+      int offset = sample.read(position, length);
+
+      for(int j = 0; j < length; j++) {
+        if(sample.buffer.get(offset + j) == head.get(j)) {
+          matches++;
+        }
+      }
+      compared += length;
+    }
+
+    return compared == 0 ? 0 : (double)matches / compared;
+  }
+
+  /**
+   * Score of a hypothesis.
+   */
+  private static class Score {
+
+    /** Format of the hypothesis. */
+    private DetectedFormat format;
+    /** Confidence in the hypothesis. */
+    private double confidence = 0;
+    /** Record length of the fixed hypothesis. */
+    private int lrecl = 0;
+
+    Score(DetectedFormat format) {
+      this.format = format;
+    }
+  }
+
+  /**
+   * Sampled regions of a dataset: its head, read once, and the
+   * small regions read past it.
+   */
+  private static class Sample {
+
+    /** Channel of the dataset. */
+    private final FileChannel channel;
+    /** Size of the dataset. */
+    private final long size;
+    /** Head of the dataset. */
+    private final ByteBuffer head;
+    /** Buffer of the last region read past the head. */
+    private final ByteBuffer region = ByteBuffer.allocate(COMPARE_LENGTH);
+    /** Buffer containing the last region read, the head or the region. */
+    private ByteBuffer buffer = null;
+    /** Number of bytes read. */
+    private long bytesRead = 0;
+
+    Sample(FileChannel channel, int sampleSize) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      this.head = ByteBuffer.allocate((int)Math.min(sampleSize, this.size));
+      this.fill(this.head, 0);
+    }
+
+    /**
+     * Make a region of the dataset available in {@link #buffer}.
+     * @param position Position of the region into the dataset.
+     * @param length Length of the region, at most {@link FormatDetector#COMPARE_LENGTH}.
+     * @return The offset of the region into the buffer.
+     * @throws IOException If an I/O error occurs.
+     */
+    int read(long position, int length) throws IOException {
+      if(position + length <= this.head.limit()) {
+        this.buffer = this.head;
+        return (int)position;
+      }
+
+      this.region.clear();
+      this.region.limit(length);
+      this.fill(this.region, position);
+      this.buffer = this.region;
+      return 0;
+    }
+
+    /**
+     * Fill a buffer from the dataset.
+     * @param buffer Buffer to fill up to its limit.
+     * @param position Position of the first byte.
+     * @throws IOException If an I/O error occurs or the dataset is shorter than expected.
+     */
+    private void fill(ByteBuffer buffer, long position) throws IOException {
+      while(buffer.hasRemaining()) {
+        int count = this.channel.read(buffer, position + buffer.position());
+        if(count < 0) {
+          throw new IOException("Unexpected end of file at offset " + (position + buffer.position()) + ".");
+        }
+        this.bytesRead += count;
+      }
+      buffer.flip();
+    }
+  }
+}
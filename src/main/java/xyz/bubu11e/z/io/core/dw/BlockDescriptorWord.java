@@ -38,7 +38,7 @@ public class BlockDescriptorWord extends DescriptorWord {
    * @param length Length of the record/segment.
    * @throws A DescriptorWordException if the length of the segment is an invalid value.
    */
-  private static void checkSegmentLength(int length, boolean extended) throws DescriptorWordException {
+  static void checkSegmentLength(int length, boolean extended) throws DescriptorWordException {
 
     if(length < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
       throw new DescriptorWordException("Invalid segment length: "+length
@@ -70,8 +70,9 @@ public class BlockDescriptorWord extends DescriptorWord {
    */
   public int getSegmentLength() throws DescriptorWordException {
     int length = 0;
+    boolean extended = this.getExtended();
 
-    if(this.getExtended()) {
+    if(extended) {
       length = (this.getBuffer()[this.getOffset()] & 0x7f) << 24 
         | (this.getBuffer()[this.getOffset() + 1] & 0xff) << 16 
         | (this.getBuffer()[this.getOffset() + 2] & 0xff) << 8 
@@ -81,7 +82,7 @@ public class BlockDescriptorWord extends DescriptorWord {
       | (this.getBuffer()[this.getOffset() + 1] & 0xff);
     }
 
-    this.checkSegmentLength(length, this.getExtended());
+    checkSegmentLength(length, extended);
 
     return length;
   }
@@ -94,7 +95,7 @@ public class BlockDescriptorWord extends DescriptorWord {
    */
   public void setSegmentLength(int length, boolean extended) throws DescriptorWordException {
 
-    this.checkSegmentLength(length, extended);
+    checkSegmentLength(length, extended);
 
     if(extended) {
       this.getBuffer()[this.getOffset()] = (byte)(((length >> 24) & 0x7f) | 0x80);
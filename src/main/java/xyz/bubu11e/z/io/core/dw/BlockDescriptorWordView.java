@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.dw;
+
+/**
+ * Flyweight over a block descriptor word.
+ *
+ * @see BlockDescriptorWord
+ */
+public class BlockDescriptorWordView extends DescriptorWordView {
+
+  /**
+   * Default Constructor.
+   */
+  public BlockDescriptorWordView() {
+    super();
+  }
+
+  /**
+   * Decode the segment type of a raw block descriptor word.
+   * @param word The block descriptor word as a big endian int.
+   * @return True if the segment type is extended, false otherwise.
+   */
+  public static boolean isExtended(int word) {
+    return word < 0;
+  }
+
+  /**
+   * Decode the segment length of a raw block descriptor word without checking it.
+   * A nonextended length is held by the two high bytes, an extended one by
+   * the 31 low bits: only the shift depends on the segment type.
+   * @param word The block descriptor word as a big endian int.
+   * @return The segment length.
+   */
+  public static int getSegmentLength(int word) {
+    return (word & 0x7fffffff) >>> ((~word >>> 31) << 4);
+  }
+
+  /**
+   * Encode a raw block descriptor word without checking the length.
+   * @param length Length of the segment.
+   * @param extended true if the block is extended, false otherwise.
+   * @return The block descriptor word as a big endian int.
+   */
+  public static int toWord(int length, boolean extended) {
+    return extended ? length | 0x80000000 : length << 16;
+  }
+
+  /**
+   * Check the segment length of the bound block descriptor word.
+   * @throws DescriptorWordException If the length of the segment is an invalid value.
+   */
+  @Override
+  protected void validate() throws DescriptorWordException {
+    int word = this.getWord();
+    BlockDescriptorWord.checkSegmentLength(getSegmentLength(word), isExtended(word));
+  }
+
+  /**
+   * Check the segment length of the bound block descriptor word without throwing.
+   * @return True if the length of the segment is valid.
+   */
+  @Override
+  protected boolean isValid() {
+    int word = this.getWord();
+    int length = getSegmentLength(word);
+    return length >= DescriptorWord.DESCRIPTOR_WORD_LENGTH
+      && (isExtended(word) || length <= BlockDescriptorWord.BDW_MAX_SEGMENT_LENGTH_NONEXTENDED);
+  }
+
+  /**
+   * Getter for the segment type.
+   * @return True if the segment type is extended, false otherwise.
+   */
+  public boolean isExtended() {
+    return isExtended(this.getWord());
+  }
+
+  /**
+   * Getter for the segment length.
+   * @return The segment length.
+   */
+  public int getSegmentLength() {
+    return getSegmentLength(this.getWord());
+  }
+
+  /**
+   * Setter for the segment length. The length is not checked.
+   * @param length Length of the block to set.
+   * @param extended true if the block is extended, false otherwise.
+   */
+  public void setSegmentLength(int length, boolean extended) {
+    this.setWord(toWord(length, extended));
+  }
+}
@@ -40,7 +40,7 @@ public class DescriptorWord {
    * @throws DescriptorWordException If the buffer size is invalid.
    */
   public void setBuffer(byte[] buffer, int offset) throws DescriptorWordException {
-    if(buffer.length <= offset + DESCRIPTOR_WORD_LENGTH) {
+    if(offset >= 0 && buffer.length >= offset + DESCRIPTOR_WORD_LENGTH) {
       this.buffer = buffer;
       this.offset = offset;
     } else {
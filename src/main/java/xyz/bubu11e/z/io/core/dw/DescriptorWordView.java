@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.dw;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Flyweight over a descriptor word stored in a heap array, a direct buffer or a
+ * mapped region.
+ *
+ * The position of the descriptor word is checked once, when the view is bound.
+ * The accessors read the descriptor word as a single big endian int and do not
+ * check anything: they are meant to be inlined in tight loops. Use
+ * {@link DescriptorWord} and its subclasses when every access must be checked.
+ */
+public class DescriptorWordView {
+
+  /** Buffer containing the descriptor word. */
+  protected ByteBuffer buffer = null;
+  /** Offset of the descriptor word in the buffer. */
+  protected int offset = 0;
+
+  /** Last buffer bound to the view that was not big endian. */
+  private ByteBuffer source = null;
+  /** Big endian duplicate of that buffer. */
+  private ByteBuffer ordered = null;
+  /** Last array bound to the view. */
+  private byte[] array = null;
+  /** Buffer wrapping the last array bound to the view. */
+  private ByteBuffer wrap = null;
+
+  /**
+   * Default Constructor.
+   */
+  public DescriptorWordView() {
+  }
+
+  /**
+   * Bind the view to a descriptor word and validate it.
+   * @param buffer Buffer containing the descriptor word.
+   * @param offset Absolute offset of the descriptor word into the buffer.
+   * @throws DescriptorWordException If the buffer size or the descriptor word is invalid.
+   */
+  public void bind(ByteBuffer buffer, int offset) throws DescriptorWordException {
+    this.wrap(buffer, offset);
+    this.validate();
+  }
+
+  /**
+   * Bind the view to a descriptor word and check it without throwing, for the
+   * readers running in lenient mode. The view is left bound even if the
+   * descriptor word is invalid, but untouched if the buffer is too small.
+   * @param buffer Buffer containing the descriptor word.
+   * @param offset Absolute offset of the descriptor word into the buffer.
+   * @return True if the buffer size and the descriptor word are valid.
+   */
+  public boolean tryBind(ByteBuffer buffer, int offset) {
+    if(!fits(buffer, offset)) {
+      return false;
+    }
+
+    this.attach(buffer, offset);
+    return this.isValid();
+  }
+
+  /**
+   * Bind the view to a descriptor word in an array and validate it.
+   * @param array Array containing the descriptor word.
+   * @param offset Offset of the descriptor word into the array.
+   * @throws DescriptorWordException If the array size or the descriptor word is invalid.
+   */
+  public void bind(byte[] array, int offset) throws DescriptorWordException {
+    this.bind(this.wrapArray(array), offset);
+  }
+
+  /**
+   * Bind the view to a location where a descriptor word will be written.
+   * Only the buffer size is checked.
+   * @param buffer Buffer that will contain the descriptor word.
+   * @param offset Absolute offset of the descriptor word into the buffer.
+   * @throws DescriptorWordException If the buffer size is invalid.
+   */
+  public void wrap(ByteBuffer buffer, int offset) throws DescriptorWordException {
+    if(!fits(buffer, offset)) {
+      throw new DescriptorWordException("Invalid buffer size.");
+    }
+
+    this.attach(buffer, offset);
+  }
+
+  /**
+   * Check that a descriptor word fits in a buffer at a given offset.
+   * @param buffer Buffer that contains or will contain the descriptor word.
+   * @param offset Absolute offset of the descriptor word into the buffer.
+   * @return True if the four bytes of the descriptor word are within the limit.
+   */
+  private static boolean fits(ByteBuffer buffer, int offset) {
+    return buffer != null && offset >= 0 && offset <= buffer.limit() - DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+  }
+
+  /**
+   * Bind the view to a location already checked, through a big endian buffer.
+   * @param buffer Buffer containing the descriptor word.
+   * @param offset Absolute offset of the descriptor word into the buffer.
+   */
+  private void attach(ByteBuffer buffer, int offset) {
+    if(buffer.order() == ByteOrder.BIG_ENDIAN) {
+      this.buffer = buffer;
+    } else {
+      if(buffer != this.source) {
+        this.source = buffer;
+        this.ordered = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+      }
+      this.buffer = this.ordered;
+    }
+    this.offset = offset;
+  }
+
+  /**
+   * Bind the view to a location of an array where a descriptor word will be written.
+   * Only the array size is checked.
+   * @param array Array that will contain the descriptor word.
+   * @param offset Offset of the descriptor word into the array.
+   * @throws DescriptorWordException If the array size is invalid.
+   */
+  public void wrap(byte[] array, int offset) throws DescriptorWordException {
+    this.wrap(this.wrapArray(array), offset);
+  }
+
+  /**
+   * Wrap an array, reusing the previous wrapper when the array is the same.
+   * @param array Array to wrap.
+   * @return A buffer wrapping the array.
+   * @throws DescriptorWordException If the array is null.
+   */
+  private ByteBuffer wrapArray(byte[] array) throws DescriptorWordException {
+    if(array == null) {
+      throw new DescriptorWordException("Invalid buffer size.");
+    }
+
+    if(array != this.array) {
+      this.array = array;
+      this.wrap = ByteBuffer.wrap(array);
+    }
+
+    return this.wrap;
+  }
+
+  /**
+   * Validate the bound descriptor word.
+   * @throws DescriptorWordException If the descriptor word is invalid.
+   */
+  protected void validate() throws DescriptorWordException {
+  }
+
+  /**
+   * Check the bound descriptor word without throwing. Must accept exactly what
+   * {@link #validate()} accepts.
+   * @return True if the descriptor word is valid.
+   */
+  protected boolean isValid() {
+    return true;
+  }
+
+  /**
+   * Getter for the buffer.
+   * @return The buffer containing the descriptor word, or null if the view is not bound.
+   */
+  public ByteBuffer getBuffer() {
+    return this.buffer;
+  }
+
+  /**
+   * Getter for the offset value.
+   * @return An integer containing the offset value.
+   */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Getter for the raw descriptor word.
+   * @return The four bytes of the descriptor word as a big endian int.
+   */
+  public final int getWord() {
+    return this.buffer.getInt(this.offset);
+  }
+
+  /**
+   * Setter for the raw descriptor word.
+   * @param word The four bytes of the descriptor word as a big endian int.
+   */
+  public final void setWord(int word) {
+    this.buffer.putInt(this.offset, word);
+  }
+}
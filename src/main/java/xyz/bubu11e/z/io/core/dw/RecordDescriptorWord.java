@@ -49,7 +49,7 @@ public class RecordDescriptorWord extends DescriptorWord {
   public final static byte RDW_CODE_OTHER_SEGMENT = 0x03;
 
   /** Only acceptable value for the last byte of the RDW. */
-  private final static byte RDW_LAST_BYTE_VALUE = 0x00;
+  final static byte RDW_LAST_BYTE_VALUE = 0x00;
 
   /** Possible record/segment descriptor word codes. */
   public enum Code {COMPLETE_RECORD, FIRST_SEGMENT, LAST_SEGMENT, OTHER_SEGMENT}
@@ -67,7 +67,7 @@ public class RecordDescriptorWord extends DescriptorWord {
    * @param length Length of the record/segment.
    * @throws A DescriptorWordException if the length of the segment is an invalid value.
    */
-  private static void checkSegmentLength(int length) throws DescriptorWordException {
+  static void checkSegmentLength(int length) throws DescriptorWordException {
 
     if(length > RDW_MAX_SEGMENT_LENGTH || length < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
       throw new DescriptorWordException("Invalid segment length: "+length
@@ -86,7 +86,7 @@ public class RecordDescriptorWord extends DescriptorWord {
     int length = (int)(this.getBuffer()[this.getOffset()] << 8 
       | (this.getBuffer()[this.getOffset() + 1] & 0xff));
 
-    this.checkSegmentLength(length);
+    checkSegmentLength(length);
 
     return length;
   }
@@ -97,7 +97,7 @@ public class RecordDescriptorWord extends DescriptorWord {
    * @throws DescriptorWordException If the length of the segment is an invalid value or the buffer is not set.
    */
   public void setSegmentLength(int length) throws DescriptorWordException {
-    this.checkSegmentLength(length);
+    checkSegmentLength(length);
 
     this.getBuffer()[this.getOffset()] = (byte)((length >> 8) & 0xff);
     this.getBuffer()[this.getOffset() + 1] = (byte)(length & 0xff);
@@ -109,7 +109,16 @@ public class RecordDescriptorWord extends DescriptorWord {
    * @throws DescriptorWordException If the code of the segment is invalid or the buffer is not set.
    */
   public Code getSegmentCode() throws DescriptorWordException {
-    byte bCode = this.getBuffer()[this.getOffset() + 2];
+    return toCode(this.getBuffer()[this.getOffset() + 2]);
+  }
+
+  /**
+   * Convert a segment code byte to its enum value.
+   * @param bCode Byte containing the segment code.
+   * @return The segment code.
+   * @throws DescriptorWordException If the code of the segment is invalid.
+   */
+  static Code toCode(byte bCode) throws DescriptorWordException {
     Code code = Code.COMPLETE_RECORD;
 
     switch(bCode) {
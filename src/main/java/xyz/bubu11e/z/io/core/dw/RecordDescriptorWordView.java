@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.dw;
+
+/**
+ * Flyweight over a record/segment descriptor word.
+ *
+ * @see RecordDescriptorWord
+ */
+public class RecordDescriptorWordView extends DescriptorWordView {
+
+  /** Segment codes indexed by their byte value. */
+  private final static RecordDescriptorWord.Code[] CODES = RecordDescriptorWord.Code.values();
+
+  /**
+   * Default Constructor.
+   */
+  public RecordDescriptorWordView() {
+    super();
+  }
+
+  /**
+   * Decode the segment length of a raw record descriptor word without checking it.
+   * @param word The record descriptor word as a big endian int.
+   * @return The segment length.
+   */
+  public static int getSegmentLength(int word) {
+    return word >>> 16;
+  }
+
+  /**
+   * Decode the segment code of a raw record descriptor word without checking it.
+   * @param word The record descriptor word as a big endian int.
+   * @return The segment code byte.
+   */
+  public static int getSegmentCodeByte(int word) {
+    return (word >>> 8) & 0xff;
+  }
+
+  /**
+   * Encode a raw record descriptor word without checking it.
+   * @param length Length of the segment.
+   * @param code Code of the segment.
+   * @return The record descriptor word as a big endian int.
+   */
+  public static int toWord(int length, RecordDescriptorWord.Code code) {
+    return length << 16 | code.ordinal() << 8 | RecordDescriptorWord.RDW_LAST_BYTE_VALUE;
+  }
+
+  /**
+   * Check the length, the code and the last byte of the bound record descriptor word.
+   * @throws DescriptorWordException If the record descriptor word is invalid.
+   */
+  @Override
+  protected void validate() throws DescriptorWordException {
+    int word = this.getWord();
+    RecordDescriptorWord.checkSegmentLength(getSegmentLength(word));
+    RecordDescriptorWord.toCode((byte)getSegmentCodeByte(word));
+
+    if((byte)word != RecordDescriptorWord.RDW_LAST_BYTE_VALUE) {
+      throw new DescriptorWordException("Invalid last byte: " + String.format("%02x", word & 0xff) + ".");
+    }
+  }
+
+  /**
+   * Check the length, the code and the last byte of the bound record descriptor
+   * word without throwing.
+   * @return True if the record descriptor word is valid.
+   */
+  @Override
+  protected boolean isValid() {
+    int word = this.getWord();
+    int length = getSegmentLength(word);
+    return length >= DescriptorWord.DESCRIPTOR_WORD_LENGTH
+      && length <= RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH
+      && getSegmentCodeByte(word) < CODES.length
+      && (byte)word == RecordDescriptorWord.RDW_LAST_BYTE_VALUE;
+  }
+
+  /**
+   * Getter for the segment length.
+   * @return The segment length.
+   */
+  public int getSegmentLength() {
+    return getSegmentLength(this.getWord());
+  }
+
+  /**
+   * Getter for the code of the segment.
+   * @return The segment code.
+   */
+  public RecordDescriptorWord.Code getSegmentCode() {
+    return CODES[getSegmentCodeByte(this.getWord())];
+  }
+
+  /**
+   * Setter for the whole record descriptor word. Nothing is checked.
+   * @param length Length of the record/segment to set.
+   * @param code Code of the record/segment to set.
+   */
+  public void set(int length, RecordDescriptorWord.Code code) {
+    this.setWord(toWord(length, code));
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.filter;
+
+/**
+ * Comparison operators of the predicates.
+ */
+public enum Comparison {
+
+  /** Equal. */
+  EQ,
+  /** Not equal. */
+  NE,
+  /** Less than. */
+  LT,
+  /** Less than or equal. */
+  LE,
+  /** Greater than. */
+  GT,
+  /** Greater than or equal. */
+  GE;
+
+  /**
+   * Apply the operator to the result of a comparison.
+   * @param comparison Negative, zero or positive as the left operand is less than, equal to or greater
+   * than the right one.
+   * @return True if the operator is satisfied.
+   */
+  public boolean test(int comparison) {
+    switch(this) {
+      case EQ:
+        return comparison == 0;
+      case NE:
+        return comparison != 0;
+      case LT:
+        return comparison < 0;
+      case LE:
+        return comparison <= 0;
+      case GT:
+        return comparison > 0;
+      default:
+        return comparison >= 0;
+    }
+  }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.filter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+import xyz.bubu11e.z.io.core.copybook.Field;
+import xyz.bubu11e.z.io.core.copybook.FieldType;
+import xyz.bubu11e.z.io.core.decimal.DecimalCodec;
+
+/**
+ * Factories of {@link RecordPredicate}.
+ *
+ * The predicates are compiled when built: the constants are laid out
+ * as big endian words compared eight bytes at a time, and the numeric
+ * constants are scaled once to the unscaled value of the field. A
+ * numeric field holding invalid digits does not match.
+ */
+public final class Predicates {
+
+  private Predicates() {
+  }
+
+  /**
+   * Build a predicate matching a byte at a fixed offset, such as a record type.
+   * @param offset Offset of the byte into the record.
+   * @param value Expected byte.
+   * @return The predicate.
+   */
+  public static RecordPredicate byteEquals(int offset, byte value) {
+    return new ByteEquals(offset, value);
+  }
+
+  /**
+   * Build a predicate matching bytes at a fixed offset.
+   * @param offset Offset of the bytes into the record.
+   * @param value Expected bytes.
+   * @return The predicate.
+   */
+  public static RecordPredicate equals(int offset, byte[] value) {
+    return value.length == 1 ? new ByteEquals(offset, value[0]) : new BytesEqual(offset, value);
+  }
+
+  /**
+   * Build a predicate matching the value of a field.
+   * @param field Field of a copybook layout.
+   * @param value Expected bytes, of the length of the field.
+   * @return The predicate.
+   */
+  public static RecordPredicate equals(Field field, byte[] value) {
+    if(value.length != field.getLength()) {
+      throw new IllegalArgumentException("Invalid value length for " + field.getName() + ": " + value.length
+        + " bytes, expected " + field.getLength() + ".");
+    }
+    return equals(field.getOffset(), value);
+  }
+
+  /**
+   * Build a predicate matching a key range.
+   * Keys are compared as unsigned bytes, the bounds are inclusive.
+   * @param offset Offset of the key into the record.
+   * @param low Lowest key.
+   * @param high Highest key, of the length of the lowest.
+   * @return The predicate.
+   */
+  public static RecordPredicate range(int offset, byte[] low, byte[] high) {
+    if(low.length != high.length || low.length == 0) {
+      throw new IllegalArgumentException("Invalid key range lengths: " + low.length + " and " + high.length + ".");
+    }
+    return new KeyRange(offset, low, high);
+  }
+
+  /**
+   * Build a predicate matching a key range on a field.
+   * @param field Field of a copybook layout.
+   * @param low Lowest key, of the length of the field.
+   * @param high Highest key, of the length of the field.
+   * @return The predicate.
+   */
+  public static RecordPredicate range(Field field, byte[] low, byte[] high) {
+    if(low.length != field.getLength()) {
+      throw new IllegalArgumentException("Invalid key length for " + field.getName() + ": " + low.length
+        + " bytes, expected " + field.getLength() + ".");
+    }
+    return range(field.getOffset(), low, high);
+  }
+
+  /**
+   * Build a predicate comparing a packed decimal at a fixed offset.
+   * @param offset Offset of the packed decimal into the record.
+   * @param length Length of the packed decimal in byte.
+   * @param comparison Operator, the packed decimal being its left operand.
+   * @param value Unscaled right operand.
+   * @return The predicate.
+   */
+  public static RecordPredicate packed(int offset, int length, Comparison comparison, long value) {
+    return new NumericComparison(FieldType.PACKED, false, offset, length, comparison, value);
+  }
+
+  /**
+   * Build a predicate comparing a numeric field.
+   * The constant is scaled to the scale of the field.
+   * @param field Packed, zoned or binary field of a copybook layout.
+   * @param comparison Operator, the field being its left operand.
+   * @param value Right operand.
+   * @return The predicate.
+   */
+  public static RecordPredicate compare(Field field, Comparison comparison, BigDecimal value) {
+    if(field.getType() == FieldType.ALPHANUMERIC) {
+      throw new IllegalArgumentException("Not a numeric field: " + field.getName() + ".");
+    }
+
+    BigDecimal unscaled = value.movePointRight(field.getScale());
+
+    if(unscaled.signum() == 0 || unscaled.stripTrailingZeros().scale() <= 0) {
+      return new NumericComparison(field.getType(), field.isSigned(), field.getOffset(), field.getLength(),
+        comparison, unscaled.longValueExact());
+    }
+
+    // The constant has more decimals than the field: no value is equal to it
+    switch(comparison) {
+      case EQ:
+        return new Never(field.getOffset() + field.getLength());
+      case NE:
+        return not(new Never(field.getOffset() + field.getLength()));
+      case LT: case LE:
+        return new NumericComparison(field.getType(), field.isSigned(), field.getOffset(), field.getLength(),
+          Comparison.LE, unscaled.setScale(0, RoundingMode.FLOOR).longValueExact());
+      default:
+        return new NumericComparison(field.getType(), field.isSigned(), field.getOffset(), field.getLength(),
+          Comparison.GE, unscaled.setScale(0, RoundingMode.CEILING).longValueExact());
+    }
+  }
+
+  /**
+   * Build a predicate matching the records matched by all the predicates.
+   * @param predicates Predicates, tested in order.
+   * @return The predicate.
+   */
+  public static RecordPredicate and(RecordPredicate... predicates) {
+    return new And(predicates.clone());
+  }
+
+  /**
+   * Build a predicate matching the records matched by any of the predicates.
+   * @param predicates Predicates, tested in order.
+   * @return The predicate.
+   */
+  public static RecordPredicate or(RecordPredicate... predicates) {
+    return new Or(predicates.clone());
+  }
+
+  /**
+   * Build a predicate matching the records not matched by a predicate.
+   * Records shorter than the extent of the predicate do not match either.
+   * @param predicate Predicate to negate.
+   * @return The predicate.
+   */
+  public static RecordPredicate not(RecordPredicate predicate) {
+    return new Not(predicate);
+  }
+
+  /**
+   * Load a big endian word from an array, padded with zeros.
+   * @param array Source array.
+   * @param offset Offset of the word into the array.
+   * @return The word.
+   */
+  private static long word(byte[] array, int offset) {
+    long word = 0;
+    for(int i = 0; i < 8; i++) {
+      word = word << 8 | (offset + i < array.length ? array[offset + i] & 0xff : 0);
+    }
+    return word;
+  }
+
+  /**
+   * Split bytes into big endian words, the last one padded with zeros.
+   * @param array Source array.
+   * @return The words.
+   */
+  private static long[] words(byte[] array) {
+    long[] words = new long[(array.length + 7) / 8];
+    for(int i = 0; i < words.length; i++) {
+      words[i] = word(array, 8 * i);
+    }
+    return words;
+  }
+
+  /**
+   * Base of the predicates reading a fixed region of the record.
+   */
+  private abstract static class Region implements RecordPredicate {
+
+    /** Offset of the region into the record. */
+    protected final int offset;
+    /** Extent of the predicate. */
+    protected final int extent;
+
+    /**
+     * Constructor.
+     * @param offset Offset of the region into the record.
+     * @param length Length of the region.
+     */
+    protected Region(int offset, int length) {
+      if(offset < 0 || length < 1) {
+        throw new IllegalArgumentException("Invalid region: offset " + offset + ", length " + length + ".");
+      }
+
+      this.offset = offset;
+      this.extent = offset + length;
+    }
+
+    @Override
+    public int getExtent() {
+      return this.extent;
+    }
+  }
+
+  /**
+   * Equality of a single byte.
+   */
+  private final static class ByteEquals extends Region {
+
+    /** Expected byte. */
+    private final byte value;
+
+    ByteEquals(int offset, byte value) {
+      super(offset, 1);
+      this.value = value;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      return length >= this.extent && buffer.get(offset + this.offset) == this.value;
+    }
+  }
+
+  /**
+   * Equality of a byte string, compared by words.
+   */
+  private final static class BytesEqual extends Region {
+
+    /** Expected bytes as big endian words. */
+    private final long[] words;
+    /** Number of bytes of the last word. */
+    private final int tail;
+
+    BytesEqual(int offset, byte[] value) {
+      super(offset, value.length);
+      this.words = words(value);
+      this.tail = (value.length - 1) % 8 + 1;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      if(length < this.extent) {
+        return false;
+      }
+
+      int position = offset + this.offset;
+      int last = this.words.length - 1;
+
+      for(int i = 0; i < last; i++, position += 8) {
+        if(buffer.getLong(position) != this.words[i]) {
+          return false;
+        }
+      }
+
+      long word = 0;
+      for(int i = 0; i < this.tail; i++) {
+        word = word << 8 | (buffer.get(position + i) & 0xff);
+      }
+      return word << (8 * (8 - this.tail)) == this.words[last];
+    }
+  }
+
+  /**
+   * Inclusive range of unsigned keys, compared by words.
+   */
+  private final static class KeyRange extends Region {
+
+    /** Lowest key as big endian words. */
+    private final long[] low;
+    /** Highest key as big endian words. */
+    private final long[] high;
+    /** Number of bytes of the last word. */
+    private final int tail;
+
+    KeyRange(int offset, byte[] low, byte[] high) {
+      super(offset, low.length);
+      this.low = words(low);
+      this.high = words(high);
+      this.tail = (low.length - 1) % 8 + 1;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      if(length < this.extent) {
+        return false;
+      }
+
+      int position = offset + this.offset;
+      int last = this.low.length - 1;
+      boolean aboveLow = false;
+      boolean belowHigh = false;
+
+      for(int i = 0; i <= last && !(aboveLow && belowHigh); i++, position += 8) {
+        long word;
+        if(i < last) {
+          word = buffer.getLong(position);
+        } else {
+          word = 0;
+          for(int j = 0; j < this.tail; j++) {
+            word = word << 8 | (buffer.get(position + j) & 0xff);
+          }
+          word <<= 8 * (8 - this.tail);
+        }
+
+        if(!aboveLow) {
+          int comparison = Long.compareUnsigned(word, this.low[i]);
+          if(comparison < 0) {
+            return false;
+          }
+          aboveLow = comparison > 0;
+        }
+
+        if(!belowHigh) {
+          int comparison = Long.compareUnsigned(word, this.high[i]);
+          if(comparison > 0) {
+            return false;
+          }
+          belowHigh = comparison < 0;
+        }
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Comparison of a numeric field with a constant.
+   */
+  private final static class NumericComparison extends Region {
+
+    /** Storage type of the field. */
+    private final FieldType type;
+    /** True if a binary field is signed. */
+    private final boolean signed;
+    /** Length of the field. */
+    private final int length;
+    /** Operator. */
+    private final Comparison comparison;
+    /** Unscaled constant. */
+    private final long value;
+
+    NumericComparison(FieldType type, boolean signed, int offset, int length, Comparison comparison, long value) {
+      super(offset, length);
+
+      if((type == FieldType.PACKED && length > DecimalCodec.PACKED_MAX_LENGTH)
+          || (type == FieldType.ZONED && length > DecimalCodec.LONG_MAX_DIGITS)
+          || (type == FieldType.BINARY && length > 8)) {
+        throw new IllegalArgumentException("Numeric field too long: " + length + " bytes.");
+      }
+
+      this.type = type;
+      this.signed = signed;
+      this.length = length;
+      this.comparison = comparison;
+      this.value = value;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      if(length < this.extent) {
+        return false;
+      }
+
+      int position = offset + this.offset;
+      long field;
+
+      try {
+        switch(this.type) {
+          case PACKED:
+            field = DecimalCodec.decodePacked(buffer, position, this.length);
+            break;
+          case ZONED:
+            field = DecimalCodec.decodeZoned(buffer, position, this.length);
+            break;
+          default:
+            field = this.signed ? buffer.get(position) : buffer.get(position) & 0xff;
+            for(int i = 1; i < this.length; i++) {
+              field = field << 8 | (buffer.get(position + i) & 0xff);
+            }
+            if(!this.signed && this.length == 8) {
+              return this.comparison.test(Long.compareUnsigned(field, this.value));
+            }
+        }
+      } catch(NumberFormatException | ArithmeticException e) {
+        return false;
+      }
+
+      return this.comparison.test(Long.compare(field, this.value));
+    }
+  }
+
+  /**
+   * Predicate matching no record.
+   */
+  private final static class Never implements RecordPredicate {
+
+    /** Extent of the predicate. */
+    private final int extent;
+
+    Never(int extent) {
+      this.extent = extent;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      return false;
+    }
+
+    @Override
+    public int getExtent() {
+      return this.extent;
+    }
+  }
+
+  /**
+   * Conjunction of predicates.
+   */
+  private final static class And implements RecordPredicate {
+
+    /** Predicates. */
+    private final RecordPredicate[] predicates;
+    /** Extent of the predicate. */
+    private final int extent;
+
+    And(RecordPredicate[] predicates) {
+      this.predicates = predicates;
+      int extent = 0;
+      for(RecordPredicate predicate : predicates) {
+        extent = Math.max(extent, predicate.getExtent());
+      }
+      this.extent = extent;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      for(RecordPredicate predicate : this.predicates) {
+        if(!predicate.test(buffer, offset, length)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int getExtent() {
+      return this.extent;
+    }
+  }
+
+  /**
+   * Disjunction of predicates.
+   */
+  private final static class Or implements RecordPredicate {
+
+    /** Predicates. */
+    private final RecordPredicate[] predicates;
+    /** Extent of the predicate. */
+    private final int extent;
+
+    Or(RecordPredicate[] predicates) {
+      this.predicates = predicates;
+      int extent = 0;
+      for(RecordPredicate predicate : predicates) {
+        extent = Math.max(extent, predicate.getExtent());
+      }
+      this.extent = extent;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      for(RecordPredicate predicate : this.predicates) {
+        if(predicate.test(buffer, offset, length)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int getExtent() {
+      return this.extent;
+    }
+  }
+
+  /**
+   * Negation of a predicate.
+   */
+  private final static class Not implements RecordPredicate {
+
+    /** Negated predicate. */
+    private final RecordPredicate predicate;
+
+    Not(RecordPredicate predicate) {
+      this.predicate = predicate;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+      return length >= this.predicate.getExtent() && !this.predicate.test(buffer, offset, length);
+    }
+
+    @Override
+    public int getExtent() {
+      return this.predicate.getExtent();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.filter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Predicate evaluated on the raw bytes of a record.
+ *
+ * Readers given a predicate only emit the matching records, which are
+ * tested in place in the block buffer: the other records are neither
+ * copied nor decoded. Predicates are immutable and can be shared by
+ * concurrent readers. They are built by {@link Predicates}.
+ */
+public interface RecordPredicate {
+
+  /**
+   * Test a record.
+   * @param buffer Buffer containing the record, in big endian order.
+   * @param offset Absolute index of the record into the buffer.
+   * @param length Length of the record.
+   * @return True if the record matches.
+   */
+  public boolean test(ByteBuffer buffer, int offset, int length);
+
+  /**
+   * Getter for the extent of the predicate.
+   * The predicate reads no byte beyond its extent, so it gives the same
+   * result on any prefix of a record at least as long as the extent.
+   * @return The number of leading bytes of the record read by the predicate.
+   */
+  public int getExtent();
+
+}
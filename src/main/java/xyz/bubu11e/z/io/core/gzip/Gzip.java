@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.gzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers to read and write gzip compressed datasets.
+ *
+ * The streams returned here can be given to
+ * {@link xyz.bubu11e.z.io.core.reader.StreamBlockSource} or to the
+ * stream constructor of {@link xyz.bubu11e.z.io.core.reader.FBReader},
+ * and the channels to the writers, so datasets are compressed and
+ * decompressed on the fly.
+ */
+public final class Gzip {
+
+  private Gzip() {
+  }
+
+  /**
+   * Check if a file is gzip compressed.
+   * @param path Path of the file.
+   * @return True if the file starts with the gzip magic.
+   * @throws IOException If the file cannot be read.
+   */
+  public static boolean isGzip(Path path) throws IOException {
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(GzipMember.FIXED_HEADER_LENGTH);
+      while(magic.hasRemaining() && channel.read(magic) >= 0) {
+        continue;
+      }
+      return GzipMember.isHeader(magic.array(), magic.position());
+    }
+  }
+
+  /**
+   * Open a stream decompressing a gzip file.
+   * The members written by {@link ParallelGzipChannel} are inflated
+   * in parallel, other members sequentially.
+   * @param path Path of the gzip file.
+   * @return A stream of the decompressed content.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static InputStream newInputStream(Path path) throws IOException {
+    return new ParallelGzipInputStream(path);
+  }
+
+  /**
+   * Open a channel compressing into a gzip file.
+   * The file is created or truncated.
+   * @param path Path of the gzip file.
+   * @return A channel compressing its content in parallel.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static ParallelGzipChannel newChannel(Path path) throws IOException {
+    return new ParallelGzipChannel(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING));
+  }
+}
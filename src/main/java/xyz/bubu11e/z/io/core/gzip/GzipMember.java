@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.gzip;
+
+import java.io.IOException;
+
+/**
+ * Layout of the gzip members (RFC 1952).
+ *
+ * The members written by {@link ParallelGzipChannel} carry their total
+ * length in an extra field of their header, so a reader can locate every
+ * member without inflating the previous ones.
+ */
+final class GzipMember {
+
+  /** First byte of the gzip magic. */
+  final static int ID1 = 0x1f;
+  /** Second byte of the gzip magic. */
+  final static int ID2 = 0x8b;
+  /** Deflate compression method. */
+  final static int CM_DEFLATE = 8;
+  /** Header flag: text. */
+  final static int FTEXT = 0x01;
+  /** Header flag: header CRC. */
+  final static int FHCRC = 0x02;
+  /** Header flag: extra field. */
+  final static int FEXTRA = 0x04;
+  /** Header flag: file name. */
+  final static int FNAME = 0x08;
+  /** Header flag: comment. */
+  final static int FCOMMENT = 0x10;
+  /** Unknown operating system. */
+  final static int OS_UNKNOWN = 0xff;
+
+  /** First identifier of the member length subfield. */
+  final static int SI1 = 'Z';
+  /** Second identifier of the member length subfield. */
+  final static int SI2 = 'S';
+  /** Length of the member length subfield data. */
+  final static int SUBFIELD_LENGTH = 4;
+
+  /** Length of the fixed part of a header. */
+  final static int FIXED_HEADER_LENGTH = 10;
+  /** Length of the headers written with the member length. */
+  final static int HEADER_LENGTH = FIXED_HEADER_LENGTH + 2 + 4 + SUBFIELD_LENGTH;
+  /** Length of a trailer. */
+  final static int TRAILER_LENGTH = 8;
+
+  private GzipMember() {
+  }
+
+  /**
+   * Read a little endian int.
+   * @param array Array containing the int.
+   * @param offset Offset of the int into the array.
+   * @return The int.
+   */
+  static int getInt(byte[] array, int offset) {
+    return (array[offset] & 0xff) | (array[offset + 1] & 0xff) << 8
+      | (array[offset + 2] & 0xff) << 16 | (array[offset + 3] & 0xff) << 24;
+  }
+
+  /**
+   * Read a little endian short.
+   * @param array Array containing the short.
+   * @param offset Offset of the short into the array.
+   * @return The unsigned short.
+   */
+  static int getShort(byte[] array, int offset) {
+    return (array[offset] & 0xff) | (array[offset + 1] & 0xff) << 8;
+  }
+
+  /**
+   * Write a little endian int.
+   * @param array Destination array.
+   * @param offset Offset of the int into the array.
+   * @param value The int.
+   */
+  static void putInt(byte[] array, int offset, int value) {
+    array[offset] = (byte)value;
+    array[offset + 1] = (byte)(value >> 8);
+    array[offset + 2] = (byte)(value >> 16);
+    array[offset + 3] = (byte)(value >> 24);
+  }
+
+  /**
+   * Write a header carrying the member length.
+   * @param array Destination array, with room for {@link #HEADER_LENGTH} bytes.
+   * @param memberLength Total length of the member.
+   */
+  static void writeHeader(byte[] array, int memberLength) {
+    array[0] = (byte)ID1;
+    array[1] = (byte)ID2;
+    array[2] = (byte)CM_DEFLATE;
+    array[3] = (byte)FEXTRA;
+    putInt(array, 4, 0);
+    array[8] = 0;
+    array[9] = (byte)OS_UNKNOWN;
+    array[10] = (byte)(2 + 2 + SUBFIELD_LENGTH);
+    array[11] = 0;
+    array[12] = (byte)SI1;
+    array[13] = (byte)SI2;
+    array[14] = (byte)SUBFIELD_LENGTH;
+    array[15] = 0;
+    putInt(array, 16, memberLength);
+  }
+
+  /**
+   * Check the magic of a header.
+   * @param array Array containing the header.
+   * @param length Number of bytes available.
+   * @return True if the bytes start a deflate gzip member.
+   */
+  static boolean isHeader(byte[] array, int length) {
+    return length >= FIXED_HEADER_LENGTH && (array[0] & 0xff) == ID1 && (array[1] & 0xff) == ID2
+      && array[2] == CM_DEFLATE;
+  }
+
+  /**
+   * Find the member length in a header.
+   * @param array Array containing the start of the header.
+   * @param length Number of bytes available.
+   * @return The total length of the member, or -1 if the header does not carry it.
+   */
+  static int getMemberLength(byte[] array, int length) {
+    if(!isHeader(array, length) || (array[3] & FEXTRA) == 0 || length < FIXED_HEADER_LENGTH + 2) {
+      return -1;
+    }
+
+    int end = Math.min(length, FIXED_HEADER_LENGTH + 2 + getShort(array, FIXED_HEADER_LENGTH));
+    for(int i = FIXED_HEADER_LENGTH + 2; i + 4 <= end; ) {
+      int subfieldLength = getShort(array, i + 2);
+      if(array[i] == SI1 && array[i + 1] == SI2 && subfieldLength == SUBFIELD_LENGTH && i + 8 <= end) {
+        return getInt(array, i + 4);
+      }
+      i += 4 + subfieldLength;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Compute the length of a complete header.
+   * @param array Array containing the member.
+   * @param length Length of the member.
+   * @return The length of the header.
+   * @throws IOException If the header is invalid.
+   */
+  static int getHeaderLength(byte[] array, int length) throws IOException {
+    if(!isHeader(array, length)) {
+      throw new IOException("Not in gzip format.");
+    }
+
+    int flags = array[3];
+    int position = FIXED_HEADER_LENGTH;
+
+    if((flags & FEXTRA) != 0) {
+      position += 2 + getShort(array, position);
+    }
+    for(int flag : new int[] {FNAME, FCOMMENT}) {
+      if((flags & flag) != 0) {
+        while(position < length && array[position] != 0) {
+          position++;
+        }
+        position++;
+      }
+    }
+    if((flags & FHCRC) != 0) {
+      position += 2;
+    }
+
+    if(position + TRAILER_LENGTH > length) {
+      throw new IOException("Truncated gzip member.");
+    }
+
+    return position;
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.gzip;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Channel compressing its content into a multi-member gzip stream.
+ *
+ * The data written to the channel is cut into chunks and each chunk
+ * is deflated as an independent gzip member by a task of an executor,
+ * so the compression runs in parallel while the members are written
+ * to the underlying channel in order. The concatenation is a valid
+ * gzip file for any decompressor.
+ *
+ * Each member records its total length in an extra field of its
+ * header, which lets {@link ParallelGzipInputStream} locate and
+ * inflate the members in parallel as well.
+ */
+public class ParallelGzipChannel implements GatheringByteChannel {
+
+  /** Default length of the uncompressed chunks. */
+  public final static int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /** Channel the members are written to. */
+  private final WritableByteChannel out;
+  /** Executor running the compression tasks. */
+  private final ExecutorService executor;
+  /** Length of the uncompressed chunks. */
+  private final int chunkSize;
+  /** Compression level. */
+  private final int level;
+  /** Maximum number of members compressed ahead of the writes. */
+  private final int maxPending;
+
+  /** Members being compressed, in stream order. */
+  private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+  /** Chunks released by the compression tasks. */
+  private final ConcurrentLinkedQueue<byte[]> chunks = new ConcurrentLinkedQueue<byte[]>();
+  /** Chunk being filled. */
+  private byte[] chunk;
+  /** Number of bytes used in the chunk being filled. */
+  private int used = 0;
+  /** Number of members submitted. */
+  private long members = 0;
+  /** True until the channel is closed. */
+  private boolean open = true;
+
+  /**
+   * Constructor compressing with the common pool and the default settings.
+   * @param out Channel the members are written to, closed with this channel.
+   */
+  public ParallelGzipChannel(WritableByteChannel out) {
+    this(out, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Constructor.
+   * @param out Channel the members are written to, closed with this channel.
+   * @param executor Executor running the compression tasks, not shut down by this channel.
+   * @param chunkSize Length of the uncompressed chunks.
+   * @param level Compression level, from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public ParallelGzipChannel(WritableByteChannel out, ExecutorService executor, int chunkSize, int level) {
+    if(chunkSize < 1) {
+      throw new IllegalArgumentException("Invalid chunk size: " + chunkSize + ".");
+    }
+
+    if((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level + ".");
+    }
+
+    this.out = out;
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+    this.level = level;
+    this.maxPending = 2 * (executor instanceof ForkJoinPool ? ((ForkJoinPool)executor).getParallelism()
+      : Runtime.getRuntime().availableProcessors());
+    this.chunk = new byte[chunkSize];
+  }
+
+  /**
+   * Getter for the length of the uncompressed chunks.
+   * @return The length of the uncompressed chunks.
+   */
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    if(!this.open) {
+      throw new ClosedChannelException();
+    }
+
+    int written = src.remaining();
+    while(src.hasRemaining()) {
+      int count = Math.min(this.chunkSize - this.used, src.remaining());
+      src.get(this.chunk, this.used, count);
+      this.used += count;
+
+      if(this.used == this.chunkSize) {
+        this.submit();
+      }
+    }
+
+    return written;
+  }
+
+  @Override
+  public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    long written = 0;
+    for(int i = offset; i < offset + length; i++) {
+      written += this.write(srcs[i]);
+    }
+    return written;
+  }
+
+  @Override
+  public long write(ByteBuffer[] srcs) throws IOException {
+    return this.write(srcs, 0, srcs.length);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return this.open;
+  }
+
+  /**
+   * Compress the pending chunk, write all the members and close the
+   * underlying channel.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    if(!this.open) {
+      return;
+    }
+    this.open = false;
+
+    try {
+      if(this.used > 0 || this.members == 0) {
+        this.submit();
+      }
+      while(!this.pending.isEmpty()) {
+        this.writeMember();
+      }
+    } finally {
+      for(Future<byte[]> future : this.pending) {
+        future.cancel(false);
+      }
+      this.out.close();
+    }
+  }
+
+  /**
+   * Hand the current chunk to a compression task and write the
+   * members exceeding the compression window.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void submit() throws IOException {
+    this.pending.add(this.executor.submit(new Compression(this.chunk, this.used)));
+    this.members++;
+
+    byte[] next = this.chunks.poll();
+    this.chunk = next != null ? next : new byte[this.chunkSize];
+    this.used = 0;
+
+    while(this.pending.size() > this.maxPending) {
+      this.writeMember();
+    }
+  }
+
+  /**
+   * Wait for the oldest member and write it.
+   * @throws IOException If an I/O error occurs or the compression failed.
+   */
+  private void writeMember() throws IOException {
+    byte[] member;
+    try {
+      member = this.pending.poll().get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing.");
+    } catch(ExecutionException e) {
+      throw new IOException("Compression failed.", e.getCause());
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(member, 0, GzipMember.getInt(member, GzipMember.HEADER_LENGTH - 4));
+    while(buffer.hasRemaining()) {
+      this.out.write(buffer);
+    }
+  }
+
+  /**
+   * Task deflating a chunk into a complete gzip member.
+   */
+  private class Compression implements Callable<byte[]> {
+
+    /** Uncompressed data. */
+    private final byte[] data;
+    /** Length of the uncompressed data. */
+    private final int length;
+
+    /**
+     * Constructor.
+     * @param data Uncompressed data, released to the chunk pool once compressed.
+     * @param length Length of the uncompressed data.
+     */
+    Compression(byte[] data, int length) {
+      this.data = data;
+      this.length = length;
+    }
+
+    @Override
+    public byte[] call() {
+      // Bound of zlib compressBound, deflate never expands beyond it
+      int bound = this.length + (this.length >>> 12) + (this.length >>> 14) + (this.length >>> 25) + 13;
+      byte[] member = new byte[GzipMember.HEADER_LENGTH + bound + GzipMember.TRAILER_LENGTH];
+      int position = GzipMember.HEADER_LENGTH;
+
+      Deflater deflater = new Deflater(ParallelGzipChannel.this.level, true);
+      try {
+        deflater.setInput(this.data, 0, this.length);
+        deflater.finish();
+        while(!deflater.finished()) {
+          if(position == member.length - GzipMember.TRAILER_LENGTH) {
+            member = Arrays.copyOf(member, member.length + (member.length >>> 1));
+          }
+          position += deflater.deflate(member, position, member.length - GzipMember.TRAILER_LENGTH - position);
+        }
+      } finally {
+        deflater.end();
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(this.data, 0, this.length);
+      ParallelGzipChannel.this.chunks.offer(this.data);
+
+      GzipMember.putInt(member, position, (int)crc.getValue());
+      GzipMember.putInt(member, position + 4, this.length);
+      GzipMember.writeHeader(member, position + GzipMember.TRAILER_LENGTH);
+
+      return member;
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.gzip;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream decompressing a gzip file.
+ *
+ * The members carrying their length, as written by
+ * {@link ParallelGzipChannel}, are located from their headers
+ * and inflated in parallel by tasks of an executor, then served
+ * in order. From the first member without its length, the rest
+ * of the file is decompressed sequentially by a
+ * {@link GZIPInputStream}, so any gzip file can be read.
+ *
+ * As with {@link GZIPInputStream}, bytes after the last member which
+ * do not start a gzip header, such as the padding of a transfer, end
+ * the data.
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+  /** Length of the buffer of the sequential decompression. */
+  private final static int SEQUENTIAL_BUFFER_SIZE = 1 << 16;
+  /** Maximum expansion of deflate, a 258 bytes match coded on at least two bits. */
+  private final static int MAX_EXPANSION = 1032;
+
+  /** Channel of the compressed file. */
+  private final FileChannel channel;
+  /** Executor running the decompression tasks. */
+  private final ExecutorService executor;
+  /** Maximum number of members inflated ahead of the reads. */
+  private final int maxPending;
+  /** Length of the compressed file. */
+  private final long size;
+
+  /** Members being inflated, in stream order. */
+  private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+  /** Position of the next member to schedule. */
+  private long position = 0;
+  /** True once a member without its length has been found. */
+  private boolean sequential = false;
+  /** Decompressed content of the current member. */
+  private byte[] current = new byte[0];
+  /** Position into the current member. */
+  private int offset = 0;
+  /** Sequential decompression of the remaining members. */
+  private InputStream fallback = null;
+  /** Buffer of the member headers. */
+  private final byte[] header = new byte[GzipMember.HEADER_LENGTH + 256];
+  /** Buffer of the single byte reads. */
+  private final byte[] single = new byte[1];
+
+  /**
+   * Constructor inflating with the common pool.
+   * @param path Path of the gzip file.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ParallelGzipInputStream(Path path) throws IOException {
+    this(path, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the gzip file.
+   * @param executor Executor running the decompression tasks, not shut down by this stream.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ParallelGzipInputStream(Path path, ExecutorService executor) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.executor = executor;
+    this.maxPending = 2 * (executor instanceof ForkJoinPool ? ((ForkJoinPool)executor).getParallelism()
+      : Runtime.getRuntime().availableProcessors());
+    this.size = this.channel.size();
+  }
+
+  @Override
+  public int read() throws IOException {
+    return this.read(this.single, 0, 1) == 1 ? this.single[0] & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if(len == 0) {
+      return 0;
+    }
+
+    while(true) {
+      if(this.offset < this.current.length) {
+        int count = Math.min(len, this.current.length - this.offset);
+        System.arraycopy(this.current, this.offset, b, off, count);
+        this.offset += count;
+        return count;
+      }
+
+      if(this.fallback != null) {
+        return this.fallback.read(b, off, len);
+      }
+
+      this.schedule();
+      if(this.pending.isEmpty()) {
+        if(this.position >= this.size || !this.startsMember()) {
+          this.position = this.size;
+          return -1;
+        }
+        this.channel.position(this.position);
+        this.fallback = new GZIPInputStream(new BufferedInputStream(Channels.newInputStream(this.channel),
+          SEQUENTIAL_BUFFER_SIZE), SEQUENTIAL_BUFFER_SIZE);
+        continue;
+      }
+
+      this.current = this.await(this.pending.poll());
+      this.offset = 0;
+    }
+  }
+
+  @Override
+  public int available() throws IOException {
+    if(this.offset < this.current.length) {
+      return this.current.length - this.offset;
+    }
+    return this.fallback != null ? this.fallback.available() : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for(Future<byte[]> future : this.pending) {
+      future.cancel(false);
+    }
+    this.pending.clear();
+
+    if(this.fallback != null) {
+      this.fallback.close();
+    }
+    this.channel.close();
+  }
+
+  /**
+   * Submit the decompression of the next members carrying their length.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void schedule() throws IOException {
+    byte[] header = this.header;
+    while(!this.sequential && this.pending.size() < this.maxPending && this.position < this.size) {
+      int count = this.readFully(header, this.position, (int)Math.min(header.length, this.size - this.position));
+      int length = GzipMember.getMemberLength(header, count);
+
+      if(length < GzipMember.HEADER_LENGTH + GzipMember.TRAILER_LENGTH || length > this.size - this.position) {
+        this.sequential = true;
+        break;
+      }
+
+      this.pending.add(this.executor.submit(new Decompression(this.position, length)));
+      this.position += length;
+    }
+  }
+
+  /**
+   * Check the bytes left after the members carrying their length.
+   * The first member is always decompressed, to report a file which is
+   * not in gzip format.
+   * @return True if the bytes start a gzip member, false if they are trailing garbage.
+   * @throws IOException If an I/O error occurs.
+   */
+  private boolean startsMember() throws IOException {
+    if(this.position == 0) {
+      return true;
+    }
+
+    int count = this.readFully(this.header, this.position,
+      (int)Math.min(GzipMember.FIXED_HEADER_LENGTH, this.size - this.position));
+    return GzipMember.isHeader(this.header, count);
+  }
+
+  /**
+   * Wait for a member.
+   * @param future Decompression of the member.
+   * @return The content of the member.
+   * @throws IOException If an I/O error occurs or the member is invalid.
+   */
+  private byte[] await(Future<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while decompressing.");
+    } catch(ExecutionException e) {
+      if(e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException("Decompression failed.", e.getCause());
+    }
+  }
+
+  /**
+   * Read bytes of the file at a position.
+   * @param array Destination array.
+   * @param position Position into the file.
+   * @param length Number of bytes to read.
+   * @return The number of bytes read, less than length at the end of the file.
+   * @throws IOException If an I/O error occurs.
+   */
+  private int readFully(byte[] array, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(array, 0, length);
+    while(buffer.hasRemaining()) {
+      if(this.channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+    return buffer.position();
+  }
+
+  /**
+   * Task inflating a complete gzip member.
+   */
+  private class Decompression implements Callable<byte[]> {
+
+    /** Position of the member into the file. */
+    private final long position;
+    /** Length of the member. */
+    private final int length;
+
+    /**
+     * Constructor.
+     * @param position Position of the member into the file.
+     * @param length Length of the member.
+     */
+    Decompression(long position, int length) {
+      this.position = position;
+      this.length = length;
+    }
+
+    @Override
+    public byte[] call() throws IOException {
+      byte[] member = new byte[this.length];
+      if(ParallelGzipInputStream.this.readFully(member, this.position, this.length) < this.length) {
+        throw new EOFException("Truncated gzip member at offset " + this.position + ".");
+      }
+
+      int headerLength = GzipMember.getHeaderLength(member, this.length);
+      int trailer = this.length - GzipMember.TRAILER_LENGTH;
+      int size = GzipMember.getInt(member, trailer + 4);
+      if(size < 0 || size > (long)MAX_EXPANSION * (trailer - headerLength)) {
+        throw new IOException("Invalid gzip member size " + (size & 0xffffffffL)
+          + " at offset " + this.position + ".");
+      }
+      byte[] data = new byte[size];
+
+      Inflater inflater = new Inflater(true);
+      try {
+        inflater.setInput(member, headerLength, trailer - headerLength);
+        int count = 0;
+        byte[] extra = new byte[1];
+        while(!inflater.finished()) {
+          int inflated = count < data.length ? inflater.inflate(data, count, data.length - count)
+            : inflater.inflate(extra);
+          if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          count += inflated;
+        }
+        if(count != data.length || !inflater.finished() || inflater.getRemaining() != 0) {
+          throw new IOException("Corrupt gzip member at offset " + this.position + ".");
+        }
+      } catch(DataFormatException e) {
+        throw new IOException("Corrupt gzip member at offset " + this.position + ".", e);
+      } finally {
+        inflater.end();
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(data, 0, data.length);
+      if((int)crc.getValue() != GzipMember.getInt(member, trailer)) {
+        throw new IOException("CRC mismatch in gzip member at offset " + this.position + ".");
+      }
+
+      return data;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non negative values with power of two buckets.
+ *
+ * Bucket 0 counts the value 0 and bucket i counts the values
+ * from 2^(i-1) to 2^i - 1. The buckets are striped counters,
+ * recording a value is lock free and does not allocate.
+ */
+public class Histogram {
+
+  /** Number of buckets. */
+  public final static int BUCKETS = 64;
+
+  /** Counters of the buckets. */
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  /** Sum of the recorded values. */
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Constructor.
+   */
+  public Histogram() {
+    for(int i = 0; i < BUCKETS; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Compute the bucket of a value.
+   * @param value Value, negative values are counted as 0.
+   * @return The index of the bucket.
+   */
+  public static int getBucket(long value) {
+    return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Compute the largest value of a bucket.
+   * @param bucket Index of the bucket.
+   * @return The largest value counted by the bucket.
+   */
+  public static long getUpperBound(int bucket) {
+    return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+
+  /**
+   * Record a value.
+   * @param value Value to record.
+   */
+  public void record(long value) {
+    this.buckets[getBucket(value)].increment();
+    this.sum.add(Math.max(value, 0));
+  }
+
+  /**
+   * Record several occurrences of a value.
+   * @param value Value to record.
+   * @param count Number of occurrences.
+   */
+  public void record(long value, long count) {
+    this.buckets[getBucket(value)].add(count);
+    this.sum.add(Math.max(value, 0) * count);
+  }
+
+  /**
+   * Getter for the number of recorded values.
+   * @return The number of recorded values.
+   */
+  public long getCount() {
+    long count = 0;
+    for(LongAdder bucket : this.buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  /**
+   * Getter for the sum of the recorded values.
+   * @return The sum of the recorded values.
+   */
+  public long getSum() {
+    return this.sum.sum();
+  }
+
+  /**
+   * Getter for the mean of the recorded values.
+   * @return The mean of the recorded values, 0 if no value was recorded.
+   */
+  public double getMean() {
+    long count = this.getCount();
+    return count == 0 ? 0 : (double)this.getSum() / count;
+  }
+
+  /**
+   * Take a snapshot of the buckets.
+   * @return The count of each bucket.
+   */
+  public long[] getCounts() {
+    long[] counts = new long[BUCKETS];
+    for(int i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets[i].sum();
+    }
+    return counts;
+  }
+
+  /**
+   * Estimate a percentile.
+   * @param percentile Percentile, from 0 to 100.
+   * @return The upper bound of the bucket holding the percentile, 0 if no value was recorded.
+   */
+  public long getPercentile(double percentile) {
+    if(percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile + ".");
+    }
+
+    long[] counts = this.getCounts();
+    long total = 0;
+    for(long count : counts) {
+      total += count;
+    }
+    if(total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for(int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if(seen >= rank) {
+        return getUpperBound(i);
+      }
+    }
+    return getUpperBound(BUCKETS - 1);
+  }
+
+  /**
+   * Reset the histogram.
+   */
+  public void reset() {
+    for(LongAdder bucket : this.buckets) {
+      bucket.reset();
+    }
+    this.sum.reset();
+  }
+}
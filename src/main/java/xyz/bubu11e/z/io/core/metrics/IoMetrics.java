@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+
+/**
+ * Counters of the activity of readers and writers.
+ *
+ * Metrics are opt-in: they are only collected by the readers and
+ * writers they are given to. All the counters are striped, so a
+ * single instance can be shared by concurrent readers, and
+ * updating them does not allocate. Blocks and failures are also
+ * forwarded to the registered {@link MetricsListener}.
+ *
+ * The counters can be published through JMX with {@link #register(String)}.
+ */
+public class IoMetrics implements IoMetricsMXBean {
+
+  /** Domain of the registered MBeans. */
+  public final static String JMX_DOMAIN = "xyz.bubu11e.z.io";
+
+  /** Number of records. */
+  private final LongAdder records = new LongAdder();
+  /** Number of blocks. */
+  private final LongAdder blocks = new LongAdder();
+  /** Number of bytes. */
+  private final LongAdder bytes = new LongAdder();
+  /** Number of spanned segments. */
+  private final LongAdder spannedSegments = new LongAdder();
+  /** Number of descriptor word failures. */
+  private final LongAdder descriptorWordFailures = new LongAdder();
+
+  /** Histogram of the record lengths. */
+  private final Histogram recordLengths = new Histogram();
+  /** Histogram of the block lengths. */
+  private final Histogram blockLengths = new Histogram();
+  /** Histogram of the block decode latencies in nanoseconds. */
+  private final Histogram blockLatencies = new Histogram();
+
+  /** Registered listeners, replaced on each change. */
+  private volatile MetricsListener[] listeners = new MetricsListener[0];
+  /** Name of the registered MBean. */
+  private ObjectName objectName = null;
+
+  /**
+   * Count a record.
+   * @param length Length of the record.
+   */
+  public void addRecord(int length) {
+    this.records.increment();
+    this.recordLengths.record(length);
+  }
+
+  /**
+   * Count records of the same length.
+   * @param count Number of records.
+   * @param length Length of the records.
+   */
+  public void addRecords(int count, int length) {
+    this.records.add(count);
+    this.recordLengths.record(length, count);
+  }
+
+  /**
+   * Count bytes which are not part of a counted block.
+   * @param length Number of bytes.
+   */
+  public void addBytes(long length) {
+    this.bytes.add(length);
+  }
+
+  /**
+   * Count a block which was not timed.
+   * @param length Length of the block including its BDW.
+   */
+  public void addBlock(int length) {
+    this.blocks.increment();
+    this.bytes.add(length);
+    this.blockLengths.record(length);
+
+    MetricsListener[] listeners = this.listeners;
+    for(int i = 0; i < listeners.length; i++) {
+      listeners[i].onBlock(length, -1);
+    }
+  }
+
+  /**
+   * Count a block.
+   * @param length Length of the block including its BDW.
+   * @param nanos Time spent decoding the block.
+   */
+  public void addBlock(int length, long nanos) {
+    this.blocks.increment();
+    this.bytes.add(length);
+    this.blockLengths.record(length);
+    this.blockLatencies.record(nanos);
+
+    MetricsListener[] listeners = this.listeners;
+    for(int i = 0; i < listeners.length; i++) {
+      listeners[i].onBlock(length, nanos);
+    }
+  }
+
+  /**
+   * Count a segment of a spanned record.
+   */
+  public void addSpannedSegment() {
+    this.spannedSegments.increment();
+  }
+
+  /**
+   * Count a descriptor word which failed its validation.
+   * @param position Position of the descriptor word into the dataset.
+   * @param e The validation failure.
+   */
+  public void addDescriptorWordFailure(long position, DescriptorWordException e) {
+    this.descriptorWordFailures.increment();
+
+    MetricsListener[] listeners = this.listeners;
+    for(int i = 0; i < listeners.length; i++) {
+      listeners[i].onDescriptorWordFailure(position, e);
+    }
+  }
+
+  /**
+   * Register a listener.
+   * @param listener Listener to register.
+   */
+  public synchronized void addListener(MetricsListener listener) {
+    MetricsListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+    listeners[listeners.length - 1] = listener;
+    this.listeners = listeners;
+  }
+
+  /**
+   * Unregister a listener.
+   * @param listener Listener to unregister.
+   */
+  public synchronized void removeListener(MetricsListener listener) {
+    for(int i = 0; i < this.listeners.length; i++) {
+      if(this.listeners[i] == listener) {
+        MetricsListener[] listeners = new MetricsListener[this.listeners.length - 1];
+        System.arraycopy(this.listeners, 0, listeners, 0, i);
+        System.arraycopy(this.listeners, i + 1, listeners, i, listeners.length - i);
+        this.listeners = listeners;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Publish the metrics on the platform MBean server.
+   * @param name Name of the metrics, for instance the name of the dataset.
+   * @return The name of the MBean.
+   * @throws JMException If the MBean cannot be registered.
+   */
+  public synchronized ObjectName register(String name) throws JMException {
+    if(this.objectName != null) {
+      throw new IllegalStateException("Metrics already registered as " + this.objectName + ".");
+    }
+
+    ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=IoMetrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    this.objectName = objectName;
+
+    return objectName;
+  }
+
+  /**
+   * Remove the metrics from the platform MBean server.
+   * @throws JMException If the MBean cannot be unregistered.
+   */
+  public synchronized void unregister() throws JMException {
+    if(this.objectName == null) {
+      return;
+    }
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if(server.isRegistered(this.objectName)) {
+      server.unregisterMBean(this.objectName);
+    }
+    this.objectName = null;
+  }
+
+  /**
+   * Getter for the record length histogram.
+   * @return The histogram of the record lengths.
+   */
+  public Histogram getRecordLengths() {
+    return this.recordLengths;
+  }
+
+  /**
+   * Getter for the block length histogram.
+   * @return The histogram of the block lengths.
+   */
+  public Histogram getBlockLengths() {
+    return this.blockLengths;
+  }
+
+  /**
+   * Getter for the block decode latency histogram.
+   * @return The histogram of the block decode latencies in nanoseconds.
+   */
+  public Histogram getBlockLatencies() {
+    return this.blockLatencies;
+  }
+
+  @Override
+  public long getRecords() {
+    return this.records.sum();
+  }
+
+  @Override
+  public long getBlocks() {
+    return this.blocks.sum();
+  }
+
+  @Override
+  public long getBytes() {
+    return this.bytes.sum();
+  }
+
+  @Override
+  public long getSpannedSegments() {
+    return this.spannedSegments.sum();
+  }
+
+  @Override
+  public long getDescriptorWordFailures() {
+    return this.descriptorWordFailures.sum();
+  }
+
+  @Override
+  public double getMeanRecordLength() {
+    return this.recordLengths.getMean();
+  }
+
+  @Override
+  public long[] getRecordLengthHistogram() {
+    return this.recordLengths.getCounts();
+  }
+
+  @Override
+  public long[] getBlockLengthHistogram() {
+    return this.blockLengths.getCounts();
+  }
+
+  @Override
+  public long[] getBlockLatencyHistogram() {
+    return this.blockLatencies.getCounts();
+  }
+
+  @Override
+  public long getBlockLatencyP50() {
+    return this.blockLatencies.getPercentile(50);
+  }
+
+  @Override
+  public long getBlockLatencyP99() {
+    return this.blockLatencies.getPercentile(99);
+  }
+
+  @Override
+  public void reset() {
+    this.records.reset();
+    this.blocks.reset();
+    this.bytes.reset();
+    this.spannedSegments.reset();
+    this.descriptorWordFailures.reset();
+    this.recordLengths.reset();
+    this.blockLengths.reset();
+    this.blockLatencies.reset();
+  }
+}
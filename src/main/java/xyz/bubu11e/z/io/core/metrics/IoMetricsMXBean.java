@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.metrics;
+
+/**
+ * Management interface of {@link IoMetrics}.
+ *
+ * Histograms are published as the counts of their power of two
+ * buckets, see {@link Histogram}.
+ */
+public interface IoMetricsMXBean {
+
+  /**
+   * Getter for the number of records.
+   * @return The number of records read or written.
+   */
+  public long getRecords();
+
+  /**
+   * Getter for the number of blocks.
+   * @return The number of blocks read or written.
+   */
+  public long getBlocks();
+
+  /**
+   * Getter for the number of bytes.
+   * @return The number of dataset bytes read or written.
+   */
+  public long getBytes();
+
+  /**
+   * Getter for the number of spanned segments.
+   * @return The number of segments of spanned records.
+   */
+  public long getSpannedSegments();
+
+  /**
+   * Getter for the number of descriptor word failures.
+   * @return The number of descriptor words which failed their validation.
+   */
+  public long getDescriptorWordFailures();
+
+  /**
+   * Getter for the mean record length.
+   * @return The mean length of the records.
+   */
+  public double getMeanRecordLength();
+
+  /**
+   * Getter for the record length histogram.
+   * @return The counts of the record length buckets.
+   */
+  public long[] getRecordLengthHistogram();
+
+  /**
+   * Getter for the block length histogram.
+   * @return The counts of the block length buckets.
+   */
+  public long[] getBlockLengthHistogram();
+
+  /**
+   * Getter for the block decode latency histogram.
+   * @return The counts of the latency buckets, in nanoseconds.
+   */
+  public long[] getBlockLatencyHistogram();
+
+  /**
+   * Getter for the median block decode latency.
+   * @return The upper bound of the median latency bucket, in nanoseconds.
+   */
+  public long getBlockLatencyP50();
+
+  /**
+   * Getter for the 99th percentile of the block decode latency.
+   * @return The upper bound of the 99th percentile latency bucket, in nanoseconds.
+   */
+  public long getBlockLatencyP99();
+
+  /**
+   * Reset all the counters.
+   */
+  public void reset();
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.metrics;
+
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+
+/**
+ * Listener of the events counted by {@link IoMetrics}.
+ *
+ * Listeners are called synchronously by the reader or writer
+ * thread, so they must be cheap. Records are not notified one
+ * by one, only blocks and failures are.
+ */
+public interface MetricsListener {
+
+  /**
+   * Called when a block has been read or written.
+   * @param length Length of the block including its BDW.
+   * @param nanos Time spent decoding the block, or -1 if it was not timed.
+   */
+  public void onBlock(int length, long nanos);
+
+  /**
+   * Called when a descriptor word failed its validation.
+   * @param position Position of the descriptor word into the dataset.
+   * @param e The validation failure.
+   */
+  public void onDescriptorWordFailure(long position, DescriptorWordException e);
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import xyz.bubu11e.z.io.core.filter.RecordPredicate;
+import xyz.bubu11e.z.io.core.metrics.IoMetrics;
+
+/**
+ * Base class of the record readers.
+ *
+ * Readers only implement the {@link RecordCursor} contract,
+ * {@link Reader#read()} is provided on top of it as a
+ * convenience copying the current record.
+ *
+ * Readers collect metrics once given an {@link IoMetrics}.
+ *
+ * Readers given a filter only emit the records matching it. The filter
+ * is evaluated in place on the record bytes, the other records are
+ * skipped without being copied.
+ *
+ * Besides {@link #read()}, records can be copied into buffers owned
+ * by the caller with {@link #read(byte[], int)} and
+ * {@link #readInto(ByteBuffer)}, which return a status instead of
+ * allocating. Readers are strict by default and throw a
+ * {@link ReaderException} on invalid data. In lenient mode, the invalid
+ * data is skipped instead and counted by {@link #getSkippedCount()}:
+ * {@link #next()} and {@link #read()} go on with the following records,
+ * while the status reads return {@link #INVALID_DESCRIPTOR} once for
+ * each skipped region before going on.
+ *
+ * Subclasses move through the records with {@link #advance()}, which
+ * stops on each skipped region.
+ */
+public abstract class AbstractRecordReader implements Reader, RecordCursor {
+
+  /** Status returned at the end of the dataset. */
+  public final static int END_OF_DATA = -1;
+  /** Status returned when the destination cannot hold the record. */
+  public final static int SHORT_BUFFER = -2;
+  /** Status returned by the status reads in lenient mode when invalid data has been skipped. */
+  public final static int INVALID_DESCRIPTOR = -3;
+
+  /** Metrics of the reader, null if disabled. */
+  protected IoMetrics metrics = null;
+
+  /** Filter of the records, null to emit all of them. */
+  protected RecordPredicate filter = null;
+
+  /** True if invalid data is skipped instead of throwing. */
+  protected boolean lenient = false;
+  /** True if the last advance stopped on invalid data, in lenient mode. */
+  protected boolean invalid = false;
+  /** Number of invalid regions skipped in lenient mode. */
+  private long skipped = 0;
+  /** True if the current record has not been copied yet because the destination was too short. */
+  private boolean pending = false;
+
+  /** Buffer the view has been created from. */
+  private ByteBuffer viewed = null;
+  /** Reusable view of the current record. */
+  private ByteBuffer view = null;
+
+  /**
+   * Setter for the metrics.
+   * @param metrics Metrics receiving the activity of the reader, or null to disable them.
+   */
+  public void setMetrics(IoMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Getter for the metrics.
+   * @return The metrics of the reader, or null if disabled.
+   */
+  public IoMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  /**
+   * Setter for the filter.
+   * @param filter Predicate the emitted records must match, or null to emit all the records.
+   */
+  public void setFilter(RecordPredicate filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Getter for the filter.
+   * @return The predicate the emitted records must match, or null.
+   */
+  public RecordPredicate getFilter() {
+    return this.filter;
+  }
+
+  /**
+   * Setter for the lenient mode.
+   * @param lenient True to skip invalid data, false to throw a {@link ReaderException}.
+   */
+  public void setLenient(boolean lenient) {
+    this.lenient = lenient;
+  }
+
+  /**
+   * Getter for the lenient mode.
+   * @return True if invalid data is skipped, false if it throws.
+   */
+  public boolean isLenient() {
+    return this.lenient;
+  }
+
+  /**
+   * Getter for the number of skipped regions.
+   * @return The number of invalid regions skipped in lenient mode.
+   */
+  public long getSkippedCount() {
+    return this.skipped;
+  }
+
+  /**
+   * Move to the next record, skipping invalid data in lenient mode.
+   * @return True if a record is available, false at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid, in strict mode.
+   */
+  @Override
+  public boolean next() throws IOException, ReaderException {
+    while(!this.advance()) {
+      if(!this.invalid) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Move to the next record, stopping on invalid data in lenient mode.
+   * Implementations reset {@link #invalid} first and report the invalid
+   * data through {@link #invalidate(String, Exception)} or {@link #skipped()}.
+   * @return True if a record is available, false at the end of the dataset
+   * or with {@link #invalid} set when invalid data has been skipped.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid, in strict mode.
+   */
+  protected abstract boolean advance() throws IOException, ReaderException;
+
+  /**
+   * Flag and count a region of invalid data skipped in lenient mode.
+   */
+  protected void skipped() {
+    this.invalid = true;
+    this.skipped++;
+  }
+
+  /**
+   * Report invalid data: throw in strict mode, flag it in lenient mode.
+   * The caller is responsible for skipping the data before returning false from {@link #advance()}.
+   * @param message Description of the invalid data.
+   * @param cause Cause of the failure, or null.
+   * @throws ReaderException In strict mode.
+   */
+  protected void invalidate(String message, Exception cause) throws ReaderException {
+    if(!this.lenient) {
+      throw cause == null ? new ReaderException(message) : new ReaderException(message, cause);
+    }
+
+    this.skipped();
+  }
+
+  @Override
+  public ByteBuffer getRecord() {
+    ByteBuffer buffer = this.getBuffer();
+
+    if(buffer != this.viewed) {
+      this.viewed = buffer;
+      this.view = buffer.duplicate();
+    }
+
+    this.view.clear();
+    this.view.position(this.getOffset());
+    this.view.limit(this.getOffset() + this.getLength());
+
+    return this.view;
+  }
+
+  /**
+   * This function will read the next record.
+   * @return A copy of the record, or null at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid.
+   */
+  @Override
+  public byte[] read() throws IOException, ReaderException {
+    if(!this.pending && !this.next()) {
+      return null;
+    }
+
+    this.pending = false;
+    byte[] record = new byte[this.getLength()];
+    this.getRecord().get(record);
+
+    return record;
+  }
+
+  /**
+   * Copy the next record into an array owned by the caller.
+   * When the array is too short, nothing is copied and the same
+   * record is returned by the next call.
+   * @param dst Array receiving the record.
+   * @param off Offset of the record into the array.
+   * @return The length of the record, or {@link #END_OF_DATA}, {@link #SHORT_BUFFER}
+   * or {@link #INVALID_DESCRIPTOR}.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid, in strict mode.
+   */
+  public int read(byte[] dst, int off) throws IOException, ReaderException {
+    if(off < 0 || off > dst.length) {
+      throw new IllegalArgumentException("Invalid offset: " + off + ".");
+    }
+
+    int status = this.fetch();
+
+    if(status != 0) {
+      return status;
+    }
+
+    int length = this.getLength();
+
+    if(dst.length - off < length) {
+      this.pending = true;
+      return SHORT_BUFFER;
+    }
+
+    this.pending = false;
+    ByteBuffer buffer = this.getBuffer();
+
+    if(buffer.hasArray()) {
+      System.arraycopy(buffer.array(), buffer.arrayOffset() + this.getOffset(), dst, off, length);
+    } else {
+      this.getRecord().get(dst, off, length);
+    }
+
+    return length;
+  }
+
+  /**
+   * Copy the next record into a buffer owned by the caller, at its position.
+   * The position of the buffer is moved after the record. When the buffer
+   * is too short, nothing is copied and the same record is returned by the
+   * next call.
+   * @param dst Buffer receiving the record.
+   * @return The length of the record, or {@link #END_OF_DATA}, {@link #SHORT_BUFFER}
+   * or {@link #INVALID_DESCRIPTOR}.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid, in strict mode.
+   */
+  public int readInto(ByteBuffer dst) throws IOException, ReaderException {
+    int status = this.fetch();
+
+    if(status != 0) {
+      return status;
+    }
+
+    int length = this.getLength();
+
+    if(dst.remaining() < length) {
+      this.pending = true;
+      return SHORT_BUFFER;
+    }
+
+    this.pending = false;
+    dst.put(this.getRecord());
+
+    return length;
+  }
+
+  /**
+   * Move to the next record unless the current one is still pending.
+   * @return 0 if a record is available, {@link #END_OF_DATA} or {@link #INVALID_DESCRIPTOR}.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid, in strict mode.
+   */
+  private int fetch() throws IOException, ReaderException {
+    if(this.pending || this.advance()) {
+      return 0;
+    }
+
+    return this.invalid ? INVALID_DESCRIPTOR : END_OF_DATA;
+  }
+}
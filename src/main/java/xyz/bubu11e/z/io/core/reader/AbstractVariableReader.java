@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWordView;
+import xyz.bubu11e.z.io.core.metrics.IoMetrics;
+
+/**
+ * Base class of the variable format readers.
+ *
+ * Blocks are provided by a {@link BlockSource} and the
+ * RDW/SDW chain of each block is walked directly into
+ * the block buffer. Subclasses assemble the segments
+ * into records.
+ *
+ * In lenient mode, an invalid RDW or a segment exceeding its block
+ * skips the rest of the block. A block the source fails to deliver
+ * ends the dataset, unless the source resynchronizes by itself such
+ * as {@link ResyncBlockSource}.
+ *
+ * Between two records, the position of the reader can be saved as a
+ * {@link Checkpoint} and a reader opened on a source starting at the
+ * checkpointed block resumes at the next record.
+ */
+public abstract class AbstractVariableReader extends AbstractRecordReader {
+
+  /** Source of the blocks. */
+  protected final BlockSource source;
+
+  /** View used to decode the RDW in place. */
+  private final RecordDescriptorWordView rdw = new RecordDescriptorWordView();
+
+  /** Buffer containing the current block. */
+  protected ByteBuffer block = null;
+  /** Absolute index of the next RDW into the block buffer. */
+  private int next = 0;
+  /** Absolute index of the end of the current block. */
+  private int end = 0;
+
+  /** Checkpoint the reader has been opened at. */
+  private final Checkpoint origin;
+  /** Number of segments of the first block to skip, read before the checkpoint. */
+  private int skip;
+  /** Number of segments read from the current block. */
+  private int segment = 0;
+
+  /** True once the source has failed in lenient mode. */
+  private boolean failed = false;
+
+  /** Absolute index of the data of the current segment. */
+  protected int segmentOffset = 0;
+  /** Length of the data of the current segment. */
+  protected int segmentLength = 0;
+  /** Position of the RDW of the current segment into the dataset. */
+  protected long segmentPosition = 0;
+
+  /**
+   * Constructor.
+   * @param source Source of the blocks to read.
+   */
+  protected AbstractVariableReader(BlockSource source) {
+    this(source, Checkpoint.START);
+  }
+
+  /**
+   * Constructor resuming at a checkpoint.
+   * @param source Source of the blocks to read, starting at the block of the checkpoint.
+   * @param checkpoint Checkpoint to resume at.
+   */
+  protected AbstractVariableReader(BlockSource source, Checkpoint checkpoint) {
+    this.source = source;
+    this.origin = checkpoint;
+    this.skip = checkpoint.getSegment();
+  }
+
+  /**
+   * Save the position of the reader, after the last record read.
+   * Before the first block, the checkpoint the reader has been opened at
+   * is returned, the start of the dataset by default.
+   * @return The checkpoint of the reader, without output position.
+   */
+  public Checkpoint getCheckpoint() {
+    if(this.block == null) {
+      return this.origin.getOutput() < 0 ? this.origin : this.origin.withOutput(-1);
+    }
+
+    return new Checkpoint(this.source.getBlockPosition(), this.segment, -1);
+  }
+
+  /**
+   * Move to the next block containing at least one segment.
+   * @return True if a block is available, false at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a block is invalid.
+   */
+  private boolean nextBlock() throws IOException, ReaderException {
+    while(this.next >= this.end) {
+      if(this.metrics != null) {
+        if(!this.nextMeteredBlock(this.metrics)) {
+          return false;
+        }
+      } else if(!this.source.nextBlock()) {
+        return false;
+      }
+
+      this.block = this.source.getBlockBuffer();
+      this.next = this.source.getBlockOffset() + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+      this.end = this.source.getBlockOffset() + this.source.getBlockLength();
+      this.segment = 0;
+
+      if(this.skip > 0) {
+        this.skipSegments();
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Skip the segments of the first block read before the checkpoint.
+   * @throws ReaderException If the block does not hold these segments.
+   */
+  private void skipSegments() throws ReaderException {
+    while(this.segment < this.skip) {
+      if(this.end - this.next < DescriptorWord.DESCRIPTOR_WORD_LENGTH || !this.rdw.tryBind(this.block, this.next)
+          || this.end - this.next < this.rdw.getSegmentLength()) {
+        throw new ReaderException("Invalid checkpoint: the block at offset " + this.source.getBlockPosition()
+          + " does not hold " + this.skip + " segments.");
+      }
+
+      this.next += this.rdw.getSegmentLength();
+      this.segment++;
+    }
+
+    this.skip = 0;
+  }
+
+  /**
+   * Move to the next block of the source, counting it and its decode time.
+   * @param metrics Metrics receiving the block.
+   * @return True if a block is available, false at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the block is invalid.
+   */
+  private boolean nextMeteredBlock(IoMetrics metrics) throws IOException, ReaderException {
+    long start = System.nanoTime();
+    boolean available;
+
+    try {
+      available = this.source.nextBlock();
+    } catch(ReaderException e) {
+      if(e.getCause() instanceof DescriptorWordException) {
+        metrics.addDescriptorWordFailure(this.block != null ? this.position(this.end) : 0,
+          (DescriptorWordException)e.getCause());
+      }
+      throw e;
+    }
+
+    if(available) {
+      metrics.addBlock(this.source.getBlockLength(), System.nanoTime() - start);
+    }
+
+    return available;
+  }
+
+  /**
+   * Position of an index of the current block into the dataset.
+   * @param index Absolute index into the block buffer.
+   * @return The byte offset into the dataset.
+   */
+  private long position(int index) {
+    return this.source.getBlockPosition() + (index - this.source.getBlockOffset());
+  }
+
+  /**
+   * Move to the next block, a failure of the source ending the dataset in lenient mode.
+   * @return True if a block is available, false at the end of the dataset or on a failure.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a block is invalid, in strict mode.
+   */
+  private boolean nextAvailableBlock() throws IOException, ReaderException {
+    if(this.failed) {
+      return false;
+    }
+
+    try {
+      return this.nextBlock();
+    } catch(ReaderException e) {
+      if(!this.lenient) {
+        throw e;
+      }
+      this.skipped();
+      this.failed = true;
+      return false;
+    }
+  }
+
+  /**
+   * Report the RDW which failed to bind. The exception carrying the reason
+   * is only built in strict mode or for the metrics.
+   * @throws ReaderException In strict mode.
+   */
+  private void invalidRdw() throws ReaderException {
+    if(this.lenient && this.metrics == null) {
+      this.skipped();
+      return;
+    }
+
+    try {
+      this.rdw.bind(this.block, this.next);
+    } catch(DescriptorWordException e) {
+      if(this.metrics != null) {
+        this.metrics.addDescriptorWordFailure(this.segmentPosition, e);
+      }
+      this.invalidate("Invalid RDW at offset " + this.segmentPosition + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Move to the next segment.
+   * On success, the segment data is described by {@link #segmentOffset}
+   * and {@link #segmentLength} into {@link #block}.
+   * In lenient mode, null is also returned with {@link #invalid} set when
+   * invalid data has been skipped.
+   * @return The code of the segment, or null at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid, in strict mode.
+   */
+  protected RecordDescriptorWord.Code nextSegment() throws IOException, ReaderException {
+    if(!this.nextAvailableBlock()) {
+      return null;
+    }
+
+    this.segmentPosition = this.position(this.next);
+
+    if(this.end - this.next < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      this.invalidate("Truncated RDW at offset " + this.segmentPosition + ".", null);
+      this.next = this.end;
+      return null;
+    }
+
+    if(!this.rdw.tryBind(this.block, this.next)) {
+      this.invalidRdw();
+      this.next = this.end;
+      return null;
+    }
+
+    int length = this.rdw.getSegmentLength();
+    RecordDescriptorWord.Code code = this.rdw.getSegmentCode();
+
+    if(this.end - this.next < length) {
+      this.invalidate("Segment at offset " + this.segmentPosition
+        + " exceeds its block: " + length + " bytes expected, " + (this.end - this.next) + " available.", null);
+      this.next = this.end;
+      return null;
+    }
+
+    if(this.metrics != null && code != RecordDescriptorWord.Code.COMPLETE_RECORD) {
+      this.metrics.addSpannedSegment();
+    }
+
+    this.segmentOffset = this.next + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+    this.segmentLength = length - DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+    this.next += length;
+    this.segment++;
+
+    return code;
+  }
+
+  /**
+   * Close the underlying block source.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.source.close();
+  }
+}
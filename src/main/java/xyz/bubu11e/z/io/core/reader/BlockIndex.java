@@ -0,0 +1,429 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+
+/**
+ * Sparse block index of a variable format dataset.
+ *
+ * Every interval blocks, the index keeps the position of the block
+ * and the ordinal of the first record starting in it. The index is
+ * built in a single pass over the descriptor words, can be saved
+ * into a sidecar file, and is used to open a reader at a record
+ * ordinal or on a byte range without scanning the dataset from its
+ * start.
+ *
+ * In a VBS dataset, only blocks starting with a complete record or
+ * a first segment are indexed.
+ */
+public class BlockIndex {
+
+  /** Default number of blocks between two index entries. */
+  public final static int DEFAULT_INTERVAL = 64;
+  /** Extension of the sidecar files. */
+  public final static String SIDECAR_EXTENSION = ".idx";
+
+  /** Magic number of the index files, "ZIDX". */
+  private final static int MAGIC = 0x5a494458;
+  /** Version of the index file format. */
+  private final static int VERSION = 1;
+
+  /** Number of blocks between two entries. */
+  private final int interval;
+  /** Size of the indexed dataset. */
+  private final long datasetSize;
+  /** Last modification time of the indexed dataset. */
+  private final long lastModified;
+  /** Number of records of the dataset. */
+  private final long recordCount;
+  /** True if the dataset contains spanned records. */
+  private final boolean spanned;
+  /** Position of the block of each entry. */
+  private final long[] positions;
+  /** Ordinal of the first record of the block of each entry. */
+  private final long[] ordinals;
+
+  /**
+   * Constructor.
+   */
+  private BlockIndex(int interval, long datasetSize, long lastModified, long recordCount,
+      boolean spanned, long[] positions, long[] ordinals) {
+    this.interval = interval;
+    this.datasetSize = datasetSize;
+    this.lastModified = lastModified;
+    this.recordCount = recordCount;
+    this.spanned = spanned;
+    this.positions = positions;
+    this.ordinals = ordinals;
+  }
+
+  /**
+   * Build the index of a dataset with the default interval.
+   * @param dataset Path of the dataset to index.
+   * @return The index of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid.
+   */
+  public static BlockIndex build(Path dataset) throws IOException, ReaderException {
+    return build(dataset, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Build the index of a dataset.
+   * @param dataset Path of the dataset to index.
+   * @param interval Number of blocks between two index entries.
+   * @return The index of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid.
+   */
+  public static BlockIndex build(Path dataset, int interval) throws IOException, ReaderException {
+    if(interval < 1) {
+      throw new IllegalArgumentException("Invalid interval: " + interval + ".");
+    }
+
+    long lastModified = Files.getLastModifiedTime(dataset).toMillis();
+    long[] positions = new long[64];
+    long[] ordinals = new long[64];
+    int count = 0;
+    long ordinal = 0;
+    long block = -1;
+    long blocks = 0;
+    boolean spanned = false;
+
+    MappedBlockSource source = new MappedBlockSource(dataset);
+    try(VBSReader walker = new VBSReader(source)) {
+      RecordDescriptorWord.Code code = null;
+
+      while((code = walker.nextSegment()) != null) {
+        boolean start = code == RecordDescriptorWord.Code.COMPLETE_RECORD
+          || code == RecordDescriptorWord.Code.FIRST_SEGMENT;
+
+        if(source.getBlockPosition() != block) {
+          block = source.getBlockPosition();
+
+          if(blocks++ % interval == 0 || (count > 0 && positions[count - 1] < 0)) {
+            if(count == positions.length) {
+              positions = Arrays.copyOf(positions, count * 2);
+              ordinals = Arrays.copyOf(ordinals, count * 2);
+            }
+
+            if(count > 0 && positions[count - 1] < 0) {
+              count--;
+            }
+
+            positions[count] = start ? block : -1;
+            ordinals[count] = ordinal;
+            count++;
+          }
+        }
+
+        spanned |= !start || code == RecordDescriptorWord.Code.FIRST_SEGMENT;
+        if(start) {
+          ordinal++;
+        }
+      }
+    }
+
+    if(count > 0 && positions[count - 1] < 0) {
+      count--;
+    }
+
+    return new BlockIndex(interval, Files.size(dataset), lastModified, ordinal, spanned,
+      Arrays.copyOf(positions, count), Arrays.copyOf(ordinals, count));
+  }
+
+  /**
+   * Getter for the sidecar file of a dataset.
+   * @param dataset Path of the dataset.
+   * @return The path of the index file of the dataset.
+   */
+  public static Path getSidecar(Path dataset) {
+    return dataset.resolveSibling(dataset.getFileName().toString() + SIDECAR_EXTENSION);
+  }
+
+  /**
+   * Load the sidecar index of a dataset, building and saving it
+   * if it is missing or out of date.
+   * @param dataset Path of the dataset.
+   * @return The index of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid.
+   */
+  public static BlockIndex open(Path dataset) throws IOException, ReaderException {
+    Path sidecar = getSidecar(dataset);
+
+    if(Files.exists(sidecar)) {
+      try {
+        BlockIndex index = load(sidecar);
+        if(index.isValidFor(dataset)) {
+          return index;
+        }
+      } catch(ReaderException e) {
+        // Corrupted index, rebuilt below.
+      }
+    }
+
+    BlockIndex index = build(dataset);
+    index.save(sidecar);
+
+    return index;
+  }
+
+  /**
+   * Load an index from a file.
+   * @param file Path of the index file.
+   * @return The index read.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the file is not a valid index file.
+   */
+  public static BlockIndex load(Path file) throws IOException, ReaderException {
+    try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if(in.readInt() != MAGIC) {
+        throw new ReaderException("Invalid index file: " + file + ".");
+      }
+
+      int version = in.readInt();
+      if(version != VERSION) {
+        throw new ReaderException("Unsupported index file version: " + version + ".");
+      }
+
+      int interval = in.readInt();
+      long datasetSize = in.readLong();
+      long lastModified = in.readLong();
+      long recordCount = in.readLong();
+      boolean spanned = in.readBoolean();
+      int count = in.readInt();
+
+      if(count < 0) {
+        throw new ReaderException("Invalid index file: " + file + ".");
+      }
+
+      long[] positions = new long[count];
+      long[] ordinals = new long[count];
+      for(int i = 0; i < count; i++) {
+        positions[i] = in.readLong();
+        ordinals[i] = in.readLong();
+      }
+
+      return new BlockIndex(interval, datasetSize, lastModified, recordCount, spanned, positions, ordinals);
+    } catch(EOFException e) {
+      throw new ReaderException("Truncated index file: " + file + ".", e);
+    }
+  }
+
+  /**
+   * Save the index into a file. The index is written to a temporary file
+   * which then atomically replaces the file, so that a concurrent load
+   * never sees a partial index.
+   * @param file Path of the index file.
+   * @throws IOException If an I/O error occurs.
+   */
+  public void save(Path file) throws IOException {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.interval);
+      out.writeLong(this.datasetSize);
+      out.writeLong(this.lastModified);
+      out.writeLong(this.recordCount);
+      out.writeBoolean(this.spanned);
+      out.writeInt(this.positions.length);
+      for(int i = 0; i < this.positions.length; i++) {
+        out.writeLong(this.positions[i]);
+        out.writeLong(this.ordinals[i]);
+      }
+    }
+
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Check the index still describes a dataset.
+   * @param dataset Path of the dataset.
+   * @return True if the size and modification time of the dataset match the index.
+   * @throws IOException If an I/O error occurs.
+   */
+  public boolean isValidFor(Path dataset) throws IOException {
+    return Files.size(dataset) == this.datasetSize
+      && Files.getLastModifiedTime(dataset).toMillis() == this.lastModified;
+  }
+
+  /**
+   * Getter for the number of records.
+   * @return The number of records of the dataset.
+   */
+  public long getRecordCount() {
+    return this.recordCount;
+  }
+
+  /**
+   * Getter for the interval.
+   * @return The number of blocks between two index entries.
+   */
+  public int getInterval() {
+    return this.interval;
+  }
+
+  /**
+   * Getter for the number of entries.
+   * @return The number of entries of the index.
+   */
+  public int getEntryCount() {
+    return this.positions.length;
+  }
+
+  /**
+   * Find the last entry before a record.
+   * @param ordinal Ordinal of the record.
+   * @return The index of the entry.
+   */
+  private int findOrdinal(long ordinal) {
+    int low = 0;
+    int high = this.ordinals.length - 1;
+
+    while(low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if(this.ordinals[middle] <= ordinal) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * Find the last entry before a position.
+   * @param position Position into the dataset.
+   * @return The index of the entry.
+   */
+  private int findPosition(long position) {
+    int index = Arrays.binarySearch(this.positions, position);
+
+    return index >= 0 ? index : Math.max(0, -index - 2);
+  }
+
+  /**
+   * Open a reader on a range of blocks.
+   * @param dataset Path of the dataset.
+   * @param start Position of the first block.
+   * @param end Position of the end of the range.
+   * @return A reader on the range.
+   * @throws IOException If the file cannot be opened.
+   */
+  private AbstractVariableReader open(Path dataset, long start, long end) throws IOException {
+    MappedBlockSource source = new MappedBlockSource(dataset, start, end, MappedBlockSource.DEFAULT_WINDOW_SIZE);
+
+    return this.spanned ? new VBSReader(source) : new VBReader(source);
+  }
+
+  /**
+   * Open a reader at a record ordinal.
+   * @param dataset Path of the indexed dataset.
+   * @param ordinal Ordinal of the first record to read, starting at 0.
+   * @return A reader whose next record is the specified one.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the ordinal is out of range or a descriptor word is invalid.
+   */
+  public AbstractVariableReader openRecord(Path dataset, long ordinal) throws IOException, ReaderException {
+    if(ordinal < 0 || ordinal > this.recordCount) {
+      throw new ReaderException("Record ordinal out of range: " + ordinal
+        + ". The dataset contains " + this.recordCount + " records.");
+    }
+
+    if(this.positions.length == 0) {
+      return this.open(dataset, 0, -1);
+    }
+
+    int entry = this.findOrdinal(ordinal);
+    AbstractVariableReader reader = this.open(dataset, this.positions[entry], -1);
+
+    try {
+      for(long skip = ordinal - this.ordinals[entry]; skip > 0; skip--) {
+        reader.next();
+      }
+    } catch(IOException | ReaderException e) {
+      reader.close();
+      throw e;
+    }
+
+    return reader;
+  }
+
+  /**
+   * Locate the first block starting at or after a position.
+   * @param dataset Path of the dataset.
+   * @param position Position into the dataset.
+   * @return The position of the block, or the size of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a BDW is invalid.
+   */
+  private long locate(Path dataset, long position) throws IOException, ReaderException {
+    if(position <= 0) {
+      return 0;
+    }
+
+    if(position >= this.datasetSize || this.positions.length == 0) {
+      return this.datasetSize;
+    }
+
+    try(MappedBlockSource source = new MappedBlockSource(dataset, this.positions[this.findPosition(position)],
+        -1, MappedBlockSource.DEFAULT_WINDOW_SIZE)) {
+      while(source.nextBlock()) {
+        if(source.getBlockPosition() >= position) {
+          return source.getBlockPosition();
+        }
+      }
+    }
+
+    return this.datasetSize;
+  }
+
+  /**
+   * Open a reader on the blocks starting in a byte range.
+   * Ranges are meant for VB datasets, in a VBS dataset a range
+   * starting in the middle of a spanned record is rejected by the reader.
+   * @param dataset Path of the indexed dataset.
+   * @param start Start of the byte range.
+   * @param end End of the byte range, exclusive.
+   * @return A reader on the blocks whose BDW is in the range.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid.
+   */
+  public AbstractVariableReader openRange(Path dataset, long start, long end) throws IOException, ReaderException {
+    long first = this.locate(dataset, start);
+    long last = Math.max(first, this.locate(dataset, end));
+
+    return this.open(dataset, first, last);
+  }
+}
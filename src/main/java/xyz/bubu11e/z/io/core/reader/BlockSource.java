@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of blocks for variable format readers.
+ *
+ * A block source walks the BDW chain of a dataset and
+ * exposes each block in place, without copying it. The
+ * current block is described by a buffer, the offset
+ * of its BDW into this buffer and its length including
+ * the BDW. The block stays valid until the next call
+ * to {@link #nextBlock()}.
+ */
+public interface BlockSource extends Closeable {
+
+  /**
+   * Move to the next block of the dataset.
+   * @return True if a block is available, false at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the block descriptor word is invalid or the block is truncated.
+   */
+  public boolean nextBlock() throws IOException, ReaderException;
+
+  /**
+   * Getter for the buffer containing the current block.
+   * @return The buffer containing the current block.
+   */
+  public ByteBuffer getBlockBuffer();
+
+  /**
+   * Getter for the offset of the current block into its buffer.
+   * @return The absolute index of the BDW of the current block.
+   */
+  public int getBlockOffset();
+
+  /**
+   * Getter for the length of the current block.
+   * @return The length of the current block including its BDW.
+   */
+  public int getBlockLength();
+
+  /**
+   * Getter for the position of the current block into the dataset.
+   * @return The byte offset of the BDW of the current block.
+   */
+  public long getBlockPosition();
+
+}
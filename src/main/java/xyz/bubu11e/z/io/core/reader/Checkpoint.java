@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Resumable position of a variable format reader, and optionally of
+ * the writer fed by it.
+ *
+ * A checkpoint is taken between two records. It holds the position
+ * of the BDW of the current block and the number of segments already
+ * read from this block. No spanned record is in progress between two
+ * records, so no reassembly state needs to be kept: a resumed reader
+ * skips the segments of the block, including the last segments of the
+ * record read before the checkpoint, and restarts at the next record.
+ *
+ * The output position is the value returned by
+ * {@link xyz.bubu11e.z.io.core.writer.VBWriter#checkpoint()}, which
+ * the writer is truncated to when it is resumed.
+ *
+ * A checkpoint is a small immutable value, taking one only reads a
+ * few fields of the reader. It is saved into a 28 bytes file replaced
+ * atomically, so that a crash during a save keeps the previous one.
+ */
+public final class Checkpoint {
+
+  /** Checkpoint of a reader which has not read anything yet. */
+  public final static Checkpoint START = new Checkpoint(0, 0, -1);
+
+  /** Magic number of the checkpoint files, "ZCKP". */
+  private final static int MAGIC = 0x5a434b50;
+  /** Version of the checkpoint file format. */
+  private final static int VERSION = 1;
+  /** Length of a checkpoint file. */
+  private final static int FILE_LENGTH = 28;
+
+  /** Position of the BDW of the current block into the dataset. */
+  private final long blockPosition;
+  /** Number of segments already read from the current block. */
+  private final int segment;
+  /** Position of the output, -1 if unknown. */
+  private final long output;
+
+  /**
+   * Constructor.
+   * @param blockPosition Position of the BDW of the current block into the dataset.
+   * @param segment Number of segments already read from the current block.
+   * @param output Position of the output, or -1 if unknown.
+   */
+  public Checkpoint(long blockPosition, int segment, long output) {
+    if(blockPosition < 0 || segment < 0 || output < -1) {
+      throw new IllegalArgumentException("Invalid checkpoint: block " + blockPosition
+        + ", segment " + segment + ", output " + output + ".");
+    }
+
+    this.blockPosition = blockPosition;
+    this.segment = segment;
+    this.output = output;
+  }
+
+  /**
+   * Getter for the block position.
+   * @return The position of the BDW of the current block into the dataset.
+   */
+  public long getBlockPosition() {
+    return this.blockPosition;
+  }
+
+  /**
+   * Getter for the segment index.
+   * @return The number of segments already read from the current block.
+   */
+  public int getSegment() {
+    return this.segment;
+  }
+
+  /**
+   * Getter for the output position.
+   * @return The position of the output, or -1 if unknown.
+   */
+  public long getOutput() {
+    return this.output;
+  }
+
+  /**
+   * Copy the checkpoint with an output position.
+   * @param output Position of the output, as returned by the writer checkpoint.
+   * @return A checkpoint of the same reader position and of the output.
+   */
+  public Checkpoint withOutput(long output) {
+    return new Checkpoint(this.blockPosition, this.segment, output);
+  }
+
+  /**
+   * Save the checkpoint into a file. The checkpoint is written and synced
+   * to a temporary file which then atomically replaces the file.
+   * @param file Path of the checkpoint file.
+   * @throws IOException If an I/O error occurs.
+   */
+  public void save(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(FILE_LENGTH);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(this.blockPosition).putInt(this.segment).putLong(this.output);
+    buffer.flip();
+
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while(buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Load a checkpoint from a file.
+   * @param file Path of the checkpoint file.
+   * @return The checkpoint read.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the file is not a valid checkpoint file.
+   */
+  public static Checkpoint load(Path file) throws IOException, ReaderException {
+    byte[] content = Files.readAllBytes(file);
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+
+    if(content.length != FILE_LENGTH || buffer.getInt() != MAGIC) {
+      throw new ReaderException("Invalid checkpoint file: " + file + ".");
+    }
+
+    int version = buffer.getInt();
+    if(version != VERSION) {
+      throw new ReaderException("Unsupported checkpoint file version: " + version + ".");
+    }
+
+    try {
+      return new Checkpoint(buffer.getLong(), buffer.getInt(), buffer.getLong());
+    } catch(IllegalArgumentException e) {
+      throw new ReaderException("Invalid checkpoint file: " + file + ".", e);
+    }
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if(!(object instanceof Checkpoint)) {
+      return false;
+    }
+
+    Checkpoint other = (Checkpoint)object;
+    return this.blockPosition == other.blockPosition && this.segment == other.segment
+      && this.output == other.output;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(this.blockPosition) * 31 * 31 + this.segment * 31 + Long.hashCode(this.output);
+  }
+
+  @Override
+  public String toString() {
+    return "block " + this.blockPosition + ", segment " + this.segment + ", output " + this.output;
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for RECFM=F and FB datasets.
+ *
+ * Fixed length records have no descriptor word, the dataset is mapped
+ * by windows holding a whole number of blocks and the records are
+ * exposed in place. Besides the {@link RecordCursor} contract, records
+ * can be read by batches through {@link #nextBatch(RecordBatch, int)}.
+ *
+ * Datasets which cannot be mapped, such as compressed files, are read
+ * from an input stream into a chunk holding a whole number of blocks.
+ *
+ * Fixed length datasets have no descriptor word: the metrics count the
+ * records and their bytes but no blocks.
+ *
+ * In lenient mode, a truncated last record is reported as invalid
+ * data and then ends the dataset.
+ */
+public class FBReader extends AbstractRecordReader {
+
+  /** Default size of a mapped window in byte. */
+  public final static int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+  /** Default size of a chunk read from a stream in byte. */
+  public final static int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  /** Channel of the dataset, null when reading from a stream. */
+  private final FileChannel channel;
+  /** True if the channel is closed with the reader. */
+  private final boolean owner;
+  /** End of the read range into the file. */
+  private final long end;
+  /** Length of the records. */
+  private final int lrecl;
+  /** Size of a mapped window, a multiple of the block size. */
+  private final int windowSize;
+  /** Stream of the dataset, null when the dataset is mapped. */
+  private final InputStream stream;
+  /** Chunk read from the stream. */
+  private final byte[] chunk;
+  /** Number of bytes read into the chunk. */
+  private int filled = 0;
+
+  /** True once a truncated record has been skipped in lenient mode. */
+  private boolean exhausted = false;
+
+  /** Current window, mapped or wrapping the chunk. */
+  private ByteBuffer window = null;
+  /** Position of the current window into the file. */
+  private long windowStart;
+  /** Offset of the current record into the window. */
+  private int offset = 0;
+  /** Offset of the next record into the window. */
+  private int next = 0;
+
+  /**
+   * Constructor of a RECFM=F dataset.
+   * @param path Path of the dataset to read.
+   * @param lrecl Length of the records.
+   * @throws IOException If the file cannot be opened.
+   */
+  public FBReader(Path path, int lrecl) throws IOException {
+    this(path, lrecl, lrecl);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset to read.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks, a multiple of the record length.
+   * @throws IOException If the file cannot be opened.
+   */
+  public FBReader(Path path, int lrecl, int blksize) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.READ), true, 0, -1, lrecl, blksize);
+  }
+
+  /**
+   * Constructor on a range of a shared channel.
+   * @param channel Channel of the dataset. It is not closed with the reader.
+   * @param start Position of the first record of the range.
+   * @param end End of the range, or -1 for the end of the file.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks, a multiple of the record length.
+   * @throws IOException If the size of the file cannot be read.
+   */
+  public FBReader(FileChannel channel, long start, long end, int lrecl, int blksize) throws IOException {
+    this(channel, false, start, end, lrecl, blksize);
+  }
+
+  /**
+   * Constructor reading from a stream.
+   * @param stream Stream of the dataset, closed with the reader.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks, a multiple of the record length.
+   */
+  public FBReader(InputStream stream, int lrecl, int blksize) {
+    FBReader.check(lrecl, blksize);
+
+    this.channel = null;
+    this.owner = true;
+    this.end = Long.MAX_VALUE;
+    this.lrecl = lrecl;
+    this.windowSize = Math.max(1, DEFAULT_CHUNK_SIZE / blksize) * blksize;
+    this.windowStart = 0;
+    this.stream = stream;
+    this.chunk = new byte[this.windowSize];
+  }
+
+  /**
+   * Check the record format.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks.
+   */
+  private static void check(int lrecl, int blksize) {
+    if(lrecl < 1 || blksize < lrecl || blksize % lrecl != 0) {
+      throw new IllegalArgumentException("Invalid record length " + lrecl + " or block size " + blksize + ".");
+    }
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel of the dataset.
+   * @param owner True if the channel is closed with the reader.
+   * @param start Position of the first record of the range.
+   * @param end End of the range, or -1 for the end of the file.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks, a multiple of the record length.
+   * @throws IOException If the size of the file cannot be read.
+   */
+  private FBReader(FileChannel channel, boolean owner, long start, long end, int lrecl, int blksize)
+      throws IOException {
+    try {
+      FBReader.check(lrecl, blksize);
+    } catch(IllegalArgumentException e) {
+      if(owner) {
+        channel.close();
+      }
+      throw e;
+    }
+
+    this.channel = channel;
+    this.owner = owner;
+    this.end = end < 0 ? channel.size() : end;
+    this.lrecl = lrecl;
+    this.windowSize = Math.max(1, DEFAULT_WINDOW_SIZE / blksize) * blksize;
+    this.windowStart = start;
+    this.stream = null;
+    this.chunk = null;
+  }
+
+  /**
+   * Getter for the record length.
+   * @return The length of the records.
+   */
+  public int getLrecl() {
+    return this.lrecl;
+  }
+
+  /**
+   * Make sure the next record is in the current window.
+   * @return The number of records available in the window from the next one, 0 at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the last record is truncated, in strict mode.
+   */
+  private int available() throws IOException, ReaderException {
+    if(this.window != null && this.window.limit() - this.next >= this.lrecl) {
+      return (this.window.limit() - this.next) / this.lrecl;
+    }
+
+    if(this.exhausted) {
+      return 0;
+    }
+
+    long position = this.window == null ? this.windowStart : this.windowStart + this.next;
+
+    if(this.stream != null) {
+      return this.fill(position);
+    }
+
+    long remaining = this.end - position;
+
+    if(remaining <= 0) {
+      return 0;
+    }
+
+    if(remaining < this.lrecl) {
+      return this.truncated(position, remaining);
+    }
+
+    this.windowStart = position;
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(this.windowSize, remaining));
+    this.next = 0;
+
+    return this.window.limit() / this.lrecl;
+  }
+
+  /**
+   * Read the next chunk of the stream.
+   * The bytes of a partial record left in the chunk are kept at its start.
+   * @param position Position of the next record into the dataset.
+   * @return The number of records available in the chunk, 0 at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the last record is truncated, in strict mode.
+   */
+  private int fill(long position) throws IOException, ReaderException {
+    int kept = this.window == null ? 0 : this.filled - this.next;
+    System.arraycopy(this.chunk, this.next, this.chunk, 0, kept);
+
+    int count = kept;
+    while(count < this.chunk.length) {
+      int read = this.stream.read(this.chunk, count, this.chunk.length - count);
+      if(read < 0) {
+        break;
+      }
+      count += read;
+    }
+
+    if(count == 0) {
+      return 0;
+    }
+
+    if(count < this.lrecl) {
+      return this.truncated(position, count);
+    }
+
+    if(this.window == null) {
+      this.window = ByteBuffer.wrap(this.chunk);
+    }
+    this.window.limit(count - count % this.lrecl);
+    this.windowStart = position;
+    this.filled = count;
+    this.next = 0;
+
+    return this.window.limit() / this.lrecl;
+  }
+
+  /**
+   * Report a truncated last record, which ends the dataset in lenient mode.
+   * @param position Position of the record into the dataset.
+   * @param available Number of bytes of the record.
+   * @return 0, no record is available.
+   * @throws ReaderException In strict mode.
+   */
+  private int truncated(long position, long available) throws ReaderException {
+    this.invalidate("Truncated record at offset " + position + ": " + this.lrecl
+      + " bytes expected, " + available + " available.", null);
+    this.exhausted = true;
+    return 0;
+  }
+
+  /**
+   * Move to the next record, stopping on a truncated last record in lenient mode.
+   * @return True if a record is available, false at the end of the dataset or when invalid data has been skipped.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the last record is truncated, in strict mode.
+   */
+  @Override
+  protected boolean advance() throws IOException, ReaderException {
+    this.invalid = false;
+
+    do {
+      if(this.available() == 0) {
+        return false;
+      }
+
+      this.offset = this.next;
+      this.next += this.lrecl;
+    } while(this.filter != null && !this.filter.test(this.window, this.offset, this.lrecl));
+
+    if(this.metrics != null) {
+      this.metrics.addRecord(this.lrecl);
+      this.metrics.addBytes(this.lrecl);
+    }
+
+    return true;
+  }
+
+  /**
+   * Move to the next batch of records.
+   * The batch holds the records available in the current window,
+   * the current record of the cursor becomes its last record.
+   * With a filter, the records which do not match are skipped and
+   * the batch holds the following run of matching records.
+   * @param batch Batch receiving the records.
+   * @param maxRecords Maximum number of records of the batch.
+   * @return True if records are available, false at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the last record is truncated, in strict mode.
+   */
+  public boolean nextBatch(RecordBatch batch, int maxRecords) throws IOException, ReaderException {
+    if(maxRecords < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + maxRecords + ".");
+    }
+
+    int available = this.available();
+
+    if(this.filter != null) {
+      while(available > 0 && !this.filter.test(this.window, this.next, this.lrecl)) {
+        this.next += this.lrecl;
+        available = available > 1 ? available - 1 : this.available();
+      }
+    }
+
+    int count = Math.min(available, maxRecords);
+
+    if(count <= 0) {
+      batch.set(this.window, this.next, 0, this.lrecl);
+      return false;
+    }
+
+    if(this.filter != null) {
+      int matching = 1;
+      while(matching < count && this.filter.test(this.window, this.next + matching * this.lrecl, this.lrecl)) {
+        matching++;
+      }
+      count = matching;
+    }
+
+    batch.set(this.window, this.next, count, this.lrecl);
+    this.next += count * this.lrecl;
+    this.offset = this.next - this.lrecl;
+
+    if(this.metrics != null) {
+      this.metrics.addRecords(count, this.lrecl);
+      this.metrics.addBytes((long)count * this.lrecl);
+    }
+
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return this.window;
+  }
+
+  @Override
+  public int getOffset() {
+    return this.offset;
+  }
+
+  @Override
+  public int getLength() {
+    return this.lrecl;
+  }
+
+  /**
+   * Close the underlying channel or stream if it is owned by the reader.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    if(this.stream != null) {
+      this.stream.close();
+    } else if(this.owner) {
+      this.channel.close();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the records of a RECFM=FB dataset.
+ *
+ * Records have a fixed length, so the spliterator is sized and
+ * ranges are divided on record boundaries without reading the dataset.
+ */
+public class FBSpliterator implements Spliterator<byte[]> {
+
+  /** Default size under which a range is not split. */
+  public final static int DEFAULT_SPLIT_SIZE = 1024 * 1024;
+  /** Default size of the mapped windows. */
+  public final static int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  /** Channel of the dataset, shared by the spliterators. */
+  private final FileChannel channel;
+  /** Length of the records. */
+  private final int lrecl;
+  /** Number of records under which a range is not split. */
+  private final long splitRecords;
+
+  /** Index of the next record. */
+  private long first;
+  /** Index of the end of the range, exclusive. */
+  private final long last;
+
+  /** Window mapping the next records. */
+  private MappedByteBuffer window = null;
+
+  /**
+   * Constructor with the default split size.
+   * @param channel Channel of the dataset. It is not closed by the spliterator.
+   * @param lrecl Length of the records.
+   * @throws IOException If the size of the dataset cannot be read.
+   * @throws ReaderException If the size of the dataset is not a multiple of the record length.
+   */
+  public FBSpliterator(FileChannel channel, int lrecl) throws IOException, ReaderException {
+    this(channel, lrecl, DEFAULT_SPLIT_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel of the dataset. It is not closed by the spliterator.
+   * @param lrecl Length of the records.
+   * @param splitSize Size under which a range is not split.
+   * @throws IOException If the size of the dataset cannot be read.
+   * @throws ReaderException If the size of the dataset is not a multiple of the record length.
+   */
+  public FBSpliterator(FileChannel channel, int lrecl, int splitSize) throws IOException, ReaderException {
+    if(lrecl < 1) {
+      throw new IllegalArgumentException("Invalid record length: " + lrecl + ".");
+    }
+    if(splitSize < 1) {
+      throw new IllegalArgumentException("Invalid split size: " + splitSize + ".");
+    }
+
+    long size = channel.size();
+    if(size % lrecl != 0) {
+      throw new ReaderException("Dataset size " + size + " is not a multiple of the record length " + lrecl + ".");
+    }
+
+    this.channel = channel;
+    this.lrecl = lrecl;
+    this.splitRecords = Math.max(1, splitSize / lrecl);
+    this.first = 0;
+    this.last = size / lrecl;
+  }
+
+  /**
+   * Constructor of a range.
+   * @param parent Spliterator the range is split from.
+   * @param first Index of the first record.
+   * @param last Index of the end of the range, exclusive.
+   */
+  private FBSpliterator(FBSpliterator parent, long first, long last) {
+    this.channel = parent.channel;
+    this.lrecl = parent.lrecl;
+    this.splitRecords = parent.splitRecords;
+    this.first = first;
+    this.last = last;
+  }
+
+  @Override
+  public Spliterator<byte[]> trySplit() {
+    if(this.window != null || this.last - this.first <= this.splitRecords) {
+      return null;
+    }
+
+    long middle = this.first + (this.last - this.first) / 2;
+    FBSpliterator prefix = new FBSpliterator(this, this.first, middle);
+    this.first = middle;
+
+    return prefix;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super byte[]> action) {
+    if(this.first >= this.last) {
+      return false;
+    }
+
+    if(this.window == null || !this.window.hasRemaining()) {
+      long count = Math.min(this.last - this.first, Math.max(1, DEFAULT_WINDOW_SIZE / this.lrecl));
+      try {
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.first * this.lrecl, count * this.lrecl);
+      } catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    byte[] record = new byte[this.lrecl];
+    this.window.get(record);
+    this.first++;
+
+    action.accept(record);
+
+    return true;
+  }
+
+  @Override
+  public long estimateSize() {
+    return this.last - this.first;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+  }
+}
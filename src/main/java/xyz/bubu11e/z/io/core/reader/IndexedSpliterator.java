@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the records of an indexed RECFM=VB or VBS dataset.
+ *
+ * The record count of the index makes the spliterator sized. Ranges are divided
+ * on record ordinals, each split seeks its first record through the index.
+ *
+ * Each range opens its own reader, closed once the range is read or on
+ * a failure. The readers of a spliterator and of all its splits are
+ * registered together, so that closing the spliterator closes those of
+ * the ranges left unfinished, such as by a short-circuiting stream.
+ */
+public class IndexedSpliterator implements Spliterator<byte[]>, Closeable {
+
+  /** Path of the dataset. */
+  private final Path dataset;
+  /** Index of the dataset. */
+  private final BlockIndex index;
+
+  /** Ordinal of the next record. */
+  private long first;
+  /** Ordinal of the end of the range, exclusive. */
+  private final long last;
+
+  /** Open readers of the spliterator and of its splits. */
+  private final List<AbstractVariableReader> readers;
+
+  /** Reader of the range, opened on the first record. */
+  private AbstractVariableReader reader = null;
+
+  /**
+   * Constructor.
+   * @param dataset Path of the dataset.
+   * @param index Index of the dataset.
+   */
+  public IndexedSpliterator(Path dataset, BlockIndex index) {
+    this(dataset, index, 0, index.getRecordCount(),
+      Collections.synchronizedList(new ArrayList<AbstractVariableReader>()));
+  }
+
+  /**
+   * Constructor of a range.
+   * @param dataset Path of the dataset.
+   * @param index Index of the dataset.
+   * @param first Ordinal of the first record.
+   * @param last Ordinal of the end of the range, exclusive.
+   * @param readers Open readers shared with the other ranges.
+   */
+  private IndexedSpliterator(Path dataset, BlockIndex index, long first, long last,
+      List<AbstractVariableReader> readers) {
+    this.dataset = dataset;
+    this.index = index;
+    this.first = first;
+    this.last = last;
+    this.readers = readers;
+  }
+
+  @Override
+  public Spliterator<byte[]> trySplit() {
+    if(this.reader != null || this.last - this.first < 2L * this.index.getInterval()) {
+      return null;
+    }
+
+    long middle = this.first + (this.last - this.first) / 2;
+    IndexedSpliterator prefix = new IndexedSpliterator(this.dataset, this.index, this.first, middle,
+      this.readers);
+    this.first = middle;
+
+    return prefix;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super byte[]> action) {
+    if(this.first >= this.last) {
+      return false;
+    }
+
+    try {
+      if(this.reader == null) {
+        this.reader = this.index.openRecord(this.dataset, this.first);
+        this.readers.add(this.reader);
+      }
+
+      byte[] record = this.reader.read();
+
+      if(record == null) {
+        throw new ReaderException("Dataset ended at record " + this.first
+          + " while the index references " + this.last + " records.");
+      }
+
+      this.first++;
+      if(this.first == this.last) {
+        this.closeReader();
+      }
+
+      action.accept(record);
+
+      return true;
+    } catch(IOException e) {
+      this.abort(e);
+      throw new UncheckedIOException(e);
+    } catch(ReaderException e) {
+      this.abort(e);
+      throw new UncheckedReaderException(e);
+    }
+  }
+
+  /**
+   * Close the reader of the range and unregister it.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void closeReader() throws IOException {
+    AbstractVariableReader reader = this.reader;
+    this.reader = null;
+    this.readers.remove(reader);
+    reader.close();
+  }
+
+  /**
+   * End the range after a failure, closing its reader.
+   * @param e The failure, receiving the failure to close the reader if any.
+   */
+  private void abort(Exception e) {
+    this.first = this.last;
+
+    if(this.reader != null) {
+      try {
+        this.closeReader();
+      } catch(IOException c) {
+        e.addSuppressed(c);
+      }
+    }
+  }
+
+  /**
+   * Close the readers left open by the spliterator and all its splits.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    AbstractVariableReader[] open;
+    synchronized(this.readers) {
+      open = this.readers.toArray(new AbstractVariableReader[this.readers.size()]);
+      this.readers.clear();
+    }
+
+    IOException failure = null;
+    for(AbstractVariableReader reader : open) {
+      try {
+        reader.close();
+      } catch(IOException e) {
+        if(failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+
+    if(failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public long estimateSize() {
+    return this.last - this.first;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+  }
+}
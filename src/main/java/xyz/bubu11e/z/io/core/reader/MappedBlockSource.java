@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+
+/**
+ * Block source memory mapping a dataset.
+ *
+ * The file is mapped by sliding windows so datasets larger
+ * than 2 GB can be read. A window is remapped only when the
+ * next block does not fit in the current one, blocks are
+ * then read in place from the mapped region.
+ *
+ * A source can also be restricted to a range of the dataset
+ * starting on a block boundary, several sources can then
+ * share the same channel.
+ */
+public class MappedBlockSource implements BlockSource {
+
+  /** Default size of a mapped window in byte. */
+  public final static int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  /** Channel of the mapped file. */
+  private final FileChannel channel;
+  /** True if the channel is closed with the source. */
+  private final boolean owner;
+  /** End of the mapped range into the file. */
+  private final long end;
+  /** Size of a mapped window. */
+  private final int windowSize;
+
+  /** Current mapped window. */
+  private MappedByteBuffer window = null;
+  /** Position of the current window into the file. */
+  private long windowStart = 0;
+  /** Length of the current window. */
+  private int windowLength = 0;
+
+  /** View used to decode the BDW in place. */
+  private final BlockDescriptorWordView bdw = new BlockDescriptorWordView();
+
+  /** Position of the next block into the file. */
+  private long position = 0;
+  /** Position of the current block into the file. */
+  private long blockPosition = -1;
+  /** Offset of the current block into the window. */
+  private int blockOffset = 0;
+  /** Length of the current block. */
+  private int blockLength = 0;
+
+  /**
+   * Constructor using the default window size.
+   * @param path Path of the dataset to map.
+   * @throws IOException If the file cannot be opened.
+   */
+  public MappedBlockSource(Path path) throws IOException {
+    this(path, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset to map.
+   * @param windowSize Size of a mapped window in byte.
+   * @throws IOException If the file cannot be opened.
+   */
+  public MappedBlockSource(Path path, int windowSize) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.READ), true, 0, -1, windowSize);
+  }
+
+  /**
+   * Constructor for a range of a dataset.
+   * @param path Path of the dataset to map.
+   * @param start Position of the first block of the range.
+   * @param end Position of the end of the range.
+   * @param windowSize Size of a mapped window in byte.
+   * @throws IOException If the file cannot be opened.
+   */
+  public MappedBlockSource(Path path, long start, long end, int windowSize) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.READ), true, start, end, windowSize);
+  }
+
+  /**
+   * Constructor for a range of a dataset.
+   * @param channel Channel of the dataset, not closed with the source.
+   * @param start Position of the first block of the range.
+   * @param end Position of the end of the range.
+   * @param windowSize Size of a mapped window in byte.
+   * @throws IOException If the size of the channel cannot be read.
+   */
+  public MappedBlockSource(FileChannel channel, long start, long end, int windowSize) throws IOException {
+    this(channel, false, start, end, windowSize);
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel of the dataset.
+   * @param owner True if the channel is closed with the source.
+   * @param start Position of the first block of the range.
+   * @param end Position of the end of the range, or -1 for the end of the dataset.
+   * @param windowSize Size of a mapped window in byte.
+   * @throws IOException If the size of the channel cannot be read.
+   */
+  private MappedBlockSource(FileChannel channel, boolean owner, long start, long end, int windowSize)
+      throws IOException {
+    if(windowSize < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new IllegalArgumentException("Invalid window size: " + windowSize + ".");
+    }
+
+    this.windowSize = windowSize;
+    this.channel = channel;
+    this.owner = owner;
+    this.end = end < 0 ? channel.size() : end;
+    this.position = start;
+  }
+
+  /**
+   * Make sure a region of the file is available in the current window.
+   * @param start Position of the region into the file.
+   * @param length Length of the region.
+   * @throws IOException If the region cannot be mapped.
+   */
+  private void map(long start, int length) throws IOException {
+    if(this.window != null && start >= this.windowStart
+        && start + length <= this.windowStart + this.windowLength) {
+      return;
+    }
+
+    this.windowStart = start;
+    this.windowLength = (int)Math.min(Math.max(this.windowSize, length), this.end - start);
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.windowStart, this.windowLength);
+  }
+
+  @Override
+  public boolean nextBlock() throws IOException, ReaderException {
+    if(this.position >= this.end) {
+      return false;
+    }
+
+    if(this.end - this.position < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new ReaderException("Truncated BDW at offset " + this.position + ".");
+    }
+
+    this.map(this.position, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+
+    try {
+      this.bdw.bind(this.window, (int)(this.position - this.windowStart));
+    } catch(DescriptorWordException e) {
+      throw new ReaderException("Invalid BDW at offset " + this.position + ": " + e.getMessage(), e);
+    }
+
+    int length = this.bdw.getSegmentLength();
+
+    if(this.end - this.position < length) {
+      throw new ReaderException("Truncated block at offset " + this.position
+        + ": " + length + " bytes expected, " + (this.end - this.position) + " available.");
+    }
+
+    this.map(this.position, length);
+
+    this.blockPosition = this.position;
+    this.blockOffset = (int)(this.position - this.windowStart);
+    this.blockLength = length;
+    this.position += length;
+
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBlockBuffer() {
+    return this.window;
+  }
+
+  @Override
+  public int getBlockOffset() {
+    return this.blockOffset;
+  }
+
+  @Override
+  public int getBlockLength() {
+    return this.blockLength;
+  }
+
+  @Override
+  public long getBlockPosition() {
+    return this.blockPosition;
+  }
+
+  /**
+   * Close the underlying channel if it is owned by the source.
+   * Mapped windows are released by the garbage collector.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    if(this.owner) {
+      this.channel.close();
+    }
+  }
+}
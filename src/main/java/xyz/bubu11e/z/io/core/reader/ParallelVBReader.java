@@ -0,0 +1,343 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel reader for RECFM=VB datasets.
+ *
+ * A first pass hops from BDW to BDW to locate the block
+ * boundaries, touching only the descriptor words. The blocks
+ * are then grouped into ranges of about the split size which
+ * are decoded by the tasks of a fork-join pool.
+ *
+ * Records are either handed to the handler concurrently by
+ * the tasks, or decoded in parallel and handed in their
+ * original order by the calling thread.
+ */
+public class ParallelVBReader implements Closeable {
+
+  /** Default size of the ranges decoded by a single task. */
+  public final static int DEFAULT_SPLIT_SIZE = 8 * 1024 * 1024;
+
+  /** Channel of the dataset. */
+  private final FileChannel channel;
+  /** Pool running the tasks. */
+  private final ForkJoinPool pool;
+  /** Size of the ranges decoded by a single task. */
+  private final int splitSize;
+
+  /** Positions of the blocks, followed by the end of the dataset. */
+  private long[] blocks = null;
+  /** Index of the first block of each range, followed by the number of blocks. */
+  private int[] ranges = null;
+
+  /**
+   * Constructor using the common pool.
+   * @param path Path of the dataset to read.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ParallelVBReader(Path path) throws IOException {
+    this(path, ForkJoinPool.commonPool(), DEFAULT_SPLIT_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset to read.
+   * @param pool Pool running the tasks.
+   * @param splitSize Size of the ranges decoded by a single task.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ParallelVBReader(Path path, ForkJoinPool pool, int splitSize) throws IOException {
+    if(splitSize < 1) {
+      throw new IllegalArgumentException("Invalid split size: " + splitSize + ".");
+    }
+
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.pool = pool;
+    this.splitSize = splitSize;
+  }
+
+  /**
+   * Getter for the block boundaries, located by a first pass on the first call.
+   * @return The positions of the blocks followed by the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a BDW is invalid.
+   */
+  public long[] getBlockPositions() throws IOException, ReaderException {
+    if(this.blocks == null) {
+      this.scan();
+    }
+
+    return this.blocks;
+  }
+
+  /**
+   * Locate the blocks and group them into ranges.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a BDW is invalid.
+   */
+  private void scan() throws IOException, ReaderException {
+    long[] blocks = new long[1024];
+    int[] ranges = new int[64];
+    int count = 0;
+    int rangeCount = 0;
+    long rangeStart = -1;
+
+    try(MappedBlockSource source = new MappedBlockSource(this.channel, 0, this.channel.size(),
+        MappedBlockSource.DEFAULT_WINDOW_SIZE)) {
+      while(source.nextBlock()) {
+        if(count + 1 == blocks.length) {
+          blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+
+        long position = source.getBlockPosition();
+
+        if(rangeStart < 0 || position + source.getBlockLength() - rangeStart > this.splitSize) {
+          if(rangeCount + 1 == ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+          }
+          ranges[rangeCount++] = count;
+          rangeStart = position;
+        }
+
+        blocks[count++] = position;
+      }
+    }
+
+    blocks[count] = this.channel.size();
+    ranges[rangeCount] = count;
+
+    this.blocks = Arrays.copyOf(blocks, count + 1);
+    this.ranges = Arrays.copyOf(ranges, rangeCount + 1);
+  }
+
+  /**
+   * Getter for the number of ranges.
+   * @return The number of ranges decoded by distinct tasks.
+   */
+  private int getRangeCount() {
+    return this.ranges.length - 1;
+  }
+
+  /**
+   * Open a reader on a range.
+   * @param range Index of the range.
+   * @return A reader on the blocks of the range.
+   * @throws IOException If the range cannot be mapped.
+   */
+  private VBReader open(int range) throws IOException {
+    long start = this.blocks[this.ranges[range]];
+    long end = this.blocks[this.ranges[range + 1]];
+
+    return new VBReader(new MappedBlockSource(this.channel, start, end, (int)(end - start)));
+  }
+
+  /**
+   * Hand every record of the dataset to a handler.
+   * @param handler Handler receiving the records.
+   * @param ordered True to hand the records in their original order from the calling thread,
+   * false to hand them concurrently from the tasks.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid or the handler fails.
+   */
+  public void forEach(RecordHandler handler, boolean ordered) throws IOException, ReaderException {
+    this.getBlockPositions();
+
+    if(this.getRangeCount() == 0) {
+      return;
+    }
+
+    try {
+      if(ordered) {
+        this.forEachOrdered(handler);
+      } else {
+        this.pool.invoke(new HandleTask(handler, 0, this.getRangeCount()));
+      }
+    } catch(TaskException e) {
+      e.rethrow();
+    }
+  }
+
+  /**
+   * Decode the ranges in parallel and hand the records in order.
+   * At most twice the pool parallelism ranges are decoded ahead.
+   * @param handler Handler receiving the records.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid or the handler fails.
+   */
+  private void forEachOrdered(RecordHandler handler) throws IOException, ReaderException {
+    ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<ForkJoinTask<Chunk>>();
+    int ahead = 2 * this.pool.getParallelism();
+    int submitted = 0;
+
+    try {
+      while(submitted < this.getRangeCount() || !pending.isEmpty()) {
+        while(submitted < this.getRangeCount() && pending.size() < ahead) {
+          pending.add(this.pool.submit(new DecodeTask(submitted++)));
+        }
+
+        Chunk chunk = pending.poll().join();
+
+        if(chunk.count == 0) {
+          continue;
+        }
+
+        ByteBuffer view = chunk.buffer.duplicate();
+
+        for(int i = 0; i < chunk.count; i++) {
+          view.limit(chunk.offsets[i] + chunk.lengths[i]);
+          view.position(chunk.offsets[i]);
+          handler.handle(view);
+          view.clear();
+        }
+      }
+    } finally {
+      for(ForkJoinTask<Chunk> task : pending) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Close the dataset.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Records of a range, decoded in place.
+   */
+  private static class Chunk {
+    /** Buffer containing the range. */
+    ByteBuffer buffer = null;
+    /** Absolute index of each record. */
+    int[] offsets = new int[256];
+    /** Length of each record. */
+    int[] lengths = new int[256];
+    /** Number of records. */
+    int count = 0;
+
+    void add(int offset, int length) {
+      if(this.count == this.offsets.length) {
+        this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+        this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+      }
+      this.offsets[this.count] = offset;
+      this.lengths[this.count] = length;
+      this.count++;
+    }
+  }
+
+  /**
+   * Task decoding the records of a range.
+   */
+  private class DecodeTask extends RecursiveTask<Chunk> {
+    /** Index of the range. */
+    private final int range;
+
+    DecodeTask(int range) {
+      this.range = range;
+    }
+
+    @Override
+    protected Chunk compute() {
+      Chunk chunk = new Chunk();
+
+      try(VBReader reader = ParallelVBReader.this.open(this.range)) {
+        while(reader.next()) {
+          chunk.buffer = reader.getBuffer();
+          chunk.add(reader.getOffset(), reader.getLength());
+        }
+      } catch(IOException | ReaderException e) {
+        throw new TaskException(e);
+      }
+
+      return chunk;
+    }
+  }
+
+  /**
+   * Task handing the records of ranges to a handler,
+   * splitting the ranges between subtasks.
+   */
+  private class HandleTask extends RecursiveAction {
+    /** Handler receiving the records. */
+    private final RecordHandler handler;
+    /** Index of the first range. */
+    private final int from;
+    /** Index of the range following the last one. */
+    private final int to;
+
+    HandleTask(RecordHandler handler, int from, int to) {
+      this.handler = handler;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if(this.to - this.from > 1) {
+        int middle = (this.from + this.to) >>> 1;
+        ForkJoinTask.invokeAll(new HandleTask(this.handler, this.from, middle),
+          new HandleTask(this.handler, middle, this.to));
+        return;
+      }
+
+      try(VBReader reader = ParallelVBReader.this.open(this.from)) {
+        while(reader.next()) {
+          this.handler.handle(reader.getRecord());
+        }
+      } catch(IOException | ReaderException e) {
+        throw new TaskException(e);
+      }
+    }
+  }
+
+  /**
+   * Unchecked wrapper carrying a checked exception out of a task.
+   */
+  private static class TaskException extends RuntimeException {
+
+    TaskException(Exception e) {
+      super(e);
+    }
+
+    void rethrow() throws IOException, ReaderException {
+      if(this.getCause() instanceof IOException) {
+        throw (IOException)this.getCause();
+      }
+      throw (ReaderException)this.getCause();
+    }
+  }
+}
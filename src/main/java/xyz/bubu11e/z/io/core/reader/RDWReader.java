@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWordView;
+
+/**
+ * Reader for variable records each preceded by its RDW, without
+ * any BDW, as produced by the RDW option of the z/OS FTP server.
+ *
+ * The file is memory mapped by windows and records are read in
+ * place. Only complete records are accepted.
+ *
+ * In lenient mode, a spanned segment is skipped as invalid data,
+ * while an invalid RDW or a truncated record ends the file since
+ * there is no block to resume from.
+ */
+public class RDWReader extends AbstractRecordReader {
+
+  /** Channel of the file. */
+  private final FileChannel channel;
+  /** Size of a mapped window. */
+  private final int windowSize;
+  /** Size of the file. */
+  private final long end;
+
+  /** View used to decode the RDW in place. */
+  private final RecordDescriptorWordView rdw = new RecordDescriptorWordView();
+
+  /** Current window. */
+  private MappedByteBuffer window = null;
+  /** Position of the current window into the file. */
+  private long windowStart = 0;
+  /** Length of the current window. */
+  private int windowLength = 0;
+  /** Position of the next RDW into the file. */
+  private long position = 0;
+
+  /** Absolute index of the data of the current record into the window. */
+  private int recordOffset = 0;
+  /** Length of the data of the current record. */
+  private int recordLength = 0;
+
+  /**
+   * Constructor with the default window size.
+   * @param path Path of the file to read.
+   * @throws IOException If the file cannot be opened.
+   */
+  public RDWReader(Path path) throws IOException {
+    this(path, MappedBlockSource.DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the file to read.
+   * @param windowSize Size of a mapped window in byte, at least the maximum segment length.
+   * @throws IOException If the file cannot be opened.
+   */
+  public RDWReader(Path path, int windowSize) throws IOException {
+    if(windowSize < RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH) {
+      throw new IllegalArgumentException("Invalid window size: " + windowSize + ".");
+    }
+
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.windowSize = windowSize;
+    this.end = this.channel.size();
+  }
+
+  /**
+   * Make sure a region of the file is available in the current window.
+   * @param start Position of the region into the file.
+   * @param length Length of the region.
+   * @throws IOException If the region cannot be mapped.
+   */
+  private void map(long start, int length) throws IOException {
+    if(this.window != null && start >= this.windowStart
+        && start + length <= this.windowStart + this.windowLength) {
+      return;
+    }
+
+    this.windowStart = start;
+    this.windowLength = (int)Math.min(this.windowSize, this.end - start);
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.windowStart, this.windowLength);
+  }
+
+  /**
+   * Move to the next record, stopping on invalid data in lenient mode.
+   * @return True if a record is available, false at the end of the file or when invalid data has been skipped.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a RDW is invalid or a record is truncated, in strict mode.
+   */
+  @Override
+  protected boolean advance() throws IOException, ReaderException {
+    this.invalid = false;
+
+    do {
+      if(this.position >= this.end) {
+        return false;
+      }
+
+      if(this.end - this.position < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+        return this.skip("Truncated RDW at offset " + this.position + ".", null);
+      }
+
+      this.map(this.position, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+
+      if(!this.rdw.tryBind(this.window, (int)(this.position - this.windowStart))) {
+        return this.invalidRdw();
+      }
+
+      int length = this.rdw.getSegmentLength();
+
+      if(this.rdw.getSegmentCode() != RecordDescriptorWord.Code.COMPLETE_RECORD) {
+        this.invalidate("Spanned segment at offset " + this.position + " in a RDW file.", null);
+        this.position += length;
+        return false;
+      }
+
+      if(this.end - this.position < length) {
+        return this.skip("Truncated record at offset " + this.position
+          + ": " + length + " bytes expected, " + (this.end - this.position) + " available.", null);
+      }
+
+      this.map(this.position, length);
+
+      this.recordOffset = (int)(this.position - this.windowStart) + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+      this.recordLength = length - DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+      this.position += length;
+    } while(this.filter != null && !this.filter.test(this.window, this.recordOffset, this.recordLength));
+
+    if(this.metrics != null) {
+      this.metrics.addRecord(this.recordLength);
+      this.metrics.addBytes(this.recordLength + DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+    }
+
+    return true;
+  }
+
+  /**
+   * Report invalid data which ends the file in lenient mode.
+   * @param message Description of the invalid data.
+   * @param cause Cause of the failure, or null.
+   * @return False, no record is available.
+   * @throws ReaderException In strict mode.
+   */
+  private boolean skip(String message, Exception cause) throws ReaderException {
+    this.invalidate(message, cause);
+    this.position = this.end;
+    return false;
+  }
+
+  /**
+   * Report the RDW which failed to bind. The exception carrying the reason
+   * is only built in strict mode or for the metrics.
+   * @return False, no record is available.
+   * @throws ReaderException In strict mode.
+   */
+  private boolean invalidRdw() throws ReaderException {
+    if(this.lenient && this.metrics == null) {
+      this.skipped();
+      this.position = this.end;
+      return false;
+    }
+
+    try {
+      this.rdw.bind(this.window, (int)(this.position - this.windowStart));
+    } catch(DescriptorWordException e) {
+      if(this.metrics != null) {
+        this.metrics.addDescriptorWordFailure(this.position, e);
+      }
+      return this.skip("Invalid RDW at offset " + this.position + ": " + e.getMessage(), e);
+    }
+
+    return false;
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return this.window;
+  }
+
+  @Override
+  public int getOffset() {
+    return this.recordOffset;
+  }
+
+  @Override
+  public int getLength() {
+    return this.recordLength;
+  }
+
+  /**
+   * Close the file. Mapped windows are released by the garbage collector.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    this.channel.close();
+  }
+}
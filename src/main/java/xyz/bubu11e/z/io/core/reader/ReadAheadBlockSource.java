@@ -0,0 +1,352 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+
+/**
+ * Block source prefetching a dataset with asynchronous reads.
+ *
+ * The dataset is read by chunks into a ring of direct buffers. The
+ * reads of the next chunks are in flight while the blocks of the
+ * current one are decoded, so decoding overlaps I/O. A chunk is
+ * read again as soon as every block it contains has been consumed.
+ *
+ * Blocks are read in place from their chunk. A block crossing
+ * a chunk boundary is copied into a spill buffer.
+ */
+public class ReadAheadBlockSource implements BlockSource {
+
+  /** Default number of chunks of the ring. */
+  public final static int DEFAULT_DEPTH = 4;
+  /** Default size of a chunk in byte. */
+  public final static int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  /** Channel of the dataset. */
+  private final AsynchronousFileChannel channel;
+  /** True if the channel is closed with the source. */
+  private final boolean owner;
+  /** End of the read range into the file. */
+  private final long end;
+  /** Size of a chunk. */
+  private final int chunkSize;
+
+  /** Ring of chunks. */
+  private final ByteBuffer[] chunks;
+  /** Position of each chunk into the file. */
+  private final long[] starts;
+  /** Pending read of each chunk. */
+  private final Future<?>[] reads;
+  /** True for the chunks whose read is complete. */
+  private final boolean[] ready;
+  /** Index of the chunk containing the next block. */
+  private int head = 0;
+  /** Position of the next chunk to read into the file. */
+  private long next;
+
+  /** Buffer holding the blocks crossing a chunk boundary. */
+  private ByteBuffer spill = null;
+  /** Buffer holding a BDW crossing a chunk boundary. */
+  private final ByteBuffer bdwBuffer = ByteBuffer.allocate(DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+  /** View used to decode the BDW. */
+  private final BlockDescriptorWordView bdw = new BlockDescriptorWordView();
+
+  /** Position of the next block into the file. */
+  private long position;
+  /** Buffer containing the current block. */
+  private ByteBuffer blockBuffer = null;
+  /** Position of the current block into the file. */
+  private long blockPosition = 0;
+  /** Offset of the current block into its buffer. */
+  private int blockOffset = 0;
+  /** Length of the current block. */
+  private int blockLength = 0;
+
+  /**
+   * Constructor with the default depth and chunk size.
+   * @param path Path of the dataset.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ReadAheadBlockSource(Path path) throws IOException {
+    this(path, DEFAULT_DEPTH, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset.
+   * @param depth Number of chunks of the ring, at least 2.
+   * @param chunkSize Size of a chunk in byte.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ReadAheadBlockSource(Path path, int depth, int chunkSize) throws IOException {
+    this(AsynchronousFileChannel.open(path, StandardOpenOption.READ), true, 0, -1, depth, chunkSize);
+  }
+
+  /**
+   * Constructor on a range of a shared channel.
+   * @param channel Channel of the dataset. It is not closed with the source.
+   * @param start Position of the first block of the range.
+   * @param end End of the range, or -1 for the end of the file.
+   * @param depth Number of chunks of the ring, at least 2.
+   * @param chunkSize Size of a chunk in byte.
+   * @throws IOException If the size of the file cannot be read.
+   */
+  public ReadAheadBlockSource(AsynchronousFileChannel channel, long start, long end, int depth, int chunkSize)
+      throws IOException {
+    this(channel, false, start, end, depth, chunkSize);
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel of the dataset.
+   * @param owner True if the channel is closed with the source.
+   * @param start Position of the first block of the range.
+   * @param end End of the range, or -1 for the end of the file.
+   * @param depth Number of chunks of the ring, at least 2.
+   * @param chunkSize Size of a chunk in byte.
+   * @throws IOException If the size of the file cannot be read.
+   */
+  private ReadAheadBlockSource(AsynchronousFileChannel channel, boolean owner, long start, long end,
+      int depth, int chunkSize) throws IOException {
+    if(depth < 2) {
+      if(owner) {
+        channel.close();
+      }
+      throw new IllegalArgumentException("Invalid depth: " + depth + ".");
+    }
+    if(chunkSize < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      if(owner) {
+        channel.close();
+      }
+      throw new IllegalArgumentException("Invalid chunk size: " + chunkSize + ".");
+    }
+
+    this.channel = channel;
+    this.owner = owner;
+    this.end = end < 0 ? channel.size() : end;
+    this.chunkSize = chunkSize;
+    this.position = start;
+    this.next = start;
+
+    this.chunks = new ByteBuffer[depth];
+    this.starts = new long[depth];
+    this.reads = new Future<?>[depth];
+    this.ready = new boolean[depth];
+
+    for(int i = 0; i < depth; i++) {
+      this.chunks[i] = ByteBuffer.allocateDirect(chunkSize);
+      this.read(i);
+    }
+  }
+
+  /**
+   * Start the read of the next chunk of the file into a chunk of the ring.
+   * @param index Index of the chunk into the ring.
+   */
+  private void read(int index) {
+    ByteBuffer chunk = this.chunks[index];
+
+    chunk.clear();
+    chunk.limit((int)Math.max(0, Math.min(this.chunkSize, this.end - this.next)));
+    this.starts[index] = this.next;
+    this.ready[index] = false;
+    this.reads[index] = chunk.hasRemaining() ? this.channel.read(chunk, this.next) : null;
+    this.next += this.chunkSize;
+  }
+
+  /**
+   * Wait for the read of a chunk of the ring.
+   * @param index Index of the chunk into the ring.
+   * @return The chunk, with its data between 0 and its limit.
+   * @throws IOException If the read failed or the file is shorter than expected.
+   */
+  private ByteBuffer await(int index) throws IOException {
+    ByteBuffer chunk = this.chunks[index];
+
+    if(this.ready[index]) {
+      return chunk;
+    }
+
+    try {
+      while(chunk.hasRemaining()) {
+        if((Integer)this.reads[index].get() < 0) {
+          throw new EOFException("Unexpected end of file at offset " + (this.starts[index] + chunk.position()) + ".");
+        }
+        if(chunk.hasRemaining()) {
+          this.reads[index] = this.channel.read(chunk, this.starts[index] + chunk.position());
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading offset " + this.starts[index] + ".");
+    } catch(ExecutionException e) {
+      if(e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+
+    chunk.flip();
+    this.ready[index] = true;
+
+    return chunk;
+  }
+
+  /**
+   * Release the head chunk of the ring and read the next part of the file into it.
+   */
+  private void recycle() {
+    this.read(this.head);
+    this.head = (this.head + 1) % this.chunks.length;
+  }
+
+  /**
+   * Copy bytes crossing chunk boundaries.
+   * @param from Position of the first byte to copy into the file.
+   * @param dst Buffer receiving the bytes up to its limit.
+   * @param release True to release the chunks once copied.
+   * @throws IOException If a read failed.
+   */
+  private void copy(long from, ByteBuffer dst, boolean release) throws IOException {
+    int index = this.head;
+
+    while(dst.hasRemaining()) {
+      ByteBuffer chunk = this.await(index);
+      int offset = (int)(from - this.starts[index]);
+      int count = Math.min(chunk.limit() - offset, dst.remaining());
+      int limit = chunk.limit();
+
+      chunk.limit(offset + count).position(offset);
+      dst.put(chunk);
+      chunk.limit(limit).position(0);
+      from += count;
+
+      if(from == this.starts[index] + limit) {
+        if(release) {
+          this.recycle();
+          index = this.head;
+        } else {
+          index = (index + 1) % this.chunks.length;
+        }
+      }
+    }
+
+    dst.flip();
+  }
+
+  @Override
+  public boolean nextBlock() throws IOException, ReaderException {
+    if(this.position >= this.end) {
+      return false;
+    }
+
+    if(this.end - this.position < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new ReaderException("Truncated BDW at offset " + this.position + ".");
+    }
+
+    while(this.position >= this.starts[this.head] + this.chunkSize) {
+      this.recycle();
+    }
+
+    ByteBuffer chunk = this.await(this.head);
+    int offset = (int)(this.position - this.starts[this.head]);
+
+    try {
+      if(chunk.limit() - offset >= DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+        this.bdw.bind(chunk, offset);
+      } else {
+        this.bdwBuffer.clear();
+        this.copy(this.position, this.bdwBuffer, false);
+        this.bdw.bind(this.bdwBuffer, 0);
+      }
+    } catch(DescriptorWordException e) {
+      throw new ReaderException("Invalid BDW at offset " + this.position + ": " + e.getMessage(), e);
+    }
+
+    int length = this.bdw.getSegmentLength();
+
+    if(this.end - this.position < length) {
+      throw new ReaderException("Truncated block at offset " + this.position
+        + ": " + length + " bytes expected, " + (this.end - this.position) + " available.");
+    }
+
+    if(chunk.limit() - offset >= length) {
+      this.blockBuffer = chunk;
+      this.blockOffset = offset;
+    } else {
+      if(this.spill == null || this.spill.capacity() < length) {
+        this.spill = ByteBuffer.allocateDirect(Math.max(length, this.chunkSize));
+      }
+      this.spill.clear().limit(length);
+      this.copy(this.position, this.spill, true);
+      this.blockBuffer = this.spill;
+      this.blockOffset = 0;
+    }
+
+    this.blockPosition = this.position;
+    this.blockLength = length;
+    this.position += length;
+
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBlockBuffer() {
+    return this.blockBuffer;
+  }
+
+  @Override
+  public int getBlockOffset() {
+    return this.blockOffset;
+  }
+
+  @Override
+  public int getBlockLength() {
+    return this.blockLength;
+  }
+
+  @Override
+  public long getBlockPosition() {
+    return this.blockPosition;
+  }
+
+  /**
+   * Close the underlying channel if it is owned by the source.
+   * Reads still in flight on a shared channel complete in the background.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.blockBuffer = null;
+    if(this.owner) {
+      this.channel.close();
+    }
+  }
+}
@@ -26,4 +26,8 @@ public class ReaderException extends Exception {
   	super(msg);
   }
 
+  public ReaderException(String msg, Exception e) {
+  	super(msg, e);
+  }
+
 }
\ No newline at end of file
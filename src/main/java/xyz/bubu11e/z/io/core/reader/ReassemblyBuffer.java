@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Growable buffer used to reassemble spanned records.
+ *
+ * The backing array is kept from one record to the next and
+ * only grows, by doubling, when a record does not fit. Once
+ * warmed up, reassembling a record does not allocate.
+ */
+class ReassemblyBuffer {
+
+  /** Default initial capacity of the buffer. */
+  final static int DEFAULT_CAPACITY = 64 * 1024;
+
+  /** Backing array. */
+  private byte[] array;
+  /** Heap buffer wrapping the backing array. */
+  private ByteBuffer buffer;
+  /** Number of bytes used. */
+  private int length = 0;
+
+  /** Last direct buffer appended from. */
+  private ByteBuffer source = null;
+  /** View of the last direct buffer appended from. */
+  private ByteBuffer view = null;
+
+  /**
+   * Constructor.
+   * @param capacity Initial capacity of the buffer.
+   */
+  ReassemblyBuffer(int capacity) {
+    this.array = new byte[capacity];
+    this.buffer = ByteBuffer.wrap(this.array);
+  }
+
+  /**
+   * Discard the content of the buffer.
+   */
+  void reset() {
+    this.length = 0;
+  }
+
+  /**
+   * Append a region of a buffer.
+   * @param source Buffer containing the data to append.
+   * @param offset Absolute index of the data into the source buffer.
+   * @param count Number of bytes to append.
+   */
+  void append(ByteBuffer source, int offset, int count) {
+    if(this.array.length - this.length < count) {
+      this.grow(this.length + count);
+    }
+
+    if(source.hasArray()) {
+      System.arraycopy(source.array(), source.arrayOffset() + offset, this.array, this.length, count);
+    } else {
+      if(source != this.source) {
+        this.source = source;
+        this.view = source.duplicate();
+      }
+      this.view.clear();
+      this.view.position(offset);
+      this.view.get(this.array, this.length, count);
+    }
+
+    this.length += count;
+  }
+
+  /**
+   * Grow the backing array.
+   * @param minimum Minimum capacity required.
+   */
+  private void grow(int minimum) {
+    long capacity = Math.max((long)this.array.length * 2, minimum);
+    byte[] array = new byte[(int)Math.min(capacity, Integer.MAX_VALUE - 8)];
+    System.arraycopy(this.array, 0, array, 0, this.length);
+    this.array = array;
+    this.buffer = ByteBuffer.wrap(array);
+  }
+
+  /**
+   * Getter for the buffer wrapping the data.
+   * @return A heap buffer whose backing array starts with the data.
+   */
+  ByteBuffer getBuffer() {
+    return this.buffer;
+  }
+
+  /**
+   * Getter for the number of bytes used.
+   * @return The length of the data.
+   */
+  int getLength() {
+    return this.length;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Batch of fixed length records stored back to back in a buffer.
+ *
+ * The offset of a record is computed from its index, so a batch
+ * describes any number of records without allocating. The records
+ * of a batch filled by a reader stay valid until the next call to
+ * the reader.
+ */
+public class RecordBatch {
+
+  /** Buffer containing the records. */
+  private ByteBuffer buffer = null;
+  /** Absolute index of the first record into the buffer. */
+  private int offset = 0;
+  /** Number of records. */
+  private int count = 0;
+  /** Length of the records. */
+  private int recordLength = 0;
+
+  /**
+   * Default Constructor.
+   */
+  public RecordBatch() {
+  }
+
+  /**
+   * Describe the records of the batch.
+   * @param buffer Buffer containing the records.
+   * @param offset Absolute index of the first record into the buffer.
+   * @param count Number of records.
+   * @param recordLength Length of the records.
+   */
+  public void set(ByteBuffer buffer, int offset, int count, int recordLength) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.count = count;
+    this.recordLength = recordLength;
+  }
+
+  /**
+   * Getter for the buffer.
+   * @return The buffer containing the records.
+   */
+  public ByteBuffer getBuffer() {
+    return this.buffer;
+  }
+
+  /**
+   * Getter for the number of records.
+   * @return The number of records of the batch.
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Getter for the record length.
+   * @return The length of the records.
+   */
+  public int getRecordLength() {
+    return this.recordLength;
+  }
+
+  /**
+   * Getter for the offset of the batch.
+   * @return The absolute index of the first record into the buffer.
+   */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Getter for the offset of a record.
+   * @param index Index of the record into the batch.
+   * @return The absolute index of the record into the buffer.
+   */
+  public int getOffset(int index) {
+    return this.offset + index * this.recordLength;
+  }
+
+  /**
+   * Getter for the length of the batch.
+   * @return The number of bytes of the records.
+   */
+  public int getLength() {
+    return this.count * this.recordLength;
+  }
+}
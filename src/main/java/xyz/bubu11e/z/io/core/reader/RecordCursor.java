@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Zero-copy cursor over the records of a dataset.
+ *
+ * The current record is exposed in place, either as a
+ * buffer/offset/length triple or as a buffer view. Both
+ * are only valid until the next call to {@link #next()}
+ * and must be copied by the caller if it needs to keep
+ * the record.
+ */
+public interface RecordCursor extends Closeable {
+
+  /**
+   * Move to the next record.
+   * @return True if a record is available, false at the end of the dataset.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If the record read is invalid.
+   */
+  public boolean next() throws IOException, ReaderException;
+
+  /**
+   * Getter for the buffer containing the current record.
+   * @return The buffer containing the current record.
+   */
+  public ByteBuffer getBuffer();
+
+  /**
+   * Getter for the offset of the current record.
+   * @return The absolute index of the first byte of the current record into its buffer.
+   */
+  public int getOffset();
+
+  /**
+   * Getter for the length of the current record.
+   * @return The length of the current record, without its descriptor word.
+   */
+  public int getLength();
+
+  /**
+   * Getter for a view of the current record.
+   * The returned buffer is reused, its position and limit
+   * delimit the current record.
+   * @return A view of the current record.
+   */
+  public ByteBuffer getRecord();
+
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWordView;
+
+/**
+ * Block source recovering from the damaged regions of a dataset.
+ *
+ * The file is mapped by sliding windows as by {@link MappedBlockSource},
+ * but each block is only delivered once its BDW is valid and its RDW
+ * chain sums exactly to the block length, so the readers never meet an
+ * invalid descriptor word. When a block fails this check, the source
+ * scans forward for the next position holding such a block, reports
+ * the skipped range to its {@link ResyncListener} and resumes from there.
+ *
+ * The scan first rejects the positions whose words cannot start a block
+ * or a segment, which only costs a couple of int reads per byte, and
+ * walks the RDW chain of the remaining candidates.
+ *
+ * The checks of a clean block only read its descriptor words. Datasets
+ * known to be sound are still best read by a {@link MappedBlockSource}.
+ * Spanned records crossing a damaged region cannot be reassembled, a
+ * {@link VBSReader} reports them as out of sequence.
+ */
+public class ResyncBlockSource implements BlockSource {
+
+  /** Default size of a mapped window in byte. */
+  public final static int DEFAULT_WINDOW_SIZE = MappedBlockSource.DEFAULT_WINDOW_SIZE;
+
+  /** Channel of the mapped file. */
+  private final FileChannel channel;
+  /** True if the channel is closed with the source. */
+  private final boolean owner;
+  /** End of the mapped range into the file. */
+  private final long end;
+  /** Size of a mapped window. */
+  private final int windowSize;
+  /** Listener of the skipped regions, may be null. */
+  private final ResyncListener listener;
+
+  /** Current mapped window. */
+  private MappedByteBuffer window = null;
+  /** Position of the current window into the file. */
+  private long windowStart = 0;
+  /** Length of the current window. */
+  private int windowLength = 0;
+
+  /** Position of the next block into the file. */
+  private long position = 0;
+  /** Position of the current block into the file. */
+  private long blockPosition = -1;
+  /** Offset of the current block into the window. */
+  private int blockOffset = 0;
+  /** Length of the current block. */
+  private int blockLength = 0;
+
+  /** Number of skipped regions. */
+  private long skippedRegions = 0;
+  /** Number of skipped bytes. */
+  private long skippedBytes = 0;
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset to map.
+   * @param listener Listener of the skipped regions, or null.
+   * @throws IOException If the file cannot be opened.
+   */
+  public ResyncBlockSource(Path path, ResyncListener listener) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.READ), true, 0, -1, DEFAULT_WINDOW_SIZE, listener);
+  }
+
+  /**
+   * Constructor for a range of a dataset.
+   * @param channel Channel of the dataset, not closed with the source.
+   * @param start Position of the first block of the range.
+   * @param end Position of the end of the range, or -1 for the end of the dataset.
+   * @param windowSize Size of a mapped window in byte.
+   * @param listener Listener of the skipped regions, or null.
+   * @throws IOException If the size of the channel cannot be read.
+   */
+  public ResyncBlockSource(FileChannel channel, long start, long end, int windowSize, ResyncListener listener)
+      throws IOException {
+    this(channel, false, start, end, windowSize, listener);
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel of the dataset.
+   * @param owner True if the channel is closed with the source.
+   * @param start Position of the first block of the range.
+   * @param end Position of the end of the range, or -1 for the end of the dataset.
+   * @param windowSize Size of a mapped window in byte.
+   * @param listener Listener of the skipped regions, or null.
+   * @throws IOException If the size of the channel cannot be read.
+   */
+  private ResyncBlockSource(FileChannel channel, boolean owner, long start, long end, int windowSize,
+      ResyncListener listener) throws IOException {
+    if(windowSize < 2 * DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new IllegalArgumentException("Invalid window size: " + windowSize + ".");
+    }
+
+    this.windowSize = windowSize;
+    this.channel = channel;
+    this.owner = owner;
+    this.end = end < 0 ? channel.size() : end;
+    this.position = start;
+    this.listener = listener;
+  }
+
+  /**
+   * Getter for the number of skipped regions.
+   * @return The number of damaged regions skipped so far.
+   */
+  public long getSkippedRegions() {
+    return this.skippedRegions;
+  }
+
+  /**
+   * Getter for the number of skipped bytes.
+   * @return The number of bytes skipped so far.
+   */
+  public long getSkippedBytes() {
+    return this.skippedBytes;
+  }
+
+  /**
+   * Make sure a region of the file is available in the current window.
+   * @param start Position of the region into the file.
+   * @param length Length of the region.
+   * @return The offset of the region into the window.
+   * @throws IOException If the region cannot be mapped.
+   */
+  private int map(long start, int length) throws IOException {
+    if(this.window == null || start < this.windowStart
+        || start + length > this.windowStart + this.windowLength) {
+      this.windowStart = start;
+      this.windowLength = (int)Math.min(Math.max(this.windowSize, length), this.end - start);
+      this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.windowStart, this.windowLength);
+    }
+
+    return (int)(start - this.windowStart);
+  }
+
+  /**
+   * Read a word of the file.
+   * @param start Position of the word into the file.
+   * @return The word as a big endian int.
+   * @throws IOException If the word cannot be mapped.
+   */
+  private int word(long start) throws IOException {
+    int offset = this.map(start, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+    return this.window.getInt(offset);
+  }
+
+  /**
+   * Check if a word can be the BDW of a block.
+   * @param word The word as a big endian int.
+   * @param available Number of bytes available from the word.
+   * @param strict True to also require a segment and the unused bytes of a nonextended BDW to be zero.
+   * @return The length of the block, or -1 if the word cannot be a BDW.
+   */
+  private static int blockLength(int word, long available, boolean strict) {
+    int length = BlockDescriptorWordView.getSegmentLength(word);
+
+    if(length < (strict ? 2 : 1) * DescriptorWord.DESCRIPTOR_WORD_LENGTH || length > available) {
+      return -1;
+    }
+
+    if(!BlockDescriptorWordView.isExtended(word)
+        && (length > BlockDescriptorWord.BDW_MAX_SEGMENT_LENGTH_NONEXTENDED || (strict && (word & 0xffff) != 0))) {
+      return -1;
+    }
+
+    return length;
+  }
+
+  /**
+   * Check if a word can be the RDW of a segment.
+   * @param word The word as a big endian int.
+   * @param available Number of bytes left in the block from the word.
+   * @return The length of the segment, or -1 if the word cannot be a RDW.
+   */
+  private static int segmentLength(int word, int available) {
+    int length = RecordDescriptorWordView.getSegmentLength(word);
+
+    if(length < DescriptorWord.DESCRIPTOR_WORD_LENGTH || length > available
+        || length > RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH
+        || RecordDescriptorWordView.getSegmentCodeByte(word) > RecordDescriptorWord.RDW_CODE_OTHER_SEGMENT
+        || (byte)word != 0) {
+      return -1;
+    }
+
+    return length;
+  }
+
+  /**
+   * Check the block at a position.
+   * @param start Position of the block into the file.
+   * @param strict True to reject the empty blocks and the nonextended BDW whose unused bytes are set.
+   * @return The length of the block, or -1 if no valid block starts at the position.
+   * @throws IOException If an I/O error occurs.
+   */
+  private int check(long start, boolean strict) throws IOException {
+    long available = this.end - start;
+    if(available < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      return -1;
+    }
+
+    int length = blockLength(this.word(start), available, strict);
+    if(length < 0) {
+      return -1;
+    }
+
+    int offset = this.map(start, length);
+    int limit = offset + length;
+    int next = offset + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+
+    while(next < limit) {
+      if(limit - next < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+        return -1;
+      }
+
+      int segment = segmentLength(this.window.getInt(next), limit - next);
+      if(segment < 0) {
+        return -1;
+      }
+      next += segment;
+    }
+
+    return length;
+  }
+
+  /**
+   * Scan forward for the next valid block.
+   * @param start Position where the scan starts.
+   * @return The position of the next valid block, or the end of the range if there is none.
+   * @throws IOException If an I/O error occurs.
+   */
+  private long scan(long start) throws IOException {
+    for(long candidate = start; this.end - candidate >= 2 * DescriptorWord.DESCRIPTOR_WORD_LENGTH; candidate++) {
+      int offset = this.map(candidate, 2 * DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+      int length = blockLength(this.window.getInt(offset), this.end - candidate, true);
+
+      if(length >= 0 && segmentLength(this.window.getInt(offset + DescriptorWord.DESCRIPTOR_WORD_LENGTH),
+          length - DescriptorWord.DESCRIPTOR_WORD_LENGTH) >= 0 && this.check(candidate, true) >= 0) {
+        return candidate;
+      }
+    }
+
+    return this.end;
+  }
+
+  /**
+   * Describe why no valid block starts at a position.
+   * @param start Position of the rejected block.
+   * @return The description of the failure.
+   * @throws IOException If an I/O error occurs.
+   */
+  private String describe(long start) throws IOException {
+    if(this.end - start < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      return "Truncated BDW at offset " + start + ".";
+    }
+
+    int word = this.word(start);
+    if(blockLength(word, this.end - start, false) < 0) {
+      return "Invalid BDW " + String.format("%08x", word) + " at offset " + start + ".";
+    }
+
+    return "Invalid RDW chain in the block at offset " + start + ".";
+  }
+
+  @Override
+  public boolean nextBlock() throws IOException, ReaderException {
+    if(this.position >= this.end) {
+      return false;
+    }
+
+    int length = this.check(this.position, false);
+
+    if(length < 0) {
+      long start = this.position;
+      String reason = this.describe(start);
+
+      this.position = this.scan(start + 1);
+      this.skippedRegions++;
+      this.skippedBytes += this.position - start;
+      if(this.listener != null) {
+        this.listener.onSkip(start, this.position, reason);
+      }
+
+      if(this.position >= this.end) {
+        return false;
+      }
+      length = this.check(this.position, true);
+    }
+
+    this.blockPosition = this.position;
+    this.blockOffset = this.map(this.position, length);
+    this.blockLength = length;
+    this.position += length;
+
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBlockBuffer() {
+    return this.window;
+  }
+
+  @Override
+  public int getBlockOffset() {
+    return this.blockOffset;
+  }
+
+  @Override
+  public int getBlockLength() {
+    return this.blockLength;
+  }
+
+  @Override
+  public long getBlockPosition() {
+    return this.blockPosition;
+  }
+
+  /**
+   * Close the underlying channel if it is owned by the source.
+   * Mapped windows are released by the garbage collector.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    if(this.owner) {
+      this.channel.close();
+    }
+  }
+}
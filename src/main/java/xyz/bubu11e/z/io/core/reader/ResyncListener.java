@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+/**
+ * Listener of the regions skipped by a {@link ResyncBlockSource}.
+ */
+public interface ResyncListener {
+
+  /**
+   * Called when a damaged region of the dataset has been skipped.
+   * @param start Position of the first skipped byte.
+   * @param end Position following the last skipped byte, where reading resumes.
+   * @param reason Description of the descriptor word which failed at the start of the region.
+   */
+  public void onSkip(long start, long end, String reason);
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+
+/**
+ * Block source reading a dataset from an input stream.
+ *
+ * Used for datasets which cannot be mapped, such as compressed
+ * files decompressed on the fly. Each block is read into a
+ * buffer grown to the largest block of the dataset, so the
+ * current block is only valid until the next call to
+ * {@link #nextBlock()}.
+ */
+public class StreamBlockSource implements BlockSource {
+
+  /** Default initial capacity of the block buffer. */
+  public final static int DEFAULT_CAPACITY = 64 * 1024;
+
+  /** Stream of the dataset. */
+  private final InputStream in;
+
+  /** Array containing the current block. */
+  private byte[] block;
+  /** Buffer wrapping the block array. */
+  private ByteBuffer buffer;
+
+  /** View used to decode the BDW in place. */
+  private final BlockDescriptorWordView bdw = new BlockDescriptorWordView();
+
+  /** Position of the next block into the dataset. */
+  private long position = 0;
+  /** Position of the current block into the dataset. */
+  private long blockPosition = -1;
+  /** Length of the current block. */
+  private int blockLength = 0;
+
+  /**
+   * Constructor using the default capacity.
+   * @param in Stream of the dataset, closed with the source.
+   */
+  public StreamBlockSource(InputStream in) {
+    this(in, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   * @param in Stream of the dataset, closed with the source.
+   * @param capacity Initial capacity of the block buffer.
+   */
+  public StreamBlockSource(InputStream in, int capacity) {
+    if(capacity < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity + ".");
+    }
+
+    this.in = in;
+    this.block = new byte[capacity];
+    this.buffer = ByteBuffer.wrap(this.block);
+  }
+
+  /**
+   * Read bytes from the stream until the requested length or the end of the stream.
+   * @param offset Offset into the block array.
+   * @param length Number of bytes to read.
+   * @return The number of bytes read.
+   * @throws IOException If an I/O error occurs.
+   */
+  private int readFully(int offset, int length) throws IOException {
+    int count = 0;
+    while(count < length) {
+      int read = this.in.read(this.block, offset + count, length - count);
+      if(read < 0) {
+        break;
+      }
+      count += read;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean nextBlock() throws IOException, ReaderException {
+    int count = this.readFully(0, DescriptorWord.DESCRIPTOR_WORD_LENGTH);
+    if(count == 0) {
+      return false;
+    }
+
+    if(count < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new ReaderException("Truncated BDW at offset " + this.position + ".");
+    }
+
+    try {
+      this.bdw.bind(this.buffer, 0);
+    } catch(DescriptorWordException e) {
+      throw new ReaderException("Invalid BDW at offset " + this.position + ": " + e.getMessage(), e);
+    }
+
+    int length = this.bdw.getSegmentLength();
+
+    if(length > this.block.length) {
+      this.block = Arrays.copyOf(this.block, Math.max(length, 2 * this.block.length));
+      this.buffer = ByteBuffer.wrap(this.block);
+    }
+
+    count = this.readFully(DescriptorWord.DESCRIPTOR_WORD_LENGTH, length - DescriptorWord.DESCRIPTOR_WORD_LENGTH)
+      + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+    if(count < length) {
+      throw new ReaderException("Truncated block at offset " + this.position
+        + ": " + length + " bytes expected, " + count + " available.");
+    }
+
+    this.blockPosition = this.position;
+    this.blockLength = length;
+    this.position += length;
+
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBlockBuffer() {
+    return this.buffer;
+  }
+
+  @Override
+  public int getBlockOffset() {
+    return 0;
+  }
+
+  @Override
+  public int getBlockLength() {
+    return this.blockLength;
+  }
+
+  @Override
+  public long getBlockPosition() {
+    return this.blockPosition;
+  }
+
+  /**
+   * Close the underlying stream.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+/**
+ * Unchecked wrapper of a {@link ReaderException}, thrown where the
+ * checked exception cannot be, such as from a stream pipeline.
+ */
+public class UncheckedReaderException extends RuntimeException {
+
+  /**
+   * Constructor.
+   * @param e The wrapped exception.
+   */
+  public UncheckedReaderException(ReaderException e) {
+    super(e);
+  }
+
+  /**
+   * Getter for the wrapped exception.
+   * @return The wrapped exception.
+   */
+  @Override
+  public ReaderException getCause() {
+    return (ReaderException)super.getCause();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+
+/**
+ * Reader for RECFM=VB datasets.
+ *
+ * Blocks are provided by a {@link BlockSource}, by default a
+ * {@link MappedBlockSource}, and the RDW chain of each block
+ * is walked directly into the block buffer.
+ *
+ * Records are exposed in place through the {@link RecordCursor}
+ * contract. Spanned records are not supported by this reader,
+ * see {@link VBSReader}.
+ */
+public class VBReader extends AbstractVariableReader {
+
+  /**
+   * Constructor memory mapping the dataset.
+   * @param path Path of the dataset to read.
+   * @throws IOException If the file cannot be opened.
+   */
+  public VBReader(Path path) throws IOException {
+    this(new MappedBlockSource(path));
+  }
+
+  /**
+   * Constructor.
+   * @param source Source of the blocks to read.
+   */
+  public VBReader(BlockSource source) {
+    super(source);
+  }
+
+  /**
+   * Constructor memory mapping the dataset from a checkpoint.
+   * @param path Path of the dataset to read.
+   * @param checkpoint Checkpoint to resume at.
+   * @throws IOException If the file cannot be opened.
+   */
+  public VBReader(Path path, Checkpoint checkpoint) throws IOException {
+    this(new MappedBlockSource(path, checkpoint.getBlockPosition(), -1, MappedBlockSource.DEFAULT_WINDOW_SIZE),
+      checkpoint);
+  }
+
+  /**
+   * Constructor resuming at a checkpoint.
+   * @param source Source of the blocks to read, starting at the block of the checkpoint.
+   * @param checkpoint Checkpoint to resume at.
+   */
+  public VBReader(BlockSource source, Checkpoint checkpoint) {
+    super(source, checkpoint);
+  }
+
+  /**
+   * Move to the next record, stopping on invalid data in lenient mode.
+   * A spanned segment is invalid data.
+   * @return True if a record is available, false at the end of the dataset or when invalid data has been skipped.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid, in strict mode.
+   */
+  @Override
+  protected boolean advance() throws IOException, ReaderException {
+    RecordDescriptorWord.Code code;
+    this.invalid = false;
+
+    do {
+      code = this.nextSegment();
+
+      if(code == null) {
+        return false;
+      }
+
+      if(code != RecordDescriptorWord.Code.COMPLETE_RECORD) {
+        this.invalidate("Spanned segment at offset " + this.segmentPosition
+          + " in a VB dataset.", null);
+        return false;
+      }
+    } while(this.filter != null && !this.filter.test(this.block, this.segmentOffset, this.segmentLength));
+
+    if(this.metrics != null) {
+      this.metrics.addRecord(this.segmentLength);
+    }
+
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return this.block;
+  }
+
+  @Override
+  public int getOffset() {
+    return this.segmentOffset;
+  }
+
+  @Override
+  public int getLength() {
+    return this.segmentLength;
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+
+/**
+ * Reader for RECFM=VBS datasets.
+ *
+ * Segments are stitched across block boundaries into logical
+ * records using the SDW segment codes. Complete records are
+ * exposed in place into the block buffer, spanned records are
+ * reassembled into a reusable buffer which only grows when a
+ * record larger than any previous one is met.
+ *
+ * In lenient mode, a segment out of sequence drops the spanned
+ * record in progress. The segment interrupting a spanned record
+ * is then read again as the start of the next record.
+ */
+public class VBSReader extends AbstractVariableReader {
+
+  /** Buffer used to reassemble spanned records. */
+  private final ReassemblyBuffer assembly;
+
+  /** Code of the segment to read again, null if none. */
+  private RecordDescriptorWord.Code held = null;
+
+  /** Buffer containing the current record. */
+  private ByteBuffer buffer = null;
+  /** Absolute index of the current record. */
+  private int offset = 0;
+  /** Length of the current record. */
+  private int length = 0;
+
+  /**
+   * Constructor memory mapping the dataset.
+   * @param path Path of the dataset to read.
+   * @throws IOException If the file cannot be opened.
+   */
+  public VBSReader(Path path) throws IOException {
+    this(new MappedBlockSource(path));
+  }
+
+  /**
+   * Constructor.
+   * @param source Source of the blocks to read.
+   */
+  public VBSReader(BlockSource source) {
+    this(source, ReassemblyBuffer.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   * @param source Source of the blocks to read.
+   * @param capacity Initial capacity of the reassembly buffer.
+   */
+  public VBSReader(BlockSource source, int capacity) {
+    this(source, capacity, Checkpoint.START);
+  }
+
+  /**
+   * Constructor memory mapping the dataset from a checkpoint.
+   * @param path Path of the dataset to read.
+   * @param checkpoint Checkpoint to resume at.
+   * @throws IOException If the file cannot be opened.
+   */
+  public VBSReader(Path path, Checkpoint checkpoint) throws IOException {
+    this(new MappedBlockSource(path, checkpoint.getBlockPosition(), -1, MappedBlockSource.DEFAULT_WINDOW_SIZE),
+      ReassemblyBuffer.DEFAULT_CAPACITY, checkpoint);
+  }
+
+  /**
+   * Constructor resuming at a checkpoint.
+   * @param source Source of the blocks to read, starting at the block of the checkpoint.
+   * @param capacity Initial capacity of the reassembly buffer.
+   * @param checkpoint Checkpoint to resume at.
+   */
+  public VBSReader(BlockSource source, int capacity, Checkpoint checkpoint) {
+    super(source, checkpoint);
+    this.assembly = new ReassemblyBuffer(capacity);
+  }
+
+  /**
+   * Save the position of the reader, after the last record read.
+   * A segment kept to be read again in lenient mode is not counted as read.
+   * @return The checkpoint of the reader, without output position.
+   */
+  @Override
+  public Checkpoint getCheckpoint() {
+    Checkpoint checkpoint = super.getCheckpoint();
+
+    if(this.held == null) {
+      return checkpoint;
+    }
+
+    return new Checkpoint(checkpoint.getBlockPosition(), checkpoint.getSegment() - 1, -1);
+  }
+
+  /**
+   * Move to the next logical record, stopping on invalid data in lenient mode.
+   * With a filter, a spanned record whose first segment covers the extent
+   * of the filter is tested on this segment, and its other segments are
+   * skipped without being reassembled when it does not match.
+   * @return True if a record is available, false at the end of the dataset or when invalid data has been skipped.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid or the segments are out of sequence,
+   * in strict mode.
+   */
+  @Override
+  protected boolean advance() throws IOException, ReaderException {
+    this.invalid = false;
+
+    while(true) {
+      RecordDescriptorWord.Code code = this.held != null ? this.held : this.nextSegment();
+      this.held = null;
+
+      if(code == null) {
+        return false;
+      }
+
+      if(code == RecordDescriptorWord.Code.COMPLETE_RECORD) {
+        if(this.filter != null && !this.filter.test(this.block, this.segmentOffset, this.segmentLength)) {
+          continue;
+        }
+
+        this.buffer = this.block;
+        this.offset = this.segmentOffset;
+        this.length = this.segmentLength;
+        if(this.metrics != null) {
+          this.metrics.addRecord(this.length);
+        }
+        return true;
+      }
+
+      if(code != RecordDescriptorWord.Code.FIRST_SEGMENT) {
+        this.invalidate("Unexpected " + code + " at offset " + this.segmentPosition
+          + ": no spanned record in progress.", null);
+        return false;
+      }
+
+      if(this.filter != null && this.segmentLength >= this.filter.getExtent()
+          && !this.filter.test(this.block, this.segmentOffset, this.segmentLength)) {
+        do {
+          code = this.nextSpannedSegment();
+          if(code == null) {
+            return false;
+          }
+        } while(code != RecordDescriptorWord.Code.LAST_SEGMENT);
+        continue;
+      }
+
+      this.assembly.reset();
+      this.assembly.append(this.block, this.segmentOffset, this.segmentLength);
+
+      do {
+        code = this.nextSpannedSegment();
+        if(code == null) {
+          return false;
+        }
+        this.assembly.append(this.block, this.segmentOffset, this.segmentLength);
+      } while(code != RecordDescriptorWord.Code.LAST_SEGMENT);
+
+      if(this.filter != null && !this.filter.test(this.assembly.getBuffer(), 0, this.assembly.getLength())) {
+        continue;
+      }
+
+      this.buffer = this.assembly.getBuffer();
+      this.offset = 0;
+      this.length = this.assembly.getLength();
+
+      if(this.metrics != null) {
+        this.metrics.addRecord(this.length);
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Move to the next segment of the spanned record in progress.
+   * In lenient mode, the record in progress is dropped on invalid data and
+   * a segment starting a record is kept to be read again.
+   * @return The code of the segment, middle or last, or null on invalid data.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a descriptor word is invalid or the segments are out of sequence,
+   * in strict mode.
+   */
+  private RecordDescriptorWord.Code nextSpannedSegment() throws IOException, ReaderException {
+    RecordDescriptorWord.Code code = this.nextSegment();
+
+    if(code == null) {
+      if(!this.invalid) {
+        this.invalidate("Incomplete spanned record at the end of the dataset.", null);
+      }
+      return null;
+    }
+
+    if(code != RecordDescriptorWord.Code.OTHER_SEGMENT && code != RecordDescriptorWord.Code.LAST_SEGMENT) {
+      this.invalidate("Unexpected " + code + " at offset " + this.segmentPosition
+        + ": a spanned record is in progress.", null);
+      this.held = code;
+      return null;
+    }
+
+    return code;
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return this.buffer;
+  }
+
+  @Override
+  public int getOffset() {
+    return this.offset;
+  }
+
+  @Override
+  public int getLength() {
+    return this.length;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the records of a RECFM=VB dataset.
+ *
+ * The first split hops from BDW to BDW to locate the block boundaries of its
+ * range, the resulting positions are shared by every spliterator split from it.
+ * Ranges are then divided on the block closest to their middle until they are
+ * smaller than the split size. The number of records is not known.
+ */
+public class VBSpliterator implements Spliterator<byte[]> {
+
+  /** Default size under which a range is not split. */
+  public final static int DEFAULT_SPLIT_SIZE = 1024 * 1024;
+
+  /** Channel of the dataset, shared by the spliterators. */
+  private final FileChannel channel;
+  /** Size under which a range is not split. */
+  private final int splitSize;
+
+  /** Block positions followed by the end of the range, null until the first split. */
+  private long[] blocks;
+  /** Index of the first block of the range. */
+  private int first;
+  /** Index of the end of the range. */
+  private int last;
+  /** Position of the first block of the range. */
+  private long start;
+  /** End of the range, exclusive. */
+  private long end;
+
+  /** Reader of the range, opened on the first record. */
+  private VBReader reader = null;
+
+  /**
+   * Constructor with the default split size.
+   * @param channel Channel of the dataset. It is not closed by the spliterator.
+   * @throws IOException If the size of the dataset cannot be read.
+   */
+  public VBSpliterator(FileChannel channel) throws IOException {
+    this(channel, DEFAULT_SPLIT_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel of the dataset. It is not closed by the spliterator.
+   * @param splitSize Size under which a range is not split.
+   * @throws IOException If the size of the dataset cannot be read.
+   */
+  public VBSpliterator(FileChannel channel, int splitSize) throws IOException {
+    this(channel, splitSize, null, 0, 0, 0, channel.size());
+
+    if(splitSize < 1) {
+      throw new IllegalArgumentException("Invalid split size: " + splitSize + ".");
+    }
+  }
+
+  /**
+   * Constructor of a split.
+   * @param channel Channel of the dataset.
+   * @param splitSize Size under which a range is not split.
+   * @param blocks Shared block positions, or null if they are not located yet.
+   * @param first Index of the first block of the range.
+   * @param last Index of the end of the range.
+   * @param start Position of the first block of the range.
+   * @param end End of the range, exclusive.
+   */
+  private VBSpliterator(FileChannel channel, int splitSize, long[] blocks, int first, int last,
+      long start, long end) {
+    this.channel = channel;
+    this.splitSize = splitSize;
+    this.blocks = blocks;
+    this.first = first;
+    this.last = last;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Locate the blocks of the range.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a BDW is invalid.
+   */
+  private void scan() throws IOException, ReaderException {
+    long[] blocks = new long[1024];
+    int count = 0;
+
+    try(MappedBlockSource source = new MappedBlockSource(this.channel, this.start, this.end,
+        MappedBlockSource.DEFAULT_WINDOW_SIZE)) {
+      while(source.nextBlock()) {
+        if(count + 1 == blocks.length) {
+          blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        blocks[count++] = source.getBlockPosition();
+      }
+    }
+
+    blocks[count] = this.end;
+
+    this.blocks = Arrays.copyOf(blocks, count + 1);
+    this.first = 0;
+    this.last = count;
+  }
+
+  @Override
+  public Spliterator<byte[]> trySplit() {
+    if(this.reader != null || this.end - this.start <= this.splitSize) {
+      return null;
+    }
+
+    try {
+      if(this.blocks == null) {
+        this.scan();
+      }
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    } catch(ReaderException e) {
+      throw new UncheckedReaderException(e);
+    }
+
+    if(this.last - this.first < 2) {
+      return null;
+    }
+
+    int middle = Arrays.binarySearch(this.blocks, this.first + 1, this.last, this.start + (this.end - this.start) / 2);
+    if(middle < 0) {
+      middle = Math.min(Math.max(-middle - 1, this.first + 1), this.last - 1);
+    }
+
+    VBSpliterator prefix = new VBSpliterator(this.channel, this.splitSize, this.blocks,
+      this.first, middle, this.start, this.blocks[middle]);
+
+    this.first = middle;
+    this.start = this.blocks[middle];
+
+    return prefix;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super byte[]> action) {
+    try {
+      if(this.reader == null) {
+        if(this.start >= this.end) {
+          return false;
+        }
+        this.reader = new VBReader(new MappedBlockSource(this.channel, this.start, this.end,
+          MappedBlockSource.DEFAULT_WINDOW_SIZE));
+      }
+
+      byte[] record = this.reader.read();
+
+      if(record == null) {
+        this.reader.close();
+        this.start = this.end;
+        return false;
+      }
+
+      action.accept(record);
+
+      return true;
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    } catch(ReaderException e) {
+      throw new UncheckedReaderException(e);
+    }
+  }
+
+  /**
+   * Estimate the number of remaining records.
+   * @return The number of remaining bytes, an upper bound of the number of records.
+   */
+  @Override
+  public long estimateSize() {
+    return this.end - this.start;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.scan;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+
+/**
+ * Command line interface of the {@link StructureScanner}.
+ *
+ * <pre>
+ * scan [options] dataset...
+ *   -f format      Record format: VB, VBS or FB, VB by default.
+ *   -r lrecl       Record length of the FB datasets.
+ * </pre>
+ *
+ * The report of each dataset is printed, the command exits with
+ * status 1 if any dataset is invalid.
+ */
+public class ScanCommand {
+
+  /** Record format of the datasets. */
+  private RecordFormat format = RecordFormat.VB;
+  /** Record length of the FB datasets. */
+  private int lrecl = 0;
+  /** Paths of the datasets. */
+  private final List<String> datasets = new ArrayList<String>();
+
+  /**
+   * Parse the arguments.
+   * @param args Arguments of the command.
+   * @throws IllegalArgumentException If the arguments are invalid.
+   */
+  private void parse(String[] args) {
+    int i = 0;
+
+    for(; i < args.length && args[i].startsWith("-"); i += 2) {
+      if(i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value of option " + args[i] + ".");
+      }
+      String value = args[i + 1];
+
+      switch(args[i]) {
+        case "-f":
+          this.format = RecordFormat.valueOf(value.toUpperCase());
+          break;
+        case "-r":
+          this.lrecl = Integer.parseInt(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + args[i] + ".");
+      }
+    }
+
+    if(i == args.length) {
+      throw new IllegalArgumentException("Expected at least a dataset.");
+    }
+
+    for(; i < args.length; i++) {
+      this.datasets.add(args[i]);
+    }
+  }
+
+  /**
+   * Run the command.
+   * @param args Arguments of the command.
+   * @return The number of invalid datasets.
+   * @throws IOException If a dataset cannot be read.
+   */
+  public static int run(String[] args) throws IOException {
+    ScanCommand command = new ScanCommand();
+    command.parse(args);
+
+    StructureScanner scanner = new StructureScanner(command.format, command.lrecl,
+      StructureScanner.DEFAULT_WINDOW_SIZE);
+
+    int invalid = 0;
+    for(String dataset : command.datasets) {
+      ScanReport report = scanner.scan(Paths.get(dataset));
+      invalid += report.isValid() ? 0 : 1;
+      System.out.println(report);
+    }
+
+    return invalid;
+  }
+
+  /**
+   * Entry point.
+   * @param args Arguments of the command.
+   */
+  public static void main(String[] args) {
+    try {
+      System.exit(run(args) == 0 ? 0 : 1);
+    } catch(IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println("Usage: scan [-f VB|VBS|FB] [-r lrecl] dataset...");
+      System.exit(2);
+    } catch(Exception e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+    }
+  }
+}
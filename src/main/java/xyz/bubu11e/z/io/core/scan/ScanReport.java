@@ -0,0 +1,331 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.scan;
+
+import java.nio.file.Path;
+
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.metrics.Histogram;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+
+/**
+ * Report of a {@link StructureScanner}.
+ *
+ * The report describes the shape of a dataset: its blocks, its records
+ * and the distribution of the record lengths. Lengths up to the maximum
+ * length of a segment are counted exactly, the longer spanned records by
+ * power of two buckets. When the structure is invalid, the report stops
+ * at the first offending descriptor word and only describes what precedes it.
+ */
+public class ScanReport {
+
+  /** Path of the dataset. */
+  private final Path path;
+  /** Record format of the dataset. */
+  private final RecordFormat format;
+
+  /** Number of bytes scanned. */
+  long bytes = 0;
+  /** Number of blocks. */
+  long blocks = 0;
+  /** Length of the shortest block. */
+  int minBlockLength = Integer.MAX_VALUE;
+  /** Length of the longest block. */
+  int maxBlockLength = 0;
+  /** Number of segments. */
+  long segments = 0;
+  /** Number of records. */
+  long records = 0;
+  /** Number of spanned records. */
+  long spannedRecords = 0;
+  /** Sum of the record lengths. */
+  long recordBytes = 0;
+  /** Length of the shortest record. */
+  long minRecordLength = Long.MAX_VALUE;
+  /** Length of the longest record. */
+  long maxRecordLength = 0;
+  /** Number of records of each length up to the maximum segment length. */
+  final long[] recordLengths = new long[RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH + 1];
+  /** Lengths of the records longer than the maximum segment length. */
+  final Histogram longRecordLengths = new Histogram();
+
+  /** Position of the first offending descriptor word, -1 if the dataset is valid. */
+  long errorOffset = -1;
+  /** Description of the first error, null if the dataset is valid. */
+  String error = null;
+  /** Duration of the scan in nanoseconds. */
+  long nanos = 0;
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset.
+   * @param format Record format of the dataset.
+   */
+  ScanReport(Path path, RecordFormat format) {
+    this.path = path;
+    this.format = format;
+  }
+
+  /**
+   * Count a record.
+   * @param length Length of the record.
+   */
+  void record(long length) {
+    this.records++;
+    this.recordBytes += length;
+    this.minRecordLength = Math.min(this.minRecordLength, length);
+    this.maxRecordLength = Math.max(this.maxRecordLength, length);
+
+    if(length < this.recordLengths.length) {
+      this.recordLengths[(int)length]++;
+    } else {
+      this.longRecordLengths.record(length);
+    }
+  }
+
+  /**
+   * Count records of the same length.
+   * @param count Number of records.
+   * @param length Length of the records.
+   */
+  void records(long count, int length) {
+    if(count == 0) {
+      return;
+    }
+
+    this.records += count;
+    this.recordBytes += count * length;
+    this.minRecordLength = Math.min(this.minRecordLength, length);
+    this.maxRecordLength = Math.max(this.maxRecordLength, length);
+
+    if(length < this.recordLengths.length) {
+      this.recordLengths[length] += count;
+    } else {
+      this.longRecordLengths.record(length, count);
+    }
+  }
+
+  /**
+   * Count a block.
+   * @param length Length of the block including its BDW.
+   */
+  void block(int length) {
+    this.blocks++;
+    this.minBlockLength = Math.min(this.minBlockLength, length);
+    this.maxBlockLength = Math.max(this.maxBlockLength, length);
+  }
+
+  /**
+   * Record the first error and stop the scan.
+   * @param offset Position of the offending descriptor word.
+   * @param error Description of the error.
+   */
+  void fail(long offset, String error) {
+    this.errorOffset = offset;
+    this.error = error;
+  }
+
+  /**
+   * Getter for the path of the dataset.
+   * @return The path of the dataset.
+   */
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Getter for the record format.
+   * @return The record format of the dataset.
+   */
+  public RecordFormat getFormat() {
+    return this.format;
+  }
+
+  /**
+   * Check the structure of the dataset.
+   * @return True if no error was found.
+   */
+  public boolean isValid() {
+    return this.error == null;
+  }
+
+  /**
+   * Getter for the position of the first error.
+   * @return The position of the first offending descriptor word, -1 if the dataset is valid.
+   */
+  public long getErrorOffset() {
+    return this.errorOffset;
+  }
+
+  /**
+   * Getter for the first error.
+   * @return The description of the first error, null if the dataset is valid.
+   */
+  public String getError() {
+    return this.error;
+  }
+
+  /**
+   * Getter for the number of bytes scanned.
+   * @return The number of bytes scanned.
+   */
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Getter for the number of blocks.
+   * @return The number of blocks, 0 for fixed length datasets.
+   */
+  public long getBlocks() {
+    return this.blocks;
+  }
+
+  /**
+   * Getter for the length of the shortest block.
+   * @return The length of the shortest block, 0 if there is none.
+   */
+  public int getMinBlockLength() {
+    return this.blocks == 0 ? 0 : this.minBlockLength;
+  }
+
+  /**
+   * Getter for the length of the longest block.
+   * @return The length of the longest block, 0 if there is none.
+   */
+  public int getMaxBlockLength() {
+    return this.maxBlockLength;
+  }
+
+  /**
+   * Getter for the number of segments.
+   * @return The number of segments.
+   */
+  public long getSegments() {
+    return this.segments;
+  }
+
+  /**
+   * Getter for the number of records.
+   * @return The number of records.
+   */
+  public long getRecords() {
+    return this.records;
+  }
+
+  /**
+   * Getter for the number of spanned records.
+   * @return The number of records made of several segments.
+   */
+  public long getSpannedRecords() {
+    return this.spannedRecords;
+  }
+
+  /**
+   * Getter for the length of the shortest record.
+   * @return The length of the shortest record, 0 if there is none.
+   */
+  public long getMinRecordLength() {
+    return this.records == 0 ? 0 : this.minRecordLength;
+  }
+
+  /**
+   * Getter for the length of the longest record.
+   * @return The length of the longest record, 0 if there is none.
+   */
+  public long getMaxRecordLength() {
+    return this.maxRecordLength;
+  }
+
+  /**
+   * Getter for the mean record length.
+   * @return The mean length of the records, 0 if there is none.
+   */
+  public double getMeanRecordLength() {
+    return this.records == 0 ? 0 : (double)this.recordBytes / this.records;
+  }
+
+  /**
+   * Compute a percentile of the record lengths.
+   * Lengths above the maximum segment length are approximated by the
+   * upper bound of their power of two bucket.
+   * @param percentile Percentile, from 0 to 100.
+   * @return The record length at the percentile, 0 if there is no record.
+   */
+  public long getRecordLengthPercentile(double percentile) {
+    if(percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile + ".");
+    }
+
+    if(this.records == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long)Math.ceil(this.records * percentile / 100));
+    long seen = 0;
+
+    for(int i = 0; i < this.recordLengths.length; i++) {
+      seen += this.recordLengths[i];
+      if(seen >= rank) {
+        return i;
+      }
+    }
+
+    long[] counts = this.longRecordLengths.getCounts();
+    for(int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if(seen >= rank) {
+        return Math.min(Histogram.getUpperBound(i), this.maxRecordLength);
+      }
+    }
+
+    return this.maxRecordLength;
+  }
+
+  /**
+   * Getter for the duration of the scan.
+   * @return The duration of the scan in nanoseconds.
+   */
+  public long getNanos() {
+    return this.nanos;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+
+    builder.append(this.path).append(" (").append(this.format).append("): ")
+      .append(this.isValid() ? "valid" : "INVALID").append('\n');
+    if(!this.isValid()) {
+      builder.append("  error:   offset ").append(this.errorOffset).append(": ").append(this.error).append('\n');
+    }
+    builder.append(String.format("  bytes:   %d in %.3f s (%.1f MB/s)%n", this.bytes, this.nanos / 1e9,
+      this.nanos == 0 ? 0 : this.bytes * 1e3 / this.nanos));
+    if(this.format != RecordFormat.FB) {
+      builder.append(String.format("  blocks:  %d, length %d to %d%n", this.blocks, this.getMinBlockLength(),
+        this.maxBlockLength));
+    }
+    builder.append(String.format("  records: %d, %d spanned, %d segments%n", this.records, this.spannedRecords,
+      this.segments));
+    builder.append(String.format("  lengths: min %d, max %d, mean %.1f, p50 %d, p90 %d, p99 %d",
+      this.getMinRecordLength(), this.maxRecordLength, this.getMeanRecordLength(),
+      this.getRecordLengthPercentile(50), this.getRecordLengthPercentile(90), this.getRecordLengthPercentile(99)));
+
+    return builder.toString();
+  }
+}
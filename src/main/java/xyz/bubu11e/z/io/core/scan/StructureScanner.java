@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.scan;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWordView;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+
+/**
+ * Validator of the structure of a dataset.
+ *
+ * The scanner walks the BDW and RDW chains of a memory mapped dataset
+ * and only reads the descriptor words, the record data is skipped. Every
+ * descriptor word is validated as the readers would, the RDW chain of
+ * each block must sum exactly to the block length and the segments of
+ * spanned records must be in sequence. The result is a {@link ScanReport}
+ * describing the shape of the dataset, or its first error.
+ *
+ * Fixed length datasets have no descriptor word: only their length is
+ * checked against the record length.
+ *
+ * A scanner holds no state and can scan several datasets concurrently.
+ */
+public class StructureScanner {
+
+  /** Default size of a mapped window in byte. */
+  public final static int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  /** Record format of the datasets. */
+  private final RecordFormat format;
+  /** Record length of the FB datasets. */
+  private final int lrecl;
+  /** Size of a mapped window. */
+  private final int windowSize;
+
+  /**
+   * Constructor of a scanner of variable format datasets.
+   * @param format Record format of the datasets, VB or VBS.
+   */
+  public StructureScanner(RecordFormat format) {
+    this(format, 0, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param format Record format of the datasets.
+   * @param lrecl Record length of the FB datasets, ignored for the other formats.
+   * @param windowSize Size of a mapped window in byte.
+   */
+  public StructureScanner(RecordFormat format, int lrecl, int windowSize) {
+    if(format == RecordFormat.FB && lrecl < 1) {
+      throw new IllegalArgumentException("Invalid record length: " + lrecl + ".");
+    }
+
+    if(windowSize < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      throw new IllegalArgumentException("Invalid window size: " + windowSize + ".");
+    }
+
+    this.format = format;
+    this.lrecl = lrecl;
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Scan a dataset.
+   * @param path Path of the dataset.
+   * @return The report of the scan.
+   * @throws IOException If an I/O error occurs.
+   */
+  public ScanReport scan(Path path) throws IOException {
+    ScanReport report = new ScanReport(path, this.format);
+    long start = System.nanoTime();
+
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if(this.format == RecordFormat.FB) {
+        this.scanFixed(channel.size(), report);
+      } else {
+        this.scanVariable(channel, report);
+      }
+    }
+
+    report.nanos = System.nanoTime() - start;
+    return report;
+  }
+
+  /**
+   * Check the length of a fixed length dataset.
+   * @param size Length of the dataset.
+   * @param report Report of the scan.
+   */
+  private void scanFixed(long size, ScanReport report) {
+    report.records(size / this.lrecl, this.lrecl);
+    report.bytes = size;
+
+    if(size % this.lrecl != 0) {
+      report.fail(size - size % this.lrecl, "Truncated record: " + this.lrecl + " bytes expected, "
+        + (size % this.lrecl) + " available.");
+    }
+  }
+
+  /**
+   * Walk the descriptor words of a variable format dataset.
+   * @param channel Channel of the dataset.
+   * @param report Report of the scan.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void scanVariable(FileChannel channel, ScanReport report) throws IOException {
+    boolean spanned = this.format == RecordFormat.VBS;
+    long end = channel.size();
+
+    MappedByteBuffer window = null;
+    long windowStart = 0;
+    long windowEnd = 0;
+
+    long position = 0;
+    long record = -1;
+
+    while(position < end) {
+      if(end - position < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+        report.fail(position, "Truncated BDW: " + (end - position) + " bytes available.");
+        break;
+      }
+
+      if(position + DescriptorWord.DESCRIPTOR_WORD_LENGTH > windowEnd) {
+        windowStart = position;
+        windowEnd = Math.min(position + this.windowSize, end);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+      }
+
+      int bdw = window.getInt((int)(position - windowStart));
+      int length = BlockDescriptorWordView.getSegmentLength(bdw);
+
+      if(length < DescriptorWord.DESCRIPTOR_WORD_LENGTH || (!BlockDescriptorWordView.isExtended(bdw)
+          && length > BlockDescriptorWord.BDW_MAX_SEGMENT_LENGTH_NONEXTENDED)) {
+        report.fail(position, "Invalid BDW " + String.format("%08x", bdw) + ": length " + length + ".");
+        break;
+      }
+
+      if(end - position < length) {
+        report.fail(position, "Truncated block: " + length + " bytes expected, " + (end - position)
+          + " available.");
+        break;
+      }
+
+      if(position + length > windowEnd) {
+        windowStart = position;
+        windowEnd = Math.min(position + Math.max(this.windowSize, length), end);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+      }
+
+      report.block(length);
+
+      int offset = (int)(position - windowStart);
+      int limit = offset + length;
+      int next = offset + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+      String error = null;
+
+      while(next < limit) {
+        if(limit - next < DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+          error = "Truncated RDW: the RDW chain exceeds its block by "
+            + (DescriptorWord.DESCRIPTOR_WORD_LENGTH - (limit - next)) + " bytes.";
+          break;
+        }
+
+        int rdw = window.getInt(next);
+        int segment = RecordDescriptorWordView.getSegmentLength(rdw);
+        int code = RecordDescriptorWordView.getSegmentCodeByte(rdw);
+
+        if(segment < DescriptorWord.DESCRIPTOR_WORD_LENGTH || segment > RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH
+            || code > RecordDescriptorWord.RDW_CODE_OTHER_SEGMENT || (byte)rdw != 0) {
+          error = "Invalid RDW " + String.format("%08x", rdw) + ".";
+          break;
+        }
+
+        if(segment > limit - next) {
+          error = "Segment exceeds its block: " + segment + " bytes expected, " + (limit - next) + " available.";
+          break;
+        }
+
+        int data = segment - DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+        report.segments++;
+
+        if(code == RecordDescriptorWord.RDW_CODE_COMPLETE_RECORD) {
+          if(record >= 0) {
+            error = "Complete record while a spanned record is in progress.";
+            break;
+          }
+          report.record(data);
+        } else if(!spanned) {
+          error = "Spanned segment in a VB dataset.";
+          break;
+        } else if(code == RecordDescriptorWord.RDW_CODE_FIRST_SEGMENT) {
+          if(record >= 0) {
+            error = "First segment while a spanned record is in progress.";
+            break;
+          }
+          record = data;
+        } else if(record < 0) {
+          error = "Unexpected segment: no spanned record in progress.";
+          break;
+        } else if(code == RecordDescriptorWord.RDW_CODE_OTHER_SEGMENT) {
+          record += data;
+        } else {
+          report.record(record + data);
+          report.spannedRecords++;
+          record = -1;
+        }
+
+        next += segment;
+      }
+
+      if(error != null) {
+        report.fail(position + (next - offset), error);
+        break;
+      }
+
+      position += length;
+    }
+
+    if(report.isValid() && record >= 0) {
+      report.fail(position, "Incomplete spanned record at the end of the dataset.");
+    }
+
+    report.bytes = position;
+  }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import xyz.bubu11e.z.io.core.reader.Reader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.RecordCursor;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.Writer;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * External sort of records by key, for datasets larger than
+ * the memory.
+ *
+ * Records are copied into large direct run buffers. A full
+ * buffer is sorted and spilled as a VBS run file by a task of
+ * the executor while the next buffer is filled, so the runs
+ * are generated by all the cores while the input is read. The
+ * buffers are reused from one run to the next.
+ *
+ * The runs are then merged with a heap, each run being read
+ * in place with prefetching. When there are more runs than the
+ * merge width, groups of runs are first merged concurrently
+ * into longer runs. An input fitting in a single buffer is
+ * sorted in memory without any run file.
+ *
+ * The sort is stable: records with equal keys keep their input
+ * order, like the DFSORT EQUALS option. Records read from a
+ * {@link RecordCursor} and written to a {@link VBWriter} are
+ * copied in place, without intermediate arrays.
+ *
+ * A sorter runs one sort at a time.
+ */
+public class ExternalSorter {
+
+  /** Default size of a run buffer. */
+  public final static int DEFAULT_RUN_SIZE = 32 * 1024 * 1024;
+  /** Default number of run buffers, one being filled while the others are sorted. */
+  public final static int DEFAULT_BUFFER_COUNT = Math.min(Runtime.getRuntime().availableProcessors(), 8) + 1;
+  /** Default maximum number of runs merged together. */
+  public final static int DEFAULT_MERGE_WIDTH = 64;
+  /** Default size of the chunks prefetched for each run during a merge. */
+  public final static int DEFAULT_PREFETCH_SIZE = 512 * 1024;
+
+  /** Block size of the run files. */
+  private final static int RUN_BLOCK_SIZE = 32760;
+
+  /** Comparator of the records. */
+  private final RecordComparator comparator;
+  /** Directory of the run files. */
+  private final Path directory;
+  /** Size of a run buffer. */
+  private final int runSize;
+  /** Maximum number of run buffers. */
+  private final int bufferCount;
+  /** Maximum number of runs merged together. */
+  private final int mergeWidth;
+  /** Size of the chunks prefetched for each run during a merge. */
+  private final int prefetchSize;
+  /** Executor sorting and merging the runs. */
+  private final ExecutorService executor;
+
+  /** Run buffers allocated so far. */
+  private final List<RunBuffer> buffers = new ArrayList<RunBuffer>();
+  /** Run buffers ready to be filled. */
+  private final BlockingQueue<RunBuffer> free;
+  /** Number of runs spilled by the last sort. */
+  private int runCount = 0;
+
+  /**
+   * Constructor with the default settings, spilling the runs into the temporary directory.
+   * @param comparator Comparator of the records.
+   */
+  public ExternalSorter(RecordComparator comparator) {
+    this(comparator, Paths.get(System.getProperty("java.io.tmpdir")), DEFAULT_RUN_SIZE, DEFAULT_BUFFER_COUNT,
+      DEFAULT_MERGE_WIDTH, DEFAULT_PREFETCH_SIZE, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor.
+   * @param comparator Comparator of the records.
+   * @param directory Directory of the run files.
+   * @param runSize Size of a run buffer, bounding the length of the records.
+   * @param bufferCount Maximum number of run buffers, at least 2.
+   * @param mergeWidth Maximum number of runs merged together, at least 2.
+   * @param prefetchSize Size of the chunks prefetched for each run during a merge.
+   * @param executor Executor sorting and merging the runs. It is not shut down by the sorter.
+   */
+  public ExternalSorter(RecordComparator comparator, Path directory, int runSize, int bufferCount,
+      int mergeWidth, int prefetchSize, ExecutorService executor) {
+    if(runSize < RUN_BLOCK_SIZE) {
+      throw new IllegalArgumentException("Invalid run size: " + runSize + ".");
+    }
+
+    if(bufferCount < 2) {
+      throw new IllegalArgumentException("Invalid buffer count: " + bufferCount + ".");
+    }
+
+    if(mergeWidth < 2) {
+      throw new IllegalArgumentException("Invalid merge width: " + mergeWidth + ".");
+    }
+
+    if(prefetchSize < RUN_BLOCK_SIZE) {
+      throw new IllegalArgumentException("Invalid prefetch size: " + prefetchSize + ".");
+    }
+
+    this.comparator = comparator;
+    this.directory = directory;
+    this.runSize = runSize;
+    this.bufferCount = bufferCount;
+    this.mergeWidth = mergeWidth;
+    this.prefetchSize = prefetchSize;
+    this.executor = executor;
+    this.free = new ArrayBlockingQueue<RunBuffer>(bufferCount);
+  }
+
+  /**
+   * Getter for the number of runs.
+   * @return The number of runs spilled by the last sort, 0 if it was sorted in memory.
+   */
+  public int getRunCount() {
+    return this.runCount;
+  }
+
+  /**
+   * Sort every record of a reader into a writer. Neither of them is closed.
+   * @param input Reader of the records to sort.
+   * @param output Writer receiving the sorted records.
+   * @return The number of records sorted.
+   * @throws IOException If an I/O error occurs or the sort is interrupted.
+   * @throws ReaderException If the input or a run is invalid.
+   * @throws WriterException If a record is longer than a run buffer or cannot be written.
+   */
+  public long sort(Reader input, Writer output) throws IOException, ReaderException, WriterException {
+    RecordCursor cursor = input instanceof RecordCursor ? (RecordCursor)input : null;
+    List<Path> files = Collections.synchronizedList(new ArrayList<Path>());
+    List<Future<Path>> pending = new ArrayList<Future<Path>>();
+    RunBuffer current = null;
+    long count = 0;
+
+    this.runCount = 0;
+
+    try {
+      current = this.acquire();
+
+      while(true) {
+        byte[] record = null;
+        int length;
+
+        if(cursor != null) {
+          if(!cursor.next()) {
+            break;
+          }
+          length = cursor.getLength();
+        } else {
+          record = input.read();
+          if(record == null) {
+            break;
+          }
+          length = record.length;
+        }
+
+        if(!current.fits(length)) {
+          throw new WriterException("Record too long: " + length + " bytes, maximum is "
+            + (this.runSize - 4) + " for a run size of " + this.runSize + ".");
+        }
+
+        while(!(cursor != null ? current.add(cursor.getBuffer(), cursor.getOffset(), length)
+            : current.add(record, 0, length))) {
+          pending.add(this.spill(current, files));
+          // The spill task owns the buffer now, it must not be released again on failure.
+          current = null;
+          current = this.acquire();
+        }
+
+        count++;
+      }
+
+      if(pending.isEmpty()) {
+        current.sort(this.comparator);
+        for(int i = 0; i < current.getCount(); i++) {
+          write(output, current.getBuffer(), current.getOffset(i), current.getLength(i));
+        }
+        return count;
+      }
+
+      pending.add(this.spill(current, files));
+      current = null;
+
+      List<Path> runs = this.await(pending);
+      this.runCount = runs.size();
+
+      while(runs.size() > this.mergeWidth) {
+        for(int i = 0; i < runs.size(); i += this.mergeWidth) {
+          pending.add(this.merge(runs.subList(i, Math.min(i + this.mergeWidth, runs.size())), files));
+        }
+        runs = this.await(pending);
+      }
+
+      try(RunMerger merger = new RunMerger(this.comparator, runs, this.prefetchSize)) {
+        merger.merge(output);
+      }
+
+      return count;
+    } finally {
+      if(current != null) {
+        this.release(current);
+      }
+
+      try {
+        this.await(pending);
+      } catch(IOException | ReaderException | WriterException | RuntimeException e) {
+        // The first failure has already been thrown.
+      } finally {
+        for(Path file : files) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Take a run buffer, allocating it while the maximum number of buffers is not reached,
+   * otherwise waiting for a spilled one.
+   * @return An empty run buffer.
+   * @throws InterruptedIOException If the wait is interrupted.
+   */
+  private RunBuffer acquire() throws InterruptedIOException {
+    RunBuffer buffer = this.free.poll();
+    if(buffer != null) {
+      return buffer;
+    }
+
+    if(this.buffers.size() < this.bufferCount) {
+      buffer = new RunBuffer(this.runSize);
+      this.buffers.add(buffer);
+      return buffer;
+    }
+
+    try {
+      return this.free.take();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a run buffer.");
+    }
+  }
+
+  /**
+   * Empty a run buffer and make it available again.
+   * @param buffer Run buffer.
+   */
+  private void release(RunBuffer buffer) {
+    buffer.clear();
+    this.free.add(buffer);
+  }
+
+  /**
+   * Create a run file.
+   * @param files Run files of the sort, receiving the new one.
+   * @return The path of the new run file.
+   * @throws IOException If the file cannot be created.
+   */
+  private Path createRun(List<Path> files) throws IOException {
+    Path run = Files.createTempFile(this.directory, "zsort", ".run");
+    files.add(run);
+    return run;
+  }
+
+  /**
+   * Sort a full run buffer and spill it into a run file with a task of the executor.
+   * The buffer is released once spilled.
+   * @param buffer Run buffer.
+   * @param files Run files of the sort, receiving the new one.
+   * @return The pending path of the run file.
+   */
+  private Future<Path> spill(final RunBuffer buffer, final List<Path> files) {
+    return this.executor.submit(new Callable<Path>() {
+      @Override
+      public Path call() throws IOException, WriterException {
+        try {
+          buffer.sort(ExternalSorter.this.comparator);
+
+          Path run = ExternalSorter.this.createRun(files);
+          try(VBWriter writer = new VBWriter(run, RUN_BLOCK_SIZE, true)) {
+            for(int i = 0; i < buffer.getCount(); i++) {
+              writer.write(buffer.getBuffer(), buffer.getOffset(i), buffer.getLength(i));
+            }
+          }
+          return run;
+        } finally {
+          ExternalSorter.this.release(buffer);
+        }
+      }
+    });
+  }
+
+  /**
+   * Merge a group of runs into a longer run with a task of the executor. The merged runs
+   * are deleted once merged. A group of a single run is kept as it is.
+   * @param group Runs to merge, in their original order.
+   * @param files Run files of the sort, receiving the new one.
+   * @return The pending path of the merged run.
+   */
+  private Future<Path> merge(List<Path> group, final List<Path> files) {
+    if(group.size() == 1) {
+      return CompletableFuture.completedFuture(group.get(0));
+    }
+
+    final List<Path> runs = new ArrayList<Path>(group);
+
+    return this.executor.submit(new Callable<Path>() {
+      @Override
+      public Path call() throws IOException, ReaderException, WriterException {
+        Path run = ExternalSorter.this.createRun(files);
+
+        try(VBWriter writer = new VBWriter(run, RUN_BLOCK_SIZE, true);
+            RunMerger merger = new RunMerger(ExternalSorter.this.comparator, runs,
+              ExternalSorter.this.prefetchSize)) {
+          merger.merge(writer);
+        }
+
+        for(Path merged : runs) {
+          Files.deleteIfExists(merged);
+        }
+        return run;
+      }
+    });
+  }
+
+  /**
+   * Wait for pending tasks, in order. Every task is waited for even if one fails.
+   * @param pending Pending tasks, emptied.
+   * @return The run files produced by the tasks, in order.
+   * @throws IOException If a task fails with an I/O error or the wait is interrupted.
+   * @throws ReaderException If a task fails to read a run.
+   * @throws WriterException If a task fails to write a run.
+   */
+  private List<Path> await(List<Future<Path>> pending) throws IOException, ReaderException, WriterException {
+    List<Path> runs = new ArrayList<Path>(pending.size());
+    Throwable failure = null;
+    boolean interrupted = false;
+
+    for(Future<Path> future : pending) {
+      while(true) {
+        try {
+          runs.add(future.get());
+          break;
+        } catch(InterruptedException e) {
+          interrupted = true;
+        } catch(ExecutionException e) {
+          if(failure == null) {
+            failure = e.getCause();
+          }
+          break;
+        }
+      }
+    }
+
+    pending.clear();
+
+    if(interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if(failure instanceof IOException) {
+      throw (IOException)failure;
+    } else if(failure instanceof ReaderException) {
+      throw (ReaderException)failure;
+    } else if(failure instanceof WriterException) {
+      throw (WriterException)failure;
+    } else if(failure instanceof RuntimeException) {
+      throw (RuntimeException)failure;
+    } else if(failure instanceof Error) {
+      throw (Error)failure;
+    } else if(failure != null) {
+      throw new IOException(failure);
+    }
+
+    return runs;
+  }
+
+  /**
+   * Write a record from a region of a buffer, in place when the writer allows it.
+   * @param output Writer receiving the record.
+   * @param buffer Buffer containing the record.
+   * @param offset Offset of the record into the buffer.
+   * @param length Length of the record.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the record cannot be written.
+   */
+  static void write(Writer output, ByteBuffer buffer, int offset, int length) throws IOException, WriterException {
+    if(output instanceof VBWriter) {
+      ((VBWriter)output).write(buffer, offset, length);
+      return;
+    }
+
+    byte[] record = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.clear();
+    view.position(offset);
+    view.get(record);
+    output.write(record);
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+/**
+ * Formats of the sort keys, named after their DFSORT
+ * counterparts.
+ */
+public enum KeyFormat {
+  /** Characters, compared as unsigned bytes. */
+  CH,
+  /** Unsigned binary, compared as unsigned bytes. */
+  BI,
+  /** Signed big endian binary in two's complement. */
+  FI,
+  /** Packed decimal, with the sign in the last nibble. */
+  PD,
+  /** Zoned decimal, with the sign in the zone of the last byte. */
+  ZD
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Comparator of records on one or more sort keys, the first
+ * key being the most significant.
+ *
+ * Records are compared in place in their buffers. The keys can
+ * be given as the operand of a DFSORT SORT FIELDS statement.
+ */
+public final class RecordComparator implements Comparator<byte[]> {
+
+  /** Keys, the most significant first. */
+  private final SortKey[] keys;
+
+  /**
+   * Constructor.
+   * @param keys Keys, the most significant first.
+   */
+  public RecordComparator(SortKey... keys) {
+    if(keys.length == 0) {
+      throw new IllegalArgumentException("At least one sort key is required.");
+    }
+
+    this.keys = keys.clone();
+  }
+
+  /**
+   * Build a comparator from the operand of a DFSORT SORT FIELDS statement,
+   * like "1,8,CH,A,20,4,PD,D". Positions start at 1.
+   * @param fields Position, length, format and direction of each key, separated by commas,
+   * optionally enclosed in parentheses.
+   * @return The comparator on these keys.
+   */
+  public static RecordComparator parse(String fields) {
+    String value = fields.trim();
+    if(value.startsWith("(") && value.endsWith(")")) {
+      value = value.substring(1, value.length() - 1);
+    }
+
+    String[] parts = value.split(",");
+    if(parts.length % 4 != 0) {
+      throw new IllegalArgumentException("Invalid sort fields: " + fields + ".");
+    }
+
+    SortKey[] keys = new SortKey[parts.length / 4];
+    for(int i = 0; i < keys.length; i++) {
+      String direction = parts[4 * i + 3].trim();
+      if(!direction.equals("A") && !direction.equals("D")) {
+        throw new IllegalArgumentException("Invalid sort direction: " + direction + ".");
+      }
+
+      try {
+        keys[i] = new SortKey(Integer.parseInt(parts[4 * i].trim()) - 1, Integer.parseInt(parts[4 * i + 1].trim()),
+          KeyFormat.valueOf(parts[4 * i + 2].trim()), direction.equals("A"));
+      } catch(NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid sort fields: " + fields + ".", e);
+      }
+    }
+
+    return new RecordComparator(keys);
+  }
+
+  /**
+   * Getter for the keys.
+   * @return A copy of the keys, the most significant first.
+   */
+  public SortKey[] getKeys() {
+    return this.keys.clone();
+  }
+
+  /**
+   * Compare two records in place.
+   * @param a Buffer containing the first record.
+   * @param aOffset Offset of the first record into its buffer.
+   * @param aLength Length of the first record.
+   * @param b Buffer containing the second record.
+   * @param bOffset Offset of the second record into its buffer.
+   * @param bLength Length of the second record.
+   * @return Negative, zero or positive as the first record sorts before, with or after the second.
+   */
+  public int compare(ByteBuffer a, int aOffset, int aLength, ByteBuffer b, int bOffset, int bLength) {
+    for(SortKey key : this.keys) {
+      int result = key.compare(a, aOffset, aLength, b, bOffset, bLength);
+      if(result != 0) {
+        return result;
+      }
+    }
+
+    return 0;
+  }
+
+  @Override
+  public int compare(byte[] a, byte[] b) {
+    return this.compare(ByteBuffer.wrap(a), 0, a.length, ByteBuffer.wrap(b), 0, b.length);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("(");
+    for(int i = 0; i < this.keys.length; i++) {
+      if(i > 0) {
+        builder.append(',');
+      }
+      builder.append(this.keys[i]);
+    }
+    return builder.append(')').toString();
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Direct buffer accumulating the records of a run.
+ *
+ * Each record is stored behind its length. The records are
+ * sorted by reordering an index of their offsets with a stable
+ * merge sort, so the record bytes are never moved. The buffer
+ * and its index are reused from one run to the next.
+ */
+final class RunBuffer {
+
+  /** Length of the prefix holding the length of a record. */
+  private final static int PREFIX_LENGTH = 4;
+  /** Ranges shorter than this are sorted by insertion. */
+  private final static int INSERTION_SORT_THRESHOLD = 16;
+
+  /** Records, each behind its length. */
+  private final ByteBuffer data;
+  /** Offsets of the records into the data, in sorted order once sorted. */
+  private int[] offsets = new int[1024];
+  /** Work array of the merge sort. */
+  private int[] work = null;
+  /** Number of records. */
+  private int count = 0;
+  /** Number of bytes used. */
+  private int used = 0;
+
+  /** Buffer of the last record added from a buffer. */
+  private ByteBuffer source = null;
+  /** View of the source buffer used to copy the records. */
+  private ByteBuffer view = null;
+
+  /**
+   * Constructor.
+   * @param capacity Capacity of the buffer in byte.
+   */
+  RunBuffer(int capacity) {
+    this.data = ByteBuffer.allocateDirect(capacity);
+  }
+
+  /**
+   * Add a record from an array.
+   * @param array Array containing the record.
+   * @param offset Offset of the record into the array.
+   * @param length Length of the record.
+   * @return False if the buffer is too full to hold the record.
+   */
+  boolean add(byte[] array, int offset, int length) {
+    int position = this.reserve(length);
+    if(position < 0) {
+      return false;
+    }
+
+    this.data.position(position);
+    this.data.put(array, offset, length);
+    return true;
+  }
+
+  /**
+   * Add a record from a buffer, without changing its position or limit.
+   * @param buffer Buffer containing the record.
+   * @param offset Offset of the record into the buffer.
+   * @param length Length of the record.
+   * @return False if the buffer is too full to hold the record.
+   */
+  boolean add(ByteBuffer buffer, int offset, int length) {
+    if(buffer.hasArray()) {
+      return this.add(buffer.array(), buffer.arrayOffset() + offset, length);
+    }
+
+    int position = this.reserve(length);
+    if(position < 0) {
+      return false;
+    }
+
+    if(buffer != this.source) {
+      this.source = buffer;
+      this.view = buffer.duplicate();
+    }
+
+    this.view.clear();
+    this.view.position(offset);
+    this.view.limit(offset + length);
+    this.data.position(position);
+    this.data.put(this.view);
+    return true;
+  }
+
+  /**
+   * Reserve room for a record and index it.
+   * @param length Length of the record.
+   * @return The offset of the record data, or -1 if the buffer is too full.
+   */
+  private int reserve(int length) {
+    if(this.data.capacity() - this.used < length + PREFIX_LENGTH) {
+      return -1;
+    }
+
+    if(this.count == this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+    }
+
+    int position = this.used;
+    this.data.putInt(position, length);
+    this.offsets[this.count++] = position;
+    this.used += PREFIX_LENGTH + length;
+
+    return position + PREFIX_LENGTH;
+  }
+
+  /**
+   * Check the room left.
+   * @param length Length of a record.
+   * @return True if an empty buffer is large enough to hold the record.
+   */
+  boolean fits(int length) {
+    return length + PREFIX_LENGTH <= this.data.capacity();
+  }
+
+  /**
+   * Getter for the number of records.
+   * @return The number of records of the run.
+   */
+  int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Getter for the buffer.
+   * @return The buffer containing the records.
+   */
+  ByteBuffer getBuffer() {
+    return this.data;
+  }
+
+  /**
+   * Getter for the offset of a record.
+   * @param index Index of the record, in sorted order once sorted.
+   * @return The offset of the record into the buffer.
+   */
+  int getOffset(int index) {
+    return this.offsets[index] + PREFIX_LENGTH;
+  }
+
+  /**
+   * Getter for the length of a record.
+   * @param index Index of the record, in sorted order once sorted.
+   * @return The length of the record.
+   */
+  int getLength(int index) {
+    return this.data.getInt(this.offsets[index]);
+  }
+
+  /**
+   * Empty the buffer for the next run.
+   */
+  void clear() {
+    this.count = 0;
+    this.used = 0;
+    this.source = null;
+    this.view = null;
+  }
+
+  /**
+   * Sort the records, keeping the original order of equal records.
+   * @param comparator Comparator of the records.
+   */
+  void sort(RecordComparator comparator) {
+    if(this.work == null || this.work.length < this.count) {
+      this.work = new int[this.offsets.length];
+    }
+
+    System.arraycopy(this.offsets, 0, this.work, 0, this.count);
+    this.sort(comparator, this.work, this.offsets, 0, this.count);
+  }
+
+  /**
+   * Sort a range of the index. Both arrays hold the same offsets on entry.
+   * @param comparator Comparator of the records.
+   * @param source Array used as the source of the merge.
+   * @param target Array receiving the sorted range.
+   * @param from First index of the range.
+   * @param to End of the range.
+   */
+  private void sort(RecordComparator comparator, int[] source, int[] target, int from, int to) {
+    if(to - from < INSERTION_SORT_THRESHOLD) {
+      for(int i = from + 1; i < to; i++) {
+        int value = target[i];
+        int j = i;
+        while(j > from && this.compare(comparator, target[j - 1], value) > 0) {
+          target[j] = target[j - 1];
+          j--;
+        }
+        target[j] = value;
+      }
+      return;
+    }
+
+    int middle = (from + to) >>> 1;
+    this.sort(comparator, target, source, from, middle);
+    this.sort(comparator, target, source, middle, to);
+
+    if(this.compare(comparator, source[middle - 1], source[middle]) <= 0) {
+      System.arraycopy(source, from, target, from, to - from);
+      return;
+    }
+
+    for(int i = from, p = from, q = middle; i < to; i++) {
+      if(q >= to || p < middle && this.compare(comparator, source[p], source[q]) <= 0) {
+        target[i] = source[p++];
+      } else {
+        target[i] = source[q++];
+      }
+    }
+  }
+
+  /**
+   * Compare two records of the buffer.
+   * @param comparator Comparator of the records.
+   * @param a Offset of the length of the first record.
+   * @param b Offset of the length of the second record.
+   * @return Negative, zero or positive as the first record sorts before, with or after the second.
+   */
+  private int compare(RecordComparator comparator, int a, int b) {
+    return comparator.compare(this.data, a + PREFIX_LENGTH, this.data.getInt(a),
+      this.data, b + PREFIX_LENGTH, this.data.getInt(b));
+  }
+}
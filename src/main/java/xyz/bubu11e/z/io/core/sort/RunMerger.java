@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import xyz.bubu11e.z.io.core.reader.ReadAheadBlockSource;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+import xyz.bubu11e.z.io.core.writer.Writer;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * K-way merge of sorted runs.
+ *
+ * Each run is read in place by a reader prefetching its next
+ * chunk while the current one is merged. The readers are kept
+ * in a binary heap ordered by their current record, ties going
+ * to the earliest run so the merge is stable.
+ */
+final class RunMerger implements Closeable {
+
+  /** Number of chunks prefetched for each run. */
+  private final static int PREFETCH_DEPTH = 2;
+
+  /** Comparator of the records. */
+  private final RecordComparator comparator;
+  /** Readers of the runs. */
+  private final VBSReader[] readers;
+  /** Heap of the indexes of the readers having a current record. */
+  private final int[] heap;
+  /** Number of readers in the heap. */
+  private int size = 0;
+
+  /**
+   * Constructor.
+   * @param comparator Comparator of the records.
+   * @param runs Sorted runs, in their original order.
+   * @param prefetchSize Size of the chunks prefetched for each run.
+   * @throws IOException If a run cannot be opened.
+   */
+  RunMerger(RecordComparator comparator, List<Path> runs, int prefetchSize) throws IOException {
+    this.comparator = comparator;
+    this.readers = new VBSReader[runs.size()];
+    this.heap = new int[runs.size()];
+
+    try {
+      for(int i = 0; i < this.readers.length; i++) {
+        this.readers[i] = new VBSReader(new ReadAheadBlockSource(runs.get(i), PREFETCH_DEPTH, prefetchSize));
+      }
+    } catch(IOException e) {
+      this.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Merge the runs into a writer.
+   * @param output Writer receiving the records in order.
+   * @return The number of records merged.
+   * @throws IOException If an I/O error occurs.
+   * @throws ReaderException If a run is invalid.
+   * @throws WriterException If a record cannot be written.
+   */
+  long merge(Writer output) throws IOException, ReaderException, WriterException {
+    long count = 0;
+
+    for(int i = 0; i < this.readers.length; i++) {
+      if(this.readers[i].next()) {
+        this.heap[this.size] = i;
+        this.up(this.size++);
+      }
+    }
+
+    while(this.size > 0) {
+      VBSReader reader = this.readers[this.heap[0]];
+      ExternalSorter.write(output, reader.getBuffer(), reader.getOffset(), reader.getLength());
+      count++;
+
+      if(!reader.next()) {
+        this.heap[0] = this.heap[--this.size];
+      }
+      this.down(0);
+    }
+
+    return count;
+  }
+
+  /**
+   * Move an entry of the heap up to its place.
+   * @param index Index of the entry into the heap.
+   */
+  private void up(int index) {
+    int value = this.heap[index];
+
+    while(index > 0) {
+      int parent = (index - 1) >>> 1;
+      if(!this.less(value, this.heap[parent])) {
+        break;
+      }
+      this.heap[index] = this.heap[parent];
+      index = parent;
+    }
+
+    this.heap[index] = value;
+  }
+
+  /**
+   * Move an entry of the heap down to its place.
+   * @param index Index of the entry into the heap.
+   */
+  private void down(int index) {
+    if(this.size == 0) {
+      return;
+    }
+
+    int value = this.heap[index];
+
+    while(true) {
+      int child = 2 * index + 1;
+      if(child >= this.size) {
+        break;
+      }
+      if(child + 1 < this.size && this.less(this.heap[child + 1], this.heap[child])) {
+        child++;
+      }
+      if(!this.less(this.heap[child], value)) {
+        break;
+      }
+      this.heap[index] = this.heap[child];
+      index = child;
+    }
+
+    this.heap[index] = value;
+  }
+
+  /**
+   * Compare the current records of two readers.
+   * @param a Index of the first reader.
+   * @param b Index of the second reader.
+   * @return True if the record of the first reader is merged first.
+   */
+  private boolean less(int a, int b) {
+    VBSReader x = this.readers[a];
+    VBSReader y = this.readers[b];
+    int result = this.comparator.compare(x.getBuffer(), x.getOffset(), x.getLength(),
+      y.getBuffer(), y.getOffset(), y.getLength());
+
+    return result < 0 || result == 0 && a < b;
+  }
+
+  /**
+   * Close the readers of the runs.
+   * @throws IOException If a reader cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+
+    for(VBSReader reader : this.readers) {
+      if(reader != null) {
+        try {
+          reader.close();
+        } catch(IOException e) {
+          failure = e;
+        }
+      }
+    }
+
+    if(failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Key of a sort: a region of the records, its format and its
+ * direction.
+ *
+ * Keys are compared in place on the record bytes, without
+ * decoding them. Decimal keys are ordered by their sign and
+ * then by their digits. A record too short to hold the whole
+ * key is ordered by the bytes it holds, shorter first.
+ *
+ * Buffers are expected in big endian order, as given by the
+ * readers.
+ */
+public final class SortKey {
+
+  /** Offset of the key into the records. */
+  private final int offset;
+  /** Length of the key. */
+  private final int length;
+  /** Format of the key. */
+  private final KeyFormat format;
+  /** True for an ascending order. */
+  private final boolean ascending;
+
+  /**
+   * Constructor of an ascending key.
+   * @param offset Offset of the key into the records, from 0.
+   * @param length Length of the key.
+   * @param format Format of the key.
+   */
+  public SortKey(int offset, int length, KeyFormat format) {
+    this(offset, length, format, true);
+  }
+
+  /**
+   * Constructor.
+   * @param offset Offset of the key into the records, from 0.
+   * @param length Length of the key.
+   * @param format Format of the key.
+   * @param ascending True for an ascending order, false for a descending one.
+   */
+  public SortKey(int offset, int length, KeyFormat format, boolean ascending) {
+    if(offset < 0) {
+      throw new IllegalArgumentException("Invalid key offset: " + offset + ".");
+    }
+
+    if(length < 1) {
+      throw new IllegalArgumentException("Invalid key length: " + length + ".");
+    }
+
+    this.offset = offset;
+    this.length = length;
+    this.format = format;
+    this.ascending = ascending;
+  }
+
+  /**
+   * Getter for the offset.
+   * @return The offset of the key into the records, from 0.
+   */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Getter for the length.
+   * @return The length of the key.
+   */
+  public int getLength() {
+    return this.length;
+  }
+
+  /**
+   * Getter for the format.
+   * @return The format of the key.
+   */
+  public KeyFormat getFormat() {
+    return this.format;
+  }
+
+  /**
+   * Getter for the direction.
+   * @return True for an ascending order.
+   */
+  public boolean isAscending() {
+    return this.ascending;
+  }
+
+  /**
+   * Compare the keys of two records.
+   * @param a Buffer containing the first record.
+   * @param aOffset Offset of the first record into its buffer.
+   * @param aLength Length of the first record.
+   * @param b Buffer containing the second record.
+   * @param bOffset Offset of the second record into its buffer.
+   * @param bLength Length of the second record.
+   * @return Negative, zero or positive as the first record sorts before, with or after the second.
+   */
+  public int compare(ByteBuffer a, int aOffset, int aLength, ByteBuffer b, int bOffset, int bLength) {
+    int aCount = Math.max(0, Math.min(this.length, aLength - this.offset));
+    int bCount = Math.max(0, Math.min(this.length, bLength - this.offset));
+    int aStart = aOffset + this.offset;
+    int bStart = bOffset + this.offset;
+    int result;
+
+    if(aCount < this.length || bCount < this.length) {
+      result = compareUnsigned(a, aStart, aCount, b, bStart, bCount);
+    } else {
+      switch(this.format) {
+        case FI:
+          result = Integer.compare(a.get(aStart), b.get(bStart));
+          if(result == 0) {
+            result = compareUnsigned(a, aStart + 1, this.length - 1, b, bStart + 1, this.length - 1);
+          }
+          break;
+        case PD:
+          result = this.comparePacked(a, aStart, b, bStart);
+          break;
+        case ZD:
+          result = this.compareZoned(a, aStart, b, bStart);
+          break;
+        default:
+          result = compareUnsigned(a, aStart, this.length, b, bStart, this.length);
+          break;
+      }
+    }
+
+    return this.ascending ? result : -result;
+  }
+
+  /**
+   * Compare two packed decimal keys.
+   * @param a Buffer containing the first key.
+   * @param aStart Offset of the first key into its buffer.
+   * @param b Buffer containing the second key.
+   * @param bStart Offset of the second key into its buffer.
+   * @return Negative, zero or positive as the first key is less than, equal to or greater than the second.
+   */
+  private int comparePacked(ByteBuffer a, int aStart, ByteBuffer b, int bStart) {
+    int last = this.length - 1;
+    int aLast = a.get(aStart + last) & 0xff;
+    int bLast = b.get(bStart + last) & 0xff;
+    boolean aNegative = isNegative(aLast & 0x0f);
+    boolean bNegative = isNegative(bLast & 0x0f);
+
+    if(aNegative != bNegative) {
+      return aNegative ? -1 : 1;
+    }
+
+    int result = compareUnsigned(a, aStart, last, b, bStart, last);
+    if(result == 0) {
+      result = Integer.compare(aLast >>> 4, bLast >>> 4);
+    }
+
+    return aNegative ? -result : result;
+  }
+
+  /**
+   * Compare two zoned decimal keys.
+   * @param a Buffer containing the first key.
+   * @param aStart Offset of the first key into its buffer.
+   * @param b Buffer containing the second key.
+   * @param bStart Offset of the second key into its buffer.
+   * @return Negative, zero or positive as the first key is less than, equal to or greater than the second.
+   */
+  private int compareZoned(ByteBuffer a, int aStart, ByteBuffer b, int bStart) {
+    int last = this.length - 1;
+    boolean aNegative = isNegative((a.get(aStart + last) & 0xf0) >>> 4);
+    boolean bNegative = isNegative((b.get(bStart + last) & 0xf0) >>> 4);
+
+    if(aNegative != bNegative) {
+      return aNegative ? -1 : 1;
+    }
+
+    int result = 0;
+    for(int i = 0; i <= last && result == 0; i++) {
+      result = Integer.compare(a.get(aStart + i) & 0x0f, b.get(bStart + i) & 0x0f);
+    }
+
+    return aNegative ? -result : result;
+  }
+
+  /**
+   * Check a decimal sign.
+   * @param sign Sign nibble.
+   * @return True for the negative signs 0xB and 0xD.
+   */
+  private static boolean isNegative(int sign) {
+    return sign == 0x0b || sign == 0x0d;
+  }
+
+  /**
+   * Compare two regions as unsigned bytes, eight bytes at a time.
+   * @param a Buffer containing the first region.
+   * @param aStart Offset of the first region into its buffer.
+   * @param aCount Length of the first region.
+   * @param b Buffer containing the second region.
+   * @param bStart Offset of the second region into its buffer.
+   * @param bCount Length of the second region.
+   * @return Negative, zero or positive as the first region sorts before, with or after the second,
+   * a shorter region sorting first when it is a prefix of the other.
+   */
+  static int compareUnsigned(ByteBuffer a, int aStart, int aCount, ByteBuffer b, int bStart, int bCount) {
+    int count = Math.min(aCount, bCount);
+    int i = 0;
+
+    for(; i + 8 <= count; i += 8) {
+      long x = a.getLong(aStart + i);
+      long y = b.getLong(bStart + i);
+      if(x != y) {
+        return Long.compareUnsigned(x, y);
+      }
+    }
+
+    for(; i < count; i++) {
+      int x = a.get(aStart + i) & 0xff;
+      int y = b.get(bStart + i) & 0xff;
+      if(x != y) {
+        return x < y ? -1 : 1;
+      }
+    }
+
+    return Integer.compare(aCount, bCount);
+  }
+
+  @Override
+  public String toString() {
+    return (this.offset + 1) + "," + this.length + "," + this.format + "," + (this.ascending ? "A" : "D");
+  }
+}
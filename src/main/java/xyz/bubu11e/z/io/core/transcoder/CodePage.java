@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.transcoder;
+
+/**
+ * EBCDIC code pages supported by the {@link Transcoder}.
+ */
+public enum CodePage {
+
+  /** USA, Canada, Netherlands, Portugal, Brazil. */
+  CP037("IBM037"),
+  /** International Latin-1. */
+  CP500("IBM500"),
+  /** Latin-1 open systems, used by z/OS UNIX. */
+  CP1047("IBM1047"),
+  /** CP037 with the euro sign. */
+  CP1140("IBM01140"),
+  /** Germany, Austria. */
+  CP273("IBM273"),
+  /** France. */
+  CP297("IBM297");
+
+  /** Name of the matching Java charset. */
+  private final String charsetName;
+
+  private CodePage(String charsetName) {
+    this.charsetName = charsetName;
+  }
+
+  /**
+   * Getter for the name of the matching Java charset.
+   * @return The name of the Java charset used to build the tables.
+   */
+  public String getCharsetName() {
+    return this.charsetName;
+  }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.transcoder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Table driven EBCDIC transcoder.
+ *
+ * The lookup tables of a code page are computed once, from the
+ * matching Java charset, when the transcoder is first requested.
+ * Conversions then go through a single table lookup per byte,
+ * from and to caller owned buffers, and never allocate.
+ *
+ * Single byte conversions use ISO-8859-1, the ASCII superset
+ * covering the repertoire of the Latin-1 EBCDIC code pages.
+ * Characters without mapping are replaced by '?' on the way out
+ * and by the EBCDIC SUB character on the way in.
+ */
+public final class Transcoder {
+
+  /** EBCDIC substitution character. */
+  public final static byte EBCDIC_SUB = 0x3f;
+  /** ISO-8859-1 substitution character. */
+  public final static byte LATIN1_SUB = '?';
+  /** Maximum number of UTF-8 bytes produced by an EBCDIC byte. */
+  public final static int UTF8_MAX_BYTES = 3;
+
+  /** Transcoders already built. */
+  private final static Map<CodePage, Transcoder> TRANSCODERS = new EnumMap<CodePage, Transcoder>(CodePage.class);
+
+  /** Code page of the transcoder. */
+  private final CodePage codePage;
+  /** EBCDIC to UTF-16 table. */
+  private final char[] toChar = new char[256];
+  /** UTF-16 to EBCDIC table. */
+  private final byte[] fromChar = new byte[65536];
+  /** EBCDIC to ISO-8859-1 table. */
+  private final byte[] toLatin1 = new byte[256];
+  /** ISO-8859-1 to EBCDIC table. */
+  private final byte[] fromLatin1 = new byte[256];
+  /** EBCDIC to UTF-8 table, the length is in the high byte and the bytes in the low ones. */
+  private final int[] toUtf8 = new int[256];
+
+  /**
+   * Constructor building the tables.
+   * @param codePage Code page of the transcoder.
+   * @throws java.nio.charset.UnsupportedCharsetException If the Java charset is not available.
+   */
+  private Transcoder(CodePage codePage) {
+    this.codePage = codePage;
+
+    Charset charset = Charset.forName(codePage.getCharsetName());
+    byte[] all = new byte[256];
+    for(int i = 0; i < 256; i++) {
+      all[i] = (byte)i;
+    }
+    String decoded = new String(all, charset);
+
+    java.util.Arrays.fill(this.fromChar, EBCDIC_SUB);
+    java.util.Arrays.fill(this.fromLatin1, EBCDIC_SUB);
+
+    CharsetEncoder encoder = charset.newEncoder();
+    for(int i = 0; i < 256; i++) {
+      char c = decoded.charAt(i);
+      this.toChar[i] = c;
+      this.toLatin1[i] = c < 256 ? (byte)c : LATIN1_SUB;
+
+      if(c < 0x80) {
+        this.toUtf8[i] = 1 << 24 | c;
+      } else if(c < 0x800) {
+        this.toUtf8[i] = 2 << 24 | (0xc0 | c >> 6) << 8 | (0x80 | c & 0x3f);
+      } else {
+        this.toUtf8[i] = 3 << 24 | (0xe0 | c >> 12) << 16 | (0x80 | c >> 6 & 0x3f) << 8 | (0x80 | c & 0x3f);
+      }
+
+      byte b = (byte)i;
+      if(decoded.indexOf(c) != decoded.lastIndexOf(c)) {
+        // Several bytes decode to this character, keep the one chosen by the charset.
+        try {
+          b = encoder.encode(CharBuffer.wrap(new char[] {c})).get(0);
+        } catch(CharacterCodingException e) {
+          continue;
+        }
+      }
+
+      this.fromChar[c] = b;
+      if(c < 256) {
+        this.fromLatin1[c] = b;
+      }
+    }
+  }
+
+  /**
+   * Getter for the transcoder of a code page.
+   * @param codePage Code page of the transcoder.
+   * @return The shared transcoder of the code page.
+   * @throws java.nio.charset.UnsupportedCharsetException If the Java charset is not available.
+   */
+  public static Transcoder forCodePage(CodePage codePage) {
+    synchronized(TRANSCODERS) {
+      Transcoder transcoder = TRANSCODERS.get(codePage);
+      if(transcoder == null) {
+        transcoder = new Transcoder(codePage);
+        TRANSCODERS.put(codePage, transcoder);
+      }
+      return transcoder;
+    }
+  }
+
+  /**
+   * Getter for the code page.
+   * @return The code page of the transcoder.
+   */
+  public CodePage getCodePage() {
+    return this.codePage;
+  }
+
+  /**
+   * Decode an EBCDIC byte.
+   * @param b EBCDIC byte.
+   * @return The matching character.
+   */
+  public char decode(byte b) {
+    return this.toChar[b & 0xff];
+  }
+
+  /**
+   * Decode EBCDIC bytes into a char array.
+   * @param src Array containing the EBCDIC bytes.
+   * @param offset Offset of the bytes into the array.
+   * @param length Number of bytes to decode.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   */
+  public void decode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+    char[] table = this.toChar;
+    for(int i = 0; i < length; i++) {
+      dst[dstOffset + i] = table[src[offset + i] & 0xff];
+    }
+  }
+
+  /**
+   * Decode EBCDIC bytes of a buffer into a char array.
+   * @param src Buffer containing the EBCDIC bytes.
+   * @param offset Absolute index of the bytes into the buffer.
+   * @param length Number of bytes to decode.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   */
+  public void decode(ByteBuffer src, int offset, int length, char[] dst, int dstOffset) {
+    if(src.hasArray()) {
+      this.decode(src.array(), src.arrayOffset() + offset, length, dst, dstOffset);
+      return;
+    }
+
+    char[] table = this.toChar;
+    for(int i = 0; i < length; i++) {
+      dst[dstOffset + i] = table[src.get(offset + i) & 0xff];
+    }
+  }
+
+  /**
+   * Decode EBCDIC bytes, appending the characters to a builder.
+   * @param src Array containing the EBCDIC bytes.
+   * @param offset Offset of the bytes into the array.
+   * @param length Number of bytes to decode.
+   * @param dst Builder the characters are appended to.
+   */
+  public void decode(byte[] src, int offset, int length, StringBuilder dst) {
+    char[] table = this.toChar;
+    dst.ensureCapacity(dst.length() + length);
+    for(int i = 0; i < length; i++) {
+      dst.append(table[src[offset + i] & 0xff]);
+    }
+  }
+
+  /**
+   * Decode EBCDIC bytes of a buffer, appending the characters to a builder.
+   * @param src Buffer containing the EBCDIC bytes.
+   * @param offset Absolute index of the bytes into the buffer.
+   * @param length Number of bytes to decode.
+   * @param dst Builder the characters are appended to.
+   */
+  public void decode(ByteBuffer src, int offset, int length, StringBuilder dst) {
+    if(src.hasArray()) {
+      this.decode(src.array(), src.arrayOffset() + offset, length, dst);
+      return;
+    }
+
+    char[] table = this.toChar;
+    dst.ensureCapacity(dst.length() + length);
+    for(int i = 0; i < length; i++) {
+      dst.append(table[src.get(offset + i) & 0xff]);
+    }
+  }
+
+  /**
+   * Convert EBCDIC bytes to ISO-8859-1.
+   * Source and destination can be the same array.
+   * @param src Array containing the EBCDIC bytes.
+   * @param offset Offset of the bytes into the array.
+   * @param length Number of bytes to convert.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   */
+  public void toLatin1(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+    translate(src, offset, length, dst, dstOffset, this.toLatin1);
+  }
+
+  /**
+   * Convert EBCDIC bytes to ISO-8859-1 in place.
+   * @param buffer Array containing the EBCDIC bytes.
+   * @param offset Offset of the bytes into the array.
+   * @param length Number of bytes to convert.
+   */
+  public void toLatin1(byte[] buffer, int offset, int length) {
+    translate(buffer, offset, length, buffer, offset, this.toLatin1);
+  }
+
+  /**
+   * Convert the remaining bytes of a buffer from EBCDIC to ISO-8859-1
+   * in place, for instance a whole block.
+   * @param buffer Buffer containing the EBCDIC bytes.
+   */
+  public void toLatin1(ByteBuffer buffer) {
+    translate(buffer, this.toLatin1);
+  }
+
+  /**
+   * Convert ISO-8859-1 bytes to EBCDIC.
+   * Source and destination can be the same array.
+   * @param src Array containing the ISO-8859-1 bytes.
+   * @param offset Offset of the bytes into the array.
+   * @param length Number of bytes to convert.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   */
+  public void fromLatin1(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+    translate(src, offset, length, dst, dstOffset, this.fromLatin1);
+  }
+
+  /**
+   * Convert the remaining bytes of a buffer from ISO-8859-1 to EBCDIC
+   * in place, for instance a whole block.
+   * @param buffer Buffer containing the ISO-8859-1 bytes.
+   */
+  public void fromLatin1(ByteBuffer buffer) {
+    translate(buffer, this.fromLatin1);
+  }
+
+  /**
+   * Convert EBCDIC bytes to UTF-8.
+   * The destination must have room for {@link #UTF8_MAX_BYTES} bytes per source byte.
+   * @param src Array containing the EBCDIC bytes.
+   * @param offset Offset of the bytes into the array.
+   * @param length Number of bytes to convert.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   * @return The number of bytes written.
+   */
+  public int toUtf8(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+    int[] table = this.toUtf8;
+    int position = dstOffset;
+
+    for(int i = 0; i < length; i++) {
+      int code = table[src[offset + i] & 0xff];
+      switch(code >>> 24) {
+        case 1:
+          dst[position++] = (byte)code;
+          break;
+        case 2:
+          dst[position++] = (byte)(code >> 8);
+          dst[position++] = (byte)code;
+          break;
+        default:
+          dst[position++] = (byte)(code >> 16);
+          dst[position++] = (byte)(code >> 8);
+          dst[position++] = (byte)code;
+      }
+    }
+
+    return position - dstOffset;
+  }
+
+  /**
+   * Convert EBCDIC bytes of a buffer to UTF-8.
+   * The destination must have room for {@link #UTF8_MAX_BYTES} bytes per source byte.
+   * @param src Buffer containing the EBCDIC bytes.
+   * @param offset Absolute index of the bytes into the buffer.
+   * @param length Number of bytes to convert.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   * @return The number of bytes written.
+   */
+  public int toUtf8(ByteBuffer src, int offset, int length, byte[] dst, int dstOffset) {
+    if(src.hasArray()) {
+      return this.toUtf8(src.array(), src.arrayOffset() + offset, length, dst, dstOffset);
+    }
+
+    int[] table = this.toUtf8;
+    int position = dstOffset;
+
+    for(int i = 0; i < length; i++) {
+      int code = table[src.get(offset + i) & 0xff];
+      for(int shift = ((code >>> 24) - 1) * 8; shift >= 0; shift -= 8) {
+        dst[position++] = (byte)(code >> shift);
+      }
+    }
+
+    return position - dstOffset;
+  }
+
+  /**
+   * Encode a character.
+   * @param c Character to encode.
+   * @return The matching EBCDIC byte, or {@link #EBCDIC_SUB} if there is none.
+   */
+  public byte encode(char c) {
+    return this.fromChar[c];
+  }
+
+  /**
+   * Encode characters to EBCDIC.
+   * @param src Characters to encode.
+   * @param offset Offset of the characters into the sequence.
+   * @param length Number of characters to encode.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   */
+  public void encode(CharSequence src, int offset, int length, byte[] dst, int dstOffset) {
+    byte[] table = this.fromChar;
+    for(int i = 0; i < length; i++) {
+      dst[dstOffset + i] = table[src.charAt(offset + i)];
+    }
+  }
+
+  /**
+   * Encode characters to EBCDIC.
+   * @param src Array containing the characters to encode.
+   * @param offset Offset of the characters into the array.
+   * @param length Number of characters to encode.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   */
+  public void encode(char[] src, int offset, int length, byte[] dst, int dstOffset) {
+    byte[] table = this.fromChar;
+    for(int i = 0; i < length; i++) {
+      dst[dstOffset + i] = table[src[offset + i]];
+    }
+  }
+
+  /**
+   * Translate bytes through a 256 entries table.
+   * Source and destination can be the same array.
+   * @param src Source array.
+   * @param offset Offset into the source array.
+   * @param length Number of bytes to translate.
+   * @param dst Destination array.
+   * @param dstOffset Offset into the destination array.
+   * @param table Translation table.
+   */
+  public static void translate(byte[] src, int offset, int length, byte[] dst, int dstOffset, byte[] table) {
+    for(int i = 0; i < length; i++) {
+      dst[dstOffset + i] = table[src[offset + i] & 0xff];
+    }
+  }
+
+  /**
+   * Translate the remaining bytes of a buffer in place through a 256 entries table.
+   * The position of the buffer is left unchanged.
+   * @param buffer Buffer to translate.
+   * @param table Translation table.
+   */
+  public static void translate(ByteBuffer buffer, byte[] table) {
+    if(buffer.hasArray()) {
+      int offset = buffer.arrayOffset() + buffer.position();
+      translate(buffer.array(), offset, buffer.remaining(), buffer.array(), offset, table);
+      return;
+    }
+
+    for(int i = buffer.position(); i < buffer.limit(); i++) {
+      buffer.put(i, table[buffer.get(i) & 0xff]);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.writer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xyz.bubu11e.z.io.core.metrics.IoMetrics;
+import xyz.bubu11e.z.io.core.reader.RecordBatch;
+
+/**
+ * Writer for RECFM=F and FB datasets.
+ *
+ * Records are copied back to back into a buffer holding a batch of
+ * blocks, written with a single call once full. Batches of records
+ * larger than the buffer are written directly from their own buffer.
+ *
+ * Records must have the record length, unless a padding byte is set:
+ * shorter records are then padded with it.
+ *
+ * Fixed length datasets have no descriptor word: the metrics count the
+ * records and their bytes but no blocks.
+ */
+public class FBWriter implements Writer {
+
+  /** Default number of blocks written by a single write. */
+  public final static int DEFAULT_BATCH_SIZE = 256;
+  /** EBCDIC space, the usual padding byte. */
+  public final static byte EBCDIC_SPACE = 0x40;
+
+  /** Channel the records are written to. */
+  private final WritableByteChannel channel;
+  /** Length of the records. */
+  private final int lrecl;
+
+  /** Buffer of the pending records. */
+  private final byte[] buffer;
+  /** Buffer wrapping the pending records. */
+  private final ByteBuffer wrap;
+  /** Number of bytes used in the buffer. */
+  private int used = 0;
+
+  /** Metrics of the writer, null if disabled. */
+  private IoMetrics metrics = null;
+
+  /** True if shorter records are padded. */
+  private boolean padded = false;
+  /** Padding byte of the shorter records. */
+  private byte padding = 0;
+
+  /**
+   * Constructor writing a RECFM=F dataset.
+   * @param path Path of the dataset to write.
+   * @param lrecl Length of the records.
+   * @throws IOException If the file cannot be opened.
+   */
+  public FBWriter(Path path, int lrecl) throws IOException {
+    this(path, lrecl, lrecl);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset to write.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks, a multiple of the record length.
+   * @throws IOException If the file cannot be opened.
+   */
+  public FBWriter(Path path, int lrecl, int blksize) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING), lrecl, blksize, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel the records are written to, closed with the writer.
+   * @param lrecl Length of the records.
+   * @param blksize Length of the blocks, a multiple of the record length.
+   * @param batchSize Number of blocks written by a single write.
+   */
+  public FBWriter(WritableByteChannel channel, int lrecl, int blksize, int batchSize) {
+    if(lrecl < 1 || blksize < lrecl || blksize % lrecl != 0) {
+      throw new IllegalArgumentException("Invalid record length " + lrecl + " or block size " + blksize + ".");
+    }
+
+    if(batchSize < 1 || (long)batchSize * blksize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize + ".");
+    }
+
+    this.channel = channel;
+    this.lrecl = lrecl;
+    this.buffer = new byte[batchSize * blksize];
+    this.wrap = ByteBuffer.wrap(this.buffer);
+  }
+
+  /**
+   * Pad the records shorter than the record length.
+   * @param padding Padding byte, typically {@link #EBCDIC_SPACE}.
+   */
+  public void setPadding(byte padding) {
+    this.padded = true;
+    this.padding = padding;
+  }
+
+  /**
+   * Setter for the metrics.
+   * @param metrics Metrics receiving the activity of the writer, or null to disable them.
+   */
+  public void setMetrics(IoMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * This function will write the specified record.
+   * @param object Record to write.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the length of the record is invalid.
+   */
+  @Override
+  public void write(byte[] object) throws IOException, WriterException {
+    this.write(object, 0, object.length);
+  }
+
+  /**
+   * Write a record from a part of an array.
+   * @param array Array containing the record.
+   * @param offset Offset of the record into the array.
+   * @param length Length of the record.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the length of the record is invalid.
+   */
+  public void write(byte[] array, int offset, int length) throws IOException, WriterException {
+    if(length > this.lrecl || (length < this.lrecl && !this.padded)) {
+      throw new WriterException("Invalid record length: " + length + " bytes, expected " + this.lrecl + ".");
+    }
+
+    if(this.buffer.length - this.used < this.lrecl) {
+      this.flush();
+    }
+
+    System.arraycopy(array, offset, this.buffer, this.used, length);
+    for(int i = this.used + length; i < this.used + this.lrecl; i++) {
+      this.buffer[i] = this.padding;
+    }
+    this.used += this.lrecl;
+
+    if(this.metrics != null) {
+      this.metrics.addRecord(this.lrecl);
+      this.metrics.addBytes(this.lrecl);
+    }
+  }
+
+  /**
+   * Write records stored back to back in an array.
+   * @param array Array containing the records.
+   * @param offset Offset of the first record into the array.
+   * @param count Number of records.
+   * @throws IOException If an I/O error occurs.
+   */
+  public void writeRecords(byte[] array, int offset, int count) throws IOException {
+    this.writeRecords(ByteBuffer.wrap(array, offset, count * this.lrecl));
+  }
+
+  /**
+   * Write a batch of records.
+   * @param batch Batch of records.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the length of the records is invalid.
+   */
+  public void writeBatch(RecordBatch batch) throws IOException, WriterException {
+    if(batch.getCount() == 0) {
+      return;
+    }
+
+    if(batch.getRecordLength() != this.lrecl) {
+      throw new WriterException("Invalid record length: " + batch.getRecordLength()
+        + " bytes, expected " + this.lrecl + ".");
+    }
+
+    ByteBuffer records = batch.getBuffer().duplicate();
+    records.limit(batch.getOffset() + batch.getLength()).position(batch.getOffset());
+    this.writeRecords(records);
+  }
+
+  /**
+   * Write the records between the position and the limit of a buffer.
+   * @param records Buffer containing whole records.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void writeRecords(ByteBuffer records) throws IOException {
+    if(this.metrics != null) {
+      this.metrics.addRecords(records.remaining() / this.lrecl, this.lrecl);
+      this.metrics.addBytes(records.remaining());
+    }
+
+    if(this.used == 0 && records.remaining() >= this.buffer.length) {
+      while(records.hasRemaining()) {
+        this.channel.write(records);
+      }
+      return;
+    }
+
+    while(records.hasRemaining()) {
+      int count = Math.min(this.buffer.length - this.used, records.remaining());
+      records.get(this.buffer, this.used, count);
+      this.used += count;
+
+      if(this.used == this.buffer.length) {
+        this.flush();
+      }
+    }
+  }
+
+  /**
+   * Write the pending records.
+   * @throws IOException If an I/O error occurs.
+   */
+  public void flush() throws IOException {
+    this.wrap.clear();
+    this.wrap.limit(this.used);
+
+    while(this.wrap.hasRemaining()) {
+      this.channel.write(this.wrap);
+    }
+
+    this.used = 0;
+  }
+
+  /**
+   * Flush the pending records and close the underlying channel.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+}
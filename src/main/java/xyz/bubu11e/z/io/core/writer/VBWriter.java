@@ -0,0 +1,438 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.writer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.BlockDescriptorWordView;
+import xyz.bubu11e.z.io.core.dw.DescriptorWord;
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWord;
+import xyz.bubu11e.z.io.core.dw.RecordDescriptorWordView;
+import xyz.bubu11e.z.io.core.metrics.IoMetrics;
+
+/**
+ * Writer for RECFM=VB and RECFM=VBS datasets.
+ *
+ * Records are packed into blocks up to the block size. In
+ * spanned mode, records which do not fit in the current block
+ * are split into segments filling the blocks, otherwise a new
+ * block is started.
+ *
+ * Completed blocks are kept in a batch of buffers and the whole
+ * batch is flushed with a single gathering write.
+ *
+ * Block sizes above {@link BlockDescriptorWord#BDW_MAX_SEGMENT_LENGTH_NONEXTENDED}
+ * are written with extended BDW.
+ *
+ * The writer collects metrics once given an {@link IoMetrics}.
+ *
+ * Long runs can be made restartable: {@link #checkpoint()} writes the
+ * pending blocks and returns the position of the end of the last
+ * complete block, and a writer opened on the dataset at this position
+ * truncates what was written after it and appends from there.
+ */
+public class VBWriter implements Writer {
+
+  /** Default block size, half track of a 3390 device. */
+  public final static int DEFAULT_BLOCK_SIZE = 27998;
+  /** Default number of blocks written by a single gathering write. */
+  public final static int DEFAULT_BATCH_SIZE = 256;
+
+  /** Channel the blocks are written to. */
+  private final GatheringByteChannel channel;
+  /** Maximum length of a block including its BDW. */
+  private final int blockSize;
+  /** True if records can be spanned across blocks. */
+  private final boolean spanned;
+  /** True if the BDW are extended. */
+  private final boolean extended;
+  /** Maximum length of a segment including its RDW. */
+  private final int maxSegmentLength;
+
+  /** Blocks of the current batch. */
+  private final byte[][] blocks;
+  /** Buffers wrapping the blocks of the current batch. */
+  private final ByteBuffer[] buffers;
+  /** Index of the current block into the batch. */
+  private int current = 0;
+  /** Number of bytes used in the current block. */
+  private int used = DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+
+  /** Position of the end of the completed blocks into the dataset. */
+  private long position = 0;
+
+  /** Buffer of the last record written from a buffer. */
+  private ByteBuffer source = null;
+  /** View of the source buffer used to copy the records. */
+  private ByteBuffer view = null;
+
+  /** Metrics of the writer, null if disabled. */
+  private IoMetrics metrics = null;
+
+  /** View used to encode the BDW. */
+  private final BlockDescriptorWordView bdw = new BlockDescriptorWordView();
+  /** View used to encode the RDW. */
+  private final RecordDescriptorWordView rdw = new RecordDescriptorWordView();
+
+  /**
+   * Constructor writing a VB dataset with the default block size.
+   * @param path Path of the dataset to write.
+   * @throws IOException If the file cannot be opened.
+   */
+  public VBWriter(Path path) throws IOException {
+    this(path, DEFAULT_BLOCK_SIZE, false);
+  }
+
+  /**
+   * Constructor.
+   * @param path Path of the dataset to write.
+   * @param blockSize Maximum length of a block including its BDW.
+   * @param spanned True to write a VBS dataset, false to write a VB dataset.
+   * @throws IOException If the file cannot be opened.
+   */
+  public VBWriter(Path path, int blockSize, boolean spanned) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING), blockSize, spanned, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor resuming a dataset at a checkpoint.
+   * The dataset is truncated to the checkpoint, dropping the blocks written after it.
+   * @param path Path of the dataset to resume.
+   * @param blockSize Maximum length of a block including its BDW.
+   * @param spanned True to write a VBS dataset, false to write a VB dataset.
+   * @param checkpoint Position returned by {@link #checkpoint()}.
+   * @throws IOException If the file cannot be opened or is shorter than the checkpoint.
+   */
+  public VBWriter(Path path, int blockSize, boolean spanned, long checkpoint) throws IOException {
+    this(VBWriter.resume(path, checkpoint), blockSize, spanned, DEFAULT_BATCH_SIZE);
+    this.position = checkpoint;
+  }
+
+  /**
+   * Open a dataset for writing at a checkpoint.
+   * @param path Path of the dataset to resume.
+   * @param checkpoint Position returned by {@link #checkpoint()}.
+   * @return A channel truncated and positioned at the checkpoint.
+   * @throws IOException If the file cannot be opened or is shorter than the checkpoint.
+   */
+  private static FileChannel resume(Path path, long checkpoint) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+
+    try {
+      if(checkpoint < 0 || checkpoint > channel.size()) {
+        throw new IOException("Cannot resume " + path + " at offset " + checkpoint
+          + ": the file holds " + channel.size() + " bytes.");
+      }
+
+      channel.truncate(checkpoint);
+      channel.position(checkpoint);
+    } catch(IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    return channel;
+  }
+
+  /**
+   * Constructor.
+   * @param channel Channel the blocks are written to, closed with the writer.
+   * @param blockSize Maximum length of a block including its BDW.
+   * @param spanned True to write a VBS dataset, false to write a VB dataset.
+   * @param batchSize Number of blocks written by a single gathering write.
+   */
+  public VBWriter(GatheringByteChannel channel, int blockSize, boolean spanned, int batchSize) {
+    if(blockSize < 2 * DescriptorWord.DESCRIPTOR_WORD_LENGTH + 1) {
+      throw new IllegalArgumentException("Invalid block size: " + blockSize + ".");
+    }
+
+    if(batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize + ".");
+    }
+
+    this.channel = channel;
+    this.blockSize = blockSize;
+    this.spanned = spanned;
+    this.extended = blockSize > BlockDescriptorWord.BDW_MAX_SEGMENT_LENGTH_NONEXTENDED;
+    this.maxSegmentLength = Math.min(blockSize - DescriptorWord.DESCRIPTOR_WORD_LENGTH,
+      RecordDescriptorWord.RDW_MAX_SEGMENT_LENGTH);
+
+    this.blocks = new byte[batchSize][];
+    this.buffers = new ByteBuffer[batchSize];
+    for(int i = 0; i < batchSize; i++) {
+      this.blocks[i] = new byte[blockSize];
+      this.buffers[i] = ByteBuffer.wrap(this.blocks[i]);
+    }
+  }
+
+  /**
+   * Setter for the metrics.
+   * @param metrics Metrics receiving the activity of the writer, or null to disable them.
+   */
+  public void setMetrics(IoMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * This function will write the specified record.
+   * @param object Record to write, without its RDW.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the record is too long for a VB dataset.
+   */
+  @Override
+  public void write(byte[] object) throws IOException, WriterException {
+    this.write(object, 0, object.length);
+  }
+
+  /**
+   * This function will write a record from a region of an array.
+   * @param array Array containing the record.
+   * @param offset Offset of the record into the array.
+   * @param length Length of the record, without its RDW.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the record is too long for a VB dataset.
+   */
+  public void write(byte[] array, int offset, int length) throws IOException, WriterException {
+    this.append(array, offset, length);
+
+    if(this.metrics != null) {
+      this.metrics.addRecord(length);
+    }
+  }
+
+  /**
+   * This function will write a record from a region of a buffer, without
+   * changing the position or limit of the buffer. It allows records read
+   * in place from a direct or mapped buffer to be written without first
+   * copying them into an array.
+   * @param buffer Buffer containing the record.
+   * @param offset Offset of the record into the buffer.
+   * @param length Length of the record, without its RDW.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the record is too long for a VB dataset.
+   */
+  public void write(ByteBuffer buffer, int offset, int length) throws IOException, WriterException {
+    if(buffer.hasArray()) {
+      this.write(buffer.array(), buffer.arrayOffset() + offset, length);
+      return;
+    }
+
+    if(buffer != this.source) {
+      this.source = buffer;
+      this.view = buffer.duplicate();
+    }
+
+    this.append(null, offset, length);
+
+    if(this.metrics != null) {
+      this.metrics.addRecord(length);
+    }
+  }
+
+  /**
+   * Append a record to the blocks, splitting it into segments if needed.
+   * @param array Array containing the record, or null to copy it from the source buffer.
+   * @param offset Offset of the record into the array.
+   * @param length Length of the record, without its RDW.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the record is too long for a VB dataset.
+   */
+  private void append(byte[] array, int offset, int length) throws IOException, WriterException {
+    int required = length + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+
+    if(required <= this.blockSize - this.used && required <= this.maxSegmentLength) {
+      this.segment(array, offset, length, RecordDescriptorWord.Code.COMPLETE_RECORD);
+      return;
+    }
+
+    if(!this.spanned) {
+      if(required > this.maxSegmentLength) {
+        throw new WriterException("Record too long: " + length + " bytes, maximum is "
+          + (this.maxSegmentLength - DescriptorWord.DESCRIPTOR_WORD_LENGTH) + " in a VB dataset.");
+      }
+
+      this.endBlock();
+      this.segment(array, offset, length, RecordDescriptorWord.Code.COMPLETE_RECORD);
+      return;
+    }
+
+    if(this.blockSize - this.used <= DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      this.endBlock();
+
+      if(required <= this.maxSegmentLength) {
+        this.segment(array, offset, length, RecordDescriptorWord.Code.COMPLETE_RECORD);
+        return;
+      }
+    }
+
+    RecordDescriptorWord.Code code = RecordDescriptorWord.Code.FIRST_SEGMENT;
+    int remaining = length;
+
+    while(true) {
+      int available = Math.min(this.blockSize - this.used, this.maxSegmentLength)
+        - DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+
+      if(remaining <= available) {
+        this.segment(array, offset, remaining, RecordDescriptorWord.Code.LAST_SEGMENT);
+        return;
+      }
+
+      this.segment(array, offset, available, code);
+      offset += available;
+      remaining -= available;
+      code = RecordDescriptorWord.Code.OTHER_SEGMENT;
+
+      this.endBlock();
+    }
+  }
+
+  /**
+   * Append a segment to the current block.
+   * @param array Array containing the segment data, or null to copy it from the source buffer.
+   * @param offset Offset of the segment data into the array.
+   * @param length Length of the segment data.
+   * @param code Code of the segment.
+   * @throws WriterException If the RDW cannot be encoded.
+   */
+  private void segment(byte[] array, int offset, int length, RecordDescriptorWord.Code code)
+      throws WriterException {
+    byte[] block = this.blocks[this.current];
+
+    try {
+      this.rdw.wrap(block, this.used);
+    } catch(DescriptorWordException e) {
+      throw new WriterException(e);
+    }
+    this.rdw.set(length + DescriptorWord.DESCRIPTOR_WORD_LENGTH, code);
+
+    if(array != null) {
+      System.arraycopy(array, offset, block, this.used + DescriptorWord.DESCRIPTOR_WORD_LENGTH, length);
+    } else {
+      this.view.clear();
+      this.view.position(offset);
+      this.view.get(block, this.used + DescriptorWord.DESCRIPTOR_WORD_LENGTH, length);
+    }
+    this.used += length + DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+
+    if(this.metrics != null && code != RecordDescriptorWord.Code.COMPLETE_RECORD) {
+      this.metrics.addSpannedSegment();
+    }
+  }
+
+  /**
+   * Complete the current block and move to the next one,
+   * flushing the batch when it is full.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the BDW cannot be encoded.
+   */
+  private void endBlock() throws IOException, WriterException {
+    if(this.used == DescriptorWord.DESCRIPTOR_WORD_LENGTH) {
+      return;
+    }
+
+    try {
+      this.bdw.wrap(this.blocks[this.current], 0);
+    } catch(DescriptorWordException e) {
+      throw new WriterException(e);
+    }
+    this.bdw.setSegmentLength(this.used, this.extended);
+
+    if(this.metrics != null) {
+      this.metrics.addBlock(this.used);
+    }
+
+    this.buffers[this.current].clear();
+    this.buffers[this.current].limit(this.used);
+    this.position += this.used;
+    this.current++;
+    this.used = DescriptorWord.DESCRIPTOR_WORD_LENGTH;
+
+    if(this.current == this.blocks.length) {
+      this.writeBatch();
+    }
+  }
+
+  /**
+   * Write the completed blocks of the batch with a gathering write.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void writeBatch() throws IOException {
+    int first = 0;
+
+    while(first < this.current) {
+      this.channel.write(this.buffers, first, this.current - first);
+
+      while(first < this.current && !this.buffers[first].hasRemaining()) {
+        first++;
+      }
+    }
+
+    this.current = 0;
+  }
+
+  /**
+   * Complete the current block and write all pending blocks.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the BDW cannot be encoded.
+   */
+  public void flush() throws IOException, WriterException {
+    this.endBlock();
+    this.writeBatch();
+  }
+
+  /**
+   * Complete the current block, write all pending blocks and sync them
+   * when writing to a file. The current block is ended short, which costs
+   * a few bytes per checkpoint and keeps the dataset valid.
+   * @return The position of the end of the last complete block, to resume the writer at.
+   * @throws IOException If an I/O error occurs.
+   * @throws WriterException If the BDW cannot be encoded.
+   */
+  public long checkpoint() throws IOException, WriterException {
+    this.flush();
+
+    if(this.channel instanceof FileChannel) {
+      ((FileChannel)this.channel).force(false);
+    }
+
+    return this.position;
+  }
+
+  /**
+   * Flush the pending blocks and close the underlying channel.
+   * @throws IOException If an I/O error occurs or the pending blocks cannot be encoded.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } catch(WriterException e) {
+      throw new IOException(e);
+    } finally {
+      this.channel.close();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.BlockIndex;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class ZFilesTest {
+
+  private static final int COUNT = 20000;
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("zfiles", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(BlockIndex.getSidecar(file));
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private void writeVariable(boolean spanned) throws IOException, WriterException {
+    Random random = new Random(1);
+    try(VBWriter writer = new VBWriter(file, 4096, spanned)) {
+      for(int i = 0; i < COUNT; i++) {
+        byte[] record = new byte[4 + random.nextInt(spanned && i % 100 == 0 ? 10000 : 200)];
+        ByteBuffer.wrap(record).putInt(i);
+        writer.write(record);
+      }
+    }
+  }
+
+  private static void assertSequence(List<byte[]> records) {
+    Assert.assertEquals(COUNT, records.size());
+    for(int i = 0; i < COUNT; i++) {
+      Assert.assertEquals(i, ByteBuffer.wrap(records.get(i)).getInt());
+    }
+  }
+
+  @Test
+  public void parallelVariableRecords() throws IOException, WriterException {
+    writeVariable(false);
+
+    try(Stream<byte[]> records = ZFiles.records(file)) {
+      assertSequence(records.parallel().collect(Collectors.<byte[]>toList()));
+    }
+  }
+
+  @Test
+  public void indexedRecordsAreSized() throws IOException, ReaderException, WriterException {
+    writeVariable(true);
+    BlockIndex.build(file).save(BlockIndex.getSidecar(file));
+
+    try(Stream<byte[]> records = ZFiles.records(file)) {
+      Spliterator<byte[]> spliterator = records.spliterator();
+      Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+      Assert.assertEquals(COUNT, spliterator.getExactSizeIfKnown());
+    }
+
+    try(Stream<byte[]> records = ZFiles.records(file)) {
+      assertSequence(records.parallel().collect(Collectors.<byte[]>toList()));
+    }
+  }
+
+  private static long openFiles() throws IOException {
+    try(Stream<Path> descriptors = Files.list(Paths.get("/proc/self/fd"))) {
+      return descriptors.count();
+    }
+  }
+
+  @Test
+  public void indexedRecordsAreClosed() throws IOException, ReaderException, WriterException {
+    if(!Files.isDirectory(Paths.get("/proc/self/fd"))) {
+      return;
+    }
+
+    writeVariable(true);
+    BlockIndex index = BlockIndex.build(file);
+    long before = openFiles();
+
+    for(int i = 0; i < 100; i++) {
+      try(Stream<byte[]> records = ZFiles.records(file, index)) {
+        Assert.assertTrue(records.parallel().findAny().isPresent());
+      }
+    }
+
+    Assert.assertTrue(openFiles() < before + 10);
+  }
+
+  @Test
+  public void parallelFixedRecords() throws IOException, ReaderException {
+    try(OutputStream out = Files.newOutputStream(file)) {
+      byte[] record = new byte[80];
+      for(int i = 0; i < COUNT; i++) {
+        ByteBuffer.wrap(record).putInt(i);
+        out.write(record);
+      }
+    }
+
+    try(Stream<byte[]> records = ZFiles.fixedRecords(file, 80)) {
+      Spliterator<byte[]> spliterator = records.spliterator();
+      Assert.assertEquals(COUNT, spliterator.getExactSizeIfKnown());
+    }
+
+    try(Stream<byte[]> records = ZFiles.fixedRecords(file, 80)) {
+      assertSequence(records.parallel().collect(Collectors.<byte[]>toList()));
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void fixedRecordsTruncated() throws IOException, ReaderException {
+    Files.write(file, new byte[81]);
+    ZFiles.fixedRecords(file, 80).close();
+  }
+}
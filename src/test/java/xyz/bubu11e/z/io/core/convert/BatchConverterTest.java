@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class BatchConverterTest {
+
+  private Path directory = null;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("batchconverter");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for(Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+    directory = null;
+  }
+
+  @Test
+  public void convertBatch() throws IOException, InterruptedException, WriterException {
+    List<Conversion> conversions = new ArrayList<Conversion>();
+    for(int i = 0; i < 20; i++) {
+      conversions.add(new Conversion(Datasets.variable(directory, "vb" + i, i % 2 == 0, 100 * i),
+        directory.resolve("vb" + i + ".csv"), i % 2 == 0 ? RecordFormat.VBS : RecordFormat.VB));
+    }
+
+    final List<ConversionResult> notified = new ArrayList<ConversionResult>();
+    BatchConverter converter = new BatchConverter(CodePage.CP037, null, ',', 3, 64, 256);
+    List<ConversionResult> results = converter.convert(conversions, new ConversionListener() {
+      @Override
+      public void converted(ConversionResult result) {
+        synchronized(notified) {
+          notified.add(result);
+        }
+      }
+    });
+
+    Assert.assertEquals(20, results.size());
+    Assert.assertEquals(20, notified.size());
+    for(int i = 0; i < 20; i++) {
+      ConversionResult result = results.get(i);
+      Assert.assertTrue(result.isSuccess());
+      Assert.assertSame(conversions.get(i), result.getConversion());
+      Assert.assertEquals(100 * i, result.getRecords());
+      Assert.assertEquals(Files.size(conversions.get(i).getTarget()), result.getOutputBytes());
+      Datasets.assertLines(conversions.get(i).getTarget(), 100 * i);
+    }
+  }
+
+  @Test
+  public void convertFixed() throws IOException, InterruptedException {
+    Path source = directory.resolve("fb");
+    Files.write(source, "record 0record 1record 2".getBytes(Datasets.EBCDIC));
+
+    BatchConverter converter = new BatchConverter(CodePage.CP037, null, ',');
+    ConversionResult result = converter.convert(new Conversion(source, directory.resolve("fb.csv"), RecordFormat.FB, 8));
+
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals(3, result.getRecords());
+    Assert.assertEquals(24, result.getInputBytes());
+    Datasets.assertLines(directory.resolve("fb.csv"), 3);
+  }
+
+  @Test
+  public void failureDoesNotStopTheBatch() throws IOException, InterruptedException, WriterException {
+    Path invalid = directory.resolve("invalid");
+    Files.write(invalid, new byte[] {0x00, 0x01, 0x00, 0x00});
+
+    List<Conversion> conversions = new ArrayList<Conversion>();
+    conversions.add(new Conversion(invalid, directory.resolve("invalid.csv"), RecordFormat.VB));
+    conversions.add(new Conversion(Datasets.variable(directory, "valid", false, 10), directory.resolve("valid.csv"),
+      RecordFormat.VB));
+
+    List<ConversionResult> results = new BatchConverter(CodePage.CP037, null, ',').convert(conversions, null);
+
+    Assert.assertFalse(results.get(0).isSuccess());
+    Assert.assertTrue(results.get(1).isSuccess());
+    Datasets.assertLines(directory.resolve("valid.csv"), 10);
+  }
+}
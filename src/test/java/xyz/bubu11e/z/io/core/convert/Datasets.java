@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+/**
+ * Helpers building the datasets of the conversion tests and checking their output.
+ */
+public class Datasets {
+
+  /** Code page of the records. */
+  public final static Charset EBCDIC = Charset.forName("IBM037");
+
+  /**
+   * Write a variable format dataset of "record i" records.
+   */
+  public static Path variable(Path directory, String name, boolean spanned, int count)
+      throws IOException, WriterException {
+    Path file = directory.resolve(name);
+    try(VBWriter writer = new VBWriter(file, 200, spanned)) {
+      for(int i = 0; i < count; i++) {
+        writer.write(("record " + i).getBytes(EBCDIC));
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Check a converted file holds the "record i" lines.
+   */
+  public static void assertLines(Path file, int count) throws IOException {
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    Assert.assertEquals(count, lines.size());
+    for(int i = 0; i < count; i++) {
+      Assert.assertEquals("record " + i, lines.get(i));
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.copybook.CopybookException;
+import xyz.bubu11e.z.io.core.copybook.CopybookParser;
+import xyz.bubu11e.z.io.core.copybook.Layout;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+
+public class DelimitedFormatterTest {
+
+  private final static Charset EBCDIC = Charset.forName("IBM037");
+
+  private Layout layout = null;
+  private byte[] line = null;
+
+  @Before
+  public void setUp() throws CopybookException {
+    layout = CopybookParser.parse("01 REC.\n"
+      + "  05 NAME PIC X(8).\n"
+      + "  05 AMOUNT PIC S9(5)V99 COMP-3.\n"
+      + "  05 CODE PIC X(2).\n");
+    line = new byte[1024];
+  }
+
+  @After
+  public void tearDown() {
+    layout = null;
+    line = null;
+  }
+
+  private String format(DelimitedFormatter formatter, byte[] record) {
+    int length = formatter.format(ByteBuffer.wrap(record), 0, record.length, line, 0);
+    Assert.assertTrue(length <= formatter.getMaxLength(record.length));
+    return new String(line, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] record(String name, byte[] amount, String code) {
+    ByteBuffer buffer = ByteBuffer.allocate(14);
+    buffer.put(name.getBytes(EBCDIC)).put(amount).put(code.getBytes(EBCDIC));
+    return buffer.array();
+  }
+
+  @Test
+  public void formatWholeRecord() {
+    DelimitedFormatter formatter = new DelimitedFormatter(CodePage.CP037);
+    Assert.assertEquals("Caf\u00e9 au lait\n", format(formatter, "Caf\u00e9 au lait   ".getBytes(EBCDIC)));
+  }
+
+  @Test
+  public void formatFields() {
+    DelimitedFormatter formatter = new DelimitedFormatter(CodePage.CP037, layout, ';');
+    byte[] record = record("Alice   ", new byte[] {0x01, 0x23, 0x45, 0x6d}, "AB");
+    Assert.assertEquals("Alice;-1234.56;AB\n", format(formatter, record));
+  }
+
+  @Test
+  public void quoteSpecialCharacters() {
+    DelimitedFormatter formatter = new DelimitedFormatter(CodePage.CP037, layout, ',');
+    byte[] record = record("a,\"b\"   ", new byte[] {0x00, 0x00, 0x00, 0x0c}, "  ");
+    Assert.assertEquals("\"a,\"\"b\"\"\",0.00,\n", format(formatter, record));
+  }
+
+  @Test
+  public void shortRecordHasEmptyColumns() {
+    DelimitedFormatter formatter = new DelimitedFormatter(CodePage.CP037, layout, ',');
+    Assert.assertEquals("Bob,,\n", format(formatter, "Bob     \u0000".getBytes(EBCDIC)));
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void invalidPackedField() {
+    DelimitedFormatter formatter = new DelimitedFormatter(CodePage.CP037, layout, ',');
+    format(formatter, record("Alice   ", new byte[] {0x01, 0x23, 0x45, 0x67}, "AB"));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidDelimiter() {
+    new DelimitedFormatter(CodePage.CP037, layout, '"');
+  }
+}
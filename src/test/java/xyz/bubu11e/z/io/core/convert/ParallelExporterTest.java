@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.convert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.copybook.CopybookException;
+import xyz.bubu11e.z.io.core.copybook.CopybookParser;
+import xyz.bubu11e.z.io.core.copybook.Layout;
+import xyz.bubu11e.z.io.core.filter.Predicates;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class ParallelExporterTest {
+
+  private Path directory = null;
+  private ExecutorService executor = null;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("parallelexporter");
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    for(Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+    directory = null;
+  }
+
+  @Test
+  public void exportInOrder() throws IOException, WriterException {
+    Conversion conversion = new Conversion(Datasets.variable(directory, "vbs", true, 20000),
+      directory.resolve("vbs.csv"), RecordFormat.VBS);
+
+    ConversionResult result = new ParallelExporter(CodePage.CP037, null, ',', executor, 256).export(conversion);
+
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals(20000, result.getRecords());
+    Assert.assertEquals(Files.size(conversion.getTarget()), result.getOutputBytes());
+    Datasets.assertLines(conversion.getTarget(), 20000);
+  }
+
+  @Test
+  public void exportLikeBatchConverter() throws IOException, WriterException, CopybookException,
+      InterruptedException {
+    Layout layout = CopybookParser.parse("01 REC.\n  05 NAME PIC X(7).\n  05 ID PIC X(6).\n");
+    Path source = Datasets.variable(directory, "vb", false, 5000);
+
+    ConversionResult exported = new ParallelExporter(CodePage.CP037, layout, ';', executor, 1000)
+      .export(new Conversion(source, directory.resolve("exported.csv"), RecordFormat.VB));
+    ConversionResult converted = new BatchConverter(CodePage.CP037, layout, ';')
+      .convert(new Conversion(source, directory.resolve("converted.csv"), RecordFormat.VB));
+
+    Assert.assertTrue(exported.isSuccess());
+    Assert.assertEquals(converted.getRecords(), exported.getRecords());
+    Assert.assertEquals(converted.getInputBytes(), exported.getInputBytes());
+    Assert.assertArrayEquals(Files.readAllBytes(directory.resolve("converted.csv")),
+      Files.readAllBytes(directory.resolve("exported.csv")));
+  }
+
+  @Test
+  public void exportFiltered() throws IOException, WriterException {
+    ParallelExporter exporter = new ParallelExporter(CodePage.CP037, null, ',', executor, 64);
+    exporter.setFilter(Predicates.equals(0, "record 1".getBytes(Datasets.EBCDIC)));
+
+    ConversionResult result = exporter.export(new Conversion(Datasets.variable(directory, "vb", false, 200),
+      directory.resolve("vb.csv"), RecordFormat.VB));
+
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals(111, result.getRecords());
+    List<String> lines = Files.readAllLines(directory.resolve("vb.csv"), StandardCharsets.UTF_8);
+    Assert.assertEquals("record 1", lines.get(0));
+    Assert.assertEquals("record 10", lines.get(1));
+    Assert.assertEquals("record 199", lines.get(110));
+  }
+
+  @Test
+  public void exportFixed() throws IOException {
+    Path source = directory.resolve("fb");
+    Files.write(source, "record 0record 1record 2".getBytes(Datasets.EBCDIC));
+
+    ConversionResult result = new ParallelExporter(CodePage.CP037, null, ',', executor, 8)
+      .export(new Conversion(source, directory.resolve("fb.csv"), RecordFormat.FB, 8));
+
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals(3, result.getRecords());
+    Assert.assertEquals(24, result.getInputBytes());
+    Datasets.assertLines(directory.resolve("fb.csv"), 3);
+  }
+
+  @Test
+  public void exportRecordsLargerThanBatch() throws IOException, WriterException {
+    Path source = directory.resolve("large");
+    byte[] large = new byte[5000];
+    Arrays.fill(large, (byte)0xc1);
+    try(VBWriter writer = new VBWriter(source, 1000, true)) {
+      writer.write("record 0".getBytes(Datasets.EBCDIC));
+      writer.write(large);
+      writer.write("record 2".getBytes(Datasets.EBCDIC));
+    }
+
+    ConversionResult result = new ParallelExporter(CodePage.CP037, null, ',', executor, 16)
+      .export(new Conversion(source, directory.resolve("large.csv"), RecordFormat.VBS));
+
+    Assert.assertTrue(result.isSuccess());
+    List<String> lines = Files.readAllLines(directory.resolve("large.csv"), StandardCharsets.UTF_8);
+    Assert.assertEquals(3, lines.size());
+    Assert.assertEquals(5000, lines.get(1).length());
+    Assert.assertEquals("record 2", lines.get(2));
+  }
+
+  @Test
+  public void formatFailure() throws IOException, WriterException, CopybookException {
+    Layout layout = CopybookParser.parse("01 REC.\n  05 ID PIC 9(2).\n  05 NAME PIC X(6).\n");
+
+    ConversionResult result = new ParallelExporter(CodePage.CP037, layout, ',', executor, 64)
+      .export(new Conversion(Datasets.variable(directory, "vb", false, 100), directory.resolve("vb.csv"),
+        RecordFormat.VB));
+
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertTrue(result.getFailure() instanceof NumberFormatException);
+  }
+}
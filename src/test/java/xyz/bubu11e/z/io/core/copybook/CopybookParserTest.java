@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class CopybookParserTest {
+
+  private static final String COPYBOOK =
+      "000100 01  CUSTOMER-RECORD.                                              CUST0001\n"
+    + "000200*    CUSTOMER IDENTIFICATION                                       CUST0002\n"
+    + "000300     05  CUST-ID             PIC 9(8).                             CUST0003\n"
+    + "000400     05  CUST-NAME           PIC X(30).                            CUST0004\n"
+    + "000500     05  CUST-BALANCE        PIC S9(7)V99 COMP-3.                  CUST0005\n"
+    + "000600     05  CUST-FLAGS          PIC S9(4) USAGE IS COMP.              CUST0006\n"
+    + "000700         88  CUST-ACTIVE     VALUE 1.                              CUST0007\n"
+    + "000800     05  CUST-ORDERS OCCURS 3 TIMES.                               CUST0008\n"
+    + "000900         10  ORDER-ID        PIC 9(6).                             CUST0009\n"
+    + "001000         10  ORDER-AMOUNT    PIC S9(5)V99.                         CUST0010\n"
+    + "001100     05  CUST-ADDRESS        PIC X(40).                            CUST0011\n"
+    + "001200     05  CUST-ADDRESS-PARTS REDEFINES CUST-ADDRESS.                CUST0012\n"
+    + "001300         10  STREET          PIC X(30).                            CUST0013\n"
+    + "001400         10  FILLER          PIC X(10).                            CUST0014\n"
+    + "001500     05  CUST-RATE           PIC V999 VALUE .125.                  CUST0015\n";
+
+  private Layout layout = null;
+
+  @Before
+  public void setUp() throws CopybookException {
+    layout = CopybookParser.parse(COPYBOOK);
+  }
+
+  @After
+  public void tearDown() {
+    layout = null;
+  }
+
+  private Field field(String name) {
+    int index = layout.indexOf(name);
+    Assert.assertTrue(name, index >= 0);
+    return layout.getField(index);
+  }
+
+  @Test
+  public void parseOffsets() {
+    Assert.assertEquals(0, field("CUST-ID").getOffset());
+    Assert.assertEquals(8, field("CUST-NAME").getOffset());
+    Assert.assertEquals(38, field("CUST-BALANCE").getOffset());
+    Assert.assertEquals(43, field("CUST-FLAGS").getOffset());
+    Assert.assertEquals(45, field("ORDER-ID(1)").getOffset());
+    Assert.assertEquals(51, field("ORDER-AMOUNT(1)").getOffset());
+    Assert.assertEquals(58, field("ORDER-ID(2)").getOffset());
+    Assert.assertEquals(77, field("ORDER-AMOUNT(3)").getOffset());
+    Assert.assertEquals(84, field("CUST-ADDRESS").getOffset());
+    Assert.assertEquals(84, field("STREET").getOffset());
+    Assert.assertEquals(124, field("CUST-RATE").getOffset());
+    Assert.assertEquals(127, layout.getRecordLength());
+  }
+
+  @Test
+  public void parseTypes() {
+    Field balance = field("cust-balance");
+    Assert.assertEquals(FieldType.PACKED, balance.getType());
+    Assert.assertEquals(5, balance.getLength());
+    Assert.assertEquals(9, balance.getDigits());
+    Assert.assertEquals(2, balance.getScale());
+    Assert.assertTrue(balance.isSigned());
+
+    Assert.assertEquals(FieldType.BINARY, field("CUST-FLAGS").getType());
+    Assert.assertEquals(2, field("CUST-FLAGS").getLength());
+    Assert.assertEquals(FieldType.ZONED, field("CUST-ID").getType());
+    Assert.assertEquals(FieldType.ALPHANUMERIC, field("CUST-NAME").getType());
+    Assert.assertEquals(FieldType.ALPHANUMERIC, field("CUST-ORDERS(2)").getType());
+    Assert.assertEquals(13, field("CUST-ORDERS(2)").getLength());
+    Assert.assertEquals(3, field("CUST-RATE").getScale());
+  }
+
+  @Test
+  public void parseGroups() {
+    Assert.assertTrue(field("CUSTOMER-RECORD").isGroup());
+    Assert.assertTrue(field("CUST-ORDERS(1)").isGroup());
+    Assert.assertFalse(field("CUST-ID").isGroup());
+  }
+
+  @Test
+  public void parseQualifiedNames() {
+    Assert.assertEquals(field("ORDER-ID(3)").getOffset(),
+      field("CUSTOMER-RECORD.CUST-ORDERS.ORDER-ID(3)").getOffset());
+    Assert.assertEquals(-1, layout.indexOf("FILLER"));
+    Assert.assertEquals(-1, layout.indexOf("CUST-ACTIVE"));
+  }
+
+  @Test
+  public void parseFreeFormat() throws CopybookException {
+    Layout free = CopybookParser.parse("01 REC. 05 A PIC X(2). 05 B PIC 9(3)V9 COMP-3. 05 C PIC ZZ9.99-.");
+    Assert.assertEquals(2 + 3 + 7, free.getRecordLength());
+    Assert.assertEquals(FieldType.ALPHANUMERIC, free.getField(free.indexOf("C")).getType());
+  }
+
+  @Test
+  public void parseNestedOccurs() throws CopybookException {
+    Layout nested = CopybookParser.parse("01 REC. 05 ROW OCCURS 2. 10 CELL PIC X OCCURS 3.");
+    Assert.assertEquals(6, nested.getRecordLength());
+    Assert.assertEquals(4, nested.getField(nested.indexOf("CELL(2,2)")).getOffset());
+  }
+
+  @Test (expected = CopybookException.class)
+  public void parseUnknownRedefines() throws CopybookException {
+    CopybookParser.parse("01 REC. 05 A PIC X. 05 B REDEFINES C PIC X.");
+  }
+
+  @Test (expected = CopybookException.class)
+  public void parseMissingPicture() throws CopybookException {
+    CopybookParser.parse("01 REC. 05 A.");
+  }
+
+  @Test (expected = CopybookException.class)
+  public void parseUnsupportedUsage() throws CopybookException {
+    CopybookParser.parse("01 REC. 05 A COMP-2.");
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.copybook;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.transcoder.CodePage;
+
+public class RecordAccessorTest {
+
+  private Layout layout = null;
+  private RecordAccessor accessor = null;
+  private byte[] record = null;
+
+  @Before
+  public void setUp() throws CopybookException {
+    layout = CopybookParser.parse("01 REC.\n"
+      + "  05 NAME PIC X(5).\n"
+      + "  05 QTY PIC 9(4).\n"
+      + "  05 AMOUNT PIC S9(5)V99 COMP-3.\n"
+      + "  05 DELTA PIC S9(3)V9.\n"
+      + "  05 COUNT PIC 9(9) COMP.\n"
+      + "  05 BIG PIC S9(21) COMP-3.\n");
+    accessor = layout.newAccessor(CodePage.CP037);
+
+    ByteBuffer buffer = ByteBuffer.allocate(3 + layout.getRecordLength());
+    buffer.position(3);
+    buffer.put("Alice".getBytes(Charset.forName("IBM037")));
+    buffer.put(new byte[] {(byte)0xf0, (byte)0xf0, (byte)0xf4, (byte)0xf2});
+    buffer.put(new byte[] {0x01, 0x23, 0x45, 0x6d});
+    buffer.put(new byte[] {(byte)0xf0, (byte)0xf1, (byte)0xf2, (byte)0xd5});
+    buffer.putInt(123456789);
+    buffer.put(new byte[] {0x12, 0x34, 0x56, 0x78, (byte)0x90, 0x12, 0x34, 0x56, 0x78, (byte)0x90, 0x1c});
+    record = buffer.array();
+    accessor.bind(record, 3);
+  }
+
+  @After
+  public void tearDown() {
+    layout = null;
+    accessor = null;
+    record = null;
+  }
+
+  @Test
+  public void getText() {
+    Assert.assertEquals("Alice", accessor.getString(layout.indexOf("NAME"), new StringBuilder()).toString());
+    char[] chars = new char[5];
+    Assert.assertEquals(5, accessor.getChars(layout.indexOf("NAME"), chars, 0));
+    Assert.assertArrayEquals("Alice".toCharArray(), chars);
+  }
+
+  @Test
+  public void getNumbers() {
+    Assert.assertEquals(42, accessor.getLong(layout.indexOf("QTY")));
+    Assert.assertEquals(-123456, accessor.getLong(layout.indexOf("AMOUNT")));
+    Assert.assertEquals(-125, accessor.getLong(layout.indexOf("DELTA")));
+    Assert.assertEquals(123456789, accessor.getLong(layout.indexOf("COUNT")));
+  }
+
+  @Test
+  public void getDecimals() {
+    Assert.assertEquals(new BigDecimal("-1234.56"), accessor.getDecimal(layout.indexOf("AMOUNT")));
+    Assert.assertEquals(new BigDecimal("-12.5"), accessor.getDecimal(layout.indexOf("DELTA")));
+    Assert.assertEquals(new BigDecimal("123456789012345678901"), accessor.getDecimal(layout.indexOf("BIG")));
+  }
+
+  @Test
+  public void formatNumbers() {
+    Assert.assertEquals("-1234.56", accessor.getString(layout.indexOf("AMOUNT"), new StringBuilder()).toString());
+    Assert.assertEquals("42", accessor.getString(layout.indexOf("QTY"), new StringBuilder()).toString());
+    Assert.assertEquals("123456789012345678901", accessor.getString(layout.indexOf("BIG"), new StringBuilder()).toString());
+  }
+
+  @Test
+  public void formatMinimumBinary() throws CopybookException {
+    Layout binary = CopybookParser.parse("01 REC.\n"
+      + "  05 WHOLE PIC S9(18) COMP.\n"
+      + "  05 SCALED PIC S9(16)V99 COMP.\n");
+    RecordAccessor minimum = binary.newAccessor(CodePage.CP037);
+    minimum.bind(ByteBuffer.allocate(16).putLong(Long.MIN_VALUE).putLong(Long.MIN_VALUE).array(), 0);
+
+    Assert.assertEquals("-9223372036854775808",
+      minimum.getString(binary.indexOf("WHOLE"), new StringBuilder()).toString());
+    Assert.assertEquals("-92233720368547758.08",
+      minimum.getString(binary.indexOf("SCALED"), new StringBuilder()).toString());
+  }
+
+  @Test
+  public void bindDirectBuffer() {
+    ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+    direct.put(record);
+    accessor.bind(direct, 3);
+    Assert.assertEquals(-123456, accessor.getLong(layout.indexOf("AMOUNT")));
+    Assert.assertEquals("Alice", accessor.getString(layout.indexOf("NAME"), new StringBuilder()).toString());
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void getInvalidSign() {
+    record[3 + 9 + 3] = 0x45;
+    accessor.getLong(layout.indexOf("AMOUNT"));
+  }
+
+  @Test (expected = ArithmeticException.class)
+  public void getTooManyDigits() {
+    accessor.getLong(layout.indexOf("BIG"));
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.decimal;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class DecimalCodecTest {
+
+  private Random random = null;
+
+  @Before
+  public void setUp() {
+    random = new Random(1);
+  }
+
+  @After
+  public void tearDown() {
+    random = null;
+  }
+
+  private long randomValue(int digits) {
+    long value = 0;
+    for(int i = 0; i < digits; i++) {
+      value = value * 10 + random.nextInt(10);
+    }
+    return random.nextBoolean() ? -value : value;
+  }
+
+  @Test
+  public void packedRoundTrip() {
+    for(int length = 1; length <= DecimalCodec.PACKED_MAX_LENGTH; length++) {
+      byte[] buffer = new byte[length + 2];
+      for(int i = 0; i < 1000; i++) {
+        long value = randomValue(Math.min(2 * length - 1, DecimalCodec.LONG_MAX_DIGITS));
+        DecimalCodec.encodePacked(value, buffer, 1, length, true);
+        Assert.assertEquals(value, DecimalCodec.decodePacked(buffer, 1, length));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(buffer.length);
+        direct.put(buffer);
+        Assert.assertEquals(value, DecimalCodec.decodePacked(direct, 1, length));
+      }
+    }
+  }
+
+  @Test
+  public void zonedRoundTrip() {
+    for(int length = 1; length <= DecimalCodec.LONG_MAX_DIGITS; length++) {
+      byte[] buffer = new byte[length + 2];
+      for(int i = 0; i < 1000; i++) {
+        long value = randomValue(length);
+        DecimalCodec.encodeZoned(value, buffer, 1, length, true);
+        Assert.assertEquals(value, DecimalCodec.decodeZoned(buffer, 1, length));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(buffer.length);
+        direct.put(buffer);
+        Assert.assertEquals(value, DecimalCodec.decodeZoned(direct, 1, length));
+      }
+    }
+  }
+
+  @Test
+  public void decodeKnownValues() {
+    Assert.assertEquals(-1234567, DecimalCodec.decodePacked(new byte[] {0x12, 0x34, 0x56, 0x7d}, 0, 4));
+    Assert.assertEquals(1234567, DecimalCodec.decodePacked(new byte[] {0x12, 0x34, 0x56, 0x7f}, 0, 4));
+    Assert.assertEquals(-125, DecimalCodec.decodeZoned(new byte[] {(byte)0xf1, (byte)0xf2, (byte)0xd5}, 0, 3));
+    Assert.assertEquals(7, DecimalCodec.decodeZoned(new byte[] {(byte)0xf0, (byte)0xf0, (byte)0xc7}, 0, 3));
+  }
+
+  @Test
+  public void decodeLargeDecimals() {
+    byte[] packed = new byte[] {0x12, 0x34, 0x56, 0x78, (byte)0x90, 0x12, 0x34, 0x56, 0x78, (byte)0x90, 0x12, 0x3d};
+    Assert.assertEquals(new BigDecimal("-1234567890123456789012.3"), DecimalCodec.decodePackedDecimal(packed, 0, packed.length, 1));
+
+    byte[] zoned = new byte[25];
+    for(int i = 0; i < zoned.length; i++) {
+      zoned[i] = (byte)(0xf0 | (i + 1) % 10);
+    }
+    Assert.assertEquals(new BigDecimal("12345678901234567890123.45"), DecimalCodec.decodeZonedDecimal(zoned, 0, zoned.length, 2));
+    Assert.assertEquals(new BigDecimal("-12.5"), DecimalCodec.decodePackedDecimal(new byte[] {0x12, 0x5d}, 0, 2, 1));
+  }
+
+  @Test
+  public void decodeColumn() {
+    byte[] records = new byte[40];
+    int[] offsets = new int[] {2, 12, 22, 32};
+    long[] expected = new long[] {1, -22, 333, -4444};
+    for(int i = 0; i < offsets.length; i++) {
+      DecimalCodec.encodePacked(expected[i], records, offsets[i], 3, true);
+    }
+
+    long[] values = new long[4];
+    DecimalCodec.decodePacked(records, offsets, 4, 3, values);
+    Assert.assertArrayEquals(expected, values);
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void decodeInvalidPackedDigit() {
+    DecimalCodec.decodePacked(new byte[] {0x1a, 0x34, 0x5c}, 0, 3);
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void decodeInvalidPackedSign() {
+    DecimalCodec.decodePacked(new byte[] {0x12, 0x34, 0x55}, 0, 3);
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void decodeInvalidZonedDigit() {
+    DecimalCodec.decodeZoned(new byte[] {(byte)0xf1, (byte)0xfb, (byte)0xc5}, 0, 3);
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void decodeInvalidZonedSign() {
+    DecimalCodec.decodeZoned(new byte[] {(byte)0xf1, (byte)0xf2, (byte)0x35}, 0, 3);
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void decodeBlankZoned() {
+    DecimalCodec.decodeZoned(new byte[] {0x40, 0x40, 0x40, 0x40, 0x40}, 0, 5);
+  }
+
+  @Test (expected = NumberFormatException.class)
+  public void decodeInvalidZonedZone() {
+    DecimalCodec.decodeZoned(new byte[] {(byte)0xf1, (byte)0xc2, (byte)0xc5}, 0, 3);
+  }
+
+  @Test
+  public void decodeInvalidLargeZonedZone() {
+    byte[] zoned = new byte[20];
+    for(int i = 0; i < zoned.length; i++) {
+      zoned[i] = (byte)0xf1;
+    }
+    zoned[9] = 0x41;
+
+    try {
+      DecimalCodec.decodeZonedDecimal(zoned, 0, zoned.length, 0);
+      Assert.fail();
+    } catch(NumberFormatException e) {
+    }
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(zoned.length);
+    direct.put(zoned);
+    try {
+      DecimalCodec.decodeZoned(direct, 2, 18);
+      Assert.fail();
+    } catch(NumberFormatException e) {
+    }
+  }
+
+  @Test (expected = ArithmeticException.class)
+  public void encodeOverflow() {
+    DecimalCodec.encodePacked(1000, new byte[2], 0, 2, true);
+  }
+}
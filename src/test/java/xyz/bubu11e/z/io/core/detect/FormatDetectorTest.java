@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.detect;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.AbstractRecordReader;
+import xyz.bubu11e.z.io.core.reader.FBReader;
+import xyz.bubu11e.z.io.core.reader.RDWReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class FormatDetectorTest {
+
+  private final static Charset EBCDIC = Charset.forName("IBM037");
+
+  private Path file = null;
+  private FormatDetector detector = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("detector", ".bin");
+    detector = new FormatDetector();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private static byte[] record(int i, int length) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("CUSTOMER %06d NAME-%d ", i, i % 97));
+    while(builder.length() < length) {
+      builder.append(' ');
+    }
+    builder.setLength(length);
+    return builder.toString().getBytes(EBCDIC);
+  }
+
+  private void variable(int blockSize, boolean spanned, int count, int length) throws IOException, WriterException {
+    try(VBWriter writer = new VBWriter(file, blockSize, spanned)) {
+      for(int i = 0; i < count; i++) {
+        writer.write(record(i, length + i % 7));
+      }
+    }
+  }
+
+  @Test
+  public void detectVB() throws IOException, WriterException, ReaderException {
+    variable(27998, false, 10000, 100);
+
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.VB, detection.getFormat());
+    Assert.assertEquals(RecordFormat.VB, detection.getFormat().getRecordFormat());
+    Assert.assertTrue(detection.getConfidence() > 0.99);
+    Assert.assertTrue(detection.getBytesRead() < 8192);
+
+    try(AbstractRecordReader reader = detection.open()) {
+      Assert.assertArrayEquals(record(0, 100), reader.read());
+    }
+  }
+
+  @Test
+  public void detectVBS() throws IOException, WriterException, ReaderException {
+    variable(1000, true, 200, 3000);
+
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.VBS, detection.getFormat());
+
+    try(AbstractRecordReader reader = detection.open()) {
+      Assert.assertTrue(reader instanceof VBSReader);
+      Assert.assertArrayEquals(record(0, 3000), reader.read());
+    }
+  }
+
+  @Test
+  public void detectV() throws IOException, WriterException {
+    variable(120, false, 500, 100);
+
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.V, detection.getFormat());
+    Assert.assertTrue(detection.getConfidence() > 0.99);
+  }
+
+  @Test
+  public void detectRDW() throws IOException, ReaderException {
+    byte[] data = new byte[0];
+    for(int i = 0; i < 300; i++) {
+      byte[] record = record(i, 50 + i % 13);
+      byte[] segment = new byte[record.length + 4];
+      segment[0] = (byte)(segment.length >> 8);
+      segment[1] = (byte)segment.length;
+      System.arraycopy(record, 0, segment, 4, record.length);
+
+      byte[] grown = new byte[data.length + segment.length];
+      System.arraycopy(data, 0, grown, 0, data.length);
+      System.arraycopy(segment, 0, grown, data.length, segment.length);
+      data = grown;
+    }
+    Files.write(file, data);
+
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.RDW, detection.getFormat());
+    Assert.assertNull(detection.getFormat().getRecordFormat());
+    Assert.assertTrue(detection.getConfidence() > 0.99);
+
+    try(AbstractRecordReader reader = detector.open(file)) {
+      Assert.assertTrue(reader instanceof RDWReader);
+      Assert.assertArrayEquals(record(0, 50), reader.read());
+      Assert.assertArrayEquals(record(1, 51), reader.read());
+    }
+  }
+
+  @Test
+  public void detectFB() throws IOException, ReaderException {
+    byte[] data = new byte[80 * 5000];
+    for(int i = 0; i < 5000; i++) {
+      System.arraycopy(record(i, 80), 0, data, 80 * i, 80);
+    }
+    Files.write(file, data);
+
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.FB, detection.getFormat());
+    Assert.assertEquals(80, detection.getLrecl());
+    Assert.assertTrue(detection.getConfidence() > 0.5);
+    Assert.assertTrue(detection.getBytesRead() < 16384);
+
+    try(AbstractRecordReader reader = detection.open()) {
+      Assert.assertTrue(reader instanceof FBReader);
+      Assert.assertArrayEquals(record(0, 80), reader.read());
+      Assert.assertArrayEquals(record(1, 80), reader.read());
+    }
+  }
+
+  @Test
+  public void detectUndefined() throws IOException {
+    byte[] data = new byte[10007];
+    new Random(3).nextBytes(data);
+    data[0] = (byte)0xff;
+    Files.write(file, data);
+
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.U, detection.getFormat());
+    Assert.assertEquals(0, detection.getLrecl());
+  }
+
+  @Test (expected = ReaderException.class)
+  public void openUndefined() throws IOException, ReaderException {
+    Files.write(file, new byte[] {(byte)0xff, 0x01, 0x02});
+    detector.open(file);
+  }
+
+  @Test
+  public void detectEmpty() throws IOException {
+    Detection detection = detector.detect(file);
+    Assert.assertEquals(DetectedFormat.U, detection.getFormat());
+    Assert.assertEquals(0, detection.getBytesRead());
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.dw;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class BlockDescriptorWordViewTest {
+
+  private BlockDescriptorWordView dw = null;
+
+  @Before
+  public void setUp() {
+    dw = new BlockDescriptorWordView();
+  }
+
+  @After
+  public void tearDown() {
+    dw = null;
+  }
+
+  @Test
+  public void getValidSegmentLength() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x00, (byte)0xff, (byte)0x00, (byte)0x00}, 0);
+    Assert.assertFalse(dw.isExtended());
+    Assert.assertEquals(255, dw.getSegmentLength());
+  }
+
+  @Test
+  public void getValidExtendedSegmentLength() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x80, (byte)0xff, (byte)0xff, (byte)0xff}, 0);
+    Assert.assertTrue(dw.isExtended());
+    Assert.assertEquals(16777215, dw.getSegmentLength());
+  }
+
+  @Test
+  public void getSegmentLengthFromDirectBuffer() throws DescriptorWordException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    buffer.put(8, (byte)0x6d).put(9, (byte)0x5e);
+    dw.bind(buffer, 8);
+    Assert.assertEquals(27998, dw.getSegmentLength());
+  }
+
+  @Test
+  public void getSegmentLengthFromLittleEndianBuffer() throws DescriptorWordException {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {(byte)0x01, (byte)0x00, (byte)0x00, (byte)0x00})
+      .order(ByteOrder.LITTLE_ENDIAN);
+    dw.bind(buffer, 0);
+    Assert.assertEquals(256, dw.getSegmentLength());
+  }
+
+  @Test (expected = DescriptorWordException.class)
+  public void bindTooLargeSegmentLength() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x7f, (byte)0xff, (byte)0x00, (byte)0x00}, 0);
+  }
+
+  @Test (expected = DescriptorWordException.class)
+  public void bindTooSmallSegmentLength() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00}, 0);
+  }
+
+  @Test (expected = DescriptorWordException.class)
+  public void bindOutOfBuffer() throws DescriptorWordException {
+    dw.bind(ByteBuffer.allocate(6), 3);
+  }
+
+  @Test
+  public void tryBind() {
+    Assert.assertTrue(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x7f, (byte)0xf8, (byte)0x00, (byte)0x00}), 0));
+    Assert.assertTrue(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x80, (byte)0x01, (byte)0x00, (byte)0x00}), 0));
+    Assert.assertFalse(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x7f, (byte)0xff, (byte)0x00, (byte)0x00}), 0));
+    Assert.assertFalse(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00}), 0));
+    Assert.assertFalse(dw.tryBind(ByteBuffer.allocate(6), 3));
+  }
+
+  @Test
+  public void wrapDoesNotValidate() throws DescriptorWordException {
+    dw.wrap(new byte[4], 0);
+    Assert.assertEquals(0, dw.getSegmentLength());
+  }
+
+  @Test
+  public void setSegmentLength() throws DescriptorWordException {
+    byte[] array = new byte[] {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff};
+    dw.wrap(array, 0);
+    dw.setSegmentLength(27998, false);
+    Assert.assertArrayEquals(new byte[] {(byte)0x6d, (byte)0x5e, (byte)0x00, (byte)0x00}, array);
+    dw.setSegmentLength(255, true);
+    Assert.assertArrayEquals(new byte[] {(byte)0x80, (byte)0x00, (byte)0x00, (byte)0xff}, array);
+  }
+
+  @Test
+  public void agreesWithBlockDescriptorWord() throws DescriptorWordException {
+    BlockDescriptorWord checked = new BlockDescriptorWord();
+    byte[] array = new byte[4];
+    checked.setBuffer(array);
+    dw.wrap(array, 0);
+
+    for(int length : new int[] {4, 255, 256, 32760}) {
+      checked.setSegmentLength(length, false);
+      Assert.assertEquals(checked.getSegmentLength(), dw.getSegmentLength());
+    }
+    for(int length : new int[] {4, 32761, 0x7fffffff}) {
+      checked.setSegmentLength(length, true);
+      Assert.assertEquals(checked.getSegmentLength(), dw.getSegmentLength());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.dw;
+
+import java.nio.ByteBuffer;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class RecordDescriptorWordViewTest {
+
+  private RecordDescriptorWordView dw = null;
+
+  @Before
+  public void setUp() {
+    dw = new RecordDescriptorWordView();
+  }
+
+  @After
+  public void tearDown() {
+    dw = null;
+  }
+
+  @Test
+  public void getValidSegment() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x01, (byte)0x00, (byte)0x02, (byte)0x00}, 0);
+    Assert.assertEquals(256, dw.getSegmentLength());
+    Assert.assertEquals(RecordDescriptorWord.Code.LAST_SEGMENT, dw.getSegmentCode());
+  }
+
+  @Test
+  public void getValidSegmentFromDirectBuffer() throws DescriptorWordException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+    buffer.putInt(4, 0x7ff80300);
+    dw.bind(buffer, 4);
+    Assert.assertEquals(32760, dw.getSegmentLength());
+    Assert.assertEquals(RecordDescriptorWord.Code.OTHER_SEGMENT, dw.getSegmentCode());
+  }
+
+  @Test (expected = DescriptorWordException.class)
+  public void bindTooLargeSegmentLength() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x7f, (byte)0xf9, (byte)0x00, (byte)0x00}, 0);
+  }
+
+  @Test (expected = DescriptorWordException.class)
+  public void bindInvalidCode() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x00, (byte)0x10, (byte)0x04, (byte)0x00}, 0);
+  }
+
+  @Test (expected = DescriptorWordException.class)
+  public void bindInvalidLastByte() throws DescriptorWordException {
+    dw.bind(new byte[] {(byte)0x00, (byte)0x10, (byte)0x00, (byte)0x01}, 0);
+  }
+
+  @Test
+  public void tryBind() {
+    Assert.assertTrue(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x00, (byte)0x10, (byte)0x03, (byte)0x00}), 0));
+    Assert.assertEquals(16, dw.getSegmentLength());
+    Assert.assertFalse(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x7f, (byte)0xf9, (byte)0x00, (byte)0x00}), 0));
+    Assert.assertFalse(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x00, (byte)0x10, (byte)0x04, (byte)0x00}), 0));
+    Assert.assertFalse(dw.tryBind(ByteBuffer.wrap(new byte[] {(byte)0x00, (byte)0x10, (byte)0x00, (byte)0x01}), 0));
+    Assert.assertFalse(dw.tryBind(ByteBuffer.allocate(6), 3));
+  }
+
+  @Test
+  public void set() throws DescriptorWordException {
+    byte[] array = new byte[] {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff};
+    dw.wrap(array, 1);
+    dw.set(300, RecordDescriptorWord.Code.FIRST_SEGMENT);
+    Assert.assertArrayEquals(new byte[] {(byte)0xff, (byte)0x01, (byte)0x2c, (byte)0x01, (byte)0x00}, array);
+  }
+}
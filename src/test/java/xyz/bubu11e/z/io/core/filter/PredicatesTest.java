@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.filter;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.copybook.CopybookException;
+import xyz.bubu11e.z.io.core.copybook.CopybookParser;
+import xyz.bubu11e.z.io.core.copybook.Layout;
+
+public class PredicatesTest {
+
+  private final static Charset EBCDIC = Charset.forName("IBM037");
+
+  private Layout layout = null;
+  private ByteBuffer buffer = null;
+  private int length = 0;
+
+  @Before
+  public void setUp() throws CopybookException {
+    layout = CopybookParser.parse("01 REC.\n"
+      + "  05 TYPE PIC X.\n"
+      + "  05 KEY PIC X(10).\n"
+      + "  05 AMOUNT PIC S9(5)V99 COMP-3.\n"
+      + "  05 DELTA PIC S9(3)V9.\n"
+      + "  05 COUNT PIC 9(9) COMP.\n");
+
+    length = layout.getRecordLength();
+    buffer = ByteBuffer.allocate(3 + length);
+    buffer.position(3);
+    buffer.put("A".getBytes(EBCDIC));
+    buffer.put("KEY0001234".getBytes(EBCDIC));
+    buffer.put(new byte[] {0x01, 0x23, 0x45, 0x6d});
+    buffer.put(new byte[] {(byte)0xf0, (byte)0xf1, (byte)0xf2, (byte)0xd5});
+    buffer.putInt(123456789);
+  }
+
+  @After
+  public void tearDown() {
+    layout = null;
+    buffer = null;
+  }
+
+  private boolean test(RecordPredicate predicate) {
+    return predicate.test(buffer, 3, length);
+  }
+
+  private RecordPredicate compare(String field, Comparison comparison, String value) {
+    return Predicates.compare(layout.getField(layout.indexOf(field)), comparison, new BigDecimal(value));
+  }
+
+  @Test
+  public void byteEquals() {
+    Assert.assertTrue(test(Predicates.byteEquals(0, (byte)0xc1)));
+    Assert.assertFalse(test(Predicates.byteEquals(0, (byte)0xc2)));
+    Assert.assertEquals(1, Predicates.byteEquals(0, (byte)0xc1).getExtent());
+  }
+
+  @Test
+  public void bytesEqual() {
+    Assert.assertTrue(test(Predicates.equals(1, "KEY0001234".getBytes(EBCDIC))));
+    Assert.assertTrue(test(Predicates.equals(1, "KEY00012".getBytes(EBCDIC))));
+    Assert.assertTrue(test(Predicates.equals(1, "KEY".getBytes(EBCDIC))));
+    Assert.assertFalse(test(Predicates.equals(1, "KEY0001235".getBytes(EBCDIC))));
+    Assert.assertFalse(test(Predicates.equals(1, "KEX".getBytes(EBCDIC))));
+    Assert.assertTrue(test(Predicates.equals(layout.getField(layout.indexOf("TYPE")), "A".getBytes(EBCDIC))));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidFieldValue() {
+    Predicates.equals(layout.getField(layout.indexOf("KEY")), "KEY".getBytes(EBCDIC));
+  }
+
+  @Test
+  public void range() {
+    Assert.assertTrue(test(Predicates.range(1, "KEY0001000".getBytes(EBCDIC), "KEY0001999".getBytes(EBCDIC))));
+    Assert.assertTrue(test(Predicates.range(1, "KEY0001234".getBytes(EBCDIC), "KEY0001234".getBytes(EBCDIC))));
+    Assert.assertFalse(test(Predicates.range(1, "KEY0001235".getBytes(EBCDIC), "KEY0001999".getBytes(EBCDIC))));
+    Assert.assertFalse(test(Predicates.range(1, "KEY0000000".getBytes(EBCDIC), "KEY0001233".getBytes(EBCDIC))));
+    Assert.assertTrue(test(Predicates.range(1, "A".getBytes(EBCDIC), "Z".getBytes(EBCDIC))));
+    Assert.assertTrue(test(Predicates.range(1, new byte[] {0x00, 0x00}, new byte[] {(byte)0xff, (byte)0xff})));
+    Assert.assertFalse(test(Predicates.range(1, new byte[] {(byte)0xd3}, new byte[] {(byte)0xff})));
+  }
+
+  @Test
+  public void packed() {
+    Assert.assertTrue(test(Predicates.packed(11, 4, Comparison.EQ, -123456)));
+    Assert.assertTrue(test(Predicates.packed(11, 4, Comparison.LT, 0)));
+    Assert.assertFalse(test(Predicates.packed(11, 4, Comparison.GE, 0)));
+    Assert.assertFalse(test(Predicates.packed(0, 4, Comparison.NE, 0)));
+  }
+
+  @Test
+  public void compareFields() {
+    Assert.assertTrue(test(compare("AMOUNT", Comparison.EQ, "-1234.56")));
+    Assert.assertTrue(test(compare("AMOUNT", Comparison.LE, "-1234.56")));
+    Assert.assertTrue(test(compare("AMOUNT", Comparison.GT, "-1234.567")));
+    Assert.assertTrue(test(compare("AMOUNT", Comparison.NE, "-1234.561")));
+    Assert.assertFalse(test(compare("AMOUNT", Comparison.EQ, "-1234.561")));
+    Assert.assertFalse(test(compare("AMOUNT", Comparison.LT, "-1234.565")));
+    Assert.assertTrue(test(compare("DELTA", Comparison.EQ, "-12.5")));
+    Assert.assertTrue(test(compare("DELTA", Comparison.GT, "-13")));
+    Assert.assertTrue(test(compare("COUNT", Comparison.EQ, "123456789")));
+    Assert.assertFalse(test(compare("COUNT", Comparison.LT, "1000")));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void compareText() {
+    compare("KEY", Comparison.EQ, "1");
+  }
+
+  @Test
+  public void combine() {
+    RecordPredicate type = Predicates.byteEquals(0, (byte)0xc1);
+    RecordPredicate count = compare("COUNT", Comparison.GT, "1000");
+    RecordPredicate other = Predicates.byteEquals(0, (byte)0xc2);
+
+    Assert.assertTrue(test(Predicates.and(type, count)));
+    Assert.assertFalse(test(Predicates.and(type, other)));
+    Assert.assertTrue(test(Predicates.or(other, count)));
+    Assert.assertFalse(test(Predicates.or(other, Predicates.not(count))));
+    Assert.assertEquals(length, Predicates.and(type, count).getExtent());
+  }
+
+  @Test
+  public void shortRecord() {
+    RecordPredicate predicate = Predicates.equals(1, "KEY".getBytes(EBCDIC));
+
+    Assert.assertFalse(predicate.test(buffer, 3, 3));
+    Assert.assertTrue(predicate.test(buffer, 3, 4));
+    Assert.assertFalse(Predicates.not(predicate).test(buffer, 3, 3));
+  }
+}
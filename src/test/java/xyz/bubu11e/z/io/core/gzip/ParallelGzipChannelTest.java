@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class ParallelGzipChannelTest {
+
+  private Path file = null;
+  private ExecutorService executor = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("parallel", ".gz");
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private byte[] data(int length) {
+    byte[] data = new byte[length];
+    Random random = new Random(7);
+    for(int i = 0; i < length; i++) {
+      data[i] = (byte)(random.nextInt(16) + 0xc0);
+    }
+    return data;
+  }
+
+  private byte[] readJdk() throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    try(InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      byte[] buffer = new byte[8192];
+      int count;
+      while((count = in.read(buffer)) >= 0) {
+        content.write(buffer, 0, count);
+      }
+    }
+    return content.toByteArray();
+  }
+
+  @Test
+  public void writeMultiMember() throws IOException {
+    byte[] data = data(100000);
+
+    try(ParallelGzipChannel channel = new ParallelGzipChannel(
+        Files.newByteChannel(file, java.nio.file.StandardOpenOption.WRITE), executor, 4096, 6)) {
+      for(int i = 0; i < data.length; i += 999) {
+        channel.write(ByteBuffer.wrap(data, i, Math.min(999, data.length - i)));
+      }
+    }
+
+    Assert.assertArrayEquals(data, readJdk());
+    Assert.assertTrue(Gzip.isGzip(file));
+  }
+
+  @Test
+  public void gatheringWrite() throws IOException {
+    byte[] data = data(10000);
+
+    try(ParallelGzipChannel channel = Gzip.newChannel(file)) {
+      Assert.assertEquals(10000, channel.write(new ByteBuffer[] {
+        ByteBuffer.wrap(data, 0, 3000), ByteBuffer.wrap(data, 3000, 7000)}));
+    }
+
+    Assert.assertArrayEquals(data, readJdk());
+  }
+
+  @Test
+  public void writeEmpty() throws IOException {
+    Gzip.newChannel(file).close();
+
+    Assert.assertEquals(0, readJdk().length);
+  }
+
+  @Test (expected = ClosedChannelException.class)
+  public void writeClosed() throws IOException {
+    ParallelGzipChannel channel = Gzip.newChannel(file);
+    channel.close();
+    channel.write(ByteBuffer.allocate(1));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidLevel() throws IOException {
+    new ParallelGzipChannel(Files.newByteChannel(file), executor, 1024, 10);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class ParallelGzipInputStreamTest {
+
+  private Path file = null;
+  private ExecutorService executor = null;
+  private byte[] data = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("parallel", ".gz");
+    executor = Executors.newFixedThreadPool(3);
+    data = new byte[50000];
+    new Random(11).nextBytes(data);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    Files.deleteIfExists(file);
+    file = null;
+    data = null;
+  }
+
+  private void writeParallel(int from, int to) throws IOException {
+    FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    try(ParallelGzipChannel channel = new ParallelGzipChannel(out, executor, 1000, 1)) {
+      channel.write(ByteBuffer.wrap(data, from, to - from));
+    }
+  }
+
+  private void writeSequential(int from, int to) throws IOException {
+    try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND))) {
+      out.write(data, from, to - from);
+    }
+  }
+
+  private byte[] read(int bufferSize) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    try(InputStream in = new ParallelGzipInputStream(file, executor)) {
+      byte[] buffer = new byte[bufferSize];
+      int count;
+      while((count = in.read(buffer)) >= 0) {
+        content.write(buffer, 0, count);
+      }
+    }
+    return content.toByteArray();
+  }
+
+  @Test
+  public void readParallel() throws IOException {
+    writeParallel(0, data.length);
+
+    Assert.assertArrayEquals(data, read(777));
+    Assert.assertArrayEquals(data, read(65536));
+  }
+
+  @Test
+  public void readSequential() throws IOException {
+    writeSequential(0, data.length);
+
+    Assert.assertArrayEquals(data, read(4096));
+  }
+
+  @Test
+  public void readMixedMembers() throws IOException {
+    writeParallel(0, 20000);
+    writeSequential(20000, 30000);
+    writeParallel(30000, data.length);
+
+    Assert.assertArrayEquals(data, read(1234));
+  }
+
+  @Test
+  public void readSingleBytes() throws IOException {
+    writeParallel(0, 3000);
+
+    try(InputStream in = Gzip.newInputStream(file)) {
+      for(int i = 0; i < 3000; i++) {
+        Assert.assertEquals(data[i] & 0xff, in.read());
+      }
+      Assert.assertEquals(-1, in.read());
+    }
+  }
+
+  @Test (expected = IOException.class)
+  public void corruptMember() throws IOException {
+    writeParallel(0, 3000);
+
+    byte[] content = Files.readAllBytes(file);
+    content[content.length - 5] ^= 0x01;
+    Files.write(file, content);
+
+    read(4096);
+  }
+
+  @Test
+  public void readPaddedFile() throws IOException {
+    writeParallel(0, data.length);
+    Files.write(file, new byte[512], StandardOpenOption.APPEND);
+
+    Assert.assertArrayEquals(data, read(4096));
+  }
+
+  @Test
+  public void readPaddedMixedMembers() throws IOException {
+    writeParallel(0, 20000);
+    writeSequential(20000, data.length);
+    Files.write(file, new byte[512], StandardOpenOption.APPEND);
+
+    Assert.assertArrayEquals(data, read(4096));
+  }
+
+  @Test (expected = IOException.class)
+  public void invalidMemberSize() throws IOException {
+    writeParallel(0, 3000);
+
+    byte[] content = Files.readAllBytes(file);
+    content[content.length - 1] = 0x7f;
+    Files.write(file, content);
+
+    read(4096);
+  }
+
+  @Test
+  public void notGzip() throws IOException {
+    Files.write(file, Arrays.copyOf(data, 100));
+
+    Assert.assertFalse(Gzip.isGzip(file));
+  }
+}
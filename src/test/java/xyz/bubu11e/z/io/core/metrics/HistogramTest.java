@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.metrics;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class HistogramTest {
+
+  private Histogram histogram = null;
+
+  @Before
+  public void setUp() {
+    histogram = new Histogram();
+  }
+
+  @After
+  public void tearDown() {
+    histogram = null;
+  }
+
+  @Test
+  public void buckets() {
+    Assert.assertEquals(0, Histogram.getBucket(0));
+    Assert.assertEquals(1, Histogram.getBucket(1));
+    Assert.assertEquals(2, Histogram.getBucket(3));
+    Assert.assertEquals(3, Histogram.getBucket(4));
+    Assert.assertEquals(63, Histogram.getBucket(Long.MAX_VALUE));
+    Assert.assertEquals(Long.MAX_VALUE, Histogram.getUpperBound(63));
+    Assert.assertEquals(7, Histogram.getUpperBound(3));
+  }
+
+  @Test
+  public void record() {
+    histogram.record(5);
+    histogram.record(6, 3);
+    histogram.record(100);
+
+    Assert.assertEquals(5, histogram.getCount());
+    Assert.assertEquals(123, histogram.getSum());
+    Assert.assertEquals(24.6, histogram.getMean(), 0.001);
+    Assert.assertEquals(4, histogram.getCounts()[3]);
+    Assert.assertEquals(1, histogram.getCounts()[7]);
+  }
+
+  @Test
+  public void percentile() {
+    Assert.assertEquals(0, histogram.getPercentile(50));
+
+    histogram.record(10, 99);
+    histogram.record(1000);
+
+    Assert.assertEquals(15, histogram.getPercentile(50));
+    Assert.assertEquals(15, histogram.getPercentile(99));
+    Assert.assertEquals(1023, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void reset() {
+    histogram.record(10);
+    histogram.reset();
+
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getSum());
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidPercentile() {
+    histogram.getPercentile(101);
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.dw.DescriptorWordException;
+import xyz.bubu11e.z.io.core.reader.FBReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.RecordBatch;
+import xyz.bubu11e.z.io.core.reader.VBReader;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class IoMetricsTest {
+
+  private Path file = null;
+  private IoMetrics metrics = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("metrics", ".bin");
+    metrics = new IoMetrics();
+  }
+
+  @After
+  public void tearDown() throws IOException, JMException {
+    metrics.unregister();
+    Files.deleteIfExists(file);
+    file = null;
+    metrics = null;
+  }
+
+  private void write() throws IOException, WriterException {
+    try(VBWriter writer = new VBWriter(file, 100, true)) {
+      writer.setMetrics(metrics);
+      writer.write(new byte[10]);
+      writer.write(new byte[250]);
+      writer.write(new byte[20]);
+    }
+  }
+
+  @Test
+  public void countWriter() throws IOException, WriterException {
+    write();
+
+    Assert.assertEquals(3, metrics.getRecords());
+    Assert.assertEquals(4, metrics.getBlocks());
+    Assert.assertEquals(Files.size(file), metrics.getBytes());
+    Assert.assertEquals(5, metrics.getSpannedSegments());
+    Assert.assertEquals(280.0 / 3, metrics.getMeanRecordLength(), 0.001);
+  }
+
+  @Test
+  public void countReader() throws IOException, ReaderException, WriterException {
+    write();
+    metrics.reset();
+
+    final AtomicInteger blocks = new AtomicInteger();
+    metrics.addListener(new MetricsListener() {
+      @Override
+      public void onBlock(int length, long nanos) {
+        Assert.assertTrue(nanos >= 0);
+        blocks.incrementAndGet();
+      }
+
+      @Override
+      public void onDescriptorWordFailure(long position, DescriptorWordException e) {
+        Assert.fail();
+      }
+    });
+
+    try(VBSReader reader = new VBSReader(file)) {
+      reader.setMetrics(metrics);
+      while(reader.next()) {
+        continue;
+      }
+    }
+
+    Assert.assertEquals(3, metrics.getRecords());
+    Assert.assertEquals(4, metrics.getBlocks());
+    Assert.assertEquals(4, blocks.get());
+    Assert.assertEquals(Files.size(file), metrics.getBytes());
+    Assert.assertEquals(5, metrics.getSpannedSegments());
+    Assert.assertEquals(4, metrics.getBlockLatencies().getCount());
+    Assert.assertEquals(1, metrics.getRecordLengthHistogram()[Histogram.getBucket(250)]);
+  }
+
+  @Test
+  public void countFixedRecords() throws IOException, ReaderException {
+    Files.write(file, new byte[800]);
+
+    try(FBReader reader = new FBReader(file, 80)) {
+      reader.setMetrics(metrics);
+      Assert.assertTrue(reader.next());
+      while(reader.nextBatch(new RecordBatch(), 4)) {
+        continue;
+      }
+    }
+
+    Assert.assertEquals(10, metrics.getRecords());
+    Assert.assertEquals(800, metrics.getBytes());
+    Assert.assertEquals(0, metrics.getBlocks());
+  }
+
+  @Test
+  public void countDescriptorWordFailures() throws IOException {
+    Files.write(file, new byte[] {0x00, 0x0c, 0x00, 0x00, 0x00, 0x08, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00});
+
+    final AtomicInteger failures = new AtomicInteger();
+    metrics.addListener(new MetricsListener() {
+      @Override
+      public void onBlock(int length, long nanos) {
+      }
+
+      @Override
+      public void onDescriptorWordFailure(long position, DescriptorWordException e) {
+        Assert.assertEquals(4, position);
+        failures.incrementAndGet();
+      }
+    });
+
+    try(VBReader reader = new VBReader(file)) {
+      reader.setMetrics(metrics);
+      reader.read();
+      Assert.fail();
+    } catch(ReaderException e) {
+      Assert.assertTrue(e.getCause() instanceof DescriptorWordException);
+    }
+
+    Assert.assertEquals(1, metrics.getDescriptorWordFailures());
+    Assert.assertEquals(1, failures.get());
+  }
+
+  @Test
+  public void register() throws IOException, JMException, WriterException {
+    ObjectName name = metrics.register("test dataset");
+    write();
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    Assert.assertTrue(server.isRegistered(name));
+    Assert.assertEquals(3L, server.getAttribute(name, "Records"));
+
+    server.invoke(name, "reset", null, null);
+    Assert.assertEquals(0, metrics.getRecords());
+
+    metrics.unregister();
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void removeListener() {
+    MetricsListener listener = new MetricsListener() {
+      @Override
+      public void onBlock(int length, long nanos) {
+        Assert.fail();
+      }
+
+      @Override
+      public void onDescriptorWordFailure(long position, DescriptorWordException e) {
+        Assert.fail();
+      }
+    };
+
+    metrics.addListener(listener);
+    metrics.removeListener(listener);
+    metrics.addBlock(100, 10);
+
+    Assert.assertEquals(1, metrics.getBlocks());
+  }
+}
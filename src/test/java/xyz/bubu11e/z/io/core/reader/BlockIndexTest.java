@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class BlockIndexTest {
+
+  private static final int COUNT = 3000;
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("blockindex", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(BlockIndex.getSidecar(file));
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private void write(int maxLength, boolean spanned) throws IOException, WriterException {
+    Random random = new Random(1);
+    try(VBWriter writer = new VBWriter(file, 1000, spanned)) {
+      for(int i = 0; i < COUNT; i++) {
+        byte[] record = new byte[4 + random.nextInt(maxLength)];
+        ByteBuffer.wrap(record).putInt(i);
+        writer.write(record);
+      }
+    }
+  }
+
+  private static int ordinal(AbstractVariableReader reader) {
+    return reader.getBuffer().getInt(reader.getOffset());
+  }
+
+  @Test
+  public void openRecord() throws IOException, WriterException, ReaderException {
+    write(200, false);
+    BlockIndex index = BlockIndex.build(file, 4);
+    Assert.assertEquals(COUNT, index.getRecordCount());
+    Assert.assertTrue(index.getEntryCount() > 1);
+
+    for(int ordinal : new int[] {0, 1, 17, 1500, COUNT - 1}) {
+      try(AbstractVariableReader reader = index.openRecord(file, ordinal)) {
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(ordinal, ordinal(reader));
+      }
+    }
+
+    try(AbstractVariableReader reader = index.openRecord(file, COUNT)) {
+      Assert.assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void openSpannedRecord() throws IOException, WriterException, ReaderException {
+    write(3000, true);
+    BlockIndex index = BlockIndex.build(file, 3);
+    Assert.assertEquals(COUNT, index.getRecordCount());
+
+    for(int ordinal : new int[] {0, 5, 999, 2500, COUNT - 1}) {
+      try(AbstractVariableReader reader = index.openRecord(file, ordinal)) {
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(ordinal, ordinal(reader));
+      }
+    }
+  }
+
+  @Test
+  public void openRanges() throws IOException, WriterException, ReaderException {
+    write(200, false);
+    BlockIndex index = BlockIndex.build(file, 4);
+    long size = Files.size(file);
+
+    int expected = 0;
+    for(long start = 0; start < size; start += size / 7) {
+      try(AbstractVariableReader reader = index.openRange(file, start, start + size / 7)) {
+        while(reader.next()) {
+          Assert.assertEquals(expected++, ordinal(reader));
+        }
+      }
+    }
+    Assert.assertEquals(COUNT, expected);
+  }
+
+  @Test
+  public void saveAndLoadSidecar() throws IOException, WriterException, ReaderException {
+    write(200, false);
+    BlockIndex built = BlockIndex.open(file);
+    Assert.assertTrue(Files.exists(BlockIndex.getSidecar(file)));
+    Assert.assertFalse(Files.exists(file.resolveSibling(BlockIndex.getSidecar(file).getFileName() + ".tmp")));
+
+    BlockIndex loaded = BlockIndex.load(BlockIndex.getSidecar(file));
+    Assert.assertTrue(loaded.isValidFor(file));
+    Assert.assertEquals(built.getRecordCount(), loaded.getRecordCount());
+    Assert.assertEquals(built.getEntryCount(), loaded.getEntryCount());
+
+    try(AbstractVariableReader reader = loaded.openRecord(file, 1234)) {
+      Assert.assertTrue(reader.next());
+      Assert.assertEquals(1234, ordinal(reader));
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void loadInvalidIndex() throws IOException, ReaderException {
+    Files.write(BlockIndex.getSidecar(file), new byte[] {1, 2, 3, 4, 5});
+    BlockIndex.load(BlockIndex.getSidecar(file));
+  }
+
+  @Test
+  public void loadTruncatedIndex() throws IOException, WriterException, ReaderException {
+    write(200, false);
+    Path sidecar = BlockIndex.getSidecar(file);
+    BlockIndex.build(file).save(sidecar);
+    byte[] content = Files.readAllBytes(sidecar);
+    Files.write(sidecar, Arrays.copyOf(content, content.length - 3));
+
+    try {
+      BlockIndex.load(sidecar);
+      Assert.fail();
+    } catch(ReaderException e) {
+      Assert.assertTrue(e.getCause() instanceof EOFException);
+    }
+  }
+}
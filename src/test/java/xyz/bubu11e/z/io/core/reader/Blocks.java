@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Helpers building variable format datasets for the tests.
+ */
+public class Blocks {
+
+  /**
+   * Build a block containing the specified segments.
+   */
+  public static byte[] block(byte[]... segments) {
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    int length = 4;
+    for(byte[] segment : segments) {
+      length += segment.length;
+    }
+    block.write(new byte[] {(byte)(length >> 8), (byte)length, 0x00, 0x00}, 0, 4);
+    for(byte[] segment : segments) {
+      block.write(segment, 0, segment.length);
+    }
+    return block.toByteArray();
+  }
+
+  /**
+   * Build a segment with its RDW.
+   */
+  public static byte[] segment(byte[] data, int code) {
+    int length = data.length + 4;
+    byte[] segment = new byte[length];
+    segment[0] = (byte)(length >> 8);
+    segment[1] = (byte)length;
+    segment[2] = (byte)code;
+    System.arraycopy(data, 0, segment, 4, data.length);
+    return segment;
+  }
+
+  /**
+   * Build a complete record with its RDW.
+   */
+  public static byte[] segment(byte[] data) {
+    return segment(data, 0x00);
+  }
+
+  /**
+   * Build a record of predictable content.
+   */
+  public static byte[] record(int length, int seed) {
+    byte[] record = new byte[length];
+    for(int i = 0; i < length; i++) {
+      record[i] = (byte)(seed + i);
+    }
+    return record;
+  }
+
+  /**
+   * Extract a part of a record.
+   */
+  public static byte[] part(byte[] record, int from, int to) {
+    return java.util.Arrays.copyOfRange(record, from, to);
+  }
+
+  /**
+   * Write blocks to a file.
+   */
+  public static void write(Path file, byte[]... blocks) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for(byte[] block : blocks) {
+      out.write(block, 0, block.length);
+    }
+    Files.write(file, out.toByteArray());
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class CheckpointTest {
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("checkpoint", ".ckp");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  @Test
+  public void saveAndLoad() throws IOException, ReaderException {
+    Checkpoint checkpoint = new Checkpoint(1L << 40, 17, -1).withOutput(123456789L);
+    checkpoint.save(file);
+    Assert.assertEquals(28, Files.size(file));
+    Assert.assertEquals(checkpoint, Checkpoint.load(file));
+
+    Checkpoint.START.save(file);
+    Assert.assertEquals(Checkpoint.START, Checkpoint.load(file));
+  }
+
+  @Test (expected = ReaderException.class)
+  public void loadInvalidFile() throws IOException, ReaderException {
+    Files.write(file, new byte[28]);
+    Checkpoint.load(file);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidCheckpoint() {
+    new Checkpoint(0, -1, -1);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.filter.RecordPredicate;
+import xyz.bubu11e.z.io.core.filter.Predicates;
+
+public class FBReaderTest {
+
+  private static final int LRECL = 80;
+  private static final int COUNT = 1000;
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("fbreader", ".bin");
+
+    ByteBuffer data = ByteBuffer.allocate(LRECL * COUNT);
+    for(int i = 0; i < COUNT; i++) {
+      data.putInt(i * LRECL, i);
+    }
+    Files.write(file, data.array());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  @Test
+  public void readRecords() throws IOException, ReaderException {
+    try(FBReader reader = new FBReader(file, LRECL, LRECL * 27)) {
+      for(int i = 0; i < COUNT; i++) {
+        byte[] record = reader.read();
+        Assert.assertEquals(LRECL, record.length);
+        Assert.assertEquals(i, ByteBuffer.wrap(record).getInt());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void readBatches() throws IOException, ReaderException {
+    RecordBatch batch = new RecordBatch();
+    int expected = 0;
+
+    try(FBReader reader = new FBReader(file, LRECL)) {
+      Assert.assertTrue(reader.next());
+      Assert.assertEquals(0, reader.getBuffer().getInt(reader.getOffset()));
+      expected++;
+
+      while(reader.nextBatch(batch, 300)) {
+        Assert.assertTrue(batch.getCount() <= 300);
+        Assert.assertEquals(LRECL, batch.getRecordLength());
+        for(int i = 0; i < batch.getCount(); i++) {
+          Assert.assertEquals(expected++, batch.getBuffer().getInt(batch.getOffset(i)));
+        }
+        Assert.assertEquals(expected - 1, reader.getBuffer().getInt(reader.getOffset()));
+      }
+
+      Assert.assertEquals(0, batch.getCount());
+      Assert.assertFalse(reader.next());
+    }
+
+    Assert.assertEquals(COUNT, expected);
+  }
+
+  @Test
+  public void readRange() throws IOException, ReaderException {
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        FBReader reader = new FBReader(channel, 10 * LRECL, 20 * LRECL, LRECL, LRECL)) {
+      for(int i = 10; i < 20; i++) {
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(i, reader.getRecord().getInt());
+      }
+      Assert.assertFalse(reader.next());
+    }
+  }
+
+  private InputStream openStream() throws IOException {
+    return new FilterInputStream(Files.newInputStream(file)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return super.read(b, off, Math.min(len, 1000));
+      }
+    };
+  }
+
+  @Test
+  public void readStream() throws IOException, ReaderException {
+    RecordBatch batch = new RecordBatch();
+    int expected = 0;
+
+    try(FBReader reader = new FBReader(openStream(), LRECL, LRECL * 27)) {
+      while(reader.nextBatch(batch, 100)) {
+        for(int i = 0; i < batch.getCount(); i++) {
+          Assert.assertEquals(expected++, batch.getBuffer().getInt(batch.getOffset(i)));
+        }
+      }
+      Assert.assertFalse(reader.next());
+    }
+
+    Assert.assertEquals(COUNT, expected);
+  }
+
+  @Test (expected = ReaderException.class)
+  public void truncatedStream() throws IOException, ReaderException {
+    Files.write(file, new byte[LRECL * 3 + 1]);
+
+    try(FBReader reader = new FBReader(openStream(), LRECL, LRECL)) {
+      for(int i = 0; i < 3; i++) {
+        Assert.assertNotNull(reader.read());
+      }
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void truncatedRecord() throws IOException, ReaderException {
+    Files.write(file, new byte[LRECL + 1]);
+
+    try(FBReader reader = new FBReader(file, LRECL)) {
+      Assert.assertNotNull(reader.read());
+      reader.read();
+    }
+  }
+
+  @Test
+  public void lenientTruncatedRecord() throws IOException, ReaderException {
+    Files.write(file, new byte[LRECL * 2 + 1]);
+
+    try(FBReader reader = new FBReader(file, LRECL)) {
+      reader.setLenient(true);
+      byte[] array = new byte[LRECL];
+      Assert.assertEquals(LRECL, reader.read(array, 0));
+      Assert.assertEquals(LRECL, reader.read(array, 0));
+      Assert.assertEquals(AbstractRecordReader.INVALID_DESCRIPTOR, reader.read(array, 0));
+      Assert.assertEquals(AbstractRecordReader.END_OF_DATA, reader.read(array, 0));
+    }
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidBlockSize() throws IOException {
+    new FBReader(file, LRECL, LRECL * 2 + 1);
+  }
+
+  private static byte[] key(int i) {
+    return ByteBuffer.allocate(4).putInt(i).array();
+  }
+
+  @Test
+  public void readFilteredBatches() throws IOException, ReaderException {
+    RecordBatch batch = new RecordBatch();
+    RecordPredicate filter = Predicates.or(
+      Predicates.range(0, key(100), key(199)),
+      Predicates.range(0, key(500), key(549)));
+
+    try(FBReader reader = new FBReader(file, LRECL)) {
+      reader.setFilter(filter);
+
+      Assert.assertTrue(reader.nextBatch(batch, 300));
+      Assert.assertEquals(100, batch.getCount());
+      for(int i = 0; i < batch.getCount(); i++) {
+        Assert.assertEquals(100 + i, batch.getBuffer().getInt(batch.getOffset(i)));
+      }
+
+      Assert.assertTrue(reader.nextBatch(batch, 30));
+      Assert.assertEquals(30, batch.getCount());
+      Assert.assertEquals(500, batch.getBuffer().getInt(batch.getOffset(0)));
+
+      Assert.assertTrue(reader.next());
+      Assert.assertEquals(530, reader.getBuffer().getInt(reader.getOffset()));
+
+      Assert.assertTrue(reader.nextBatch(batch, 300));
+      Assert.assertEquals(19, batch.getCount());
+      Assert.assertEquals(531, batch.getBuffer().getInt(batch.getOffset(0)));
+
+      Assert.assertFalse(reader.nextBatch(batch, 300));
+      Assert.assertFalse(reader.next());
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class ParallelVBReaderTest {
+
+  private static final int COUNT = 5000;
+
+  private Path file = null;
+  private ForkJoinPool pool = null;
+
+  @Before
+  public void setUp() throws IOException, WriterException {
+    file = Files.createTempFile("parallelvbreader", ".bin");
+    pool = new ForkJoinPool(4);
+
+    Random random = new Random(1);
+    try(VBWriter writer = new VBWriter(file, 1000, false)) {
+      for(int i = 0; i < COUNT; i++) {
+        byte[] record = new byte[4 + random.nextInt(200)];
+        ByteBuffer.wrap(record).putInt(i);
+        writer.write(record);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    pool.shutdown();
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  @Test
+  public void locateBlocks() throws IOException, ReaderException {
+    try(ParallelVBReader reader = new ParallelVBReader(file, pool, 10000)) {
+      long[] blocks = reader.getBlockPositions();
+      Assert.assertEquals(0, blocks[0]);
+      Assert.assertEquals(Files.size(file), blocks[blocks.length - 1]);
+      for(int i = 1; i < blocks.length; i++) {
+        Assert.assertTrue(blocks[i] - blocks[i - 1] <= 1000);
+      }
+    }
+  }
+
+  @Test
+  public void readOrdered() throws IOException, ReaderException {
+    final List<Integer> records = new ArrayList<Integer>();
+    try(ParallelVBReader reader = new ParallelVBReader(file, pool, 10000)) {
+      reader.forEach(new RecordHandler() {
+        public void handle(ByteBuffer record) {
+          records.add(record.getInt(record.position()));
+        }
+      }, true);
+    }
+
+    Assert.assertEquals(COUNT, records.size());
+    for(int i = 0; i < COUNT; i++) {
+      Assert.assertEquals(i, records.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void readUnordered() throws IOException, ReaderException {
+    final List<Integer> records = Collections.synchronizedList(new ArrayList<Integer>());
+    try(ParallelVBReader reader = new ParallelVBReader(file, pool, 10000)) {
+      reader.forEach(new RecordHandler() {
+        public void handle(ByteBuffer record) {
+          records.add(record.getInt(record.position()));
+        }
+      }, false);
+    }
+
+    Collections.sort(records);
+    Assert.assertEquals(COUNT, records.size());
+    for(int i = 0; i < COUNT; i++) {
+      Assert.assertEquals(i, records.get(i).intValue());
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readInvalidRecord() throws IOException, ReaderException {
+    byte[] data = Files.readAllBytes(file);
+    data[6] = 0x01;
+    Files.write(file, data);
+
+    try(ParallelVBReader reader = new ParallelVBReader(file, pool, 10000)) {
+      reader.forEach(new RecordHandler() {
+        public void handle(ByteBuffer record) {
+        }
+      }, false);
+    }
+  }
+}
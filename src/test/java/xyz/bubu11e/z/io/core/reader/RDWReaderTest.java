@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.filter.Predicates;
+import xyz.bubu11e.z.io.core.metrics.IoMetrics;
+
+public class RDWReaderTest {
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("rdwreader", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  @Test
+  public void readRecords() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.record(0, 2)),
+      Blocks.segment(Blocks.record(30000, 3)), Blocks.segment(Blocks.record(5, 4)));
+
+    try(RDWReader reader = new RDWReader(file, 32760)) {
+      Assert.assertArrayEquals(Blocks.record(10, 1), reader.read());
+      Assert.assertArrayEquals(Blocks.record(0, 2), reader.read());
+      Assert.assertArrayEquals(Blocks.record(30000, 3), reader.read());
+      Assert.assertArrayEquals(Blocks.record(5, 4), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void readMeteredRecords() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.record(0, 2)),
+      Blocks.segment(Blocks.record(300, 3)));
+    IoMetrics metrics = new IoMetrics();
+
+    try(RDWReader reader = new RDWReader(file)) {
+      reader.setMetrics(metrics);
+      while(reader.next()) {
+        continue;
+      }
+    }
+
+    Assert.assertEquals(3, metrics.getRecords());
+    Assert.assertEquals(Files.size(file), metrics.getBytes());
+  }
+
+  @Test
+  public void readFilteredRecords() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.record(10, 2)),
+      Blocks.segment(Blocks.record(10, 1)));
+
+    try(RDWReader reader = new RDWReader(file)) {
+      reader.setFilter(Predicates.byteEquals(0, (byte)2));
+      Assert.assertArrayEquals(Blocks.record(10, 2), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readTruncatedRecord() throws IOException, ReaderException {
+    byte[] segment = Blocks.segment(Blocks.record(10, 1));
+    Blocks.write(file, Arrays.copyOf(segment, 12));
+
+    try(RDWReader reader = new RDWReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readSpannedSegment() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.segment(Blocks.record(10, 1), 0x01));
+
+    try(RDWReader reader = new RDWReader(file)) {
+      reader.read();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class ReadAheadBlockSourceTest {
+
+  private Path file = null;
+  private List<byte[]> records = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("readahead", ".bin");
+    records = new ArrayList<byte[]>();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+    records = null;
+  }
+
+  private void write(boolean spanned) throws IOException, WriterException {
+    Random random = new Random(3);
+    try(VBWriter writer = new VBWriter(file, 1000, spanned)) {
+      for(int i = 0; i < 2000; i++) {
+        byte[] record = new byte[1 + random.nextInt(spanned ? 3000 : 900)];
+        random.nextBytes(record);
+        records.add(record);
+        writer.write(record);
+      }
+    }
+  }
+
+  private void assertRecords(AbstractVariableReader reader) throws IOException, ReaderException {
+    try {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void readBlocksCrossingChunks() throws IOException, ReaderException, WriterException {
+    write(false);
+
+    assertRecords(new VBReader(new ReadAheadBlockSource(file, 2, 333)));
+    assertRecords(new VBReader(new ReadAheadBlockSource(file, 3, 7)));
+    assertRecords(new VBReader(new ReadAheadBlockSource(file)));
+  }
+
+  @Test
+  public void readSpannedRecords() throws IOException, ReaderException, WriterException {
+    write(true);
+
+    assertRecords(new VBSReader(new ReadAheadBlockSource(file, 2, 4)));
+    assertRecords(new VBSReader(new ReadAheadBlockSource(file, 4, 4096)));
+  }
+
+  @Test
+  public void readRangeOfSharedChannel() throws IOException, ReaderException {
+    Blocks.write(file,
+      Blocks.block(Blocks.segment(Blocks.record(10, 1))),
+      Blocks.block(Blocks.segment(Blocks.record(20, 2)), Blocks.segment(Blocks.record(30, 3))),
+      Blocks.block(Blocks.segment(Blocks.record(40, 4))));
+
+    try(AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+        VBReader reader = new VBReader(new ReadAheadBlockSource(channel, 18, 80, 2, 16))) {
+      Assert.assertArrayEquals(Blocks.record(20, 2), reader.read());
+      Assert.assertArrayEquals(Blocks.record(30, 3), reader.read());
+      Assert.assertNull(reader.read());
+      Assert.assertTrue(channel.isOpen());
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void truncatedBlock() throws IOException, ReaderException {
+    byte[] block = Blocks.block(Blocks.segment(Blocks.record(100, 1)));
+    Files.write(file, Arrays.copyOf(block, 50));
+
+    try(VBReader reader = new VBReader(new ReadAheadBlockSource(file, 2, 16))) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void invalidDepth() throws IOException {
+    new ReadAheadBlockSource(file, 1, 1024);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class ResyncBlockSourceTest {
+
+  private Path file = null;
+  private List<long[]> skipped = null;
+  private ResyncListener listener = null;
+
+  private byte[] first = null;
+  private byte[] second = null;
+  private byte[] third = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("resync", ".bin");
+    skipped = new ArrayList<long[]>();
+    listener = new ResyncListener() {
+      @Override
+      public void onSkip(long start, long end, String reason) {
+        Assert.assertNotNull(reason);
+        skipped.add(new long[] {start, end});
+      }
+    };
+
+    first = Blocks.block(Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.record(20, 2)));
+    second = Blocks.block(Blocks.segment(Blocks.record(30, 3)));
+    third = Blocks.block(Blocks.segment(Blocks.record(40, 4)), Blocks.segment(Blocks.record(5, 5)));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+    skipped = null;
+    listener = null;
+  }
+
+  private void write(byte[]... parts) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    for(byte[] part : parts) {
+      data.write(part, 0, part.length);
+    }
+    Files.write(file, data.toByteArray());
+  }
+
+  private List<byte[]> read() throws IOException, ReaderException {
+    List<byte[]> records = new ArrayList<byte[]>();
+    try(VBReader reader = new VBReader(new ResyncBlockSource(file, listener))) {
+      byte[] record;
+      while((record = reader.read()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  @Test
+  public void readClean() throws IOException, ReaderException {
+    write(first, second, third);
+
+    List<byte[]> records = read();
+    Assert.assertEquals(5, records.size());
+    Assert.assertArrayEquals(Blocks.record(40, 4), records.get(3));
+    Assert.assertTrue(skipped.isEmpty());
+  }
+
+  @Test
+  public void skipInvalidBDW() throws IOException, ReaderException {
+    second[0] = (byte)0x7f;
+    write(first, second, third);
+
+    List<byte[]> records = read();
+    Assert.assertEquals(4, records.size());
+    Assert.assertArrayEquals(Blocks.record(20, 2), records.get(1));
+    Assert.assertArrayEquals(Blocks.record(40, 4), records.get(2));
+    Assert.assertEquals(1, skipped.size());
+    Assert.assertArrayEquals(new long[] {first.length, first.length + second.length}, skipped.get(0));
+  }
+
+  @Test
+  public void skipInvalidRDWChain() throws IOException, ReaderException {
+    first[4 + 14 + 3] = 0x01;
+    write(first, second, third);
+
+    List<byte[]> records = read();
+    Assert.assertEquals(3, records.size());
+    Assert.assertArrayEquals(Blocks.record(30, 3), records.get(0));
+    Assert.assertArrayEquals(new long[] {0, first.length}, skipped.get(0));
+  }
+
+  @Test
+  public void skipGarbage() throws IOException, ReaderException {
+    byte[] garbage = new byte[1000];
+    for(int i = 0; i < garbage.length; i++) {
+      garbage[i] = (byte)(i * 7);
+    }
+    write(first, garbage, second, garbage, third, new byte[] {0x00, 0x40, 0x00});
+
+    List<byte[]> records = read();
+    Assert.assertEquals(5, records.size());
+    Assert.assertEquals(3, skipped.size());
+    Assert.assertArrayEquals(new long[] {first.length, first.length + garbage.length}, skipped.get(0));
+    Assert.assertEquals(Files.size(file), skipped.get(2)[1]);
+  }
+
+  @Test
+  public void readRange() throws IOException, ReaderException {
+    write(first, second, third);
+
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        ResyncBlockSource source = new ResyncBlockSource(channel, first.length, -1, 16, listener)) {
+      Assert.assertTrue(source.nextBlock());
+      Assert.assertEquals(first.length, source.getBlockPosition());
+      Assert.assertTrue(source.nextBlock());
+      Assert.assertEquals(third.length, source.getBlockLength());
+      Assert.assertFalse(source.nextBlock());
+      Assert.assertEquals(0, source.getSkippedRegions());
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.gzip.Gzip;
+import xyz.bubu11e.z.io.core.gzip.ParallelGzipChannel;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class StreamBlockSourceTest {
+
+  private Path file = null;
+  private List<byte[]> records = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("stream", ".gz");
+    records = new ArrayList<byte[]>();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+    records = null;
+  }
+
+  @Test
+  public void readCompressed() throws IOException, ReaderException, WriterException {
+    Random random = new Random(5);
+    try(VBWriter writer = new VBWriter(Gzip.newChannel(file), 40000, true, VBWriter.DEFAULT_BATCH_SIZE)) {
+      for(int i = 0; i < 3000; i++) {
+        byte[] record = new byte[1 + random.nextInt(50000)];
+        Arrays.fill(record, (byte)i);
+        records.add(record);
+        writer.write(record);
+      }
+    }
+
+    Assert.assertTrue(Gzip.isGzip(file));
+
+    try(VBSReader reader = new VBSReader(new StreamBlockSource(Gzip.newInputStream(file), 16))) {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void readBlocks() throws IOException, ReaderException {
+    byte[] first = Blocks.block(Blocks.segment(Blocks.record(10, 1)));
+    byte[] second = Blocks.block(Blocks.segment(Blocks.record(20, 2)), Blocks.segment(Blocks.record(30, 3)));
+    byte[] data = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, data, first.length, second.length);
+
+    try(StreamBlockSource source = new StreamBlockSource(new ByteArrayInputStream(data), 4)) {
+      Assert.assertTrue(source.nextBlock());
+      Assert.assertEquals(0, source.getBlockPosition());
+      Assert.assertEquals(first.length, source.getBlockLength());
+      Assert.assertTrue(source.nextBlock());
+      Assert.assertEquals(first.length, source.getBlockPosition());
+      Assert.assertEquals(second.length, source.getBlockLength());
+      Assert.assertEquals(3, source.getBlockBuffer().get(source.getBlockOffset() + 4 + 24 + 4));
+      Assert.assertFalse(source.nextBlock());
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void truncatedBlock() throws IOException, ReaderException {
+    byte[] block = Blocks.block(Blocks.segment(Blocks.record(100, 1)));
+
+    try(VBReader reader = new VBReader(new StreamBlockSource(new ByteArrayInputStream(Arrays.copyOf(block, 50))))) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void truncatedBDW() throws IOException, ReaderException {
+    try(StreamBlockSource source = new StreamBlockSource(new ByteArrayInputStream(new byte[] {0, 8}))) {
+      source.nextBlock();
+    }
+  }
+}
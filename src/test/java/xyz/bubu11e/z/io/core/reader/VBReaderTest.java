@@ -0,0 +1,283 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.filter.Predicates;
+
+public class VBReaderTest {
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("vbreader", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private static byte[] block(byte[]... records) {
+    byte[][] segments = new byte[records.length][];
+    for(int i = 0; i < records.length; i++) {
+      segments[i] = Blocks.segment(records[i]);
+    }
+    return Blocks.block(segments);
+  }
+
+  private static byte[] record(int length, int seed) {
+    return Blocks.record(length, seed);
+  }
+
+  private void write(byte[]... blocks) throws IOException {
+    Blocks.write(file, blocks);
+  }
+
+  @Test
+  public void readRecords() throws IOException, ReaderException {
+    write(block(record(10, 1), record(0, 2), record(300, 3)), block(record(1, 4)));
+    try(VBReader reader = new VBReader(file)) {
+      Assert.assertArrayEquals(record(10, 1), reader.read());
+      Assert.assertArrayEquals(record(0, 2), reader.read());
+      Assert.assertArrayEquals(record(300, 3), reader.read());
+      Assert.assertArrayEquals(record(1, 4), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void readRecordsWithSlidingWindows() throws IOException, ReaderException {
+    write(block(record(10, 1), record(20, 2)), block(), block(record(50, 3)), block(record(7, 4)));
+    try(VBReader reader = new VBReader(new MappedBlockSource(file, 16))) {
+      Assert.assertArrayEquals(record(10, 1), reader.read());
+      Assert.assertArrayEquals(record(20, 2), reader.read());
+      Assert.assertArrayEquals(record(50, 3), reader.read());
+      Assert.assertArrayEquals(record(7, 4), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void iterateRecordsInPlace() throws IOException, ReaderException {
+    write(block(record(10, 1), record(20, 2)), block(record(30, 3)));
+    try(VBReader reader = new VBReader(new MappedBlockSource(file, 16))) {
+      int[] lengths = new int[] {10, 20, 30};
+      for(int i = 0; i < lengths.length; i++) {
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(lengths[i], reader.getLength());
+        Assert.assertEquals(record(lengths[i], i + 1)[0], reader.getBuffer().get(reader.getOffset()));
+
+        java.nio.ByteBuffer view = reader.getRecord();
+        Assert.assertEquals(lengths[i], view.remaining());
+        byte[] copy = new byte[view.remaining()];
+        view.get(copy);
+        Assert.assertArrayEquals(record(lengths[i], i + 1), copy);
+      }
+      Assert.assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void readEmptyDataset() throws IOException, ReaderException {
+    write();
+    try(VBReader reader = new VBReader(file)) {
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readTruncatedBlock() throws IOException, ReaderException {
+    byte[] block = block(record(10, 1));
+    write(java.util.Arrays.copyOf(block, block.length - 1));
+    try(VBReader reader = new VBReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readRecordExceedingBlock() throws IOException, ReaderException {
+    byte[] block = block(record(10, 1));
+    block[5] = 20;
+    write(block);
+    try(VBReader reader = new VBReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readSpannedSegment() throws IOException, ReaderException {
+    byte[] block = block(record(10, 1));
+    block[6] = 0x01;
+    write(block);
+    try(VBReader reader = new VBReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readInvalidLastByte() throws IOException, ReaderException {
+    byte[] block = block(record(10, 1));
+    block[7] = 0x01;
+    write(block);
+    try(VBReader reader = new VBReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test
+  public void readFilteredRecords() throws IOException, ReaderException {
+    write(block(record(10, 1), record(0, 2), record(300, 3)), block(record(1, 4), record(5, 1)));
+
+    try(VBReader reader = new VBReader(file)) {
+      reader.setFilter(Predicates.not(Predicates.byteEquals(0, (byte)1)));
+      Assert.assertArrayEquals(record(300, 3), reader.read());
+      Assert.assertArrayEquals(record(1, 4), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void readIntoCallerBuffers() throws IOException, ReaderException {
+    write(block(record(10, 1), record(300, 2)), block(record(20, 3)));
+
+    try(VBReader reader = new VBReader(file)) {
+      byte[] array = new byte[100];
+      Assert.assertEquals(10, reader.read(array, 5));
+      Assert.assertArrayEquals(record(10, 1), java.util.Arrays.copyOfRange(array, 5, 15));
+
+      Assert.assertEquals(AbstractRecordReader.SHORT_BUFFER, reader.read(array, 0));
+      ByteBuffer buffer = ByteBuffer.allocateDirect(400);
+      Assert.assertEquals(300, reader.readInto(buffer));
+      Assert.assertEquals(300, buffer.position());
+      Assert.assertEquals(20, reader.readInto(buffer));
+
+      buffer.flip();
+      byte[] copy = new byte[320];
+      buffer.get(copy);
+      Assert.assertArrayEquals(record(300, 2), java.util.Arrays.copyOfRange(copy, 0, 300));
+      Assert.assertArrayEquals(record(20, 3), java.util.Arrays.copyOfRange(copy, 300, 320));
+
+      Assert.assertEquals(AbstractRecordReader.END_OF_DATA, reader.read(array, 0));
+      Assert.assertEquals(AbstractRecordReader.END_OF_DATA, reader.readInto(buffer));
+    }
+  }
+
+  @Test
+  public void lenientSkipsInvalidSegments() throws IOException, ReaderException {
+    byte[] invalid = block(record(10, 1), record(10, 2));
+    invalid[7] = 0x01;
+    byte[] spanned = block(record(10, 3), record(10, 4));
+    spanned[6] = 0x01;
+    write(block(record(10, 5)), invalid, spanned, block(record(10, 6)));
+
+    try(VBReader reader = new VBReader(file)) {
+      reader.setLenient(true);
+      byte[] array = new byte[10];
+      Assert.assertEquals(10, reader.read(array, 0));
+      Assert.assertArrayEquals(record(10, 5), array);
+      Assert.assertEquals(AbstractRecordReader.INVALID_DESCRIPTOR, reader.read(array, 0));
+      Assert.assertEquals(AbstractRecordReader.INVALID_DESCRIPTOR, reader.read(array, 0));
+      Assert.assertEquals(10, reader.read(array, 0));
+      Assert.assertArrayEquals(record(10, 4), array);
+      Assert.assertEquals(10, reader.read(array, 0));
+      Assert.assertArrayEquals(record(10, 6), array);
+      Assert.assertEquals(AbstractRecordReader.END_OF_DATA, reader.read(array, 0));
+      Assert.assertEquals(2, reader.getSkippedCount());
+    }
+  }
+
+  @Test
+  public void lenientStopsOnTruncatedBlock() throws IOException, ReaderException {
+    byte[] block = block(record(10, 1));
+    byte[] truncated = block(record(10, 2));
+    byte[] data = new byte[block.length + truncated.length - 1];
+    System.arraycopy(block, 0, data, 0, block.length);
+    System.arraycopy(truncated, 0, data, block.length, truncated.length - 1);
+    write(data);
+
+    try(VBReader reader = new VBReader(file)) {
+      reader.setLenient(true);
+      Assert.assertTrue(reader.next());
+      Assert.assertFalse(reader.next());
+      Assert.assertEquals(1, reader.getSkippedCount());
+      Assert.assertFalse(reader.next());
+      Assert.assertEquals(1, reader.getSkippedCount());
+    }
+  }
+
+  @Test
+  public void lenientReadsRecordsAfterDamagedBlock() throws IOException, ReaderException {
+    byte[] damaged = block(record(10, 3), record(10, 4));
+    damaged[4 + 14 + 3] = 0x01;
+    write(block(record(10, 1), record(10, 2)), damaged, block(record(10, 5), record(10, 6)));
+    byte[][] expected = new byte[][] {record(10, 1), record(10, 2), record(10, 3), record(10, 5), record(10, 6)};
+
+    try(VBReader reader = new VBReader(file)) {
+      reader.setLenient(true);
+      int count = 0;
+      byte[] record;
+      while((record = reader.read()) != null) {
+        Assert.assertArrayEquals(expected[count++], record);
+      }
+      Assert.assertEquals(expected.length, count);
+      Assert.assertEquals(1, reader.getSkippedCount());
+    }
+
+    try(VBReader reader = new VBReader(file)) {
+      reader.setLenient(true);
+      int count = 0;
+      while(reader.next()) {
+        count++;
+      }
+      Assert.assertEquals(expected.length, count);
+    }
+  }
+
+  @Test
+  public void resumeAtEveryRecord() throws IOException, ReaderException {
+    byte[][] records = new byte[][] {record(10, 1), record(0, 2), record(300, 3), record(1, 4), record(7, 5)};
+    write(block(records[0], records[1], records[2]), block(records[3]), block(records[4]));
+
+    for(int i = 0; i <= records.length; i++) {
+      Checkpoint checkpoint;
+      try(VBReader reader = new VBReader(file)) {
+        for(int j = 0; j < i; j++) {
+          reader.read();
+        }
+        checkpoint = reader.getCheckpoint();
+      }
+
+      try(VBReader reader = new VBReader(file, checkpoint)) {
+        for(int j = i; j < records.length; j++) {
+          Assert.assertArrayEquals(records[j], reader.read());
+        }
+        Assert.assertNull(reader.read());
+      }
+    }
+  }
+}
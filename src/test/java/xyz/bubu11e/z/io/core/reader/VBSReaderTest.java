@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.filter.Predicates;
+
+public class VBSReaderTest {
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("vbsreader", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  @Test
+  public void readSpannedRecords() throws IOException, ReaderException {
+    byte[] large = Blocks.record(1000, 7);
+    Blocks.write(file,
+      Blocks.block(Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.part(large, 0, 300), 0x01)),
+      Blocks.block(Blocks.segment(Blocks.part(large, 300, 700), 0x03)),
+      Blocks.block(Blocks.segment(Blocks.part(large, 700, 1000), 0x02), Blocks.segment(Blocks.record(5, 2))));
+
+    try(VBSReader reader = new VBSReader(new MappedBlockSource(file, 64), 16)) {
+      Assert.assertArrayEquals(Blocks.record(10, 1), reader.read());
+      Assert.assertArrayEquals(large, reader.read());
+      Assert.assertArrayEquals(Blocks.record(5, 2), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void resumeAfterSpannedRecord() throws IOException, ReaderException {
+    byte[] large = Blocks.record(1000, 7);
+    byte[] first = Blocks.block(Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.part(large, 0, 300), 0x01));
+    byte[] second = Blocks.block(Blocks.segment(Blocks.part(large, 300, 1000), 0x02), Blocks.segment(Blocks.record(5, 2)),
+      Blocks.segment(Blocks.record(6, 3)));
+    Blocks.write(file, first, second);
+
+    Checkpoint checkpoint;
+    try(VBSReader reader = new VBSReader(file)) {
+      Assert.assertEquals(Checkpoint.START, reader.getCheckpoint());
+      Assert.assertArrayEquals(Blocks.record(10, 1), reader.read());
+      Assert.assertEquals(new Checkpoint(0, 1, -1), reader.getCheckpoint());
+      Assert.assertArrayEquals(large, reader.read());
+      checkpoint = reader.getCheckpoint();
+      Assert.assertEquals(new Checkpoint(first.length, 1, -1), checkpoint);
+    }
+
+    try(VBSReader reader = new VBSReader(file, checkpoint)) {
+      Assert.assertEquals(checkpoint, reader.getCheckpoint());
+      Assert.assertArrayEquals(Blocks.record(5, 2), reader.read());
+      Assert.assertArrayEquals(Blocks.record(6, 3), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void resumeAtInvalidCheckpoint() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1))));
+    try(VBSReader reader = new VBSReader(file, new Checkpoint(0, 2, -1))) {
+      reader.read();
+    }
+  }
+
+  @Test
+  public void completeRecordsAreNotCopied() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1))));
+
+    try(MappedBlockSource source = new MappedBlockSource(file); VBSReader reader = new VBSReader(source)) {
+      Assert.assertTrue(reader.next());
+      Assert.assertSame(source.getBlockBuffer(), reader.getBuffer());
+      Assert.assertEquals(8, reader.getOffset());
+      Assert.assertEquals(10, reader.getLength());
+    }
+  }
+
+  @Test
+  public void reassemblyBufferIsReused() throws IOException, ReaderException {
+    byte[] first = Blocks.record(100, 1);
+    byte[] second = Blocks.record(50, 2);
+    Blocks.write(file,
+      Blocks.block(Blocks.segment(Blocks.part(first, 0, 60), 0x01), Blocks.segment(Blocks.part(first, 60, 100), 0x02)),
+      Blocks.block(Blocks.segment(Blocks.part(second, 0, 20), 0x01), Blocks.segment(Blocks.part(second, 20, 50), 0x02)));
+
+    try(VBSReader reader = new VBSReader(new MappedBlockSource(file), 128)) {
+      Assert.assertTrue(reader.next());
+      java.nio.ByteBuffer buffer = reader.getBuffer();
+      Assert.assertEquals(100, reader.getLength());
+      Assert.assertTrue(reader.next());
+      Assert.assertSame(buffer, reader.getBuffer());
+      byte[] copy = new byte[reader.getLength()];
+      reader.getRecord().get(copy);
+      Assert.assertArrayEquals(second, copy);
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readOrphanLastSegment() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1), 0x02)));
+    try(VBSReader reader = new VBSReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readInterruptedSpannedRecord() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1), 0x01), Blocks.segment(Blocks.record(10, 1))));
+    try(VBSReader reader = new VBSReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test (expected = ReaderException.class)
+  public void readIncompleteSpannedRecord() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1), 0x01), Blocks.segment(Blocks.record(10, 1), 0x03)));
+    try(VBSReader reader = new VBSReader(file)) {
+      reader.read();
+    }
+  }
+
+  @Test
+  public void lenientDropsInterruptedSpannedRecord() throws IOException, ReaderException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1), 0x02),
+      Blocks.segment(Blocks.record(10, 2), 0x01), Blocks.segment(Blocks.record(10, 3))),
+      Blocks.block(Blocks.segment(Blocks.record(10, 4), 0x01)));
+
+    try(VBSReader reader = new VBSReader(file)) {
+      reader.setLenient(true);
+      byte[] array = new byte[10];
+      Assert.assertEquals(AbstractRecordReader.INVALID_DESCRIPTOR, reader.read(array, 0));
+      Assert.assertEquals(AbstractRecordReader.INVALID_DESCRIPTOR, reader.read(array, 0));
+      Assert.assertEquals(10, reader.read(array, 0));
+      Assert.assertArrayEquals(Blocks.record(10, 3), array);
+      Assert.assertEquals(AbstractRecordReader.INVALID_DESCRIPTOR, reader.read(array, 0));
+      Assert.assertEquals(AbstractRecordReader.END_OF_DATA, reader.read(array, 0));
+    }
+  }
+
+  @Test
+  public void skipFilteredSpannedRecords() throws IOException, ReaderException {
+    byte[] large = Blocks.record(1000, 7);
+    Blocks.write(file,
+      Blocks.block(Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.part(large, 0, 300), 0x01)),
+      Blocks.block(Blocks.segment(Blocks.part(large, 300, 700), 0x03)),
+      Blocks.block(Blocks.segment(Blocks.part(large, 700, 1000), 0x02), Blocks.segment(Blocks.record(5, 2))));
+
+    try(VBSReader reader = new VBSReader(new MappedBlockSource(file, 64), 16)) {
+      reader.setFilter(Predicates.not(Predicates.byteEquals(0, (byte)7)));
+      Assert.assertArrayEquals(Blocks.record(10, 1), reader.read());
+      Assert.assertArrayEquals(Blocks.record(5, 2), reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void filterBeyondFirstSegment() throws IOException, ReaderException {
+    byte[] large = Blocks.record(1000, 7);
+    Blocks.write(file,
+      Blocks.block(Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.part(large, 0, 300), 0x01)),
+      Blocks.block(Blocks.segment(Blocks.part(large, 300, 1000), 0x02), Blocks.segment(Blocks.record(5, 2))));
+
+    try(VBSReader reader = new VBSReader(file)) {
+      reader.setFilter(Predicates.byteEquals(500, large[500]));
+      Assert.assertArrayEquals(large, reader.read());
+      Assert.assertNull(reader.read());
+    }
+  }
+}
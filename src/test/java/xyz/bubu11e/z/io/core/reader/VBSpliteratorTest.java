@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class VBSpliteratorTest {
+
+  private static final int COUNT = 3000;
+
+  private Path file = null;
+  private FileChannel channel = null;
+
+  @Before
+  public void setUp() throws IOException, WriterException {
+    file = Files.createTempFile("vbspliterator", ".bin");
+
+    try(VBWriter writer = new VBWriter(file, 1000, false)) {
+      for(int i = 0; i < COUNT; i++) {
+        byte[] record = new byte[4 + i % 150];
+        ByteBuffer.wrap(record).putInt(i);
+        writer.write(record);
+      }
+    }
+
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    channel.close();
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private static void drain(Spliterator<byte[]> spliterator, final List<Integer> records) {
+    spliterator.forEachRemaining(new Consumer<byte[]>() {
+      @Override
+      public void accept(byte[] record) {
+        records.add(ByteBuffer.wrap(record).getInt());
+      }
+    });
+  }
+
+  @Test
+  public void splitsCoverTheDataset() throws IOException {
+    List<Spliterator<byte[]>> splits = new ArrayList<Spliterator<byte[]>>();
+    splits.add(new VBSpliterator(channel, 4096));
+
+    for(int i = 0; i < splits.size(); ) {
+      Spliterator<byte[]> prefix = splits.get(i).trySplit();
+      if(prefix == null) {
+        i++;
+      } else {
+        splits.add(i, prefix);
+      }
+    }
+
+    Assert.assertTrue(splits.size() > 10);
+
+    List<Integer> records = new ArrayList<Integer>();
+    for(Spliterator<byte[]> split : splits) {
+      Assert.assertTrue(split.estimateSize() <= 4096);
+      drain(split, records);
+    }
+
+    Assert.assertEquals(COUNT, records.size());
+    for(int i = 0; i < COUNT; i++) {
+      Assert.assertEquals(i, records.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void smallRangeIsNotSplit() throws IOException {
+    Spliterator<byte[]> spliterator = new VBSpliterator(channel, Integer.MAX_VALUE);
+    Assert.assertNull(spliterator.trySplit());
+
+    List<Integer> records = new ArrayList<Integer>();
+    drain(spliterator, records);
+    Assert.assertEquals(COUNT, records.size());
+  }
+
+  @Test (expected = UncheckedReaderException.class)
+  public void invalidBlock() throws IOException {
+    Files.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1))));
+    Files.write(file, new byte[] {0x00, 0x01, 0x00, 0x00}, StandardOpenOption.APPEND);
+
+    try(FileChannel invalid = FileChannel.open(file, StandardOpenOption.READ)) {
+      drain(new VBSpliterator(invalid), new ArrayList<Integer>());
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.scan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.Blocks;
+import xyz.bubu11e.z.io.core.reader.RecordFormat;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class StructureScannerTest {
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("scanner", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  @Test
+  public void scanVariable() throws IOException, WriterException {
+    try(VBWriter writer = new VBWriter(file, 1000, false)) {
+      for(int i = 1; i <= 100; i++) {
+        writer.write(new byte[i]);
+      }
+    }
+
+    ScanReport report = new StructureScanner(RecordFormat.VB).scan(file);
+
+    Assert.assertTrue(report.isValid());
+    Assert.assertEquals(-1, report.getErrorOffset());
+    Assert.assertEquals(Files.size(file), report.getBytes());
+    Assert.assertEquals(100, report.getRecords());
+    Assert.assertEquals(100, report.getSegments());
+    Assert.assertEquals(0, report.getSpannedRecords());
+    Assert.assertEquals(1, report.getMinRecordLength());
+    Assert.assertEquals(100, report.getMaxRecordLength());
+    Assert.assertEquals(50.5, report.getMeanRecordLength(), 0.001);
+    Assert.assertEquals(50, report.getRecordLengthPercentile(50));
+    Assert.assertEquals(99, report.getRecordLengthPercentile(99));
+    Assert.assertTrue(report.getBlocks() > 1);
+    Assert.assertTrue(report.getMaxBlockLength() <= 1000);
+  }
+
+  @Test
+  public void scanSpanned() throws IOException, WriterException {
+    try(VBWriter writer = new VBWriter(file, 100, true)) {
+      writer.write(new byte[10]);
+      writer.write(new byte[50000]);
+      writer.write(new byte[20]);
+    }
+
+    ScanReport report = new StructureScanner(RecordFormat.VBS).scan(file);
+
+    Assert.assertTrue(report.getError(), report.isValid());
+    Assert.assertEquals(3, report.getRecords());
+    Assert.assertTrue(report.getSpannedRecords() >= 1);
+    Assert.assertEquals(50000, report.getMaxRecordLength());
+    Assert.assertEquals(50000, report.getRecordLengthPercentile(100));
+    Assert.assertEquals(20, report.getRecordLengthPercentile(50));
+
+    report = new StructureScanner(RecordFormat.VB).scan(file);
+    Assert.assertFalse(report.isValid());
+    Assert.assertEquals(1, report.getRecords());
+  }
+
+  @Test
+  public void invalidChain() throws IOException {
+    byte[] first = Blocks.block(Blocks.segment(Blocks.record(10, 1)));
+    byte[] second = Blocks.block(Blocks.segment(Blocks.record(20, 2)), Blocks.segment(Blocks.record(30, 3)));
+    second[1] -= 2;
+    Blocks.write(file, first, second);
+
+    ScanReport report = new StructureScanner(RecordFormat.VB).scan(file);
+
+    Assert.assertFalse(report.isValid());
+    Assert.assertEquals(first.length + 4 + 24, report.getErrorOffset());
+    Assert.assertEquals(2, report.getRecords());
+    Assert.assertEquals(2, report.getBlocks());
+  }
+
+  @Test
+  public void invalidRDW() throws IOException {
+    byte[] block = Blocks.block(Blocks.segment(Blocks.record(10, 1)), Blocks.segment(Blocks.record(20, 2)));
+    block[4 + 14 + 3] = 0x01;
+    Blocks.write(file, block);
+
+    ScanReport report = new StructureScanner(RecordFormat.VB).scan(file);
+
+    Assert.assertEquals(4 + 14, report.getErrorOffset());
+    Assert.assertTrue(report.getError().startsWith("Invalid RDW"));
+  }
+
+  @Test
+  public void truncatedBlock() throws IOException {
+    byte[] block = Blocks.block(Blocks.segment(Blocks.record(10, 1)));
+    Blocks.write(file, block, new byte[] {0x00, 0x20, 0x00, 0x00, 0x00});
+
+    ScanReport report = new StructureScanner(RecordFormat.VB).scan(file);
+
+    Assert.assertEquals(block.length, report.getErrorOffset());
+    Assert.assertTrue(report.getError().startsWith("Truncated block"));
+  }
+
+  @Test
+  public void incompleteSpannedRecord() throws IOException {
+    Blocks.write(file, Blocks.block(Blocks.segment(Blocks.record(10, 1), 0x01)));
+
+    ScanReport report = new StructureScanner(RecordFormat.VBS).scan(file);
+
+    Assert.assertFalse(report.isValid());
+    Assert.assertEquals(0, report.getRecords());
+    Assert.assertEquals(1, report.getSegments());
+  }
+
+  @Test
+  public void scanFixed() throws IOException {
+    Files.write(file, new byte[80 * 10 + 5]);
+
+    ScanReport report = new StructureScanner(RecordFormat.FB, 80, StructureScanner.DEFAULT_WINDOW_SIZE).scan(file);
+
+    Assert.assertFalse(report.isValid());
+    Assert.assertEquals(800, report.getErrorOffset());
+    Assert.assertEquals(10, report.getRecords());
+    Assert.assertEquals(80, report.getRecordLengthPercentile(50));
+  }
+
+  @Test
+  public void smallWindows() throws IOException, WriterException {
+    try(VBWriter writer = new VBWriter(file, 300, true)) {
+      for(int i = 0; i < 500; i++) {
+        writer.write(new byte[i % 700]);
+      }
+    }
+
+    ScanReport report = new StructureScanner(RecordFormat.VBS, 0, 4).scan(file);
+
+    Assert.assertTrue(report.getError(), report.isValid());
+    Assert.assertEquals(500, report.getRecords());
+  }
+}
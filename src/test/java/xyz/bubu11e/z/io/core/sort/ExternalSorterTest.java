@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.Reader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.VBReader;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+import xyz.bubu11e.z.io.core.writer.VBWriter;
+import xyz.bubu11e.z.io.core.writer.Writer;
+import xyz.bubu11e.z.io.core.writer.WriterException;
+
+public class ExternalSorterTest {
+
+  private static final int RUN_SIZE = 64 * 1024;
+
+  private Path directory = null;
+  private Path input = null;
+  private Path output = null;
+  private ExecutorService executor = null;
+  private RecordComparator comparator = null;
+  private List<byte[]> records = null;
+
+  @Before
+  public void setUp() throws IOException, WriterException {
+    directory = Files.createTempDirectory("zsort");
+    input = Files.createTempFile("sort", ".in");
+    output = Files.createTempFile("sort", ".out");
+    executor = Executors.newFixedThreadPool(3);
+    comparator = RecordComparator.parse("1,4,CH,A,5,3,PD,D");
+
+    Random random = new Random(42);
+    records = new ArrayList<byte[]>();
+    for(int i = 0; i < 20000; i++) {
+      byte[] record = new byte[12 + random.nextInt(120)];
+      random.nextBytes(record);
+      record[0] = (byte)(0xc1 + random.nextInt(3));
+      record[4] = (byte)random.nextInt(10);
+      record[5] = (byte)(random.nextInt(10) << 4 | random.nextInt(10));
+      record[6] = (byte)(random.nextInt(10) << 4 | (random.nextBoolean() ? 0x0c : 0x0d));
+      records.add(record);
+    }
+
+    try(VBWriter writer = new VBWriter(input)) {
+      for(byte[] record : records) {
+        writer.write(record);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    Files.deleteIfExists(input);
+    Files.deleteIfExists(output);
+    try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for(Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private ExternalSorter sorter(int mergeWidth) {
+    return new ExternalSorter(comparator, directory, RUN_SIZE, 3, mergeWidth, 32 * 1024, executor);
+  }
+
+  private void assertSorted() throws IOException, ReaderException {
+    List<byte[]> expected = new ArrayList<byte[]>(records);
+    Collections.sort(expected, comparator);
+
+    try(VBReader reader = new VBReader(output)) {
+      for(byte[] record : expected) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  private void assertEmptyDirectory() throws IOException {
+    try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      Assert.assertFalse(files.iterator().hasNext());
+    }
+  }
+
+  @Test
+  public void sortWithRuns() throws IOException, ReaderException, WriterException {
+    ExternalSorter sorter = sorter(64);
+
+    try(VBReader reader = new VBReader(input); VBWriter writer = new VBWriter(output)) {
+      Assert.assertEquals(records.size(), sorter.sort(reader, writer));
+    }
+
+    Assert.assertTrue(sorter.getRunCount() > 3);
+    Assert.assertTrue(sorter.getRunCount() <= 64);
+    assertSorted();
+    assertEmptyDirectory();
+  }
+
+  @Test
+  public void sortWithMergePasses() throws IOException, ReaderException, WriterException {
+    ExternalSorter sorter = sorter(3);
+
+    try(VBReader reader = new VBReader(input); VBWriter writer = new VBWriter(output)) {
+      Assert.assertEquals(records.size(), sorter.sort(reader, writer));
+    }
+
+    Assert.assertTrue(sorter.getRunCount() > 9);
+    assertSorted();
+    assertEmptyDirectory();
+  }
+
+  @Test
+  public void sortInMemory() throws IOException, ReaderException, WriterException {
+    records = records.subList(0, 100);
+    ExternalSorter sorter = sorter(64);
+
+    try(VBWriter writer = new VBWriter(output)) {
+      final Iterator<byte[]> iterator = records.iterator();
+      Reader reader = new Reader() {
+        @Override
+        public byte[] read() {
+          return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+
+      Assert.assertEquals(100, sorter.sort(reader, writer));
+    }
+
+    Assert.assertEquals(0, sorter.getRunCount());
+    assertSorted();
+  }
+
+  @Test
+  public void sortIntoAnyWriter() throws IOException, ReaderException, WriterException {
+    final List<byte[]> sorted = new ArrayList<byte[]>();
+    Writer writer = new Writer() {
+      @Override
+      public void write(byte[] object) {
+        sorted.add(object);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    ExternalSorter sorter = sorter(64);
+    try(VBReader reader = new VBReader(input)) {
+      sorter.sort(reader, writer);
+    }
+
+    List<byte[]> expected = new ArrayList<byte[]>(records);
+    Collections.sort(expected, comparator);
+    Assert.assertEquals(expected.size(), sorted.size());
+    for(int i = 0; i < expected.size(); i++) {
+      Assert.assertArrayEquals(expected.get(i), sorted.get(i));
+    }
+  }
+
+  @Test
+  public void sortSpannedRecords() throws IOException, ReaderException, WriterException {
+    Random random = new Random(7);
+    records = new ArrayList<byte[]>();
+    for(int i = 0; i < 40; i++) {
+      byte[] record = new byte[8 + random.nextInt(40000)];
+      random.nextBytes(record);
+      record[6] = 0x0c;
+      records.add(record);
+    }
+
+    try(VBWriter writer = new VBWriter(input, 32760, true)) {
+      for(byte[] record : records) {
+        writer.write(record);
+      }
+    }
+
+    ExternalSorter sorter = sorter(64);
+    try(VBSReader reader = new VBSReader(input); VBWriter writer = new VBWriter(output, 32760, true)) {
+      sorter.sort(reader, writer);
+    }
+
+    Assert.assertTrue(sorter.getRunCount() > 1);
+
+    List<byte[]> expected = new ArrayList<byte[]>(records);
+    Collections.sort(expected, comparator);
+    try(VBSReader reader = new VBSReader(output)) {
+      for(byte[] record : expected) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void interruptedSortReleasesBuffersOnce() throws IOException, ReaderException, WriterException {
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    ExecutorService single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>()) {
+      @Override
+      protected void afterExecute(Runnable task, Throwable thrown) {
+        try {
+          ((Future<?>)task).get();
+        } catch(ExecutionException e) {
+          failures.add(e.getCause());
+        } catch(InterruptedException | CancellationException e) {
+        }
+      }
+    };
+
+    try {
+      // Keep the spill tasks queued so that the sort has to wait for a free buffer.
+      single.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(200);
+          } catch(InterruptedException e) {
+          }
+        }
+      });
+
+      final Iterator<byte[]> iterator = records.iterator();
+      Reader reader = new Reader() {
+        @Override
+        public byte[] read() {
+          return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+
+      ExternalSorter sorter = new ExternalSorter(comparator, directory, RUN_SIZE, 2, 64, 32 * 1024, single);
+      Thread.currentThread().interrupt();
+      try(VBWriter writer = new VBWriter(output)) {
+        sorter.sort(reader, writer);
+        Assert.fail();
+      } catch(InterruptedIOException e) {
+      } finally {
+        Thread.interrupted();
+      }
+
+      Assert.assertTrue(failures.toString(), failures.isEmpty());
+      assertEmptyDirectory();
+
+      try(VBReader source = new VBReader(input); VBWriter writer = new VBWriter(output)) {
+        Assert.assertEquals(records.size(), sorter.sort(source, writer));
+      }
+      Assert.assertTrue(failures.isEmpty());
+      assertSorted();
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  @Test (expected = WriterException.class)
+  public void recordLongerThanRun() throws IOException, ReaderException, WriterException {
+    try(VBWriter writer = new VBWriter(input, 32760, true)) {
+      writer.write(new byte[RUN_SIZE]);
+    }
+
+    try(VBSReader reader = new VBSReader(input); VBWriter writer = new VBWriter(output)) {
+      sorter(64).sort(reader, writer);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.sort;
+
+import java.nio.ByteBuffer;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class RecordComparatorTest {
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for(int i = 0; i < values.length; i++) {
+      bytes[i] = (byte)values[i];
+    }
+    return bytes;
+  }
+
+  private static int sign(int value) {
+    return Integer.signum(value);
+  }
+
+  @Test
+  public void compareCharacters() {
+    RecordComparator comparator = new RecordComparator(new SortKey(1, 10, KeyFormat.CH));
+
+    Assert.assertEquals(0, comparator.compare("xABCDEFGHIJy".getBytes(), "zABCDEFGHIJz".getBytes()));
+    Assert.assertEquals(-1, sign(comparator.compare("xABCDEFGHIAy".getBytes(), "xABCDEFGHIJy".getBytes())));
+    Assert.assertEquals(1, sign(comparator.compare("xBBCDEFGHIAy".getBytes(), "xABCDEFGHIJy".getBytes())));
+    Assert.assertEquals(1, sign(comparator.compare(bytes(0, 0xf0), bytes(0, 0x10))));
+  }
+
+  @Test
+  public void compareShortRecords() {
+    RecordComparator comparator = new RecordComparator(new SortKey(2, 4, KeyFormat.PD));
+
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0), bytes(0, 0, 0x00, 0x00, 0x00, 0x0c))));
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0, 0, 0x01), bytes(0, 0, 0x01, 0x00))));
+    Assert.assertEquals(0, comparator.compare(bytes(1), bytes(2)));
+  }
+
+  @Test
+  public void compareSigned() {
+    RecordComparator comparator = new RecordComparator(new SortKey(0, 2, KeyFormat.FI));
+    RecordComparator unsigned = new RecordComparator(new SortKey(0, 2, KeyFormat.BI));
+
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0xff, 0xff), bytes(0x00, 0x01))));
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0x80, 0x00), bytes(0xff, 0x00))));
+    Assert.assertEquals(1, sign(comparator.compare(bytes(0x01, 0x80), bytes(0x01, 0x7f))));
+    Assert.assertEquals(1, sign(unsigned.compare(bytes(0xff, 0xff), bytes(0x00, 0x01))));
+  }
+
+  @Test
+  public void comparePacked() {
+    RecordComparator comparator = new RecordComparator(new SortKey(0, 3, KeyFormat.PD));
+
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0x00, 0x12, 0x3d), bytes(0x00, 0x00, 0x1c))));
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0x00, 0x12, 0x3d), bytes(0x00, 0x12, 0x2d))));
+    Assert.assertEquals(1, sign(comparator.compare(bytes(0x00, 0x12, 0x4c), bytes(0x00, 0x12, 0x3f))));
+    Assert.assertEquals(0, comparator.compare(bytes(0x00, 0x12, 0x3c), bytes(0x00, 0x12, 0x3c)));
+  }
+
+  @Test
+  public void compareZoned() {
+    RecordComparator comparator = new RecordComparator(new SortKey(0, 3, KeyFormat.ZD));
+
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0xf1, 0xf2, 0xd3), bytes(0xf0, 0xf0, 0xc1))));
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(0xf1, 0xf2, 0xd3), bytes(0xf1, 0xf2, 0xd2))));
+    Assert.assertEquals(1, sign(comparator.compare(bytes(0xf1, 0xf2, 0xc4), bytes(0xf1, 0xf2, 0xf3))));
+    Assert.assertEquals(0, comparator.compare(bytes(0xf1, 0xf2, 0xf3), bytes(0xf1, 0xf2, 0xc3)));
+  }
+
+  @Test
+  public void compareSeveralKeys() {
+    RecordComparator comparator = RecordComparator.parse("(1,1,CH,A,2,2,BI,D)");
+
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(1, 0, 1), bytes(2, 0, 0))));
+    Assert.assertEquals(-1, sign(comparator.compare(bytes(1, 0, 2), bytes(1, 0, 1))));
+    Assert.assertEquals(0, comparator.compare(bytes(1, 0, 2, 5), bytes(1, 0, 2, 6)));
+    Assert.assertEquals("(1,1,CH,A,2,2,BI,D)", comparator.toString());
+  }
+
+  @Test
+  public void compareInPlace() {
+    RecordComparator comparator = RecordComparator.parse("3,9,CH,A");
+    ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+    buffer.put(10, (byte)'a');
+    buffer.put(40, (byte)'b');
+
+    Assert.assertEquals(-1, sign(comparator.compare(buffer, 0, 12, buffer, 30, 12)));
+    Assert.assertEquals(1, sign(comparator.compare(buffer, 30, 12, buffer, 0, 12)));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void parseInvalidFormat() {
+    RecordComparator.parse("1,8,XX,A");
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void parseInvalidDirection() {
+    RecordComparator.parse("1,8,CH,X");
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void parseIncompleteFields() {
+    RecordComparator.parse("1,8,CH");
+  }
+}
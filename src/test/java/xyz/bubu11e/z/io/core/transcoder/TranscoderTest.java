@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.transcoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+public class TranscoderTest {
+
+  private byte[] all = null;
+
+  @Before
+  public void setUp() {
+    all = new byte[256];
+    for(int i = 0; i < all.length; i++) {
+      all[i] = (byte)i;
+    }
+  }
+
+  @After
+  public void tearDown() {
+    all = null;
+  }
+
+  @Test
+  public void decodeHello() {
+    byte[] hello = new byte[] {(byte)0xc8, (byte)0x85, (byte)0x93, (byte)0x93, (byte)0x96};
+    StringBuilder builder = new StringBuilder();
+    Transcoder.forCodePage(CodePage.CP1047).decode(hello, 0, hello.length, builder);
+    Assert.assertEquals("Hello", builder.toString());
+  }
+
+  @Test
+  public void decodeMatchesCharsets() {
+    for(CodePage codePage : CodePage.values()) {
+      Transcoder transcoder = Transcoder.forCodePage(codePage);
+      String expected = new String(all, Charset.forName(codePage.getCharsetName()));
+
+      char[] chars = new char[256];
+      transcoder.decode(all, 0, all.length, chars, 0);
+      Assert.assertEquals(codePage.toString(), expected, new String(chars));
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(256);
+      direct.put(all);
+      StringBuilder builder = new StringBuilder();
+      transcoder.decode(direct, 0, 256, builder);
+      Assert.assertEquals(codePage.toString(), expected, builder.toString());
+    }
+  }
+
+  @Test
+  public void toUtf8MatchesCharsets() {
+    for(CodePage codePage : CodePage.values()) {
+      byte[] expected = new String(all, Charset.forName(codePage.getCharsetName())).getBytes(StandardCharsets.UTF_8);
+      byte[] utf8 = new byte[all.length * Transcoder.UTF8_MAX_BYTES];
+      int length = Transcoder.forCodePage(codePage).toUtf8(all, 0, all.length, utf8, 0);
+      Assert.assertArrayEquals(codePage.toString(), expected, java.util.Arrays.copyOf(utf8, length));
+    }
+  }
+
+  @Test
+  public void encodeMatchesCharsets() {
+    for(CodePage codePage : CodePage.values()) {
+      Charset charset = Charset.forName(codePage.getCharsetName());
+      String text = new String(all, charset);
+      byte[] encoded = new byte[text.length()];
+      Transcoder.forCodePage(codePage).encode(text, 0, text.length(), encoded, 0);
+      Assert.assertArrayEquals(codePage.toString(), text.getBytes(charset), encoded);
+    }
+  }
+
+  @Test
+  public void encodeUnmappable() {
+    Assert.assertEquals(Transcoder.EBCDIC_SUB, Transcoder.forCodePage(CodePage.CP037).encode('\u20ac'));
+    Assert.assertEquals((byte)0x9f, Transcoder.forCodePage(CodePage.CP1140).encode('\u20ac'));
+  }
+
+  @Test
+  public void translateBlockInPlace() {
+    Transcoder transcoder = Transcoder.forCodePage(CodePage.CP037);
+    byte[] latin1 = "Hello, World 0123456789".getBytes(StandardCharsets.ISO_8859_1);
+
+    ByteBuffer block = ByteBuffer.allocateDirect(latin1.length);
+    block.put(latin1);
+    block.flip();
+    transcoder.fromLatin1(block);
+    byte[] ebcdic = new byte[latin1.length];
+    block.duplicate().get(ebcdic);
+    Assert.assertArrayEquals("Hello, World 0123456789".getBytes(Charset.forName("IBM037")), ebcdic);
+
+    transcoder.toLatin1(ebcdic, 0, ebcdic.length);
+    Assert.assertArrayEquals(latin1, ebcdic);
+  }
+}
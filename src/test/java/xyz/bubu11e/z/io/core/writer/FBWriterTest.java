@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.writer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.FBReader;
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.RecordBatch;
+
+public class FBWriterTest {
+
+  private static final int LRECL = 10;
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("fbwriter", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private FBWriter open() throws IOException {
+    return new FBWriter(FileChannel.open(file, StandardOpenOption.WRITE), LRECL, 3 * LRECL, 2);
+  }
+
+  private static byte[] record(int value) {
+    byte[] record = new byte[LRECL];
+    ByteBuffer.wrap(record).putInt(value);
+    return record;
+  }
+
+  @Test
+  public void writeRecords() throws IOException, ReaderException, WriterException {
+    try(FBWriter writer = open()) {
+      for(int i = 0; i < 100; i++) {
+        writer.write(record(i));
+      }
+    }
+
+    Assert.assertEquals(100 * LRECL, Files.size(file));
+    try(FBReader reader = new FBReader(file, LRECL)) {
+      for(int i = 0; i < 100; i++) {
+        Assert.assertArrayEquals(record(i), reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void writeBatches() throws IOException, WriterException {
+    byte[] records = new byte[100 * LRECL];
+    for(int i = 0; i < 100; i++) {
+      ByteBuffer.wrap(records).putInt(i * LRECL, i);
+    }
+
+    RecordBatch batch = new RecordBatch();
+    try(FBWriter writer = open()) {
+      writer.write(record(-1));
+      writer.writeRecords(records, 0, 3);
+      batch.set(ByteBuffer.wrap(records), 3 * LRECL, 97, LRECL);
+      writer.writeBatch(batch);
+      writer.writeRecords(records, 0, 100);
+    }
+
+    byte[] data = Files.readAllBytes(file);
+    Assert.assertEquals(201 * LRECL, data.length);
+    Assert.assertArrayEquals(record(-1), Arrays.copyOfRange(data, 0, LRECL));
+    Assert.assertArrayEquals(records, Arrays.copyOfRange(data, LRECL, 101 * LRECL));
+    Assert.assertArrayEquals(records, Arrays.copyOfRange(data, 101 * LRECL, 201 * LRECL));
+  }
+
+  @Test
+  public void padShortRecords() throws IOException, WriterException {
+    try(FBWriter writer = open()) {
+      writer.setPadding(FBWriter.EBCDIC_SPACE);
+      writer.write(new byte[] {1, 2, 3});
+    }
+
+    Assert.assertArrayEquals(new byte[] {1, 2, 3, 0x40, 0x40, 0x40, 0x40, 0x40, 0x40, 0x40},
+      Files.readAllBytes(file));
+  }
+
+  @Test (expected = WriterException.class)
+  public void rejectShortRecords() throws IOException, WriterException {
+    try(FBWriter writer = open()) {
+      writer.write(new byte[] {1, 2, 3});
+    }
+  }
+
+  @Test (expected = WriterException.class)
+  public void rejectLongRecords() throws IOException, WriterException {
+    try(FBWriter writer = open()) {
+      writer.setPadding(FBWriter.EBCDIC_SPACE);
+      writer.write(new byte[LRECL + 1]);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 Julien Girard 
+ *
+ *    Licensed under the GNU GENERAL PUBLIC LICENSE, Version 3 ;
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://http://www.gnu.org/licenses/gpl-3.0.html
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package xyz.bubu11e.z.io.core.writer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.Assert.*;
+
+import xyz.bubu11e.z.io.core.reader.ReaderException;
+import xyz.bubu11e.z.io.core.reader.VBReader;
+import xyz.bubu11e.z.io.core.reader.VBSReader;
+
+public class VBWriterTest {
+
+  private Path file = null;
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("vbwriter", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    file = null;
+  }
+
+  private static byte[][] records(int count, int maxLength, long seed) {
+    Random random = new Random(seed);
+    byte[][] records = new byte[count][];
+    for(int i = 0; i < count; i++) {
+      records[i] = new byte[random.nextInt(maxLength + 1)];
+      random.nextBytes(records[i]);
+    }
+    return records;
+  }
+
+  /**
+   * Check every block of the file against the block size.
+   */
+  private void checkBlocks(int blockSize) throws IOException {
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    while(data.hasRemaining()) {
+      int bdw = data.getInt(data.position());
+      int length = bdw < 0 ? bdw & 0x7fffffff : bdw >>> 16;
+      Assert.assertTrue(length <= blockSize);
+      int next = data.position() + 4;
+      while(next < data.position() + length) {
+        next += data.getShort(next) & 0xffff;
+      }
+      Assert.assertEquals(data.position() + length, next);
+      data.position(next);
+    }
+  }
+
+  @Test
+  public void writeVB() throws IOException, WriterException, ReaderException {
+    byte[][] records = records(1000, 500, 1);
+    try(VBWriter writer = new VBWriter(file, 2000, false)) {
+      for(byte[] record : records) {
+        writer.write(record);
+      }
+    }
+
+    checkBlocks(2000);
+    try(VBReader reader = new VBReader(file)) {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void writeVBS() throws IOException, WriterException, ReaderException {
+    byte[][] records = records(300, 5000, 2);
+    try(VBWriter writer = new VBWriter(file, 1000, true)) {
+      for(byte[] record : records) {
+        writer.write(record);
+      }
+    }
+
+    checkBlocks(1000);
+    try(VBSReader reader = new VBSReader(file)) {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void resumeAtCheckpoint() throws IOException, WriterException, ReaderException {
+    byte[][] records = records(300, 3000, 3);
+    long checkpoint;
+    try(VBWriter writer = new VBWriter(file, 1000, true)) {
+      for(int i = 0; i < 100; i++) {
+        writer.write(records[i]);
+      }
+      checkpoint = writer.checkpoint();
+      Assert.assertEquals(Files.size(file), checkpoint);
+      for(int i = 100; i < 150; i++) {
+        writer.write(records[i]);
+      }
+    }
+
+    try(VBWriter writer = new VBWriter(file, 1000, true, checkpoint)) {
+      for(int i = 100; i < records.length; i++) {
+        writer.write(records[i]);
+      }
+    }
+
+    checkBlocks(1000);
+    try(VBSReader reader = new VBSReader(file)) {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test (expected = IOException.class)
+  public void resumeBeyondEnd() throws IOException {
+    new VBWriter(file, 1000, false, 10);
+  }
+
+  @Test
+  public void writeFromDirectBuffer() throws IOException, WriterException, ReaderException {
+    byte[][] records = records(300, 5000, 4);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(6000);
+    try(VBWriter writer = new VBWriter(file, 1000, true)) {
+      for(byte[] record : records) {
+        buffer.clear();
+        buffer.position(7);
+        buffer.put(record);
+        buffer.position(3).limit(5);
+        writer.write(buffer, 7, record.length);
+        Assert.assertEquals(3, buffer.position());
+        Assert.assertEquals(5, buffer.limit());
+      }
+    }
+
+    checkBlocks(1000);
+    try(VBSReader reader = new VBSReader(file)) {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void writeExtendedBlocks() throws IOException, WriterException, ReaderException {
+    byte[][] records = records(100, 32000, 3);
+    try(VBWriter writer = new VBWriter(file, 100000, true)) {
+      for(byte[] record : records) {
+        writer.write(record);
+      }
+    }
+
+    Assert.assertTrue((Files.readAllBytes(file)[0] & 0x80) != 0);
+    checkBlocks(100000);
+    try(VBSReader reader = new VBSReader(file)) {
+      for(byte[] record : records) {
+        Assert.assertArrayEquals(record, reader.read());
+      }
+      Assert.assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void writeEmptyDataset() throws IOException {
+    new VBWriter(file).close();
+    Assert.assertEquals(0, Files.size(file));
+  }
+
+  @Test (expected = WriterException.class)
+  public void writeTooLongRecord() throws IOException, WriterException {
+    try(VBWriter writer = new VBWriter(file, 1000, false)) {
+      writer.write(new byte[997]);
+    }
+  }
+}